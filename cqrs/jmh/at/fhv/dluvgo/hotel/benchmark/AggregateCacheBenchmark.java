@@ -0,0 +1,158 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.cache.AggregateCache;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import at.fhv.dluvgo.hotel.write.repository.snapshot.SnapshotStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link AggregateCache}: rooms with a long booking history get a part of their
+ * bookings cancelled and new ones added, once without and once with the cache, reporting the
+ * commands per second. That cached rooms match replayed ones is checked by
+ * {@code AggregateCacheTest}.
+ *
+ * <p>Usage: {@code AggregateCacheBenchmark [rooms] [bookings per room]}
+ */
+public class AggregateCacheBenchmark {
+    private static final int DEFAULT_ROOMS = 100;
+    private static final int DEFAULT_BOOKINGS_PER_ROOM = 300;
+    private static final int IN_FLIGHT = 64;
+    private static final int MEASURED_COMMANDS = 5_000;
+    private static final int FILL_BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROOMS;
+        int bookingsPerRoom = args.length > 1
+            ? Integer.parseInt(args[1])
+            : DEFAULT_BOOKINGS_PER_ROOM;
+        Logger.setLevel(Logger.Level.WARN);
+
+        // the first round only warms up the JVM
+        measure(roomCount / 4, bookingsPerRoom / 4, 0, false);
+        measure(roomCount, bookingsPerRoom, 0, true);
+        measure(roomCount, bookingsPerRoom, AggregateCache.DEFAULT_SIZE, true);
+    }
+
+    private static void measure(int roomCount, int bookingsPerRoom, int cacheSize, boolean print)
+        throws Exception {
+        System.setProperty(AggregateCache.SIZE_PROPERTY, String.valueOf(cacheSize));
+        Path directory = Files.createTempDirectory("aggregate-cache");
+        try (EventStore eventStore = new EventStore(
+            directory,
+            SegmentedEventLog.DEFAULT_SEGMENT_SIZE,
+            SnapshotStore.DEFAULT_INTERVAL
+        )) {
+            CommandBus commandBus = newCommandBus(eventStore);
+            List<CreateRoomCommand> rooms = new LoadGenerator(commandBus, 42)
+                .createRooms(roomCount);
+
+            // a history of one-night stays on consecutive days, stored in batches
+            LocalDate firstNight = LocalDate.now().plusDays(1);
+            List<BookRoomCommand> history = new ArrayList<>();
+            for (int night = 0; night < bookingsPerRoom; night++) {
+                for (CreateRoomCommand room : rooms) {
+                    history.add(oneNight(room, firstNight.plusDays(night)));
+                }
+            }
+            List<UUID> bookingIds = new ArrayList<>();
+            for (int i = 0; i < history.size(); i += FILL_BATCH_SIZE) {
+                List<Event> events = commandBus.dispatch(new BatchCommand(
+                    Collections.emptyList(),
+                    history.subList(i, Math.min(history.size(), i + FILL_BATCH_SIZE))
+                )).join();
+                for (Event event : events) {
+                    if (event instanceof BookingCreatedEvent) {
+                        bookingIds.add(((BookingCreatedEvent) event).getBookingId());
+                    }
+                }
+            }
+            Collections.shuffle(bookingIds, new Random(42));
+
+            long start = System.nanoTime();
+            Semaphore window = new Semaphore(IN_FLIGHT);
+            int cancellations = Math.min(MEASURED_COMMANDS, bookingIds.size());
+            for (int i = 0; i < cancellations; i++) {
+                window.acquire();
+                commandBus.dispatch(new CancelBookingCommand(bookingIds.get(i)))
+                    .whenComplete((events, e) -> window.release());
+            }
+            window.acquire(IN_FLIGHT);
+            double cancelSeconds = (System.nanoTime() - start) / 1e9;
+            window.release(IN_FLIGHT);
+
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_COMMANDS; i++) {
+                window.acquire();
+                commandBus.dispatch(oneNight(
+                    rooms.get(i % roomCount),
+                    firstNight.plusDays(bookingsPerRoom + i / roomCount)
+                )).whenComplete((events, e) -> window.release());
+            }
+            window.acquire(IN_FLIGHT);
+            double bookSeconds = (System.nanoTime() - start) / 1e9;
+            commandBus.close();
+
+            if (print) {
+                System.out.printf(
+                    "cache size %4d, %d rooms with %d bookings: %,8.0f cancellations/s, "
+                        + "%,8.0f bookings/s, %.1f events replayed per rehydration%n",
+                    cacheSize,
+                    roomCount,
+                    bookingsPerRoom,
+                    cancellations / cancelSeconds,
+                    MEASURED_COMMANDS / bookSeconds,
+                    eventStore.getSnapshotStore().getAverageEventsReplayed()
+                );
+            }
+        } finally {
+            System.clearProperty(AggregateCache.SIZE_PROPERTY);
+            delete(directory);
+        }
+    }
+
+    private static BookRoomCommand oneNight(CreateRoomCommand room, LocalDate night) {
+        return new BookRoomCommand(
+            room.getRoomNumber(),
+            night.atTime(14, 0),
+            night.plusDays(1).atTime(11, 0),
+            "Guest",
+            1
+        );
+    }
+
+    private static CommandBus newCommandBus(EventStore eventStore) {
+        return new CommandBus(
+            eventStore,
+            new BookingAggregate(eventStore),
+            new RoomAggregate(eventStore)
+        );
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
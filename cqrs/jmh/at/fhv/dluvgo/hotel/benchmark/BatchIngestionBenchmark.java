@@ -0,0 +1,148 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.write.aggregate.BatchAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.Subscription;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Ingests the same rooms and group bookings once command by command and once in batches of
+ * different sizes, and reports the throughput in events per second - measured until both
+ * projectors of a {@link RunRead} have received all events. Log output is discarded while
+ * measuring.
+ */
+public class BatchIngestionBenchmark {
+    private static final int ROOMS = 2_000;
+    private static final int BOOKINGS_PER_ROOM = 4;
+    private static final int[] BATCH_SIZES = {1, 10, 100, 1_000};
+    private static final LocalDateTime FIRST_NIGHT = LocalDate.now().plusDays(30).atTime(14, 0);
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        console.printf("%12s %12s %16s%n", "batch size", "events", "events/s");
+
+        // the first round only warms up the JVM
+        run(console, "single", 0, false);
+        console.printf("%12s %12d %16.0f%n", "single", eventCount(), run(console, "single", 0, true));
+        for (int batchSize : BATCH_SIZES) {
+            console.printf(
+                "%12d %12d %16.0f%n",
+                batchSize,
+                eventCount(),
+                run(console, "batch", batchSize, true)
+            );
+        }
+    }
+
+    private static double run(PrintStream console, String mode, int batchSize, boolean measured)
+        throws Exception {
+        Path directory = Files.createTempDirectory("batch-ingestion");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (EventStore eventStore = new EventStore(directory)) {
+            RunRead read = new RunRead();
+            eventStore.subscribe(read.getBookingProjector());
+            eventStore.subscribe(read.getRoomProjector());
+            eventStore.subscribe(read.getAvailabilityProjector());
+
+            List<CreateRoomCommand> rooms = createRooms();
+            List<BookRoomCommand> bookings = createBookings(rooms);
+
+            long start = System.nanoTime();
+            if (mode.equals("single")) {
+                RoomAggregate roomAggregate = new RoomAggregate(eventStore);
+                BookingAggregate bookingAggregate = new BookingAggregate(eventStore);
+                for (CreateRoomCommand cmd : rooms) {
+                    roomAggregate.handleCreateRoomCommand(cmd);
+                }
+                for (BookRoomCommand cmd : bookings) {
+                    bookingAggregate.handleBookRoomCommand(cmd);
+                }
+            } else {
+                BatchAggregate batchAggregate = new BatchAggregate(eventStore);
+                for (int i = 0; i < rooms.size(); i += batchSize) {
+                    batchAggregate.handleBatchCommand(new BatchCommand(
+                        rooms.subList(i, Math.min(rooms.size(), i + batchSize)),
+                        Collections.emptyList()
+                    ));
+                }
+                for (int i = 0; i < bookings.size(); i += batchSize) {
+                    batchAggregate.handleBatchCommand(new BatchCommand(
+                        Collections.emptyList(),
+                        bookings.subList(i, Math.min(bookings.size(), i + batchSize))
+                    ));
+                }
+            }
+            awaitDelivery(eventStore);
+            long nanos = System.nanoTime() - start;
+
+            return measured ? eventCount() / (nanos / 1e9) : 0;
+        } finally {
+            System.setOut(console);
+            delete(directory);
+        }
+    }
+
+    private static void awaitDelivery(EventStore eventStore) throws InterruptedException {
+        long head = eventStore.getHeadPosition();
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            while (subscription.getNextPosition() < head) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static int eventCount() {
+        // one event per room, two per booking
+        return ROOMS + 2 * ROOMS * BOOKINGS_PER_ROOM;
+    }
+
+    private static List<CreateRoomCommand> createRooms() {
+        List<CreateRoomCommand> rooms = new ArrayList<>(ROOMS);
+        for (int i = 0; i < ROOMS; i++) {
+            rooms.add(new CreateRoomCommand(UUID.randomUUID(), 1 + i % 4));
+        }
+        return rooms;
+    }
+
+    private static List<BookRoomCommand> createBookings(List<CreateRoomCommand> rooms) {
+        // a tour operator books blocks of rooms for the same nights
+        List<BookRoomCommand> bookings = new ArrayList<>(ROOMS * BOOKINGS_PER_ROOM);
+        for (int night = 0; night < BOOKINGS_PER_ROOM; night++) {
+            LocalDateTime start = FIRST_NIGHT.plusDays(2L * night);
+            for (CreateRoomCommand room : rooms) {
+                bookings.add(new BookRoomCommand(
+                    room.getRoomNumber(),
+                    start,
+                    start.plusHours(21),
+                    "Tour operator",
+                    room.getMaxPeople()
+                ));
+            }
+        }
+        return bookings;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.cqrs.query.BookingPage;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsPageQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryHandler;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs a report over a range of 1M bookings once on the materialized result list, once page by
+ * page and once on the lazy stream. Reports the time taken, the heap allocated by the query and
+ * the peak heap in use while the report runs, sampled every millisecond. Log output is discarded.
+ *
+ * <p>Needs a heap of about 2 GB, e.g. {@code -Xmx2g}.
+ */
+public class BookingQueryMemoryBenchmark {
+    private static final int BOOKINGS = 1_000_000;
+    private static final int PAGE_SIZE = 1_000;
+    private static final LocalDateTime FIRST_NIGHT = LocalDateTime.of(2030, 1, 1, 14, 0);
+
+    public static void main(String[] args) throws InterruptedException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            ReadRepository readRepository = new ReadRepository();
+            for (int i = 0; i < BOOKINGS; i++) {
+                LocalDateTime start = FIRST_NIGHT.plusMinutes(i);
+                readRepository.addBooking(new Booking(
+                    UUID.randomUUID(),
+                    UUID.randomUUID(),
+                    start,
+                    start.plusDays(1).withHour(11),
+                    Booking.State.ACTIVE,
+                    "Guest",
+                    1 + i % 4
+                ));
+            }
+            QueryHandler queryHandler = new QueryHandler(
+                readRepository,
+                new AvailabilityRepository()
+            );
+            LocalDateTime from = FIRST_NIGHT;
+            LocalDateTime to = FIRST_NIGHT.plusYears(3);
+
+            console.printf(
+                "%8s %10s %16s %16s %10s%n",
+                "variant",
+                "time [ms]",
+                "allocated [MB]",
+                "peak heap [MB]",
+                "guests"
+            );
+            // the first round only warms up the JVM
+            for (boolean measured : new boolean[]{false, true}) {
+                PrintStream out = measured ? console : null;
+                run(out, "list", queryHandler, handler -> {
+                    long guests = 0;
+                    List<Booking> bookings = handler.handle(new GetBookingsQuery(from, to));
+                    for (Booking booking : bookings) {
+                        guests += booking.getNumberOfPeople();
+                    }
+                    return guests;
+                });
+                run(out, "pages", queryHandler, handler -> {
+                    long guests = 0;
+                    BookingPage page = handler.handle(
+                        new GetBookingsPageQuery(from, to, PAGE_SIZE)
+                    );
+                    while (true) {
+                        for (Booking booking : page.getBookings()) {
+                            guests += booking.getNumberOfPeople();
+                        }
+                        if (!page.hasMore()) {
+                            return guests;
+                        }
+                        page = handler.handle(new GetBookingsPageQuery(
+                            from,
+                            to,
+                            PAGE_SIZE,
+                            page.getContinuationToken()
+                        ));
+                    }
+                });
+                run(out, "stream", queryHandler, handler -> handler
+                    .stream(new GetBookingsQuery(from, to))
+                    .mapToLong(Booking::getNumberOfPeople)
+                    .sum()
+                );
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void run(
+        PrintStream console,
+        String variant,
+        QueryHandler queryHandler,
+        ToLongFunction<QueryHandler> report
+    ) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        long[] peak = {baseline};
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak[0] = Math.max(peak[0], memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        long guests = report.applyAsLong(queryHandler);
+        long nanos = System.nanoTime() - start;
+        long allocated =
+            threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        sampler.interrupt();
+        sampler.join();
+        if (null != console) {
+            console.printf(
+                "%8s %10.0f %16.1f %16.1f %10d%n",
+                variant,
+                nanos / 1e6,
+                allocated / 1e6,
+                (peak[0] - baseline) / 1e6,
+                guests
+            );
+        }
+    }
+}
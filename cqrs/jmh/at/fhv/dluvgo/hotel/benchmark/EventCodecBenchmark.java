@@ -0,0 +1,317 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.codec.EventCodec;
+import at.fhv.dluvgo.hotel.write.event.codec.StringDictionary;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the {@link EventCodec} (with and without string dictionary) with Java serialization
+ * of a serializable copy of the events: encoded size as well as encoding and decoding time per
+ * event. That the codec round-trips every event is checked by {@code EventCodecTest}.
+ */
+public class EventCodecBenchmark {
+    private static final int EVENTS = 20_000;
+    private static final int GUESTS = 500;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        List<Event> events = createEvents();
+        Path directory = Files.createTempDirectory("codec-benchmark");
+        Path dictionaryFile = directory.resolve("strings.dict");
+
+        try (StringDictionary dictionary = StringDictionary.open(dictionaryFile, 1 << 20)) {
+            Format[] formats = {
+                new CodecFormat("codec", new EventCodec(dictionary)),
+                new CodecFormat("codec (inline)", new EventCodec()),
+                new JavaSerializationFormat()
+            };
+
+            System.out.printf(
+                "%-20s %14s %16s %16s%n",
+                "format",
+                "bytes/event",
+                "encode [ns/op]",
+                "decode [ns/op]"
+            );
+            for (Format format : formats) {
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    decode(format, encode(format, events, null), null);
+                }
+                long[] encodeNanos = new long[1];
+                long[] decodeNanos = new long[1];
+                long bytes = 0;
+                for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                    List<byte[]> encoded = encode(format, events, encodeNanos);
+                    decode(format, encoded, decodeNanos);
+                    for (byte[] e : encoded) {
+                        bytes += e.length;
+                    }
+                }
+
+                long operations = (long) MEASURED_ROUNDS * EVENTS;
+                System.out.printf(
+                    "%-20s %14.1f %16.1f %16.1f%n",
+                    format.getName(),
+                    (double) bytes / operations,
+                    (double) encodeNanos[0] / operations,
+                    (double) decodeNanos[0] / operations
+                );
+            }
+            System.out.println("(checksum " + sink + ")");
+        } finally {
+            Files.deleteIfExists(dictionaryFile);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static List<byte[]> encode(Format format, List<Event> events, long[] nanos)
+        throws IOException {
+        List<byte[]> encoded = new ArrayList<>(events.size());
+        long start = System.nanoTime();
+        for (Event event : events) {
+            encoded.add(format.encode(event));
+        }
+        if (null != nanos) {
+            nanos[0] += System.nanoTime() - start;
+        }
+        return encoded;
+    }
+
+    private static void decode(Format format, List<byte[]> encoded, long[] nanos)
+        throws IOException {
+        long start = System.nanoTime();
+        for (byte[] bytes : encoded) {
+            sink += format.decode(bytes).getId().getLeastSignificantBits() & 1;
+        }
+        if (null != nanos) {
+            nanos[0] += System.nanoTime() - start;
+        }
+    }
+
+    private static List<Event> createEvents() {
+        Random random = new Random(42);
+        List<UUID> rooms = new ArrayList<>();
+        List<Event> events = new ArrayList<>(EVENTS);
+        LocalDateTime firstNight = LocalDateTime.of(2021, 1, 1, 14, 0);
+        while (events.size() < EVENTS) {
+            if (rooms.size() < 100) {
+                UUID room = UUID.randomUUID();
+                rooms.add(room);
+                events.add(new RoomCreatedEvent(room, 1 + random.nextInt(5)));
+                continue;
+            }
+
+            UUID room = rooms.get(random.nextInt(rooms.size()));
+            LocalDateTime start = firstNight.plusDays(random.nextInt(365));
+            LocalDateTime end = start.plusDays(1 + random.nextInt(7)).withHour(11);
+            String guest = "Guest " + random.nextInt(GUESTS);
+            int people = 1 + random.nextInt(4);
+            BookingCreatedEvent created = new BookingCreatedEvent(room, start, end, guest, people);
+            events.add(created);
+            events.add(new RoomBookedEvent(
+                created.getBookingId(),
+                room,
+                start,
+                end,
+                guest,
+                people
+            ));
+            if (random.nextInt(10) == 0) {
+                events.add(new BookingCancelledEvent(created.getBookingId()));
+            }
+        }
+
+        return events.subList(0, EVENTS);
+    }
+
+    /* ### Formats ### */
+
+    private interface Format {
+        String getName();
+
+        byte[] encode(Event event) throws IOException;
+
+        Event decode(byte[] bytes) throws IOException;
+    }
+
+    private static class CodecFormat implements Format {
+        private final String name;
+        private final EventCodec codec;
+        private final ByteBuffer buffer = ByteBuffer.allocate(4 * 1024);
+
+        CodecFormat(String name, EventCodec codec) {
+            this.name = name;
+            this.codec = codec;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] encode(Event event) {
+            buffer.clear();
+            codec.encode(event, buffer);
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public Event decode(byte[] bytes) {
+            return codec.decode(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    /**
+     * Java serialization of {@link SerializedEvent}s, as the events themselves are not
+     * {@link Serializable}.
+     */
+    private static class JavaSerializationFormat implements Format {
+        @Override
+        public String getName() {
+            return "java serialization";
+        }
+
+        @Override
+        public byte[] encode(Event event) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(new SerializedEvent(event));
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Event decode(byte[] bytes) throws IOException {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return ((SerializedEvent) in.readObject()).toEvent();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * The fields of any event type in one serializable object.
+     */
+    private static class SerializedEvent implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String type;
+        private final UUID id;
+        private final Date created;
+        private UUID bookingId;
+        private UUID roomNumber;
+        private LocalDateTime start;
+        private LocalDateTime end;
+        private String contactName;
+        private int number;
+
+        SerializedEvent(Event event) {
+            this.type = event.getClass().getSimpleName();
+            this.id = event.getId();
+            this.created = event.getCreated();
+            if (event instanceof RoomCreatedEvent) {
+                RoomCreatedEvent e = (RoomCreatedEvent) event;
+                this.roomNumber = e.getRoomNumber();
+                this.number = e.getCapacity();
+            } else if (event instanceof RoomBookedEvent) {
+                RoomBookedEvent e = (RoomBookedEvent) event;
+                this.setBooking(
+                    e.getBookingId(),
+                    e.getRoomNumber(),
+                    e.getBookingStartTime(),
+                    e.getBookingEndTime(),
+                    e.getContactName(),
+                    e.getNumberOfPeople()
+                );
+            } else if (event instanceof BookingCreatedEvent) {
+                BookingCreatedEvent e = (BookingCreatedEvent) event;
+                this.setBooking(
+                    e.getBookingId(),
+                    e.getRoomNumber(),
+                    e.getStart(),
+                    e.getEnd(),
+                    e.getContactName(),
+                    e.getNumberOfPeople()
+                );
+            } else if (event instanceof BookingCancelledEvent) {
+                this.bookingId = ((BookingCancelledEvent) event).getBookingId();
+            }
+        }
+
+        private void setBooking(
+            UUID bookingId,
+            UUID roomNumber,
+            LocalDateTime start,
+            LocalDateTime end,
+            String contactName,
+            int numberOfPeople
+        ) {
+            this.bookingId = bookingId;
+            this.roomNumber = roomNumber;
+            this.start = start;
+            this.end = end;
+            this.contactName = contactName;
+            this.number = numberOfPeople;
+        }
+
+        Event toEvent() {
+            switch (type) {
+                case "RoomCreatedEvent":
+                    return new RoomCreatedEvent(id, created, roomNumber, number);
+                case "RoomBookedEvent":
+                    return new RoomBookedEvent(
+                        id,
+                        created,
+                        bookingId,
+                        roomNumber,
+                        start,
+                        end,
+                        contactName,
+                        number
+                    );
+                case "BookingCreatedEvent":
+                    return new BookingCreatedEvent(
+                        id,
+                        created,
+                        bookingId,
+                        roomNumber,
+                        start,
+                        end,
+                        contactName,
+                        number
+                    );
+                case "BookingCancelledEvent":
+                    return new BookingCancelledEvent(id, created, bookingId);
+                default:
+                    throw new IllegalArgumentException("Unknown event type " + type);
+            }
+        }
+    }
+}
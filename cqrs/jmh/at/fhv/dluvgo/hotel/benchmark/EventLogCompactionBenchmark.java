@@ -0,0 +1,307 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.rebuild.ReadModelRebuilder;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.write.aggregate.BatchAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.domain.Booking;
+import at.fhv.dluvgo.hotel.write.domain.Room;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import at.fhv.dluvgo.hotel.write.repository.compaction.EventArchive;
+import at.fhv.dluvgo.hotel.write.repository.compaction.LogCompactor;
+import at.fhv.dluvgo.hotel.write.utils.RoomUtility;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Books a year of stays for every room, cancels some of them and compacts the event log half a
+ * year later (simulated by the clock of the compactor), while another thread keeps booking rooms.
+ * Reports the size of the log, the time to recreate all rooms and the heap they take up before
+ * and after the compaction. Afterwards the event store is reopened and the read model is rebuilt
+ * from the compacted log. Log output is discarded.
+ */
+public class EventLogCompactionBenchmark {
+    private static final int ROOMS = 1_000;
+    private static final int BOOKINGS_PER_ROOM = 60;
+    private static final int CANCELLATIONS = 6_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final int RETENTION_DAYS = 30;
+    private static final Duration COMPACTED_LATER = Duration.ofDays(180);
+    private static final LocalDate TOMORROW = LocalDate.now().plusDays(1);
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        Path directory = Files.createTempDirectory("event-log-compaction");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            List<UUID> rooms;
+            LogCompactor.Result result;
+            long[] before;
+            long[] after;
+            int concurrentBookings;
+            try (EventStore eventStore = new EventStore(directory, SEGMENT_SIZE)) {
+                rooms = populate(eventStore);
+                before = measure(eventStore, rooms, directory);
+                long futureBefore = futureBookings(eventStore, rooms);
+
+                LogCompactor compactor = new LogCompactor(
+                    eventStore,
+                    new EventArchive(directory.resolve(EventArchive.DIRECTORY)),
+                    RETENTION_DAYS,
+                    Clock.offset(Clock.system(ZoneId.systemDefault()), COMPACTED_LATER)
+                );
+                AtomicBoolean isCompacting = new AtomicBoolean(true);
+                AtomicInteger booked = new AtomicInteger();
+                Thread writer = new Thread(() -> bookConcurrently(
+                    eventStore,
+                    rooms,
+                    isCompacting,
+                    booked
+                ));
+                writer.start();
+                result = compactor.compact();
+                isCompacting.set(false);
+                writer.join();
+                concurrentBookings = booked.get();
+
+                after = measure(eventStore, rooms, directory);
+                long futureAfter = futureBookings(eventStore, rooms);
+                if (futureAfter != futureBefore + concurrentBookings) {
+                    throw new IllegalStateException(
+                        futureAfter + " future bookings after compaction, expected "
+                            + (futureBefore + concurrentBookings)
+                    );
+                }
+                int archivedEvents = EventArchive.read(result.getArchiveFile()).size();
+                if (archivedEvents != result.getArchivedEvents()) {
+                    throw new IllegalStateException("Archive holds " + archivedEvents + " events");
+                }
+            }
+
+            ReadModelRebuilder.Result rebuilt;
+            try (EventStore reopened = new EventStore(directory, SEGMENT_SIZE)) {
+                rebuilt = new ReadModelRebuilder(new Horizon(), 1).rebuild(reopened);
+            }
+
+            console.printf(
+                "archived %d bookings (%d events) of %d rooms in %.0f ms, "
+                    + "%d bookings made meanwhile%n",
+                result.getArchivedBookings(),
+                result.getArchivedEvents(),
+                result.getCompactedRooms(),
+                result.getNanos() / 1e6,
+                concurrentBookings
+            );
+            console.printf(
+                "%8s %10s %12s %14s %16s%n",
+                "",
+                "events",
+                "log [KB]",
+                "recreate [ms]",
+                "room heap [KB]"
+            );
+            print(console, "before", before);
+            print(console, "after", after);
+            console.printf(
+                "reopened and rebuilt the read model from %d positions: %d bookings%n",
+                rebuilt.getNextPosition(),
+                rebuilt.getReadRepository()
+                    .getBookings(LocalDateTime.MIN, LocalDateTime.MAX)
+                    .size()
+            );
+        } finally {
+            System.setOut(console);
+            delete(directory);
+        }
+    }
+
+    private static List<UUID> populate(EventStore eventStore) throws Exception {
+        Random random = new Random(42);
+        BatchAggregate batchAggregate = new BatchAggregate(eventStore);
+
+        List<CreateRoomCommand> rooms = new ArrayList<>();
+        List<UUID> roomNumbers = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            UUID roomNumber = UUID.randomUUID();
+            roomNumbers.add(roomNumber);
+            rooms.add(new CreateRoomCommand(roomNumber, 1 + random.nextInt(4)));
+        }
+        batchAggregate.handleBatchCommand(new BatchCommand(rooms, Collections.emptyList()));
+
+        // a year of stays per room, so about half of them lie in the past once compacted
+        List<BookRoomCommand> bookings = new ArrayList<>();
+        for (CreateRoomCommand room : rooms) {
+            LocalDateTime arrival = TOMORROW.atTime(14, 0);
+            for (int b = 0; b < BOOKINGS_PER_ROOM; b++) {
+                LocalDateTime departure = arrival.plusDays(1 + random.nextInt(4)).withHour(11);
+                bookings.add(new BookRoomCommand(
+                    room.getRoomNumber(),
+                    arrival,
+                    departure,
+                    "Guest",
+                    room.getMaxPeople()
+                ));
+                arrival = departure.withHour(14).plusDays(random.nextInt(3));
+            }
+        }
+        List<UUID> bookingIds = new ArrayList<>();
+        for (int i = 0; i < bookings.size(); i += BATCH_SIZE) {
+            List<Event> events = batchAggregate.handleBatchCommand(new BatchCommand(
+                Collections.emptyList(),
+                bookings.subList(i, Math.min(bookings.size(), i + BATCH_SIZE))
+            ));
+            for (Event event : events) {
+                if (event instanceof BookingCreatedEvent) {
+                    bookingIds.add(((BookingCreatedEvent) event).getBookingId());
+                }
+            }
+        }
+
+        Collections.shuffle(bookingIds, random);
+        BookingAggregate bookingAggregate = new BookingAggregate(eventStore);
+        for (UUID bookingId : bookingIds.subList(0, CANCELLATIONS)) {
+            bookingAggregate.handleCancelBookingCommand(new CancelBookingCommand(bookingId));
+        }
+
+        return roomNumbers;
+    }
+
+    /**
+     * Books one-night stays two years ahead until the compaction is done.
+     */
+    private static void bookConcurrently(
+        EventStore eventStore,
+        List<UUID> rooms,
+        AtomicBoolean isCompacting,
+        AtomicInteger booked
+    ) {
+        BookingAggregate bookingAggregate = new BookingAggregate(eventStore);
+        LocalDateTime arrival = TOMORROW.plusYears(2).atTime(14, 0);
+        for (int i = 0; isCompacting.get(); i++) {
+            UUID room = rooms.get(i % rooms.size());
+            if (i > 0 && i % rooms.size() == 0) {
+                arrival = arrival.plusDays(1);
+            }
+            try {
+                bookingAggregate.handleBookRoomCommand(new BookRoomCommand(
+                    room,
+                    arrival,
+                    arrival.plusDays(1).withHour(11),
+                    "Guest",
+                    1
+                ));
+                booked.incrementAndGet();
+            } catch (Exception e) {
+                throw new IllegalStateException("Booking during compaction failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return Events in the log, bytes of the log, time to recreate all rooms in nanos and the
+     * heap they take up
+     */
+    private static long[] measure(EventStore eventStore, List<UUID> rooms, Path directory)
+        throws IOException {
+        long events = 0;
+        for (long position = 0; ; ) {
+            List<RecordedEvent> chunk = eventStore.readFrom(position, 8 * 1024);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            events += chunk.size();
+            position = chunk.get(chunk.size() - 1).getPosition() + 1;
+        }
+
+        long bytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            bytes = files
+                .filter(file -> file.toString().endsWith(".seg"))
+                .mapToLong(file -> file.toFile().length())
+                .sum();
+        }
+
+        // the first round only warms up the JVM
+        List<Room> recreated = new ArrayList<>();
+        long nanos = 0;
+        for (int round = 0; round < 2; round++) {
+            recreated.clear();
+            System.gc();
+            long start = System.nanoTime();
+            for (UUID room : rooms) {
+                recreated.add(RoomUtility.recreateRoomState(eventStore, room));
+            }
+            nanos = System.nanoTime() - start;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long withRooms = runtime.totalMemory() - runtime.freeMemory();
+        recreated.clear();
+        System.gc();
+        long withoutRooms = runtime.totalMemory() - runtime.freeMemory();
+
+        return new long[]{events, bytes, nanos, Math.max(0, withRooms - withoutRooms)};
+    }
+
+    private static long futureBookings(EventStore eventStore, List<UUID> rooms) {
+        LocalDateTime cutoff = LocalDate.now()
+            .plusDays(COMPACTED_LATER.toDays())
+            .minusDays(RETENTION_DAYS)
+            .atStartOfDay();
+        long count = 0;
+        for (UUID roomNumber : rooms) {
+            for (Booking booking : RoomUtility.recreateRoomState(eventStore, roomNumber)
+                .getBookings()
+            ) {
+                if (booking.getState().equals(Booking.State.ACTIVE)
+                    && !booking.getEnd().isBefore(cutoff)
+                ) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void print(PrintStream console, String label, long[] values) {
+        console.printf(
+            "%8s %10d %12d %14.1f %16d%n",
+            label,
+            values[0],
+            values[1] / 1024,
+            values[2] / 1e6,
+            values[3] / 1024
+        );
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.projection.AvailabilityProjector;
+import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares free-room searches on the bookable rooms of the {@link ReadRepository} with searches
+ * on the occupancy bitmaps of the {@link AvailabilityRepository}, for hotels with up to 20k rooms
+ * that are booked for about half of the nights of the coming year. Also reports how long
+ * projecting the events takes. Log output is discarded.
+ */
+public class FreeRoomSearchBenchmark {
+    private static final int[] ROOM_COUNTS = {1_000, 5_000, 20_000};
+    private static final int BOOKINGS_PER_ROOM = 40;
+    private static final int QUERIES = 200;
+    private static final LocalDateTime FIRST_NIGHT = LocalDate.now().atTime(14, 0);
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.printf(
+                "%8s %18s %18s %18s %18s%n",
+                "rooms",
+                "intervals [ms]",
+                "bitmaps [ms]",
+                "intervals [us/q]",
+                "bitmaps [us/q]"
+            );
+            for (int roomCount : ROOM_COUNTS) {
+                run(console, roomCount);
+            }
+            console.println("(checksum " + sink + ")");
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void run(PrintStream console, int roomCount) {
+        List<Event> events = createEvents(roomCount);
+        LocalDateTime[] queries = createQueries();
+
+        ReadRepository readRepository = new ReadRepository();
+        RoomProjector roomProjector = new RoomProjector(readRepository);
+        long start = System.nanoTime();
+        for (Event event : events) {
+            roomProjector.update(event);
+        }
+        long intervalProjection = System.nanoTime() - start;
+
+        AvailabilityRepository availabilityRepository = new AvailabilityRepository();
+        AvailabilityProjector availabilityProjector =
+            new AvailabilityProjector(availabilityRepository);
+        start = System.nanoTime();
+        for (Event event : events) {
+            availabilityProjector.update(event);
+        }
+        long bitmapProjection = System.nanoTime() - start;
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < queries.length; i += 2) {
+                sink += readRepository.getBookableRooms(2, queries[i], queries[i + 1]).size();
+                sink += availabilityRepository.getFreeRooms(2, queries[i], queries[i + 1]).size();
+            }
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries.length; i += 2) {
+            sink += readRepository.getBookableRooms(2, queries[i], queries[i + 1]).size();
+        }
+        long intervalQueries = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries.length; i += 2) {
+            sink += availabilityRepository.getFreeRooms(2, queries[i], queries[i + 1]).size();
+        }
+        long bitmapQueries = System.nanoTime() - start;
+
+        console.printf(
+            "%8d %18.1f %18.1f %18.1f %18.1f%n",
+            roomCount,
+            intervalProjection / 1e6,
+            bitmapProjection / 1e6,
+            intervalQueries / 1e3 / (queries.length / 2),
+            bitmapQueries / 1e3 / (queries.length / 2)
+        );
+    }
+
+    private static List<Event> createEvents(int roomCount) {
+        Random random = new Random(42);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            UUID room = UUID.randomUUID();
+            events.add(new RoomCreatedEvent(room, 1 + random.nextInt(4)));
+
+            // back to back stays of up to a week with gaps in between, starting tomorrow
+            LocalDateTime arrival = FIRST_NIGHT.plusDays(1 + random.nextInt(3));
+            for (int b = 0; b < BOOKINGS_PER_ROOM; b++) {
+                int nights = 1 + random.nextInt(7);
+                LocalDateTime departure = arrival.plusDays(nights).withHour(11);
+                if (departure.isAfter(FIRST_NIGHT.plusYears(1))) {
+                    break;
+                }
+                events.add(new RoomBookedEvent(
+                    UUID.randomUUID(),
+                    room,
+                    arrival,
+                    departure,
+                    "Guest",
+                    2
+                ));
+                arrival = departure.withHour(14).plusDays(1 + random.nextInt(4));
+            }
+        }
+
+        return events;
+    }
+
+    private static LocalDateTime[] createQueries() {
+        Random random = new Random(7);
+        LocalDateTime[] queries = new LocalDateTime[2 * QUERIES];
+        for (int i = 0; i < queries.length; i += 2) {
+            queries[i] = FIRST_NIGHT.plusDays(random.nextInt(300));
+            queries[i + 1] = queries[i].plusDays(1 + random.nextInt(5)).withHour(11);
+        }
+
+        return queries;
+    }
+}
@@ -0,0 +1,186 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.commit.Durability;
+import at.fhv.dluvgo.hotel.write.repository.commit.GroupCommitter;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.EventDispatcher;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import at.fhv.dluvgo.hotel.write.repository.snapshot.SnapshotStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Throughput and latency of durable appends. Every client thread appends an event and waits
+ * until it is durable before appending the next one, once with a force per append
+ * ({@link Durability#SYNC}) and once with group commit at several maximum batch sizes and linger
+ * times. Each setting runs with an increasing number of clients, giving a throughput/latency
+ * curve; appends to the page cache only ({@link Durability#NONE}) are the upper bound.
+ *
+ * <p>Finally, the {@link LoadGenerator} replays bookings and cancellations through a
+ * {@link CommandBus}, whose futures complete once the events of a command are durable.
+ *
+ * <p>Usage: {@code GroupCommitBenchmark [seconds per run] [commands]}
+ */
+public class GroupCommitBenchmark {
+    private static final int[] CLIENTS = {1, 4, 16, 64};
+    private static final int[][] GROUP_SETTINGS = {
+        // maximum batch size, linger time in microseconds
+        {256, 0},
+        {8, 0},
+        {256, 200},
+        {256, 1000},
+    };
+    private static final double DEFAULT_SECONDS = 2;
+    private static final int DEFAULT_COMMANDS = 20_000;
+    private static final int ROOMS = 500;
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_SECONDS;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COMMANDS;
+        Logger.setLevel(Logger.Level.WARN);
+
+        // the first round only warms up the JVM
+        appends(Durability.GROUP, 16, seconds, false);
+        appends(Durability.SYNC, 16, seconds, false);
+
+        for (int clients : CLIENTS) {
+            appends(Durability.NONE, clients, seconds, true);
+        }
+        for (int clients : CLIENTS) {
+            appends(Durability.SYNC, clients, seconds, true);
+        }
+        for (int[] setting : GROUP_SETTINGS) {
+            System.setProperty(GroupCommitter.MAX_BATCH_PROPERTY, String.valueOf(setting[0]));
+            System.setProperty(GroupCommitter.LINGER_PROPERTY, String.valueOf(setting[1]));
+            for (int clients : CLIENTS) {
+                appends(Durability.GROUP, clients, seconds, true);
+            }
+        }
+        System.clearProperty(GroupCommitter.MAX_BATCH_PROPERTY);
+        System.clearProperty(GroupCommitter.LINGER_PROPERTY);
+
+        commands(Durability.NONE, commands);
+        commands(Durability.SYNC, commands);
+        commands(Durability.GROUP, commands);
+    }
+
+    /* ### Appends ### */
+
+    private static void appends(Durability durability, int clients, double seconds, boolean print)
+        throws Exception {
+        Path directory = Files.createTempDirectory("group-commit");
+        try (EventStore eventStore = newEventStore(directory, durability)) {
+            GroupCommitter committer = eventStore.getCommitter();
+            long forcesBefore = null == committer ? 0 : committer.getForces();
+            long commitsBefore = null == committer ? 0 : committer.getCommits();
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long deadline = System.nanoTime() + (long) (seconds * 1e9);
+            CountDownLatch done = new CountDownLatch(clients);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Thread thread = new Thread(() -> {
+                    UUID streamId = UUID.randomUUID();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        eventStore.addEvent(streamId, new RoomCreatedEvent(streamId, 2));
+                        eventStore.whenDurable().join();
+                        latency.record(System.nanoTime() - start);
+                    }
+                    done.countDown();
+                });
+                threads.add(thread);
+            }
+            long start = System.nanoTime();
+            threads.forEach(Thread::start);
+            done.await();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            if (print) {
+                String setting = Durability.GROUP.equals(durability)
+                    ? String.format(
+                        "GROUP %3d/%4dus",
+                        committer.getMaxBatch(),
+                        committer.getLingerMicros()
+                    )
+                    : durability.name();
+                long forces = null == committer ? 0 : committer.getForces() - forcesBefore;
+                System.out.printf(
+                    "%-16s %3d clients: %,9.0f appends/s, p50 %,7d us, p99 %,7d us%s%n",
+                    setting,
+                    clients,
+                    latency.getCount() / elapsed,
+                    latency.getPercentile(50) / 1_000,
+                    latency.getPercentile(99) / 1_000,
+                    0 == forces
+                        ? ""
+                        : String.format(
+                            ", %.1f appends per force",
+                            (committer.getCommits() - commitsBefore) / (double) forces
+                        )
+                );
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /* ### Commands ### */
+
+    private static void commands(Durability durability, int commandCount) throws Exception {
+        Path directory = Files.createTempDirectory("group-commit-commands");
+        try (EventStore eventStore = newEventStore(directory, durability)) {
+            CommandBus commandBus = new CommandBus(
+                eventStore,
+                new BookingAggregate(eventStore),
+                new RoomAggregate(eventStore)
+            );
+            LoadGenerator generator = new LoadGenerator(commandBus, 42);
+            generator.createRooms(ROOMS);
+
+            long start = System.nanoTime();
+            generator.replay(commandCount, LoadGenerator.DEFAULT_IN_FLIGHT);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            commandBus.close();
+
+            System.out.printf(
+                "%-6s %d commands, %d in flight: %,8.0f commands/s%n",
+                durability.name(),
+                commandCount,
+                LoadGenerator.DEFAULT_IN_FLIGHT,
+                commandCount / elapsed
+            );
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static EventStore newEventStore(Path directory, Durability durability) {
+        return new EventStore(
+            directory,
+            SegmentedEventLog.DEFAULT_SEGMENT_SIZE,
+            SnapshotStore.DEFAULT_INTERVAL,
+            new EventDispatcher(),
+            durability
+        );
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.read.cqrs.query.FindBookingsByGuestQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryHandler;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.GuestNameIndex;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Searches the bookings of a large read model by the name of the guest. Names are made up of
+ * generated first and last names of two or three syllables, some of them with accents. Reports
+ * the time to index the bookings, the heap taken by the name index and the latency of prefix
+ * searches (e.g. "jo smi"), of similarity searches with a typo in the last name and, for
+ * comparison, of a prefix search scanning all bookings.
+ *
+ * <p>Needs a heap of about 3 GB for the default 2M bookings, e.g. {@code -Xmx3g}.
+ *
+ * <p>Usage: {@code GuestSearchBenchmark [bookings]}
+ */
+public class GuestSearchBenchmark {
+    private static final int DEFAULT_BOOKINGS = 2_000_000;
+    private static final int FIRST_NAMES = 300;
+    private static final int LAST_NAMES = 5_000;
+    private static final int SEARCHES = 2_000;
+    private static final int SCANS = 10;
+    private static final int LIMIT = FindBookingsByGuestQuery.DEFAULT_LIMIT;
+    private static final String[] ONSETS = {
+        "b", "br", "ch", "d", "f", "g", "h", "j", "k", "kr", "l", "m", "n", "p", "r", "s", "sch",
+        "st", "t", "v", "w", "z"
+    };
+    private static final String[] VOWELS = {
+        "a", "e", "i", "o", "u", "ei", "au", "\u00e4", "\u00f6", "\u00fc", "\u00e9"
+    };
+    private static final String[] CODAS = {"", "", "", "n", "r", "l", "s", "ck", "tz"};
+    private static final LocalDateTime FIRST_NIGHT = LocalDateTime.of(2030, 1, 1, 14, 0);
+
+    public static void main(String[] args) throws InterruptedException {
+        Logger.setLevel(Logger.Level.WARN);
+        int bookingCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKINGS;
+
+        Random random = new Random(42);
+        String[] firstNames = names(random, FIRST_NAMES, 2);
+        String[] lastNames = names(random, LAST_NAMES, 3);
+        List<Booking> bookings = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            LocalDateTime start = FIRST_NIGHT.plusMinutes(i);
+            bookings.add(new Booking(
+                UUID.randomUUID(),
+                UUID.randomUUID(),
+                start,
+                start.plusDays(1).withHour(11),
+                Booking.State.ACTIVE,
+                firstNames[random.nextInt(FIRST_NAMES)] + " "
+                    + lastNames[random.nextInt(LAST_NAMES)],
+                1 + i % 4
+            ));
+        }
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        GuestNameIndex index = new GuestNameIndex();
+        for (Booking booking : bookings) {
+            index.add(booking);
+        }
+        double indexSeconds = (System.nanoTime() - start) / 1e9;
+        long indexHeap = usedHeap() - heapBefore;
+        System.out.printf(
+            "%,d bookings, %,d distinct names: indexed in %.1f s (%,.0f bookings/s), "
+                + "index %,d MB (%.0f bytes per booking)%n",
+            bookingCount,
+            index.size(),
+            indexSeconds,
+            bookingCount / indexSeconds,
+            indexHeap >> 20,
+            indexHeap / (double) bookingCount
+        );
+        index = null;
+
+        ReadRepository readRepository = new ReadRepository();
+        for (Booking booking : bookings) {
+            readRepository.addBooking(booking);
+        }
+        QueryHandler queryHandler = new QueryHandler(readRepository, new AvailabilityRepository());
+
+        // the first round only warms up the JVM
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            LatencyHistogram prefix = new LatencyHistogram();
+            LatencyHistogram fuzzy = new LatencyHistogram();
+            long found = 0;
+            long foundFuzzy = 0;
+            for (int i = 0; i < SEARCHES; i++) {
+                String first = firstNames[random.nextInt(FIRST_NAMES)];
+                String last = lastNames[random.nextInt(LAST_NAMES)];
+
+                String search = first.substring(0, 2) + " " + last.substring(0, 3);
+                start = System.nanoTime();
+                found += queryHandler.handle(new FindBookingsByGuestQuery(
+                    search,
+                    FindBookingsByGuestQuery.Match.PREFIX
+                )).size();
+                prefix.record(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                foundFuzzy += queryHandler.handle(new FindBookingsByGuestQuery(
+                    first + " " + typo(random, last),
+                    FindBookingsByGuestQuery.Match.FUZZY
+                )).size();
+                fuzzy.record(System.nanoTime() - start);
+            }
+
+            LatencyHistogram scan = new LatencyHistogram();
+            long scanned = 0;
+            for (int i = 0; i < SCANS; i++) {
+                String first = firstNames[random.nextInt(FIRST_NAMES)]
+                    .substring(0, 2)
+                    .toLowerCase(Locale.ROOT);
+                String last = lastNames[random.nextInt(LAST_NAMES)]
+                    .substring(0, 3)
+                    .toLowerCase(Locale.ROOT);
+                start = System.nanoTime();
+                scanned += scan(bookings, first, last);
+                scan.record(System.nanoTime() - start);
+            }
+
+            if (print) {
+                print("prefix", prefix, found / (double) SEARCHES);
+                print("fuzzy", fuzzy, foundFuzzy / (double) SEARCHES);
+                print("full scan", scan, scanned / (double) SCANS);
+            }
+        }
+    }
+
+    private static void print(String variant, LatencyHistogram latency, double results) {
+        System.out.printf(
+            "%10s: p50 %,10.3f ms, p99 %,10.3f ms, %4.1f bookings per search%n",
+            variant,
+            latency.getPercentile(50) / 1e6,
+            latency.getPercentile(99) / 1e6,
+            results
+        );
+    }
+
+    /**
+     * Prefix search without an index: looks at the name of every booking.
+     */
+    private static int scan(List<Booking> bookings, String first, String last) {
+        int found = 0;
+        for (Booking booking : bookings) {
+            String name = booking.getBookingMadeBy().toLowerCase(Locale.ROOT);
+            int separator = name.indexOf(' ');
+            if (name.startsWith(first)
+                && name.startsWith(last, separator + 1)
+                && found < LIMIT
+            ) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static String[] names(Random random, int count, int maxSyllables) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder name = new StringBuilder();
+            int syllables = 2 + random.nextInt(maxSyllables - 1);
+            for (int s = 0; s < syllables; s++) {
+                name.append(ONSETS[random.nextInt(ONSETS.length)])
+                    .append(VOWELS[random.nextInt(VOWELS.length)])
+                    .append(CODAS[random.nextInt(CODAS.length)]);
+            }
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            names[i] = name.toString();
+        }
+        return names;
+    }
+
+    private static String typo(Random random, String name) {
+        int position = 1 + random.nextInt(name.length() - 1);
+        char wrong = (char) ('a' + random.nextInt(26));
+        return name.substring(0, position) + wrong + name.substring(position + 1);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Thread.sleep(200);
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,256 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.Subscription;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic load for the write side. Creates rooms and then dispatches a mix of bookings and
+ * cancellations through a {@link CommandBus}, resembling what a hotel sees:
+ * <ul>
+ *     <li>most guests book a few weeks ahead, some up to a year (exponentially distributed lead
+ *     time with a mean of {@value #MEAN_LEAD_DAYS} days)</li>
+ *     <li>most stays are short, a few last up to {@value #MAX_NIGHTS} nights</li>
+ *     <li>parties fill the room partially or completely</li>
+ *     <li>{@value #CANCEL_PERCENT}% of the commands cancel an earlier booking</li>
+ * </ul>
+ * Bookings of rooms that are taken already are rejected by the aggregate, as they would be in
+ * production. The mix is reproducible for a given seed.
+ *
+ * <p>Run as a program it creates the rooms in a temporary event store with all projectors
+ * subscribed, replays the mix with a bounded number of commands in flight and reports the
+ * throughput and the collected {@link Metrics}.
+ *
+ * <p>Usage: {@code LoadGenerator [rooms] [commands] [commands in flight] [seed]}
+ */
+public class LoadGenerator {
+    public static final int DEFAULT_ROOMS = 200;
+    public static final int DEFAULT_COMMANDS = 20_000;
+    public static final int DEFAULT_IN_FLIGHT = 64;
+    private static final int CANCEL_PERCENT = 15;
+    private static final int MEAN_LEAD_DAYS = 30;
+    private static final int MAX_LEAD_DAYS = 365;
+    private static final int MAX_NIGHTS = 14;
+    private static final double MEAN_EXTRA_NIGHTS = 1.5;
+    private static final int MAX_ROOM_CAPACITY = 4;
+
+    private final CommandBus commandBus;
+    private final Random random;
+    private final LocalDate today = LocalDate.now();
+    private final List<CreateRoomCommand> rooms = new ArrayList<>();
+    // bookings that can still be cancelled, added by the command shards
+    private final List<UUID> bookings = new ArrayList<>();
+    private final LongAdder bookingsAccepted = new LongAdder();
+    private final LongAdder bookingsRejected = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+
+    public LoadGenerator(CommandBus commandBus, long seed) {
+        this.commandBus = commandBus;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates rooms of capacity {@code 1} to {@value #MAX_ROOM_CAPACITY} and waits until all of
+     * them are stored.
+     */
+    public List<CreateRoomCommand> createRooms(int count) {
+        List<CompletableFuture<List<Event>>> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateRoomCommand cmd = new CreateRoomCommand(
+                UUID.randomUUID(),
+                1 + random.nextInt(MAX_ROOM_CAPACITY)
+            );
+            rooms.add(cmd);
+            created.add(commandBus.dispatch(cmd));
+        }
+        CompletableFuture.allOf(created.toArray(new CompletableFuture<?>[0])).join();
+        return rooms;
+    }
+
+    /**
+     * Dispatches the next command of the mix. Not thread-safe, the commands themselves run
+     * concurrently on the shards of the bus.
+     *
+     * @return The result of the command, completed exceptionally if a booking was rejected
+     */
+    public CompletableFuture<List<Event>> next() {
+        if (random.nextInt(100) < CANCEL_PERCENT) {
+            UUID bookingId = takeBooking();
+            if (null != bookingId) {
+                cancellations.increment();
+                return commandBus.dispatch(new CancelBookingCommand(bookingId));
+            }
+        }
+
+        return commandBus.dispatch(nextBooking()).whenComplete((events, e) -> {
+            if (null != e) {
+                bookingsRejected.increment();
+                return;
+            }
+            bookingsAccepted.increment();
+            for (Event event : events) {
+                if (event instanceof BookingCreatedEvent) {
+                    synchronized (bookings) {
+                        bookings.add(((BookingCreatedEvent) event).getBookingId());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Dispatches the given number of commands of the mix, never more than {@code inFlight} at a
+     * time, and waits until all of them are done.
+     */
+    public void replay(int commandCount, int inFlight) throws InterruptedException {
+        Semaphore window = new Semaphore(inFlight);
+        for (int i = 0; i < commandCount; i++) {
+            window.acquire();
+            next().whenComplete((events, e) -> window.release());
+        }
+        window.acquire(inFlight);
+    }
+
+    /**
+     * @return A booking of a random room with a realistic lead time, length and party size
+     */
+    public BookRoomCommand nextBooking() {
+        if (rooms.isEmpty()) {
+            throw new IllegalStateException("No rooms created yet");
+        }
+        CreateRoomCommand room = rooms.get(random.nextInt(rooms.size()));
+        int leadDays = 1 + (int) Math.min(MAX_LEAD_DAYS - 1, exponential(MEAN_LEAD_DAYS));
+        int nights = 1 + (int) Math.min(MAX_NIGHTS - 1, exponential(MEAN_EXTRA_NIGHTS));
+        LocalDate arrival = today.plusDays(leadDays);
+
+        return new BookRoomCommand(
+            room.getRoomNumber(),
+            arrival.atTime(14, 0),
+            arrival.plusDays(nights).atTime(11, 0),
+            "Guest " + random.nextInt(100_000),
+            1 + random.nextInt(room.getMaxPeople())
+        );
+    }
+
+    private double exponential(double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    private UUID takeBooking() {
+        synchronized (bookings) {
+            if (bookings.isEmpty()) {
+                return null;
+            }
+            int index = random.nextInt(bookings.size());
+            UUID bookingId = bookings.get(index);
+            bookings.set(index, bookings.get(bookings.size() - 1));
+            bookings.remove(bookings.size() - 1);
+            return bookingId;
+        }
+    }
+
+    /* ### Getter ### */
+
+    public List<CreateRoomCommand> getRooms() {
+        return rooms;
+    }
+
+    public long getBookingsAccepted() {
+        return bookingsAccepted.sum();
+    }
+
+    public long getBookingsRejected() {
+        return bookingsRejected.sum();
+    }
+
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int roomCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROOMS;
+        int commandCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COMMANDS;
+        int inFlight = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_IN_FLIGHT;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        // rejected bookings are part of the mix, only real problems are of interest
+        Logger.setLevel(Logger.Level.WARN);
+        Path directory = Files.createTempDirectory("load-generator");
+        try (EventStore eventStore = new EventStore(directory)) {
+            RunRead read = new RunRead();
+            eventStore.subscribe(read.getBookingProjector());
+            eventStore.subscribe(read.getRoomProjector());
+            eventStore.subscribe(read.getAvailabilityProjector());
+            CommandBus commandBus = new CommandBus(
+                eventStore,
+                new BookingAggregate(eventStore),
+                new RoomAggregate(eventStore)
+            );
+            LoadGenerator generator = new LoadGenerator(commandBus, seed);
+            generator.createRooms(roomCount);
+
+            long start = System.nanoTime();
+            generator.replay(commandCount, inFlight);
+            double commandSeconds = (System.nanoTime() - start) / 1e9;
+            awaitDelivery(eventStore);
+            double projectedSeconds = (System.nanoTime() - start) / 1e9;
+            commandBus.close();
+            Logger.flush();
+
+            System.out.printf(
+                "%d rooms, %d commands (%d bookings accepted, %d rejected, %d cancellations)%n",
+                roomCount,
+                commandCount,
+                generator.getBookingsAccepted(),
+                generator.getBookingsRejected(),
+                generator.getCancellations()
+            );
+            System.out.printf(
+                "%,.0f commands/s, %,.0f commands/s until all projectors were up to date%n",
+                commandCount / commandSeconds,
+                commandCount / projectedSeconds
+            );
+            System.out.print(Metrics.dump());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void awaitDelivery(EventStore eventStore) throws InterruptedException {
+        long head = eventStore.getHeadPosition();
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            while (subscription.getNextPosition() < head) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
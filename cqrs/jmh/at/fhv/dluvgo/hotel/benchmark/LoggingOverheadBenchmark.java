@@ -0,0 +1,156 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.Subscription;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Creates rooms and books them through the {@link CommandBus} with all projectors subscribed,
+ * once writing every message to the console in the calling thread (as the application did
+ * before it had a logger), once handing the same messages to the background thread and once at
+ * the default level, where the per-command messages are not logged at all. The console is an
+ * auto-flushing stream to a temporary file, so writing costs about what a redirected
+ * {@code System.out} does. Reports commands per second until the projectors are up to date and
+ * the command latency from dispatching until the events are stored.
+ */
+public class LoggingOverheadBenchmark {
+    private static final int ROOMS = 500;
+    private static final int BOOKINGS_PER_ROOM = 8;
+    private static final int SHARDS = 4;
+    private static final LocalDateTime FIRST_NIGHT = LocalDate.now().plusDays(30).atTime(14, 0);
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        PrintStream consoleErr = System.err;
+        Path logFile = Files.createTempFile("logging-overhead", ".log");
+        try (PrintStream log = new PrintStream(new FileOutputStream(logFile.toFile()), true)) {
+            System.setOut(log);
+            System.setErr(log);
+
+            // the first round only warms up the JVM
+            run(console, "warm-up", Logger.Level.DEBUG, false, false);
+            run(console, "sync, DEBUG", Logger.Level.DEBUG, false, true);
+            run(console, "async, DEBUG", Logger.Level.DEBUG, true, true);
+            run(console, "async, INFO", Logger.Level.INFO, true, true);
+        } finally {
+            Logger.flush();
+            System.setOut(console);
+            System.setErr(consoleErr);
+            Files.delete(logFile);
+        }
+    }
+
+    private static void run(
+        PrintStream console,
+        String mode,
+        Logger.Level level,
+        boolean isAsync,
+        boolean measured
+    ) throws Exception {
+        Logger.setAsync(isAsync);
+        Logger.setLevel(level);
+        long droppedBefore = Metrics.getCounters().getOrDefault("log.dropped", 0L);
+
+        Path directory = Files.createTempDirectory("logging-overhead");
+        try (EventStore eventStore = new EventStore(directory)) {
+            RunRead read = new RunRead();
+            eventStore.subscribe(read.getBookingProjector());
+            eventStore.subscribe(read.getRoomProjector());
+            eventStore.subscribe(read.getAvailabilityProjector());
+            CommandBus commandBus = new CommandBus(
+                eventStore,
+                new BookingAggregate(eventStore),
+                new RoomAggregate(eventStore),
+                SHARDS
+            );
+
+            List<CreateRoomCommand> rooms = new ArrayList<>(ROOMS);
+            for (int i = 0; i < ROOMS; i++) {
+                rooms.add(new CreateRoomCommand(UUID.randomUUID(), 1 + i % 4));
+            }
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long start = System.nanoTime();
+            List<CompletableFuture<?>> pending = new ArrayList<>();
+            for (CreateRoomCommand cmd : rooms) {
+                long dispatched = System.nanoTime();
+                pending.add(commandBus.dispatch(cmd).whenComplete(
+                    (events, e) -> latency.record(System.nanoTime() - dispatched)
+                ));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            pending.clear();
+            for (int night = 0; night < BOOKINGS_PER_ROOM; night++) {
+                LocalDateTime arrival = FIRST_NIGHT.plusDays(2L * night);
+                for (CreateRoomCommand room : rooms) {
+                    long dispatched = System.nanoTime();
+                    pending.add(commandBus.dispatch(new BookRoomCommand(
+                        room.getRoomNumber(),
+                        arrival,
+                        arrival.plusHours(21),
+                        "Guest " + night,
+                        room.getMaxPeople()
+                    )).whenComplete(
+                        (events, e) -> latency.record(System.nanoTime() - dispatched)
+                    ));
+                }
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            awaitDelivery(eventStore);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            commandBus.close();
+            // messages still queued are not part of the next round
+            Logger.flush();
+
+            if (measured) {
+                console.printf(
+                    "%-14s %,10.0f commands/s  latency p50<=%,dns p99<=%,dns  "
+                        + "%d messages dropped%n",
+                    mode,
+                    latency.getCount() / seconds,
+                    latency.getPercentile(50),
+                    latency.getPercentile(99),
+                    Metrics.getCounters().getOrDefault("log.dropped", 0L) - droppedBefore
+                );
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void awaitDelivery(EventStore eventStore) throws InterruptedException {
+        long head = eventStore.getHeadPosition();
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            while (subscription.getNextPosition() < head) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
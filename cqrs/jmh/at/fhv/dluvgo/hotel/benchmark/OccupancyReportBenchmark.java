@@ -0,0 +1,218 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetCancellationsPerMonthQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetOccupancyQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.ReportQueryHandler;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.projection.AnalyticsProjector;
+import at.fhv.dluvgo.hotel.read.repository.AnalyticsRepository;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Occupancy report per capacity over one year of a hotel with 1M bookings spread over three
+ * years, once from the pre-aggregated {@link AnalyticsRepository} and once by scanning all
+ * bookings of the {@link ReadRepository}. Reports the time to project the events, the latency of
+ * the report right after an update (the prefix sums are recomputed) and without updates in
+ * between, and the latency of the cancellations per month over all three years.
+ *
+ * <p>Needs a heap of about 2 GB, e.g. {@code -Xmx2g}.
+ *
+ * <p>Usage: {@code OccupancyReportBenchmark [bookings]}
+ */
+public class OccupancyReportBenchmark {
+    private static final int DEFAULT_BOOKINGS = 1_000_000;
+    private static final int ROOMS = 1_000;
+    private static final int MAX_CAPACITY = 6;
+    private static final int DAYS = 3 * 365;
+    private static final int MAX_NIGHTS = 14;
+    private static final int CANCELLED_PERCENT = 10;
+    private static final int REPORTS = 2_000;
+    private static final int SCANS = 5;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+
+    public static void main(String[] args) {
+        Logger.setLevel(Logger.Level.WARN);
+        int bookingCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKINGS;
+
+        Random random = new Random(42);
+        UUID[] rooms = new UUID[ROOMS];
+        Map<UUID, Integer> capacityByRoom = new HashMap<>();
+        AnalyticsRepository analyticsRepository = new AnalyticsRepository();
+        AnalyticsProjector projector = new AnalyticsProjector(analyticsRepository);
+        ReadRepository readRepository = new ReadRepository();
+        for (int i = 0; i < ROOMS; i++) {
+            rooms[i] = UUID.randomUUID();
+            capacityByRoom.put(rooms[i], 1 + i % MAX_CAPACITY);
+            projector.update(new RoomCreatedEvent(rooms[i], 1 + i % MAX_CAPACITY));
+        }
+
+        List<RoomBookedEvent> booked = new ArrayList<>(bookingCount);
+        for (int i = 0; i < bookingCount; i++) {
+            LocalDateTime start = FIRST_DAY.plusDays(random.nextInt(DAYS)).atTime(14, 0);
+            RoomBookedEvent event = new RoomBookedEvent(
+                UUID.randomUUID(),
+                rooms[random.nextInt(ROOMS)],
+                start,
+                start.plusDays(1 + random.nextInt(MAX_NIGHTS)).withHour(11),
+                "Guest",
+                1 + random.nextInt(4)
+            );
+            booked.add(event);
+        }
+
+        List<BookingCancelledEvent> cancellations = new ArrayList<>();
+        for (RoomBookedEvent event : booked) {
+            if (random.nextInt(100) < CANCELLED_PERCENT) {
+                cancellations.add(new BookingCancelledEvent(event.getBookingId()));
+            } else {
+                readRepository.addBooking(new Booking(
+                    event.getBookingId(),
+                    event.getRoomNumber(),
+                    event.getBookingStartTime(),
+                    event.getBookingEndTime(),
+                    Booking.State.ACTIVE,
+                    event.getContactName(),
+                    event.getNumberOfPeople()
+                ));
+            }
+        }
+
+        long start = System.nanoTime();
+        for (RoomBookedEvent event : booked) {
+            projector.update(event);
+        }
+        for (BookingCancelledEvent event : cancellations) {
+            projector.update(event);
+        }
+        double projectSeconds = (System.nanoTime() - start) / 1e9;
+        int cancelled = cancellations.size();
+        System.out.printf(
+            "%,d bookings, %,d cancelled: projected %,.0f events/s%n",
+            bookingCount,
+            cancelled,
+            (bookingCount + cancelled) / projectSeconds
+        );
+
+        ReportQueryHandler handler = new ReportQueryHandler(analyticsRepository);
+        LocalDate firstNight = FIRST_DAY.plusYears(1);
+        LocalDate lastNight = firstNight.plusYears(1).minusDays(1);
+        GetOccupancyQuery query = new GetOccupancyQuery(firstNight, lastNight);
+        GetCancellationsPerMonthQuery perMonthQuery = new GetCancellationsPerMonthQuery(
+            YearMonth.from(FIRST_DAY),
+            YearMonth.from(FIRST_DAY.plusDays(DAYS))
+        );
+        RoomBookedEvent update = new RoomBookedEvent(
+            UUID.randomUUID(),
+            rooms[0],
+            firstNight.atTime(14, 0),
+            firstNight.plusDays(2).atTime(11, 0),
+            "Guest",
+            2
+        );
+
+        // the first round only warms up the JVM
+        for (int round = 0; round < 2; round++) {
+            LatencyHistogram afterUpdate = new LatencyHistogram();
+            LatencyHistogram unchanged = new LatencyHistogram();
+            LatencyHistogram perMonth = new LatencyHistogram();
+            long roomNights = 0;
+            for (int i = 0; i < REPORTS; i++) {
+                // booking and cancelling the same stay leaves the figures as they were
+                projector.update(update);
+                projector.update(new BookingCancelledEvent(update.getBookingId()));
+
+                start = System.nanoTime();
+                roomNights += handler.handle(query).get(0).getRoomNights();
+                afterUpdate.record(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                handler.handle(query);
+                unchanged.record(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                handler.handle(perMonthQuery);
+                perMonth.record(System.nanoTime() - start);
+            }
+
+            LatencyHistogram scan = new LatencyHistogram();
+            long scannedRoomNights = 0;
+            for (int i = 0; i < SCANS; i++) {
+                start = System.nanoTime();
+                scannedRoomNights += scan(readRepository, capacityByRoom, firstNight, lastNight);
+                scan.record(System.nanoTime() - start);
+            }
+            if (scannedRoomNights / SCANS != roomNights / REPORTS) {
+                throw new IllegalStateException(
+                    "Scan found " + scannedRoomNights / SCANS + " room nights, the report "
+                        + roomNights / REPORTS
+                );
+            }
+
+            if (round == 1) {
+                print("report after update", afterUpdate);
+                print("report unchanged", unchanged);
+                print("cancellations/month", perMonth);
+                print("full scan", scan);
+            }
+        }
+    }
+
+    private static void print(String variant, LatencyHistogram latency) {
+        System.out.printf(
+            "%20s: p50 %,10.3f ms, p99 %,10.3f ms%n",
+            variant,
+            latency.getPercentile(50) / 1e6,
+            latency.getPercentile(99) / 1e6
+        );
+    }
+
+    /**
+     * The occupancy per capacity without pre-aggregation: looks at every booking.
+     *
+     * @return The number of booked room nights of all rooms
+     */
+    private static long scan(
+        ReadRepository readRepository,
+        Map<UUID, Integer> capacityByRoom,
+        LocalDate firstNight,
+        LocalDate lastNight
+    ) {
+        int from = (int) firstNight.toEpochDay();
+        int to = (int) lastNight.toEpochDay() + 1;
+        Map<Integer, int[]> occupiedByCapacity = new TreeMap<>();
+        readRepository.streamBookings(LocalDateTime.MIN, LocalDateTime.MAX).forEach(booking -> {
+            int[] occupied = occupiedByCapacity.computeIfAbsent(
+                capacityByRoom.get(booking.getRoomNumber()),
+                c -> new int[to - from]
+            );
+            int first = Math.max(from, (int) booking.getStart().toLocalDate().toEpochDay());
+            int end = Math.min(to, (int) booking.getEnd().toLocalDate().toEpochDay());
+            for (int night = first; night < end; night++) {
+                occupied[night - from]++;
+            }
+        });
+
+        long roomNights = 0;
+        for (int[] occupied : occupiedByCapacity.values()) {
+            for (int rooms : occupied) {
+                roomNights += rooms;
+            }
+        }
+        return roomNights;
+    }
+}
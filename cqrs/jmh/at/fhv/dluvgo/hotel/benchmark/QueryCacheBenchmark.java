@@ -0,0 +1,155 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryHandler;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryResultCache;
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.projection.AvailabilityProjector;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Replays a front-end workload - the same few date-range searches over and over, with a booking
+ * or cancellation every {@value #QUERIES_PER_EVENT} queries - against a {@link QueryHandler}
+ * without and with a {@link QueryResultCache}. Every cached result is checked against a freshly
+ * computed one. Log output is discarded.
+ */
+public class QueryCacheBenchmark {
+    private static final int ROOMS = 5_000;
+    private static final int QUERIES = 20_000;
+    private static final int QUERIES_PER_EVENT = 250;
+    private static final int DISTINCT_SEARCHES = 200;
+    private static final int[] CACHE_SIZES = {0, 64, 1024};
+    private static final LocalDate TOMORROW = LocalDate.now().plusDays(1);
+
+    public static void main(String[] args) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.printf(
+                "%10s %12s %10s %10s %10s %14s%n",
+                "cache size",
+                "us/query",
+                "hits",
+                "misses",
+                "evictions",
+                "invalidations"
+            );
+            // the first round only warms up the JVM
+            run(null, 0);
+            for (int cacheSize : CACHE_SIZES) {
+                run(console, cacheSize);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void run(PrintStream console, int cacheSize) {
+        ReadRepository readRepository = new ReadRepository();
+        AvailabilityRepository availabilityRepository = new AvailabilityRepository();
+        QueryResultCache<QueryHandler.QueryKey, List<BookableRoom>> cache =
+            new QueryResultCache<>(cacheSize);
+        AvailabilityProjector projector = new AvailabilityProjector(availabilityRepository, cache);
+        QueryHandler cached = new QueryHandler(
+            readRepository,
+            availabilityRepository,
+            new QueryResultCache<QueryHandler.QueryKey, List<Booking>>(0),
+            cache
+        );
+        QueryHandler uncached = new QueryHandler(readRepository, availabilityRepository);
+
+        Random random = new Random(42);
+        List<UUID> rooms = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            UUID room = UUID.randomUUID();
+            rooms.add(room);
+            projector.update(new RoomCreatedEvent(room, 1 + random.nextInt(4)));
+        }
+        GetFreeRoomsQuery[] searches = new GetFreeRoomsQuery[DISTINCT_SEARCHES];
+        for (int i = 0; i < searches.length; i++) {
+            LocalDate arrival = TOMORROW.plusDays(random.nextInt(90));
+            searches[i] = new GetFreeRoomsQuery(
+                arrival.atTime(14, 0),
+                arrival.plusDays(1 + random.nextInt(7)).atTime(11, 0),
+                1 + random.nextInt(4)
+            );
+        }
+
+        List<UUID> bookings = new ArrayList<>();
+        long nanos = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (i % QUERIES_PER_EVENT == 0) {
+                if (bookings.isEmpty() || random.nextInt(3) > 0) {
+                    LocalDate arrival = TOMORROW.plusDays(random.nextInt(365));
+                    UUID booking = UUID.randomUUID();
+                    bookings.add(booking);
+                    projector.update(new RoomBookedEvent(
+                        booking,
+                        rooms.get(random.nextInt(rooms.size())),
+                        arrival.atTime(14, 0),
+                        arrival.plusDays(1 + random.nextInt(7)).atTime(11, 0),
+                        "Guest",
+                        2
+                    ));
+                } else {
+                    UUID booking = bookings.remove(random.nextInt(bookings.size()));
+                    projector.update(new BookingCancelledEvent(booking));
+                }
+            }
+
+            // a few searches are a lot more popular than the others
+            GetFreeRoomsQuery search = searches[
+                (int) (Math.pow(random.nextDouble(), 3) * searches.length)
+            ];
+            long start = System.nanoTime();
+            List<BookableRoom> result = cached.handle(search);
+            nanos += System.nanoTime() - start;
+
+            if (i % 10 == 0 && !sameRooms(result, uncached.handle(search))) {
+                throw new IllegalStateException("Cached result differs from the read model");
+            }
+        }
+
+        if (null != console) {
+            console.printf(
+                "%10d %12.1f %10d %10d %10d %14d%n",
+                cacheSize,
+                nanos / 1e3 / QUERIES,
+                cache.getHits(),
+                cache.getMisses(),
+                cache.getEvictions(),
+                cache.getInvalidations()
+            );
+        }
+    }
+
+    private static boolean sameRooms(List<BookableRoom> a, List<BookableRoom> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            BookableRoom x = a.get(i);
+            BookableRoom y = b.get(i);
+            if (!x.getRoomNumber().equals(y.getRoomNumber())
+                || !x.getStart().equals(y.getStart())
+                || !x.getEnd().equals(y.getEnd())
+            ) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.rebuild.ReadModelRebuilder;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.aggregate.BatchAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes rooms, bookings and cancellations to a fresh event store and rebuilds the read model
+ * from it with 1 to N threads, N being at least 4 or the number of available cores. Reports the
+ * replay throughput and checks every rebuilt model against the one rebuilt by a single thread.
+ * Log output is discarded.
+ */
+public class ReadModelRebuildBenchmark {
+    private static final int ROOMS = 5_000;
+    private static final int BOOKINGS_PER_ROOM = 40;
+    private static final int CANCELLATIONS = 10_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final LocalDate TOMORROW = LocalDate.now().plusDays(1);
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        Path directory = Files.createTempDirectory("read-model-rebuild");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (EventStore eventStore = new EventStore(directory)) {
+            List<UUID> rooms = populate(eventStore);
+            console.printf(
+                "%d events, %d cores available%n",
+                eventStore.getHeadPosition(),
+                Runtime.getRuntime().availableProcessors()
+            );
+            console.printf("%8s %12s %14s %10s%n", "threads", "time [ms]", "events/s", "speedup");
+
+            Horizon horizon = new Horizon();
+            // the first round only warms up the JVM
+            ReadRepository expected = new ReadModelRebuilder(horizon, 1)
+                .rebuild(eventStore)
+                .getReadRepository();
+            int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+            double baseline = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                ReadModelRebuilder.Result result = new ReadModelRebuilder(horizon, threads)
+                    .rebuild(eventStore);
+                if (!sameModel(expected, result.getReadRepository(), rooms)) {
+                    throw new IllegalStateException(
+                        "Read model rebuilt by " + threads + " threads differs"
+                    );
+                }
+                if (1 == threads) {
+                    baseline = result.getEventsPerSecond();
+                }
+                console.printf(
+                    "%8d %12.0f %14.0f %10.2f%n",
+                    threads,
+                    result.getNanos() / 1e6,
+                    result.getEventsPerSecond(),
+                    result.getEventsPerSecond() / baseline
+                );
+            }
+        } finally {
+            System.setOut(console);
+            delete(directory);
+        }
+    }
+
+    private static List<UUID> populate(EventStore eventStore) throws Exception {
+        Random random = new Random(42);
+        BatchAggregate batchAggregate = new BatchAggregate(eventStore);
+
+        List<CreateRoomCommand> rooms = new ArrayList<>();
+        List<UUID> roomNumbers = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            UUID roomNumber = UUID.randomUUID();
+            roomNumbers.add(roomNumber);
+            rooms.add(new CreateRoomCommand(roomNumber, 1 + random.nextInt(4)));
+        }
+        for (int i = 0; i < rooms.size(); i += BATCH_SIZE) {
+            batchAggregate.handleBatchCommand(new BatchCommand(
+                rooms.subList(i, Math.min(rooms.size(), i + BATCH_SIZE)),
+                Collections.emptyList()
+            ));
+        }
+
+        // stays of up to a week with gaps in between, booked in batches
+        List<BookRoomCommand> bookings = new ArrayList<>();
+        for (CreateRoomCommand room : rooms) {
+            LocalDateTime arrival = TOMORROW.plusDays(random.nextInt(3)).atTime(14, 0);
+            for (int b = 0; b < BOOKINGS_PER_ROOM; b++) {
+                LocalDateTime departure = arrival.plusDays(1 + random.nextInt(7)).withHour(11);
+                bookings.add(new BookRoomCommand(
+                    room.getRoomNumber(),
+                    arrival,
+                    departure,
+                    "Guest",
+                    room.getMaxPeople()
+                ));
+                arrival = departure.withHour(14).plusDays(1 + random.nextInt(4));
+            }
+        }
+        Collections.shuffle(bookings, random);
+        List<UUID> bookingIds = new ArrayList<>();
+        for (int i = 0; i < bookings.size(); i += BATCH_SIZE) {
+            List<Event> events = batchAggregate.handleBatchCommand(new BatchCommand(
+                Collections.emptyList(),
+                bookings.subList(i, Math.min(bookings.size(), i + BATCH_SIZE))
+            ));
+            for (Event event : events) {
+                if (event instanceof BookingCreatedEvent) {
+                    bookingIds.add(((BookingCreatedEvent) event).getBookingId());
+                }
+            }
+        }
+
+        Collections.shuffle(bookingIds, random);
+        BookingAggregate bookingAggregate = new BookingAggregate(eventStore);
+        for (UUID bookingId : bookingIds.subList(0, CANCELLATIONS)) {
+            bookingAggregate.handleCancelBookingCommand(new CancelBookingCommand(bookingId));
+        }
+
+        return roomNumbers;
+    }
+
+    private static boolean sameModel(ReadRepository a, ReadRepository b, List<UUID> rooms) {
+        LocalDateTime from = LocalDateTime.MIN;
+        LocalDateTime to = LocalDateTime.MAX;
+        if (a.getBookings(from, to).size() != b.getBookings(from, to).size()) {
+            return false;
+        }
+        for (UUID room : rooms) {
+            List<BookableRoom> x = a.getBookableRooms(room);
+            List<BookableRoom> y = b.getBookableRooms(room);
+            if (x.size() != y.size()) {
+                return false;
+            }
+            for (int i = 0; i < x.size(); i++) {
+                if (!x.get(i).getStart().equals(y.get(i).getStart())
+                    || !x.get(i).getEnd().equals(y.get(i).getEnd())
+                ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.replication.ReadReplica;
+import at.fhv.dluvgo.hotel.write.aggregate.BatchAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.replication.EventStreamPublisher;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams events to read replicas over the loopback interface. Two replicas follow the write side
+ * while rooms and bookings are written in batches, sampling their lag; a third replica connects
+ * afterwards and catches up from the event log. Checks that every replica ends up with all
+ * bookings. Log output is discarded.
+ */
+public class ReplicationBenchmark {
+    private static final int ROOMS = 2_000;
+    private static final int BOOKINGS_PER_ROOM = 20;
+    private static final int BATCH_SIZE = 500;
+    private static final LocalDate TOMORROW = LocalDate.now().plusDays(1);
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        Path directory = Files.createTempDirectory("replication");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (
+            EventStore eventStore = new EventStore(directory);
+            EventStreamPublisher publisher = new EventStreamPublisher(eventStore, 0)
+        ) {
+            publisher.start();
+            List<RunRead> readModels = new ArrayList<>();
+            List<ReadReplica> followers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                followers.add(startReplica(publisher.getPort(), readModels));
+            }
+
+            // the lag is sampled against the event store, the replicas themselves only learn
+            // the head with the next frame
+            long maxLagEvents = 0;
+            long maxReportedLagEvents = 0;
+            long start = System.nanoTime();
+            for (BatchCommand batch : batches()) {
+                new BatchAggregate(eventStore).handleBatchCommand(batch);
+                for (ReadReplica replica : followers) {
+                    maxLagEvents = Math.max(
+                        maxLagEvents,
+                        eventStore.getHeadPosition() - replica.getAppliedPosition()
+                    );
+                }
+                maxReportedLagEvents = Math.max(maxReportedLagEvents, publisher.getLagEvents());
+            }
+            long head = eventStore.getHeadPosition();
+            for (ReadReplica replica : followers) {
+                await(replica, head);
+            }
+            long followNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ReadReplica late = startReplica(publisher.getPort(), readModels);
+            await(late, head);
+            long catchUpNanos = System.nanoTime() - start;
+
+            followers.add(late);
+            for (ReadReplica replica : followers) {
+                replica.close();
+            }
+            for (RunRead readModel : readModels) {
+                int bookings = readModel.runQuery(
+                    new GetBookingsQuery(LocalDateTime.MIN, LocalDateTime.MAX)
+                ).size();
+                if (ROOMS * BOOKINGS_PER_ROOM != bookings) {
+                    throw new IllegalStateException("Replica only has " + bookings + " bookings");
+                }
+            }
+
+            console.printf("%d events, %d replicas%n", head, followers.size());
+            console.printf(
+                "following:  %8.0f ms, %10.0f events/s, max lag %d events (%d reported)%n",
+                followNanos / 1e6,
+                head / (followNanos / 1e9),
+                maxLagEvents,
+                maxReportedLagEvents
+            );
+            console.printf(
+                "catching up: %7.0f ms, %10.0f events/s%n",
+                catchUpNanos / 1e6,
+                head / (catchUpNanos / 1e9)
+            );
+        } finally {
+            System.setOut(console);
+            delete(directory);
+        }
+    }
+
+    private static ReadReplica startReplica(int port, List<RunRead> readModels) {
+        RunRead runRead = new RunRead();
+        readModels.add(runRead);
+        ReadReplica replica = new ReadReplica("localhost", port, runRead);
+        Thread thread = new Thread(replica, "replica");
+        thread.setDaemon(true);
+        thread.start();
+        return replica;
+    }
+
+    private static void await(ReadReplica replica, long position) throws InterruptedException {
+        while (replica.getAppliedPosition() < position) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static List<BatchCommand> batches() {
+        Random random = new Random(42);
+        List<CreateRoomCommand> rooms = new ArrayList<>();
+        for (int i = 0; i < ROOMS; i++) {
+            rooms.add(new CreateRoomCommand(UUID.randomUUID(), 1 + random.nextInt(4)));
+        }
+
+        List<BatchCommand> batches = new ArrayList<>();
+        for (int i = 0; i < rooms.size(); i += BATCH_SIZE) {
+            batches.add(new BatchCommand(
+                rooms.subList(i, Math.min(rooms.size(), i + BATCH_SIZE)),
+                Collections.emptyList()
+            ));
+        }
+
+        List<BookRoomCommand> bookings = new ArrayList<>();
+        for (CreateRoomCommand room : rooms) {
+            LocalDateTime arrival = TOMORROW.atTime(14, 0);
+            for (int b = 0; b < BOOKINGS_PER_ROOM; b++) {
+                LocalDateTime departure = arrival.plusDays(1 + random.nextInt(7)).withHour(11);
+                bookings.add(new BookRoomCommand(
+                    room.getRoomNumber(),
+                    arrival,
+                    departure,
+                    "Guest",
+                    room.getMaxPeople()
+                ));
+                arrival = departure.withHour(14).plusDays(1 + random.nextInt(4));
+            }
+        }
+        Collections.shuffle(bookings, random);
+        for (int i = 0; i < bookings.size(); i += BATCH_SIZE) {
+            batches.add(new BatchCommand(
+                Collections.emptyList(),
+                bookings.subList(i, Math.min(bookings.size(), i + BATCH_SIZE))
+            ));
+        }
+
+        return batches;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Books rooms over a multi-year {@link Horizon} and lets a simulated clock run for a year, one
+ * day at a time. Reports the latency of free-room queries close to today, close to the end of the
+ * horizon and - after the clock advanced - in the nights that were beyond the original horizon,
+ * as well as how long rolling the horizon forward by a day takes. Log output is discarded.
+ */
+public class RollingHorizonBenchmark {
+    private static final int ROOMS = 5_000;
+    private static final int YEARS = 3;
+    private static final int BOOKINGS_PER_ROOM = 150;
+    private static final int QUERIES = 200;
+    private static final int SIMULATED_DAYS = 365;
+    private static final LocalDate TODAY = LocalDate.of(2030, 1, 1);
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            SimulatedClock clock = new SimulatedClock(TODAY);
+            RunRead read = new RunRead(new Horizon(clock, YEARS));
+
+            long start = System.nanoTime();
+            for (Event event : createEvents()) {
+                read.getRoomProjector().update(event);
+                read.getAvailabilityProjector().update(event);
+            }
+            console.printf(
+                "projected %d rooms over %d years in %.0f ms%n",
+                ROOMS,
+                YEARS,
+                (System.nanoTime() - start) / 1e6
+            );
+
+            // the first round only warms up the JVM
+            query(read, TODAY);
+            console.printf("%-32s %12s %12s%n", "queries", "us/query", "free rooms");
+            LocalDate end = TODAY.plusYears(YEARS);
+            report(console, "near today", read, TODAY);
+            report(console, "near the end of the horizon", read, end.minusDays(20));
+            report(console, "beyond the horizon", read, end.plusDays(20));
+
+            long rollNanos = 0;
+            long maxRollNanos = 0;
+            for (int day = 1; day <= SIMULATED_DAYS; day++) {
+                clock.advanceDays(1);
+                long rollStart = System.nanoTime();
+                read.getRoomProjector().advanceHorizon();
+                read.runQuery(new GetFreeRoomsQuery(
+                    TODAY.plusDays(day).atTime(14, 0),
+                    TODAY.plusDays(day + 1).atTime(11, 0),
+                    1
+                ));
+                long nanos = System.nanoTime() - rollStart;
+                rollNanos += nanos;
+                maxRollNanos = Math.max(maxRollNanos, nanos);
+            }
+            console.printf(
+                "rolled the horizon %d days forward, %.2f ms/day on average, %.2f ms at most%n",
+                SIMULATED_DAYS,
+                rollNanos / 1e6 / SIMULATED_DAYS,
+                maxRollNanos / 1e6
+            );
+
+            LocalDate today = TODAY.plusDays(SIMULATED_DAYS);
+            report(console, "near the new today", read, today);
+            report(console, "across the old end", read, end.minusDays(2));
+            report(console, "beyond the old end", read, end.plusDays(20));
+            report(console, "in the past", read, TODAY.plusDays(20));
+            console.println("(checksum " + sink + ")");
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void report(PrintStream console, String name, RunRead read, LocalDate from) {
+        long start = System.nanoTime();
+        int freeRooms = query(read, from);
+        long nanos = System.nanoTime() - start;
+        console.printf(
+            "%-32s %12.1f %12d%n",
+            name,
+            nanos / 1e3 / QUERIES,
+            freeRooms / QUERIES
+        );
+    }
+
+    /**
+     * @return The number of free rooms found by all queries
+     */
+    private static int query(RunRead read, LocalDate from) {
+        Random random = new Random(7);
+        int freeRooms = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            LocalDate arrival = from.plusDays(random.nextInt(5));
+            int size = read.runQuery(new GetFreeRoomsQuery(
+                arrival.atTime(14, 0),
+                arrival.plusDays(1 + random.nextInt(5)).atTime(11, 0),
+                1 + random.nextInt(4)
+            )).size();
+            freeRooms += size;
+            sink += size;
+        }
+        return freeRooms;
+    }
+
+    private static List<Event> createEvents() {
+        Random random = new Random(42);
+        List<Event> events = new ArrayList<>();
+        LocalDateTime lastNight = TODAY.plusYears(YEARS).atTime(11, 0);
+        for (int i = 0; i < ROOMS; i++) {
+            UUID room = UUID.randomUUID();
+            events.add(new RoomCreatedEvent(room, 1 + random.nextInt(4)));
+
+            // stays of up to a week with gaps in between, spread over the whole horizon
+            LocalDateTime arrival = TODAY.plusDays(1 + random.nextInt(3)).atTime(14, 0);
+            for (int b = 0; b < BOOKINGS_PER_ROOM; b++) {
+                LocalDateTime departure = arrival.plusDays(1 + random.nextInt(7)).withHour(11);
+                if (departure.isAfter(lastNight)) {
+                    break;
+                }
+                events.add(new RoomBookedEvent(
+                    UUID.randomUUID(),
+                    room,
+                    arrival,
+                    departure,
+                    "Guest",
+                    2
+                ));
+                arrival = departure.withHour(14).plusDays(1 + random.nextInt(4));
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static class SimulatedClock extends Clock {
+        private volatile Instant instant;
+
+        SimulatedClock(LocalDate today) {
+            this.instant = today.atTime(12, 0).toInstant(ZoneOffset.UTC);
+        }
+
+        void advanceDays(int days) {
+            instant = instant.plusSeconds(days * 24L * 60 * 60);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException("The simulated clock is always in UTC");
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.write.domain.Booking;
+import at.fhv.dluvgo.hotel.write.domain.PersonalDetails;
+import at.fhv.dluvgo.hotel.write.domain.Room;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the former linear scan over all bookings of a room with the availability index of
+ * {@link Room#isFree(LocalDateTime, LocalDateTime, UUID)} for rooms with 10, 1k and 100k
+ * historical bookings (every fifth booking is cancelled).
+ */
+public class RoomAvailabilityBenchmark {
+    private static final int[] BOOKING_COUNTS = {10, 1_000, 100_000};
+    private static final int QUERIES = 1_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final LocalDateTime FIRST_NIGHT = LocalDateTime.of(2000, 1, 1, 14, 0);
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %18s %18s%n", "bookings", "scan [ns/op]", "index [ns/op]");
+        for (int bookingCount : BOOKING_COUNTS) {
+            Room room = createRoom(bookingCount);
+            LocalDateTime[] queries = createQueries(bookingCount);
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runScan(room, queries);
+                runIndex(room, queries);
+            }
+
+            long scan = 0;
+            long index = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                scan += runScan(room, queries);
+                index += runIndex(room, queries);
+            }
+
+            System.out.printf(
+                "%10d %18.1f %18.1f%n",
+                bookingCount,
+                (double) scan / (MEASURED_ROUNDS * QUERIES),
+                (double) index / (MEASURED_ROUNDS * QUERIES)
+            );
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static long runScan(Room room, LocalDateTime[] queries) {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries.length; i += 2) {
+            if (isFreeByScan(room.getBookings(), queries[i], queries[i + 1], null)) {
+                sink++;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runIndex(Room room, LocalDateTime[] queries) {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries.length; i += 2) {
+            if (room.isFree(queries[i], queries[i + 1], null)) {
+                sink++;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The availability check as it was implemented before the index was introduced.
+     */
+    private static boolean isFreeByScan(
+        List<Booking> bookings,
+        LocalDateTime start,
+        LocalDateTime end,
+        UUID bookingId
+    ) {
+        for (Booking booking : bookings) {
+            if (!booking.getId().equals(bookingId)
+                && booking.getState().equals(Booking.State.ACTIVE) &&
+                !booking.getStart().isAfter(end) && !start.isAfter(booking.getEnd())
+            ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Room createRoom(int bookingCount) {
+        Room room = new Room(UUID.randomUUID(), 2);
+        for (int i = 0; i < bookingCount; i++) {
+            // every booking spans a single night, leaving every second night free
+            LocalDateTime start = FIRST_NIGHT.plusDays(2L * i);
+            Booking booking = Booking.create(
+                UUID.randomUUID(),
+                room,
+                start,
+                start.plusHours(21),
+                PersonalDetails.create("Guest " + i, 2)
+            );
+            room.addBooking(booking);
+            if (i % 5 == 0) {
+                booking.cancel();
+            }
+        }
+
+        return room;
+    }
+
+    private static LocalDateTime[] createQueries(int bookingCount) {
+        Random random = new Random(42);
+        LocalDateTime[] queries = new LocalDateTime[2 * QUERIES];
+        for (int i = 0; i < queries.length; i += 2) {
+            queries[i] = FIRST_NIGHT.plusDays(random.nextInt(2 * bookingCount));
+            queries[i + 1] = queries[i].plusHours(21);
+        }
+
+        return queries;
+    }
+}
@@ -0,0 +1,140 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Memory taken by the in-memory indexes of a {@link SegmentedEventLog} holding one event each for
+ * a large number of streams, as a hotel with millions of bookings does. Reports the heap still in
+ * use after a full collection, the direct (off-heap) memory, the time spent collecting garbage
+ * while appending and the time to look up the version of a random stream.
+ *
+ * <p>Needs a heap large enough for the streams, e.g. {@code -Xmx3g} for 10M streams.
+ *
+ * <p>Usage: {@code StreamIndexMemoryBenchmark [streams...]}, by default 1M and 10M streams
+ */
+public class StreamIndexMemoryBenchmark {
+    private static final int[] DEFAULT_STREAMS = {1_000_000, 10_000_000};
+    private static final int SEGMENT_SIZE = 256 * 1024 * 1024;
+    private static final int LOOKUPS = 1_000_000;
+    private static final int SAMPLE_SIZE = 1 << 16;
+    // object header and two longs of a sampled copy of an id
+    private static final int SAMPLED_ID_SIZE = 32;
+
+    public static void main(String[] args) throws Exception {
+        int[] streamCounts = DEFAULT_STREAMS;
+        if (args.length > 0) {
+            streamCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                streamCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // the first round only warms up the JVM
+        run(streamCounts[0] / 10, false);
+        for (int streamCount : streamCounts) {
+            run(streamCount, true);
+        }
+    }
+
+    private static void run(int streamCount, boolean print) throws Exception {
+        Path directory = Files.createTempDirectory("stream-index");
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE)) {
+            // a sample of the ids is kept for the lookups, allocated before measuring
+            int sampleSize = Math.min(streamCount, SAMPLE_SIZE);
+            int stride = streamCount / sampleSize;
+            UUID[] sample = new UUID[sampleSize];
+            long heapBefore = usedHeap();
+            long directBefore = usedDirectMemory();
+            long gcBefore = gcMillis();
+
+            Random ids = new Random(42);
+            long start = System.nanoTime();
+            for (int i = 0; i < streamCount; i++) {
+                UUID streamId = new UUID(ids.nextLong(), ids.nextLong());
+                log.append(streamId, new RoomCreatedEvent(streamId, 2));
+                if (i % stride == 0 && i / stride < sampleSize) {
+                    sample[i / stride] = new UUID(
+                        streamId.getMostSignificantBits(),
+                        streamId.getLeastSignificantBits()
+                    );
+                }
+            }
+            double appendSeconds = (System.nanoTime() - start) / 1e9;
+            long gcAppending = gcMillis() - gcBefore;
+
+            long heap = usedHeap() - heapBefore - sampleSize * SAMPLED_ID_SIZE;
+            long direct = usedDirectMemory() - directBefore;
+
+            Random lookups = new Random(7);
+            long versions = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                versions += log.version(sample[lookups.nextInt(sampleSize)]);
+            }
+            double lookupNanos = (System.nanoTime() - start) / (double) LOOKUPS;
+            if (versions != LOOKUPS) {
+                throw new IllegalStateException("Lookups found " + versions + " events");
+            }
+
+            if (print) {
+                System.out.printf(
+                    "%,11d streams: heap %,6d MB, off-heap %,5d MB, %5.1f bytes per stream, "
+                        + "%,7d ms GC while appending %,9.0f events/s, %.0f ns per lookup%n",
+                    streamCount,
+                    heap >> 20,
+                    direct >> 20,
+                    (heap + direct) / (double) streamCount,
+                    gcAppending,
+                    streamCount / appendSeconds,
+                    lookupNanos
+                );
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        // direct buffers of collected objects are freed by a cleaner thread
+        Thread.sleep(200);
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirectMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
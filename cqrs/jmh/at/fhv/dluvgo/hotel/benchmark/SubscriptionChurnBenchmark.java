@@ -0,0 +1,190 @@
+package at.fhv.dluvgo.hotel.benchmark;
+
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Stress test of the observer registry of the event store. Appends events while a few threads
+ * keep subscribing and unsubscribing observers (live as well as from a past position), and
+ * compares the append rate to the one with a fixed set of observers. That no event is lost,
+ * duplicated or reordered while the registry changes is checked by
+ * {@code SubscriptionChurnTest}. Log output is discarded.
+ *
+ * <p>Usage: {@code SubscriptionChurnBenchmark [subscribers] [events]}
+ */
+public class SubscriptionChurnBenchmark {
+    private static final int DEFAULT_SUBSCRIBERS = 256;
+    private static final int DEFAULT_EVENTS = 5_000;
+    private static final int CHURN_THREADS = 2;
+    private static final int STREAMS = 64;
+    private static final long TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SUBSCRIBERS;
+        int eventCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_EVENTS;
+
+        PrintStream console = System.out;
+        Path directory = Files.createTempDirectory("subscription-churn");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (EventStore eventStore = new EventStore(directory)) {
+            LongAdder delivered = new LongAdder();
+            List<Observer> fixed = new ArrayList<>();
+            for (int i = 0; i < subscribers; i++) {
+                Observer observer = new CountingObserver(delivered);
+                fixed.add(observer);
+                eventStore.subscribe(observer);
+            }
+
+            // warm-up, then the fixed set of observers only
+            append(eventStore, eventCount / 4);
+            double fixedRate = append(eventStore, eventCount);
+            for (Observer observer : fixed) {
+                eventStore.unsubscribe(observer);
+            }
+
+            AtomicBoolean isAppending = new AtomicBoolean(true);
+            AtomicLong registryChanges = new AtomicLong();
+            AtomicLong maxSubscribers = new AtomicLong();
+            List<Thread> churn = new ArrayList<>();
+            for (int t = 0; t < CHURN_THREADS; t++) {
+                int seed = t;
+                Thread thread = new Thread(() -> churn(
+                    eventStore,
+                    subscribers / CHURN_THREADS,
+                    new Random(seed),
+                    delivered,
+                    isAppending,
+                    registryChanges,
+                    maxSubscribers
+                ));
+                churn.add(thread);
+                thread.start();
+            }
+            long churnStart = System.nanoTime();
+            double churnRate = append(eventStore, eventCount);
+            isAppending.set(false);
+            for (Thread thread : churn) {
+                thread.join(TIMEOUT_MILLIS);
+                if (thread.isAlive()) {
+                    throw new IllegalStateException("Churn thread did not finish");
+                }
+            }
+            double churnSeconds = (System.nanoTime() - churnStart) / 1e9;
+
+            console.printf(
+                "%d events to %d fixed observers: %,.0f events/s%n",
+                eventCount,
+                subscribers,
+                fixedRate
+            );
+            console.printf(
+                "%d events while %d threads (un)subscribe: %,.0f events/s, "
+                    + "%,.0f registry changes/s, up to %d observers%n",
+                eventCount,
+                CHURN_THREADS,
+                churnRate,
+                registryChanges.get() / churnSeconds,
+                maxSubscribers.get()
+            );
+        } finally {
+            System.setOut(console);
+            delete(directory);
+        }
+    }
+
+    /**
+     * @return Appended events per second
+     */
+    private static double append(EventStore eventStore, int count) {
+        UUID[] streams = new UUID[STREAMS];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = UUID.randomUUID();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            eventStore.addEvent(
+                streams[i % streams.length],
+                new BookingCancelledEvent(UUID.randomUUID())
+            );
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Keeps about {@code target} observers subscribed, replacing a random one at a time.
+     */
+    private static void churn(
+        EventStore eventStore,
+        int target,
+        Random random,
+        LongAdder delivered,
+        AtomicBoolean isAppending,
+        AtomicLong registryChanges,
+        AtomicLong maxSubscribers
+    ) {
+        List<Observer> observers = new ArrayList<>();
+        while (isAppending.get()) {
+            if (observers.size() < target) {
+                Observer observer = new CountingObserver(delivered);
+                if (random.nextBoolean()) {
+                    eventStore.subscribe(observer);
+                } else {
+                    long from = Math.max(0, eventStore.getHeadPosition() - random.nextInt(1000));
+                    eventStore.subscribeFrom(from, observer);
+                }
+                observers.add(observer);
+            } else {
+                eventStore.unsubscribe(observers.remove(random.nextInt(observers.size())));
+            }
+            registryChanges.incrementAndGet();
+            maxSubscribers.accumulateAndGet(
+                eventStore.getDispatcher().getSubscriberCount(),
+                Math::max
+            );
+        }
+        for (Observer observer : observers) {
+            eventStore.unsubscribe(observer);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static class CountingObserver implements Observer {
+        private final LongAdder delivered;
+
+        private CountingObserver(LongAdder delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void update(Event event) {
+            delivered.increment();
+        }
+
+        @Override
+        public void update(List<Event> events) {
+            delivered.add(events.size());
+        }
+    }
+}
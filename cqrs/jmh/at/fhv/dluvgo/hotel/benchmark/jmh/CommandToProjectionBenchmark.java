@@ -0,0 +1,91 @@
+package at.fhv.dluvgo.hotel.benchmark.jmh;
+
+import at.fhv.dluvgo.hotel.benchmark.LoadGenerator;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency from dispatching a booking through the {@link CommandBus} until all projectors of a
+ * {@link RunRead} have applied its events - the time until a guest sees the booking. Every
+ * invocation books another night of one of the rooms, so no booking is rejected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandToProjectionBenchmark {
+    private static final int ROOMS = 256;
+
+    private Path directory;
+    private EventStore eventStore;
+    private CommandBus commandBus;
+    private List<CreateRoomCommand> rooms;
+    private LocalDate firstNight;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createDirectory("jmh-end-to-end");
+        eventStore = new EventStore(directory);
+        RunRead read = new RunRead();
+        eventStore.subscribe(read.getBookingProjector());
+        eventStore.subscribe(read.getRoomProjector());
+        eventStore.subscribe(read.getAvailabilityProjector());
+        commandBus = new CommandBus(
+            eventStore,
+            new BookingAggregate(eventStore),
+            new RoomAggregate(eventStore)
+        );
+        rooms = new LoadGenerator(commandBus, 42).createRooms(ROOMS);
+        Fixtures.awaitDelivery(eventStore);
+        firstNight = LocalDate.now().plusDays(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        commandBus.close();
+        eventStore.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public List<Event> bookAndProject() {
+        CreateRoomCommand room = rooms.get(next % ROOMS);
+        LocalDate arrival = firstNight.plusDays(next / ROOMS);
+        next++;
+
+        List<Event> events = commandBus.dispatch(new BookRoomCommand(
+            room.getRoomNumber(),
+            arrival.atTime(14, 0),
+            arrival.plusDays(1).atTime(11, 0),
+            "Guest",
+            1
+        )).join();
+        Fixtures.awaitDelivery(eventStore);
+        return events;
+    }
+}
@@ -0,0 +1,75 @@
+package at.fhv.dluvgo.hotel.benchmark.jmh;
+
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appends single events to a few hundred streams of an {@link EventStore}, with and without
+ * observers that receive every event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventStoreAppendBenchmark {
+    private static final int STREAMS = 256;
+
+    @Param({"0", "3"})
+    public int observers;
+
+    private Path directory;
+    private EventStore eventStore;
+    private UUID[] streams;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Fixtures.createDirectory("jmh-append");
+        eventStore = new EventStore(directory);
+        for (int i = 0; i < observers; i++) {
+            eventStore.subscribe(new Observer() {
+                @Override
+                public void update(Event event) {
+                }
+            });
+        }
+
+        streams = new UUID[STREAMS];
+        for (int i = 0; i < STREAMS; i++) {
+            streams[i] = UUID.randomUUID();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        eventStore.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public long addEvent() {
+        next = (next + 1) % STREAMS;
+        return eventStore.addEvent(streams[next], new BookingCancelledEvent(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,42 @@
+package at.fhv.dluvgo.hotel.benchmark.jmh;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.Subscription;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Setup shared by the benchmarks: every trial works on its own temporary event store, and only
+ * warnings and errors are logged so the output of JMH stays readable.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static Path createDirectory(String name) throws IOException {
+        Logger.setLevel(Logger.Level.WARN);
+        return Files.createTempDirectory(name);
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Waits until every subscribed observer has handled all events appended so far.
+     */
+    static void awaitDelivery(EventStore eventStore) {
+        long head = eventStore.getHeadPosition();
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            while (subscription.getNextPosition() < head) {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package at.fhv.dluvgo.hotel.benchmark.jmh;
+
+import at.fhv.dluvgo.hotel.benchmark.LoadGenerator;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.read.cqrs.query.BookingPage;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsPageQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries a read model filled by the {@link LoadGenerator}. The query result cache is turned
+ * off, so every query hits the repositories; the queries cycle through random periods of the
+ * next months.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dhotel.querycache.size=0")
+public class ReadModelQueryBenchmark {
+    private static final int QUERIES = 1024;
+    private static final int COMMANDS_PER_ROOM = 50;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100", "1000"})
+    public int rooms;
+
+    private Path directory;
+    private EventStore eventStore;
+    private RunRead read;
+    private GetBookingsQuery[] bookingsQueries;
+    private GetBookingsPageQuery[] pageQueries;
+    private GetFreeRoomsQuery[] freeRoomsQueries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createDirectory("jmh-query");
+        eventStore = new EventStore(directory);
+        read = new RunRead();
+        eventStore.subscribe(read.getBookingProjector());
+        eventStore.subscribe(read.getRoomProjector());
+        eventStore.subscribe(read.getAvailabilityProjector());
+        CommandBus commandBus = new CommandBus(
+            eventStore,
+            new BookingAggregate(eventStore),
+            new RoomAggregate(eventStore)
+        );
+        LoadGenerator generator = new LoadGenerator(commandBus, 42);
+        generator.createRooms(rooms);
+        generator.replay(rooms * COMMANDS_PER_ROOM, LoadGenerator.DEFAULT_IN_FLIGHT);
+        commandBus.close();
+        Fixtures.awaitDelivery(eventStore);
+
+        Random random = new Random(7);
+        LocalDate today = LocalDate.now();
+        bookingsQueries = new GetBookingsQuery[QUERIES];
+        pageQueries = new GetBookingsPageQuery[QUERIES];
+        freeRoomsQueries = new GetFreeRoomsQuery[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            LocalDate from = today.plusDays(1 + random.nextInt(90));
+            // a week of bookings for the front desk, a short stay for a guest
+            bookingsQueries[i] = new GetBookingsQuery(
+                from.atStartOfDay(),
+                from.plusDays(7).atStartOfDay()
+            );
+            pageQueries[i] = new GetBookingsPageQuery(
+                from.atStartOfDay(),
+                from.plusDays(7).atStartOfDay(),
+                PAGE_SIZE
+            );
+            freeRoomsQueries[i] = new GetFreeRoomsQuery(
+                from.atTime(14, 0),
+                from.plusDays(1 + random.nextInt(4)).atTime(11, 0),
+                1 + random.nextInt(4)
+            );
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        eventStore.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public List<Booking> getBookings() {
+        return read.runQuery(bookingsQueries[nextQuery()]);
+    }
+
+    @Benchmark
+    public BookingPage getBookingsPage() {
+        return read.runQuery(pageQueries[nextQuery()]);
+    }
+
+    @Benchmark
+    public List<BookableRoom> getFreeRooms() {
+        return read.runQuery(freeRoomsQueries[nextQuery()]);
+    }
+
+    private int nextQuery() {
+        next = (next + 1) % QUERIES;
+        return next;
+    }
+}
@@ -0,0 +1,99 @@
+package at.fhv.dluvgo.hotel.benchmark.jmh;
+
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.domain.Booking;
+import at.fhv.dluvgo.hotel.write.domain.Room;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import at.fhv.dluvgo.hotel.write.utils.BookingUtility;
+import at.fhv.dluvgo.hotel.write.utils.RoomUtility;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recreates the state of a room with a given number of bookings - with snapshots every
+ * {@code 100} events and without any - and of a single booking, as the aggregates do for every
+ * command. The rooms are not handed back to the aggregate cache, so every invocation replays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RehydrationBenchmark {
+    @Param({"10", "100", "1000"})
+    public int bookings;
+
+    @Param({"100", "2147483647"})
+    public int snapshotInterval;
+
+    private Path directory;
+    private EventStore eventStore;
+    private UUID roomId;
+    private UUID bookingId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Fixtures.createDirectory("jmh-rehydration");
+        eventStore = new EventStore(
+            directory,
+            SegmentedEventLog.DEFAULT_SEGMENT_SIZE,
+            snapshotInterval
+        );
+
+        roomId = UUID.randomUUID();
+        new RoomAggregate(eventStore).handleCreateRoomCommand(new CreateRoomCommand(roomId, 2));
+        BookingAggregate bookingAggregate = new BookingAggregate(eventStore);
+        LocalDate arrival = LocalDate.now().plusDays(1);
+        for (int i = 0; i < bookings; i++) {
+            for (Event event : bookingAggregate.handleBookRoomCommand(new BookRoomCommand(
+                roomId,
+                arrival.plusDays(i).atTime(14, 0),
+                arrival.plusDays(i + 1).atTime(11, 0),
+                "Guest " + i,
+                2
+            ))) {
+                if (event instanceof BookingCreatedEvent) {
+                    bookingId = ((BookingCreatedEvent) event).getBookingId();
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        eventStore.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public Room recreateRoom() {
+        return RoomUtility.recreateRoomState(eventStore, roomId);
+    }
+
+    @Benchmark
+    public Booking recreateBooking() {
+        return BookingUtility.recreateBookingState(eventStore, bookingId);
+    }
+}
@@ -1,21 +1,38 @@
 package at.fhv.dluvgo.hotel;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.metrics.MetricsReporter;
 import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.read.cqrs.query.FindBookingsByGuestQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetCancellationsPerMonthQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetOccupancyQuery;
 import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
 import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import at.fhv.dluvgo.hotel.read.rebuild.ReadModelRebuilder;
 import at.fhv.dluvgo.hotel.write.RunWrite;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.replication.EventStreamPublisher;
+import at.fhv.dluvgo.hotel.write.repository.compaction.LogCompactor;
 import at.fhv.dluvgo.hotel.write.repository.EventStore;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class Main implements Runnable {
@@ -35,9 +52,26 @@ public class Main implements Runnable {
         RunRead rr = new RunRead();
         Thread rrThread = new Thread(rr);
 
+        // the read side starts empty, so it has to catch up with all events stored so far
         EventStore eventStore = wt.getEventStore();
-        eventStore.subscribe(rr.getBookingProjector());
-        eventStore.subscribe(rr.getRoomProjector());
+        eventStore.subscribeFrom(0, rr.getBookingProjector());
+        eventStore.subscribeFrom(0, rr.getRoomProjector());
+        eventStore.subscribeFrom(0, rr.getAvailabilityProjector());
+        eventStore.subscribeFrom(0, rr.getAnalyticsProjector());
+
+        // read replicas in other processes are fed by the event change stream
+        Integer replicationPort = Integer.getInteger(EventStreamPublisher.PORT_PROPERTY);
+        if (null != replicationPort) {
+            try {
+                new EventStreamPublisher(eventStore, replicationPort).start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // counters and latencies are available through JMX and optionally logged periodically
+        Metrics.registerMBean();
+        MetricsReporter.startIfConfigured();
 
         Main m = new Main(wt, rr);
         Thread mainThread = new Thread(m);
@@ -49,17 +83,15 @@ public class Main implements Runnable {
 
     @Override
     public void run() {
-        // Rooms created by hand
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 1));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 1));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 2));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 2));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 2));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 2));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 3));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 4));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 4));
-        runWrite.runCommand(new CreateRoomCommand(UUID.randomUUID(), 5)); // 10 rooms
+        // Rooms created by hand, in a single batch - only once, the event log is persistent
+        if (0 == runWrite.getEventStore().getHeadPosition()) {
+            int[] capacities = {1, 1, 2, 2, 2, 2, 3, 4, 4, 5}; // 10 rooms
+            List<CreateRoomCommand> rooms = new ArrayList<>();
+            for (int capacity : capacities) {
+                rooms.add(new CreateRoomCommand(UUID.randomUUID(), capacity));
+            }
+            runWrite.runCommand(new BatchCommand(rooms, Collections.emptyList()));
+        }
 
         try {
             this.handleCliInput();
@@ -76,6 +108,8 @@ public class Main implements Runnable {
 
         while (true) {
             while (state.equals(MenuState.MAIN_MENU)) {
+                // log messages of the last action should not end up in between the menu
+                Logger.flush();
                 System.out.println("Welcome to the CQRS with ES HotelSystem by Valentin & Dominic");
                 System.out.println(
                     "General Checkout latest 11am, Checkin earliest 2pm, no exceptions"
@@ -84,6 +118,11 @@ public class Main implements Runnable {
                 System.out.println("2) List of bookings");
                 System.out.println("3) Book a room");
                 System.out.println("4) Cancel booking");
+                System.out.println("5) Rebuild read model");
+                System.out.println("6) Compact event log");
+                System.out.println("7) Show metrics");
+                System.out.println("8) Find bookings by guest");
+                System.out.println("9) Occupancy report");
                 System.out.println("0) Quit the system");
 
                 String input = reader.readLine();
@@ -100,6 +139,21 @@ public class Main implements Runnable {
                     case "4":
                         state = MenuState.CANCEL;
                         break;
+                    case "5":
+                        state = MenuState.REBUILD;
+                        break;
+                    case "6":
+                        state = MenuState.COMPACT;
+                        break;
+                    case "7":
+                        state = MenuState.METRICS;
+                        break;
+                    case "8":
+                        state = MenuState.GUEST;
+                        break;
+                    case "9":
+                        state = MenuState.REPORT;
+                        break;
                     case "0":
                     case "quit":
                         System.exit(0);
@@ -160,6 +214,74 @@ public class Main implements Runnable {
                 }
             }
 
+            while (state.equals(MenuState.GUEST)) {
+                try {
+                    System.out.println("$ Enter name of the guest (e.g. Jo Smi)");
+                    String name = reader.readLine();
+
+                    System.out.println("------------------------");
+                    List<Booking> result = this.runRead.runQuery(new FindBookingsByGuestQuery(
+                        name,
+                        FindBookingsByGuestQuery.Match.PREFIX
+                    ));
+                    if (result.isEmpty()) {
+                        result = this.runRead.runQuery(new FindBookingsByGuestQuery(
+                            name,
+                            FindBookingsByGuestQuery.Match.FUZZY
+                        ));
+                        System.out.printf("## No exact match, found %s bookings of similar names%n",
+                            result.size());
+                    } else {
+                        System.out.printf("## Found %s bookings%n", result.size());
+                    }
+                    for (Booking b : result) {
+                        System.out.println(b);
+                        System.out.println("------------------------");
+                    }
+                } catch (Exception e) {
+                    System.err.println(
+                        "[CLI] Something went wrong - see exception. Returning to main menu"
+                    );
+                    e.printStackTrace();
+                } finally {
+                    state = MenuState.MAIN_MENU;
+                }
+            }
+
+            while (state.equals(MenuState.REPORT)) {
+                try {
+                    DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+                    System.out.println("$ Enter first night (e.g. 01-12-2021)");
+                    LocalDate firstNight = LocalDate.parse(reader.readLine(), dateFormatter);
+                    System.out.println("$ Enter last night (e.g. 31-12-2021)");
+                    LocalDate lastNight = LocalDate.parse(reader.readLine(), dateFormatter);
+
+                    System.out.println("------------------------");
+                    for (Occupancy o : this.runRead.runQuery(
+                        new GetOccupancyQuery(firstNight, lastNight)
+                    )) {
+                        System.out.println(o);
+                        System.out.println("------------------------");
+                    }
+                    System.out.println("## Cancellations per month");
+                    for (Map.Entry<YearMonth, Long> month : this.runRead.runQuery(
+                        new GetCancellationsPerMonthQuery(
+                            YearMonth.from(firstNight),
+                            YearMonth.from(lastNight)
+                        )
+                    ).entrySet()) {
+                        System.out.println(month.getKey() + ": " + month.getValue());
+                    }
+                } catch (Exception e) {
+                    System.err.println(
+                        "[CLI] Something went wrong - see exception. Returning to main menu"
+                    );
+                    e.printStackTrace();
+                } finally {
+                    state = MenuState.MAIN_MENU;
+                }
+            }
+
             while (state.equals(MenuState.BOOK)) {
                 try {
                     System.out.println(
@@ -212,6 +334,44 @@ public class Main implements Runnable {
                     state = MenuState.MAIN_MENU;
                 }
             }
+
+            while (state.equals(MenuState.REBUILD)) {
+                try {
+                    ReadModelRebuilder.Result result = this.runRead.rebuild(
+                        this.runWrite.getEventStore()
+                    );
+                    System.out.printf(
+                        "## Replayed %d events, %.0f events/s%n",
+                        result.getNextPosition(),
+                        result.getEventsPerSecond()
+                    );
+                } catch (Exception e) {
+                    System.err.println(
+                        "[CLI] Something went wrong - see exception. Returning to main menu"
+                    );
+                    e.printStackTrace();
+                } finally {
+                    state = MenuState.MAIN_MENU;
+                }
+            }
+
+            while (state.equals(MenuState.COMPACT)) {
+                LogCompactor.Result result = this.runWrite.compact();
+                if (null != result) {
+                    System.out.printf(
+                        "## Archived %d bookings (%d events), freed %d bytes%n",
+                        result.getArchivedBookings(),
+                        result.getArchivedEvents(),
+                        result.getFreedBytes()
+                    );
+                }
+                state = MenuState.MAIN_MENU;
+            }
+
+            while (state.equals(MenuState.METRICS)) {
+                System.out.print(Metrics.dump());
+                state = MenuState.MAIN_MENU;
+            }
         }
     }
 
@@ -219,7 +379,12 @@ public class Main implements Runnable {
         MAIN_MENU,
         FREE_ROOMS,
         BOOKINGS,
+        GUEST,
+        REPORT,
         CANCEL,
-        BOOK
+        BOOK,
+        REBUILD,
+        COMPACT,
+        METRICS
     }
 }
@@ -0,0 +1,246 @@
+package at.fhv.dluvgo.hotel.logging;
+
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Level-gated logger writing lines of the form {@code [WRITE] EventStore - message}. Messages
+ * below the configured level ({@code -Dhotel.log.level}, default {@code INFO}) cost a single
+ * comparison. Enabled messages are handed to a background thread through a bounded queue, so
+ * callers neither format them nor wait for the console lock; if the queue is full they are
+ * dropped and counted ({@code log.dropped}). Errors are never dropped, they are written by the
+ * caller instead. {@code -Dhotel.log.async=false} writes every message in the calling thread.
+ *
+ * <p>Messages use {@link String#format} syntax and are formatted by the background thread, so
+ * arguments must not change after they have been logged. {@code DEBUG} and {@code INFO} go to
+ * {@code System.out}, {@code WARN} and {@code ERROR} to {@code System.err}.
+ */
+public final class Logger {
+    public static final String LEVEL_PROPERTY = "hotel.log.level";
+    public static final String ASYNC_PROPERTY = "hotel.log.async";
+    public static final String QUEUE_CAPACITY_PROPERTY = "hotel.log.queueCapacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 8 * 1024;
+
+    public enum Level {
+        ERROR, WARN, INFO, DEBUG
+    }
+
+    private static final BlockingQueue<Record> QUEUE = new ArrayBlockingQueue<>(
+        Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY)
+    );
+    private static final LongAdder DROPPED = Metrics.counter("log.dropped");
+    // queued or being written by the background thread
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    private static final Object[] NO_ARGS = new Object[0];
+    private static volatile Level level = Level.valueOf(
+        System.getProperty(LEVEL_PROPERTY, Level.INFO.name())
+    );
+    private static volatile boolean isAsync = Boolean.parseBoolean(
+        System.getProperty(ASYNC_PROPERTY, "true")
+    );
+    private static volatile Thread writer;
+
+    private final String prefix;
+
+    private Logger(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @return A logger prefixing messages with {@code [<side>] <simple class name> - }
+     */
+    public static Logger get(String side, Class<?> type) {
+        return new Logger("[" + side + "] " + type.getSimpleName() + " - ");
+    }
+
+    public static Logger forWrite(Class<?> type) {
+        return get("WRITE", type);
+    }
+
+    public static Logger forRead(Class<?> type) {
+        return get("READ", type);
+    }
+
+    /* ### Configuration ### */
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level level) {
+        Logger.level = level;
+    }
+
+    public static boolean isAsync() {
+        return isAsync;
+    }
+
+    public static void setAsync(boolean isAsync) {
+        if (!isAsync) {
+            flush();
+        }
+        Logger.isAsync = isAsync;
+    }
+
+    /**
+     * Waits until all queued messages have been written, e.g. before printing to the console
+     * directly.
+     */
+    public static void flush() {
+        while (PENDING.get() > 0 && null != writer && writer.isAlive()) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /* ### Logging ### */
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(Logger.level) <= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message, NO_ARGS, null);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, format, args, null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message, NO_ARGS, null);
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, format, args, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, message, NO_ARGS, null);
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, format, args, null);
+        }
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, NO_ARGS, null);
+    }
+
+    public void error(String message, Throwable thrown) {
+        log(Level.ERROR, message, NO_ARGS, thrown);
+    }
+
+    public void error(String format, Object... args) {
+        log(Level.ERROR, format, args, null);
+    }
+
+    private void log(Level level, String format, Object[] args, Throwable thrown) {
+        Record record = new Record(level, prefix, format, args, thrown);
+        if (!isAsync) {
+            record.write();
+            return;
+        }
+
+        ensureWriter();
+        PENDING.incrementAndGet();
+        if (!QUEUE.offer(record)) {
+            PENDING.decrementAndGet();
+            if (level.equals(Level.ERROR)) {
+                record.write();
+            } else {
+                DROPPED.increment();
+            }
+        }
+    }
+
+    private static void ensureWriter() {
+        if (null != writer) {
+            return;
+        }
+        synchronized (QUEUE) {
+            if (null == writer) {
+                Thread thread = new Thread(Logger::drain, "hotel-logger");
+                thread.setDaemon(true);
+                thread.start();
+                // queued messages are written before the JVM exits
+                Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush));
+                writer = thread;
+            }
+        }
+    }
+
+    private static void drain() {
+        List<Record> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+                QUEUE.drainTo(batch);
+                for (Record record : batch) {
+                    try {
+                        record.write();
+                    } catch (RuntimeException e) {
+                        // e.g. a broken format string, the other messages are still written
+                        e.printStackTrace();
+                    }
+                }
+                PENDING.addAndGet(-batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static class Record {
+        private final Level level;
+        private final String prefix;
+        private final String format;
+        private final Object[] args;
+        private final Throwable thrown;
+
+        private Record(Level level, String prefix, String format, Object[] args, Throwable thrown) {
+            this.level = level;
+            this.prefix = prefix;
+            this.format = format;
+            this.args = args;
+            this.thrown = thrown;
+        }
+
+        private void write() {
+            String message = args.length == 0 ? format : String.format(format, args);
+            // looked up on every write, as System.out may be replaced at runtime
+            PrintStream out = level.compareTo(Level.WARN) <= 0 ? System.err : System.out;
+            out.println(prefix + message);
+            if (null != thrown) {
+                thrown.printStackTrace(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package at.fhv.dluvgo.hotel.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes the {@link Metrics} registry through JMX. Every counter is a read-only attribute of the
+ * same name, every histogram is split into the attributes {@code <name>.count}, {@code .mean},
+ * {@code .p50}, {@code .p99}, {@code .p999} and {@code .max} (in nanoseconds). The attributes
+ * are derived from the registry on every request, so metrics created later show up as well.
+ */
+class JmxMetrics implements DynamicMBean {
+    private static final String[] HISTOGRAM_ATTRIBUTES = {
+        "count", "mean", "p50", "p99", "p999", "max"
+    };
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long counter = Metrics.getCounters().get(attribute);
+        if (null != counter) {
+            return counter;
+        }
+
+        int separator = attribute.lastIndexOf('.');
+        if (separator > 0) {
+            LatencyHistogram histogram = Metrics.getHistograms()
+                .get(attribute.substring(0, separator));
+            if (null != histogram) {
+                switch (attribute.substring(separator + 1)) {
+                    case "count":
+                        return histogram.getCount();
+                    case "mean":
+                        return (long) histogram.getMean();
+                    case "p50":
+                        return histogram.getPercentile(50);
+                    case "p99":
+                        return histogram.getPercentile(99);
+                    case "p999":
+                        return histogram.getPercentile(99.9);
+                    case "max":
+                        return histogram.getMax();
+                    default:
+                        break;
+                }
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as the interface demands
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws ReflectionException {
+        throw new ReflectionException(
+            new NoSuchMethodException(actionName),
+            "Metrics have no operations"
+        );
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : Metrics.getCounters().keySet()) {
+            attributes.add(attribute(name, "Counter"));
+        }
+        for (Map.Entry<String, LatencyHistogram> histogram
+            : Metrics.getHistograms().entrySet()
+        ) {
+            for (String suffix : HISTOGRAM_ATTRIBUTES) {
+                attributes.add(attribute(
+                    histogram.getKey() + "." + suffix,
+                    "Latency histogram, " + suffix + (suffix.equals("count") ? "" : " [ns]")
+                ));
+            }
+        }
+
+        return new MBeanInfo(
+            getClass().getName(),
+            "Counters and latency histograms of the hotel system",
+            attributes.toArray(new MBeanAttributeInfo[0]),
+            null,
+            new MBeanOperationInfo[0],
+            null
+        );
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String description) {
+        return new MBeanAttributeInfo(name, Long.class.getName(), description, true, false, false);
+    }
+}
@@ -0,0 +1,83 @@
+package at.fhv.dluvgo.hotel.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of named counters and latency histograms. Components look their metrics
+ * up once (usually into a static field) and update them on the hot path without any locking.
+ *
+ * <p>All metrics can be read through JMX (see {@link JmxMetrics}), logged periodically by a
+ * {@link MetricsReporter} or dumped with {@link #dump()}.
+ */
+public final class Metrics {
+    public static final String OBJECT_NAME = "at.fhv.dluvgo.hotel:type=Metrics";
+
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS =
+        new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * @return The current values of all counters, sorted by name
+     */
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        return counters;
+    }
+
+    /**
+     * @return All histograms, sorted by name
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    /**
+     * @return All metrics in a human readable form, one per line
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder();
+        getCounters().forEach((name, value) ->
+            dump.append(name).append(' ').append(value).append(System.lineSeparator())
+        );
+        getHistograms().forEach((name, histogram) ->
+            dump.append(name).append(' ').append(histogram).append(System.lineSeparator())
+        );
+        return dump.toString();
+    }
+
+    /**
+     * Makes all metrics available through the platform MBean server. Registering more than once
+     * has no effect.
+     */
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new JmxMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered before
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBean", e);
+        }
+    }
+}
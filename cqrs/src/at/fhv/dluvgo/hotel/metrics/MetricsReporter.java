@@ -0,0 +1,62 @@
+package at.fhv.dluvgo.hotel.metrics;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import java.io.Closeable;
+
+/**
+ * Logs all {@link Metrics} in a fixed interval ({@code -Dhotel.metrics.dumpSeconds=N}, disabled
+ * by default).
+ */
+public class MetricsReporter implements Runnable, Closeable {
+    public static final String INTERVAL_PROPERTY = "hotel.metrics.dumpSeconds";
+
+    private static final Logger LOG = Logger.get("METRICS", MetricsReporter.class);
+
+    private final long intervalMillis;
+    private final Thread thread;
+    private volatile boolean isActive = true;
+
+    public MetricsReporter(long intervalSeconds) {
+        if (intervalSeconds < 1) {
+            throw new IllegalArgumentException("Interval must be at least one second");
+        }
+
+        this.intervalMillis = intervalSeconds * 1000;
+        this.thread = new Thread(this, "metrics-reporter");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts a reporter if an interval has been configured.
+     *
+     * @return The started reporter or {@code null}
+     */
+    public static MetricsReporter startIfConfigured() {
+        long interval = Long.getLong(INTERVAL_PROPERTY, 0);
+        if (interval < 1) {
+            return null;
+        }
+
+        MetricsReporter reporter = new MetricsReporter(interval);
+        reporter.thread.start();
+        return reporter;
+    }
+
+    @Override
+    public void run() {
+        while (isActive) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            LOG.info("%n%s", Metrics.dump());
+        }
+    }
+
+    @Override
+    public void close() {
+        isActive = false;
+        thread.interrupt();
+    }
+}
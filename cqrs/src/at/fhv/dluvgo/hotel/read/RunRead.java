@@ -1,33 +1,173 @@
 package at.fhv.dluvgo.hotel.read;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.cqrs.query.BookingPage;
+import at.fhv.dluvgo.hotel.read.cqrs.query.FindBookingsByGuestQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsPageQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetCancellationsPerMonthQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetOccupancyQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.QueryHandler;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryResultCache;
+import at.fhv.dluvgo.hotel.read.cqrs.query.ReportQueryHandler;
 import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
 import at.fhv.dluvgo.hotel.read.domain.Booking;
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import at.fhv.dluvgo.hotel.read.projection.AnalyticsProjector;
+import at.fhv.dluvgo.hotel.read.projection.AvailabilityProjector;
 import at.fhv.dluvgo.hotel.read.projection.BookingProjector;
+import at.fhv.dluvgo.hotel.read.projection.Observer;
 import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
+import at.fhv.dluvgo.hotel.read.repository.AnalyticsRepository;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.read.rebuild.ReadModelRebuilder;
 import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.Subscription;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
 
 public class RunRead implements Runnable {
-    private final ReadRepository readRepository;
-    private final BookingProjector bookingProjector;
-    private final RoomProjector roomProjector;
+    private static final Logger LOG = Logger.forRead(RunRead.class);
+    private static final long HORIZON_CHECK_INTERVAL_MILLIS = 60 * 1000;
+
+    private final Horizon horizon;
+    private final QueryResultCache<QueryHandler.QueryKey, List<Booking>> bookingsCache;
+    private final QueryResultCache<QueryHandler.QueryKey, List<BookableRoom>> freeRoomsCache;
     private final QueryHandler queryHandler;
-    private boolean isActive;
+    private final ReportQueryHandler reportQueryHandler;
+    private volatile ReadRepository readRepository;
+    private volatile BookingProjector bookingProjector;
+    private volatile RoomProjector roomProjector;
+    private volatile AvailabilityRepository availabilityRepository;
+    private volatile AvailabilityProjector availabilityProjector;
+    private volatile AnalyticsProjector analyticsProjector;
+    private volatile boolean isActive;
 
     public RunRead() {
+        this(new Horizon());
+    }
+
+    public RunRead(Horizon horizon) {
+        this.horizon = horizon;
+        this.bookingsCache = new QueryResultCache<>();
+        this.freeRoomsCache = new QueryResultCache<>();
         this.readRepository = new ReadRepository();
-        this.bookingProjector = new BookingProjector(readRepository);
-        this.roomProjector = new RoomProjector(readRepository);
-        this.queryHandler = new QueryHandler(readRepository);
+        this.bookingProjector = new BookingProjector(readRepository, bookingsCache);
+        this.roomProjector = new RoomProjector(readRepository, horizon);
+        this.availabilityRepository = new AvailabilityRepository(horizon);
+        this.availabilityProjector = new AvailabilityProjector(
+            availabilityRepository,
+            freeRoomsCache
+        );
+        this.queryHandler = new QueryHandler(
+            readRepository,
+            availabilityRepository,
+            bookingsCache,
+            freeRoomsCache
+        );
+        AnalyticsRepository analyticsRepository = new AnalyticsRepository();
+        this.analyticsProjector = new AnalyticsProjector(analyticsRepository);
+        this.reportQueryHandler = new ReportQueryHandler(analyticsRepository);
         this.isActive = true;
     }
 
+    /**
+     * Rolls the horizon of the read models forward, even while no events arrive.
+     */
     @Override
     public void run() {
         while (isActive) {
+            roomProjector.advanceHorizon();
+            availabilityRepository.advanceIfDue();
+            try {
+                Thread.sleep(HORIZON_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void shutdown() {
+        isActive = false;
+    }
+
+    /**
+     * Rebuilds the read models from all events of the event store in parallel (see
+     * {@link ReadModelRebuilder}) while the current ones keep answering queries. Once the new
+     * models caught up with the events appended during the rebuild, they are swapped in and the
+     * projectors of the old ones are unsubscribed.
+     */
+    public synchronized ReadModelRebuilder.Result rebuild(EventStore eventStore)
+        throws InterruptedException {
+        LOG.info("Rebuilding the read model");
+        ReadModelRebuilder.Result result = new ReadModelRebuilder(horizon).rebuild(eventStore);
+        ReadRepository newReadRepository = result.getReadRepository();
+        BookingProjector newBookingProjector = new BookingProjector(
+            newReadRepository,
+            bookingsCache
+        );
+        RoomProjector newRoomProjector = new RoomProjector(
+            newReadRepository,
+            horizon,
+            result.getHorizonEnd()
+        );
+        AvailabilityProjector newAvailabilityProjector = new AvailabilityProjector(
+            result.getAvailabilityRepository(),
+            freeRoomsCache
+        );
+        AnalyticsProjector newAnalyticsProjector = new AnalyticsProjector(
+            result.getAnalyticsRepository()
+        );
+        List<Observer> newProjectors = List.of(
+            newBookingProjector,
+            newRoomProjector,
+            newAvailabilityProjector,
+            newAnalyticsProjector
+        );
+        for (Observer projector : newProjectors) {
+            eventStore.subscribeFrom(result.getNextPosition(), projector);
+        }
+
+        long head = eventStore.getHeadPosition();
+        for (Observer projector : newProjectors) {
+            awaitPosition(eventStore, projector, head);
+        }
+
+        queryHandler.swapReadModels(newReadRepository, result.getAvailabilityRepository());
+        reportQueryHandler.swapAnalyticsRepository(result.getAnalyticsRepository());
+        eventStore.unsubscribe(bookingProjector);
+        eventStore.unsubscribe(roomProjector);
+        eventStore.unsubscribe(availabilityProjector);
+        eventStore.unsubscribe(analyticsProjector);
+        readRepository = newReadRepository;
+        bookingProjector = newBookingProjector;
+        roomProjector = newRoomProjector;
+        availabilityRepository = result.getAvailabilityRepository();
+        availabilityProjector = newAvailabilityProjector;
+        analyticsProjector = newAnalyticsProjector;
+        LOG.info(
+            "Rebuilt the read model from %d events in %.0f ms",
+            result.getNextPosition(),
+            result.getNanos() / 1e6
+        );
+
+        return result;
+    }
+
+    private static void awaitPosition(EventStore eventStore, Observer observer, long position)
+        throws InterruptedException {
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            if (subscription.getObserver() == observer) {
+                while (subscription.getNextPosition() < position) {
+                    Thread.sleep(1);
+                }
+            }
         }
     }
 
@@ -39,11 +179,47 @@ public class RunRead implements Runnable {
         return roomProjector;
     }
 
+    public AvailabilityProjector getAvailabilityProjector() {
+        return availabilityProjector;
+    }
+
+    public AnalyticsProjector getAnalyticsProjector() {
+        return analyticsProjector;
+    }
+
+    public QueryHandler getQueryHandler() {
+        return queryHandler;
+    }
+
+    public ReportQueryHandler getReportQueryHandler() {
+        return reportQueryHandler;
+    }
+
     public List<Booking> runQuery(GetBookingsQuery query) {
         return queryHandler.handle(query);
     }
 
+    public BookingPage runQuery(GetBookingsPageQuery query) {
+        return queryHandler.handle(query);
+    }
+
+    public Stream<Booking> streamQuery(GetBookingsQuery query) {
+        return queryHandler.stream(query);
+    }
+
+    public List<Booking> runQuery(FindBookingsByGuestQuery query) {
+        return queryHandler.handle(query);
+    }
+
     public List<BookableRoom> runQuery(GetFreeRoomsQuery query) {
         return queryHandler.handle(query);
     }
+
+    public List<Occupancy> runQuery(GetOccupancyQuery query) {
+        return reportQueryHandler.handle(query);
+    }
+
+    public NavigableMap<YearMonth, Long> runQuery(GetCancellationsPerMonthQuery query) {
+        return reportQueryHandler.handle(query);
+    }
 }
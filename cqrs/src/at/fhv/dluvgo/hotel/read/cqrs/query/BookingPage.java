@@ -0,0 +1,65 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A page of bookings, ordered by start. The continuation token points behind the last booking of
+ * the page rather than at an offset, so bookings added or removed in the meantime neither shift
+ * the following pages nor cause duplicates. Tokens are opaque to the caller.
+ */
+public class BookingPage {
+    private static final String SEPARATOR = "/";
+
+    private final List<Booking> bookings;
+    private final String continuationToken;
+
+    BookingPage(List<Booking> bookings, boolean hasMore) {
+        this.bookings = bookings;
+        this.continuationToken = hasMore && !bookings.isEmpty()
+            ? toToken(bookings.get(bookings.size() - 1))
+            : null;
+    }
+
+    public List<Booking> getBookings() {
+        return bookings;
+    }
+
+    /**
+     * @return The token to request the next page with or {@code null} if this is the last page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return null != continuationToken;
+    }
+
+    private static String toToken(Booking last) {
+        return last.getStart() + SEPARATOR + last.getId();
+    }
+
+    static LocalDateTime startOf(String token) {
+        try {
+            return LocalDateTime.parse(token.substring(0, separatorIndex(token)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
+
+    static UUID idOf(String token) {
+        return UUID.fromString(token.substring(separatorIndex(token) + 1));
+    }
+
+    private static int separatorIndex(String token) {
+        int index = token.lastIndexOf(SEPARATOR);
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+        return index;
+    }
+}
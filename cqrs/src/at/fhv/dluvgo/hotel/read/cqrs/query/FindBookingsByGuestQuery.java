@@ -0,0 +1,45 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+/**
+ * Asks for up to {@code limit} active bookings of guests with a given name. A {@link Match#PREFIX}
+ * search finds names with a word starting with each word of the search, a {@link Match#FUZZY}
+ * search also finds names with typos.
+ */
+public class FindBookingsByGuestQuery {
+    public static final int DEFAULT_LIMIT = 50;
+
+    public enum Match {
+        PREFIX,
+        FUZZY
+    }
+
+    private final String name;
+    private final Match match;
+    private final int limit;
+
+    public FindBookingsByGuestQuery(String name, Match match) {
+        this(name, match, DEFAULT_LIMIT);
+    }
+
+    public FindBookingsByGuestQuery(String name, Match match, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+
+        this.name = name;
+        this.match = match;
+        this.limit = limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,9 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import java.util.List;
+
+public interface FindBookingsByGuestQueryable {
+
+    List<Booking> handle(FindBookingsByGuestQuery query);
+}
@@ -0,0 +1,51 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import java.time.LocalDateTime;
+
+/**
+ * Like {@link GetBookingsQuery}, but only asks for up to {@code limit} bookings. The first page
+ * is requested without a continuation token, every following one with the token of the
+ * {@link BookingPage} before.
+ */
+public class GetBookingsPageQuery {
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final int limit;
+    private final String continuationToken;
+
+    public GetBookingsPageQuery(LocalDateTime startTime, LocalDateTime endTime, int limit) {
+        this(startTime, endTime, limit, null);
+    }
+
+    public GetBookingsPageQuery(
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        int limit,
+        String continuationToken
+    ) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be at least 1");
+        }
+
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.limit = limit;
+        this.continuationToken = continuationToken;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+}
@@ -0,0 +1,5 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+public interface GetBookingsPageQueryable {
+    BookingPage handle(GetBookingsPageQuery query);
+}
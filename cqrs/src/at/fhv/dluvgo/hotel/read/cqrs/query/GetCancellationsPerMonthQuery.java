@@ -0,0 +1,29 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import java.time.YearMonth;
+
+/**
+ * Asks for the number of cancellations made in each month from {@code from} to {@code to}, both
+ * inclusive.
+ */
+public class GetCancellationsPerMonthQuery {
+    private final YearMonth from;
+    private final YearMonth to;
+
+    public GetCancellationsPerMonthQuery(YearMonth from, YearMonth to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Last month must not be before the first month");
+        }
+
+        this.from = from;
+        this.to = to;
+    }
+
+    public YearMonth getFrom() {
+        return from;
+    }
+
+    public YearMonth getTo() {
+        return to;
+    }
+}
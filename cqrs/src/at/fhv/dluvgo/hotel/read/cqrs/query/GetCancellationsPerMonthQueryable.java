@@ -0,0 +1,9 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import java.time.YearMonth;
+import java.util.NavigableMap;
+
+public interface GetCancellationsPerMonthQueryable {
+
+    NavigableMap<YearMonth, Long> handle(GetCancellationsPerMonthQuery query);
+}
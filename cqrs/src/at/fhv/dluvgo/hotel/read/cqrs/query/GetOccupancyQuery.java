@@ -0,0 +1,29 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import java.time.LocalDate;
+
+/**
+ * Asks for the occupancy of all rooms and of the rooms of each capacity over the nights from
+ * {@code firstNight} to {@code lastNight}, both inclusive.
+ */
+public class GetOccupancyQuery {
+    private final LocalDate firstNight;
+    private final LocalDate lastNight;
+
+    public GetOccupancyQuery(LocalDate firstNight, LocalDate lastNight) {
+        if (lastNight.isBefore(firstNight)) {
+            throw new IllegalArgumentException("Last night must not be before the first night");
+        }
+
+        this.firstNight = firstNight;
+        this.lastNight = lastNight;
+    }
+
+    public LocalDate getFirstNight() {
+        return firstNight;
+    }
+
+    public LocalDate getLastNight() {
+        return lastNight;
+    }
+}
@@ -0,0 +1,9 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import java.util.List;
+
+public interface GetOccupancyQueryable {
+
+    List<Occupancy> handle(GetOccupancyQuery query);
+}
@@ -1,34 +1,187 @@
 package at.fhv.dluvgo.hotel.read.cqrs.query;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
 import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
 import at.fhv.dluvgo.hotel.read.domain.Booking;
 import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
 import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class QueryHandler implements GetBookingsQueryable, GetFreeRoomsQueryable {
-    private final ReadRepository readRepository;
+/**
+ * Answers queries from the read models. Results are kept in a {@link QueryResultCache} per query
+ * type, keyed by the normalized query parameters - the projectors invalidate them once an event
+ * changes the underlying read model. Cached results are shared between callers and therefore
+ * unmodifiable. Searches by guest name are answered from the name index of the read model and
+ * not cached.
+ */
+public class QueryHandler implements GetBookingsQueryable, GetBookingsPageQueryable,
+    GetFreeRoomsQueryable, FindBookingsByGuestQueryable {
+    private static final Logger LOG = Logger.forRead(QueryHandler.class);
+    private static final LatencyHistogram BOOKINGS_LATENCY = Metrics.histogram("query.bookings");
+    private static final LatencyHistogram BOOKINGS_PAGE_LATENCY =
+        Metrics.histogram("query.bookingsPage");
+    private static final LatencyHistogram FREE_ROOMS_LATENCY = Metrics.histogram("query.freeRooms");
+    private static final LatencyHistogram BOOKINGS_BY_GUEST_LATENCY =
+        Metrics.histogram("query.bookingsByGuest");
 
-    public QueryHandler(ReadRepository readRepository) {
+    private volatile ReadRepository readRepository;
+    private volatile AvailabilityRepository availabilityRepository;
+    private final QueryResultCache<QueryKey, List<Booking>> bookingsCache;
+    private final QueryResultCache<QueryKey, List<BookableRoom>> freeRoomsCache;
+
+    public QueryHandler(
+        ReadRepository readRepository,
+        AvailabilityRepository availabilityRepository
+    ) {
+        this(
+            readRepository,
+            availabilityRepository,
+            new QueryResultCache<>(0),
+            new QueryResultCache<>(0)
+        );
+    }
+
+    public QueryHandler(
+        ReadRepository readRepository,
+        AvailabilityRepository availabilityRepository,
+        QueryResultCache<QueryKey, List<Booking>> bookingsCache,
+        QueryResultCache<QueryKey, List<BookableRoom>> freeRoomsCache
+    ) {
         this.readRepository = readRepository;
+        this.availabilityRepository = availabilityRepository;
+        this.bookingsCache = bookingsCache;
+        this.freeRoomsCache = freeRoomsCache;
     }
 
     @Override
     public List<Booking> handle(GetBookingsQuery query) {
-        System.out.println("[READ] QueryHandler - GetBookingsQuery query called");
-        return this.readRepository.getBookings(
+        long start = System.nanoTime();
+        List<Booking> bookings = this.getBookings(query);
+        BOOKINGS_LATENCY.record(System.nanoTime() - start);
+        return bookings;
+    }
+
+    @Override
+    public BookingPage handle(GetBookingsPageQuery query) {
+        long start = System.nanoTime();
+        BookingPage page = this.getBookingPage(query);
+        BOOKINGS_PAGE_LATENCY.record(System.nanoTime() - start);
+        return page;
+    }
+
+    @Override
+    public List<BookableRoom> handle(GetFreeRoomsQuery query) {
+        long start = System.nanoTime();
+        List<BookableRoom> freeRooms = this.getFreeRooms(query);
+        FREE_ROOMS_LATENCY.record(System.nanoTime() - start);
+        return freeRooms;
+    }
+
+    @Override
+    public List<Booking> handle(FindBookingsByGuestQuery query) {
+        long start = System.nanoTime();
+        List<Booking> bookings = this.findBookingsByGuest(query);
+        BOOKINGS_BY_GUEST_LATENCY.record(System.nanoTime() - start);
+        return bookings;
+    }
+
+    private List<Booking> getBookings(GetBookingsQuery query) {
+        LOG.debug("GetBookingsQuery query called");
+        QueryKey key = new QueryKey(0, null, query.getStartTime(), query.getEndTime());
+        List<Booking> bookings = this.bookingsCache.get(key);
+        if (null != bookings) {
+            return bookings;
+        }
+
+        long epoch = this.bookingsCache.getEpoch();
+        bookings = Collections.unmodifiableList(this.readRepository.getBookings(
             query.getStartTime(),
             query.getEndTime()
+        ));
+        this.bookingsCache.put(
+            key,
+            bookings,
+            0,
+            query.getStartTime().toLocalDate(),
+            query.getEndTime().toLocalDate(),
+            epoch
         );
+
+        return bookings;
     }
 
-    @Override
-    public List<BookableRoom> handle(GetFreeRoomsQuery query) {
-        System.out.println("[READ] QueryHandler - GetFreeRoomsQuery query called");
+    private BookingPage getBookingPage(GetBookingsPageQuery query) {
+        LOG.debug("GetBookingsPageQuery query called");
+        Stream<Booking> bookings;
+        if (null == query.getContinuationToken()) {
+            bookings = this.readRepository.streamBookings(
+                query.getStartTime(),
+                query.getEndTime()
+            );
+        } else {
+            bookings = this.readRepository.streamBookingsAfter(
+                query.getStartTime(),
+                query.getEndTime(),
+                BookingPage.startOf(query.getContinuationToken()),
+                BookingPage.idOf(query.getContinuationToken())
+            );
+        }
+
+        // one booking more than asked for tells whether there is another page
+        List<Booking> page = bookings.limit(query.getLimit() + 1L).collect(Collectors.toList());
+        boolean hasMore = page.size() > query.getLimit();
+        if (hasMore) {
+            page.remove(page.size() - 1);
+        }
+
+        return new BookingPage(Collections.unmodifiableList(page), hasMore);
+    }
+
+    private List<Booking> findBookingsByGuest(FindBookingsByGuestQuery query) {
+        LOG.debug("FindBookingsByGuestQuery query called");
+        List<Booking> bookings;
+        switch (query.getMatch()) {
+            case FUZZY:
+                bookings = this.readRepository.findBookingsBySimilarGuest(
+                    query.getName(),
+                    query.getLimit()
+                );
+                break;
+            case PREFIX:
+            default:
+                bookings = this.readRepository.findBookingsByGuest(
+                    query.getName(),
+                    query.getLimit()
+                );
+                break;
+        }
+
+        return Collections.unmodifiableList(bookings);
+    }
+
+    /**
+     * Streams the bookings of a {@link GetBookingsQuery} without copying them - for reports over
+     * long periods that only have to look at every booking once. Not cached.
+     */
+    public Stream<Booking> stream(GetBookingsQuery query) {
+        LOG.debug("GetBookingsQuery stream called");
+        return this.readRepository.streamBookings(query.getStartTime(), query.getEndTime());
+    }
+
+    private List<BookableRoom> getFreeRooms(GetFreeRoomsQuery query) {
+        LOG.debug("GetFreeRoomsQuery query called");
         LocalDateTime start = query.getStartTime();
         if (query.getStartTime().getHour() < (RoomProjector.CHECKIN_HOUR)) {
-            System.out.println("[READ] QueryHandler - Start time of query is before checkin "
+            LOG.info("Start time of query is before checkin "
                 + "hour (11am). Query results include another additional night before " +
                 "your entered starting date. Thanks for your understanding :-)");
             start = query.getStartTime()
@@ -40,7 +193,7 @@ public class QueryHandler implements GetBookingsQueryable, GetFreeRoomsQueryable
 
         LocalDateTime end = query.getEndTime();
         if (query.getEndTime().getHour() > (RoomProjector.CHECKOUT_HOUR)) {
-            System.out.println("[READ] QueryHandler - End time of query is after checkout " +
+            LOG.info("End time of query is after checkout " +
                 "hour (2pm). Query results include another additional night after " +
                 "your entered ending date. Thanks for your understanding :-)");
             end = query.getEndTime()
@@ -50,10 +203,103 @@ public class QueryHandler implements GetBookingsQueryable, GetFreeRoomsQueryable
                 .withSecond(0);
         }
 
-        return this.readRepository.getBookableRooms(
+        // only the nights matter, and free periods are cut off at the start of the horizon
+        AvailabilityRepository availability = this.availabilityRepository;
+        QueryKey key = new QueryKey(
+            query.getRequiredRoomCapacity(),
+            availability.getWindowStart(),
+            start.toLocalDate().atTime(RoomProjector.CHECKIN_HOUR, 0),
+            end.toLocalDate().atTime(RoomProjector.CHECKOUT_HOUR, 0)
+        );
+        List<BookableRoom> freeRooms = this.freeRoomsCache.get(key);
+        if (null != freeRooms) {
+            return freeRooms;
+        }
+
+        long epoch = this.freeRoomsCache.getEpoch();
+        freeRooms = Collections.unmodifiableList(availability.getFreeRooms(
             query.getRequiredRoomCapacity(),
             start,
             end
-        );
+        ));
+
+        // the result depends on all days of the returned free periods
+        LocalDate from = start.toLocalDate();
+        LocalDate to = end.toLocalDate();
+        for (BookableRoom room : freeRooms) {
+            if (room.getStart().toLocalDate().isBefore(from)) {
+                from = room.getStart().toLocalDate();
+            }
+            if (room.getEnd().toLocalDate().isAfter(to)) {
+                to = room.getEnd().toLocalDate();
+            }
+        }
+        this.freeRoomsCache.put(key, freeRooms, query.getRequiredRoomCapacity(), from, to, epoch);
+
+        return freeRooms;
+    }
+
+    /**
+     * Answers all following queries from the given read models, e.g. rebuilt ones. Cached
+     * results of the previous models are dropped.
+     */
+    public void swapReadModels(
+        ReadRepository readRepository,
+        AvailabilityRepository availabilityRepository
+    ) {
+        this.readRepository = readRepository;
+        this.availabilityRepository = availabilityRepository;
+        this.bookingsCache.invalidateAll();
+        this.freeRoomsCache.invalidateAll();
+    }
+
+    public QueryResultCache<QueryKey, List<Booking>> getBookingsCache() {
+        return bookingsCache;
+    }
+
+    public QueryResultCache<QueryKey, List<BookableRoom>> getFreeRoomsCache() {
+        return freeRoomsCache;
+    }
+
+    /**
+     * Normalized parameters of a query.
+     */
+    public static final class QueryKey {
+        private final int capacity;
+        private final LocalDate horizonStart;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        private QueryKey(
+            int capacity,
+            LocalDate horizonStart,
+            LocalDateTime start,
+            LocalDateTime end
+        ) {
+            this.capacity = capacity;
+            this.horizonStart = horizonStart;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            return capacity == other.capacity
+                && Objects.equals(horizonStart, other.horizonStart)
+                && start.equals(other.start)
+                && end.equals(other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(capacity, horizonStart, start, end);
+        }
     }
 }
@@ -0,0 +1,286 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of query results, evicting the least recently used result once it is full.
+ *
+ * <p>Every result is stored together with the minimum room capacity of its query and the days
+ * its result depends on. Projectors invalidate the results affected by an event via
+ * {@link #invalidate(int, LocalDate, LocalDate)} after they updated the read model. To not cache
+ * a result computed from a read model that changed in the meantime, queries read the
+ * {@link #getEpoch() epoch} before computing a result and hand it to {@link #put}: the result is
+ * dropped if an overlapping invalidation happened since - or if it can no longer be told, as
+ * only the last {@value #INVALIDATION_HISTORY} invalidations are remembered.
+ *
+ * <p>Results are indexed by the {@value #BUCKET_DAYS}-day buckets their days fall into, so an
+ * invalidation only checks the results sharing a bucket with the days that changed instead of
+ * all cached ones. Results depending on more than {@value #MAX_BUCKETS} buckets are kept apart
+ * and always checked.
+ *
+ * <p>All methods are thread-safe. A maximum size of 0 disables the cache.
+ */
+public class QueryResultCache<K, V> {
+    public static final String SIZE_PROPERTY = "hotel.querycache.size";
+    public static final int DEFAULT_SIZE = 1024;
+
+    private static final int INVALIDATION_HISTORY = 64;
+    private static final int BUCKET_DAYS = 8;
+    private static final int MAX_BUCKETS = 32;
+
+    private final int maxSize;
+    private final LinkedHashMap<K, CachedResult<V>> entries;
+    // the entries are looked up here, as a lookup in the access-ordered map counts as a use
+    private final Map<Long, Map<K, CachedResult<V>>> entriesByBucket = new HashMap<>();
+    private final Map<K, CachedResult<V>> wideEntries = new HashMap<>();
+    private final Invalidation[] invalidations = new Invalidation[INVALIDATION_HISTORY];
+    private long epoch;
+
+    /* ### Metrics ### */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidatedEntries = new LongAdder();
+
+    public QueryResultCache() {
+        this(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE));
+    }
+
+    public QueryResultCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedResult<V>> eldest) {
+                if (size() > QueryResultCache.this.maxSize) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The cached result or {@code null} if there is none
+     */
+    public V get(K key) {
+        CachedResult<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (null == entry) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public synchronized long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Caches a result, unless it might be outdated already.
+     *
+     * @param capacity Minimum room capacity of the query, 0 if the result does not depend on it
+     * @param from     First day the result depends on
+     * @param to       Last day the result depends on
+     * @param epoch    The {@link #getEpoch() epoch} read before the result was computed
+     */
+    public synchronized void put(
+        K key,
+        V value,
+        int capacity,
+        LocalDate from,
+        LocalDate to,
+        long epoch
+    ) {
+        if (0 == maxSize || this.epoch - epoch > INVALIDATION_HISTORY) {
+            return;
+        }
+        for (long e = epoch; e < this.epoch; e++) {
+            if (invalidations[(int) (e % INVALIDATION_HISTORY)].affects(capacity, from, to)) {
+                return;
+            }
+        }
+
+        CachedResult<V> entry = new CachedResult<>(value, capacity, from, to);
+        CachedResult<V> replaced = entries.put(key, entry);
+        if (null != replaced) {
+            unindex(key, replaced);
+        }
+        index(key, entry);
+    }
+
+    /**
+     * Drops all results of queries for rooms of at most the given capacity that depend on at
+     * least one of the given days.
+     *
+     * @param capacity Capacity of the room that changed
+     * @param from     First day that changed
+     * @param to       Last day that changed
+     */
+    public synchronized void invalidate(int capacity, LocalDate from, LocalDate to) {
+        Invalidation invalidation = new Invalidation(capacity, from, to);
+        invalidations[(int) (epoch % INVALIDATION_HISTORY)] = invalidation;
+        epoch++;
+
+        if (bucketCount(from, to) > entriesByBucket.size()) {
+            // fewer buckets are in use than the days span, e.g. for invalidateAll
+            for (Map<K, CachedResult<V>> bucket : new ArrayList<>(entriesByBucket.values())) {
+                this.invalidate(invalidation, bucket);
+            }
+        } else {
+            for (long index = bucket(from); index <= bucket(to); index++) {
+                Map<K, CachedResult<V>> bucket = entriesByBucket.get(index);
+                if (null != bucket) {
+                    this.invalidate(invalidation, bucket);
+                }
+            }
+        }
+        this.invalidate(invalidation, wideEntries);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidate(Integer.MAX_VALUE, LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /* ### Index ### */
+
+    private void invalidate(Invalidation invalidation, Map<K, CachedResult<V>> bucket) {
+        // collected first, as removing an entry changes the buckets
+        List<K> affected = new ArrayList<>();
+        for (Map.Entry<K, CachedResult<V>> indexed : bucket.entrySet()) {
+            CachedResult<V> entry = indexed.getValue();
+            if (invalidation.affects(entry.capacity, entry.from, entry.to)) {
+                affected.add(indexed.getKey());
+            }
+        }
+        for (K key : affected) {
+            CachedResult<V> entry = entries.remove(key);
+            if (null != entry) {
+                unindex(key, entry);
+                invalidatedEntries.increment();
+            }
+        }
+    }
+
+    private void index(K key, CachedResult<V> entry) {
+        if (isWide(entry)) {
+            wideEntries.put(key, entry);
+            return;
+        }
+        for (long index = bucket(entry.from); index <= bucket(entry.to); index++) {
+            entriesByBucket.computeIfAbsent(index, i -> new HashMap<>()).put(key, entry);
+        }
+    }
+
+    private void unindex(K key, CachedResult<V> entry) {
+        if (isWide(entry)) {
+            wideEntries.remove(key, entry);
+            return;
+        }
+        for (long index = bucket(entry.from); index <= bucket(entry.to); index++) {
+            Map<K, CachedResult<V>> bucket = entriesByBucket.get(index);
+            if (null != bucket && bucket.remove(key, entry) && bucket.isEmpty()) {
+                entriesByBucket.remove(index);
+            }
+        }
+    }
+
+    private static boolean isWide(CachedResult<?> entry) {
+        long buckets = bucketCount(entry.from, entry.to);
+        // an empty range of days is not in any bucket, but may still overlap an invalidation
+        return buckets == 0 || buckets > MAX_BUCKETS;
+    }
+
+    private static long bucket(LocalDate day) {
+        return Math.floorDiv(day.toEpochDay(), BUCKET_DAYS);
+    }
+
+    private static long bucketCount(LocalDate from, LocalDate to) {
+        return Math.max(0, bucket(to) - bucket(from) + 1);
+    }
+
+    /* ### Metrics ### */
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidatedEntries.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "size=%d/%d hits=%d misses=%d evictions=%d invalidations=%d",
+            getSize(),
+            maxSize,
+            getHits(),
+            getMisses(),
+            getEvictions(),
+            getInvalidations()
+        );
+    }
+
+    private static class CachedResult<V> {
+        private final V value;
+        private final int capacity;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private CachedResult(V value, int capacity, LocalDate from, LocalDate to) {
+            this.value = value;
+            this.capacity = capacity;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Invalidation {
+        private final int capacity;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private Invalidation(int capacity, LocalDate from, LocalDate to) {
+            this.capacity = capacity;
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean affects(int queryCapacity, LocalDate queryFrom, LocalDate queryTo) {
+            return queryCapacity <= capacity && !from.isAfter(queryTo) && !queryFrom.isAfter(to);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package at.fhv.dluvgo.hotel.read.cqrs.query;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import at.fhv.dluvgo.hotel.read.repository.AnalyticsRepository;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * Answers management reports from the pre-aggregated {@link AnalyticsRepository}, so reports
+ * never touch the read models used for bookings. Not cached - a report only sums up counters.
+ */
+public class ReportQueryHandler
+    implements GetOccupancyQueryable, GetCancellationsPerMonthQueryable {
+    private static final Logger LOG = Logger.forRead(ReportQueryHandler.class);
+    private static final LatencyHistogram OCCUPANCY_LATENCY = Metrics.histogram("query.occupancy");
+    private static final LatencyHistogram CANCELLATIONS_LATENCY =
+        Metrics.histogram("query.cancellationsPerMonth");
+
+    private volatile AnalyticsRepository analyticsRepository;
+
+    public ReportQueryHandler(AnalyticsRepository analyticsRepository) {
+        this.analyticsRepository = analyticsRepository;
+    }
+
+    /**
+     * Answers all following reports from the given figures, e.g. rebuilt ones.
+     */
+    public void swapAnalyticsRepository(AnalyticsRepository analyticsRepository) {
+        this.analyticsRepository = analyticsRepository;
+    }
+
+    @Override
+    public List<Occupancy> handle(GetOccupancyQuery query) {
+        LOG.debug("GetOccupancyQuery query called");
+        long start = System.nanoTime();
+        List<Occupancy> occupancy = Collections.unmodifiableList(
+            this.analyticsRepository.getOccupancy(query.getFirstNight(), query.getLastNight())
+        );
+        OCCUPANCY_LATENCY.record(System.nanoTime() - start);
+        return occupancy;
+    }
+
+    @Override
+    public NavigableMap<YearMonth, Long> handle(GetCancellationsPerMonthQuery query) {
+        LOG.debug("GetCancellationsPerMonthQuery query called");
+        long start = System.nanoTime();
+        NavigableMap<YearMonth, Long> cancellations = Collections.unmodifiableNavigableMap(
+            this.analyticsRepository.getCancellationsPerMonth(query.getFrom(), query.getTo())
+        );
+        CANCELLATIONS_LATENCY.record(System.nanoTime() - start);
+        return cancellations;
+    }
+}
@@ -0,0 +1,105 @@
+package at.fhv.dluvgo.hotel.read.domain;
+
+import java.time.LocalDate;
+
+/**
+ * Occupancy of the rooms of one capacity - or of all rooms - over a range of nights, with the
+ * arrivals and cancellations of the days of the range.
+ */
+public class Occupancy {
+    /**
+     * Capacity of the occupancy summing up the rooms of all capacities.
+     */
+    public static final int ALL_CAPACITIES = 0;
+
+    private final int capacity;
+    private final int rooms;
+    private final LocalDate firstNight;
+    private final int[] occupiedRooms;
+    private final long roomNights;
+    private final long guestNights;
+    private final long arrivals;
+    private final long cancellations;
+
+    public Occupancy(
+        int capacity,
+        int rooms,
+        LocalDate firstNight,
+        int[] occupiedRooms,
+        long roomNights,
+        long guestNights,
+        long arrivals,
+        long cancellations
+    ) {
+        this.capacity = capacity;
+        this.rooms = rooms;
+        this.firstNight = firstNight;
+        this.occupiedRooms = occupiedRooms;
+        this.roomNights = roomNights;
+        this.guestNights = guestNights;
+        this.arrivals = arrivals;
+        this.cancellations = cancellations;
+    }
+
+    /**
+     * @return The share of the available room nights that is booked, between 0 and 1
+     */
+    public double getOccupancyRate() {
+        long available = (long) rooms * occupiedRooms.length;
+        return available == 0 ? 0 : roomNights / (double) available;
+    }
+
+    /**
+     * @return The number of rooms booked for the given night, 0 for nights outside the range
+     */
+    public int getOccupiedRooms(LocalDate night) {
+        long index = night.toEpochDay() - firstNight.toEpochDay();
+        return index < 0 || index >= occupiedRooms.length ? 0 : occupiedRooms[(int) index];
+    }
+
+    /* ### Getter ### */
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRooms() {
+        return rooms;
+    }
+
+    public LocalDate getFirstNight() {
+        return firstNight;
+    }
+
+    public int getNights() {
+        return occupiedRooms.length;
+    }
+
+    public long getRoomNights() {
+        return roomNights;
+    }
+
+    public long getGuestNights() {
+        return guestNights;
+    }
+
+    public long getArrivals() {
+        return arrivals;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    @Override
+    public String toString() {
+        return "[Capacity] " + (capacity == ALL_CAPACITIES ? "all" : capacity) + "\n" +
+            "[Rooms] " + rooms + "\n" +
+            "[Nights] " + firstNight + " + " + occupiedRooms.length + "\n" +
+            "[Occupancy] " + String.format("%.1f %%", 100 * getOccupancyRate()) + "\n" +
+            "[RoomNights] " + roomNights + "\n" +
+            "[GuestNights] " + guestNights + "\n" +
+            "[Arrivals] " + arrivals + "\n" +
+            "[Cancellations] " + cancellations;
+    }
+}
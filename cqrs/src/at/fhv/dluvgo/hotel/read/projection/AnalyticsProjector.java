@@ -0,0 +1,52 @@
+package at.fhv.dluvgo.hotel.read.projection;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.repository.AnalyticsRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Keeps the counters of the {@link AnalyticsRepository} up to date, independently of the
+ * operational read models.
+ */
+public class AnalyticsProjector implements Observer {
+    private static final Logger LOG = Logger.forRead(AnalyticsProjector.class);
+
+    private final AnalyticsRepository analyticsRepository;
+
+    public AnalyticsProjector(AnalyticsRepository analyticsRepository) {
+        this.analyticsRepository = analyticsRepository;
+    }
+
+    @Override
+    public void update(Event event) {
+        LOG.debug("called");
+        if (event instanceof RoomCreatedEvent) {
+            RoomCreatedEvent e = (RoomCreatedEvent) event;
+            this.analyticsRepository.addRoom(e.getRoomNumber(), e.getCapacity());
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            this.analyticsRepository.book(
+                e.getBookingId(),
+                e.getRoomNumber(),
+                e.getBookingStartTime(),
+                e.getBookingEndTime(),
+                e.getNumberOfPeople(),
+                day(event)
+            );
+        } else if (event instanceof BookingCancelledEvent) {
+            this.analyticsRepository.cancel(
+                ((BookingCancelledEvent) event).getBookingId(),
+                day(event)
+            );
+        }
+    }
+
+    private static LocalDate day(Event event) {
+        return LocalDate.ofInstant(event.getCreated().toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,70 @@
+package at.fhv.dluvgo.hotel.read.projection;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryResultCache;
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.time.LocalDate;
+
+/**
+ * Keeps the occupancy bitmaps of the {@link AvailabilityRepository} up to date. Unlike the
+ * bookable rooms of the {@link RoomProjector}, a booking or cancellation only flips the bits of
+ * the affected nights. Cached free-room results depending on these nights are invalidated
+ * afterwards.
+ */
+public class AvailabilityProjector implements Observer {
+    private static final Logger LOG = Logger.forRead(AvailabilityProjector.class);
+
+    private final AvailabilityRepository availabilityRepository;
+    private final QueryResultCache<?, ?> freeRoomsCache;
+
+    public AvailabilityProjector(AvailabilityRepository availabilityRepository) {
+        this(availabilityRepository, new QueryResultCache<>(0));
+    }
+
+    public AvailabilityProjector(
+        AvailabilityRepository availabilityRepository,
+        QueryResultCache<?, ?> freeRoomsCache
+    ) {
+        this.availabilityRepository = availabilityRepository;
+        this.freeRoomsCache = freeRoomsCache;
+    }
+
+    @Override
+    public void update(Event event) {
+        LOG.debug("called");
+        if (event instanceof RoomCreatedEvent) {
+            RoomCreatedEvent e = (RoomCreatedEvent) event;
+            this.availabilityRepository.addRoom(e.getRoomNumber(), e.getCapacity());
+            this.freeRoomsCache.invalidate(e.getCapacity(), LocalDate.MIN, LocalDate.MAX);
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            this.availabilityRepository.book(
+                e.getRoomNumber(),
+                e.getBookingId(),
+                e.getBookingStartTime(),
+                e.getBookingEndTime()
+            );
+            this.freeRoomsCache.invalidate(
+                this.availabilityRepository.getCapacity(e.getRoomNumber()),
+                e.getBookingStartTime().toLocalDate(),
+                e.getBookingEndTime().toLocalDate()
+            );
+        } else if (event instanceof BookingCancelledEvent) {
+            BookableRoom freed = this.availabilityRepository.cancel(
+                ((BookingCancelledEvent) event).getBookingId()
+            );
+            if (null != freed) {
+                this.freeRoomsCache.invalidate(
+                    freed.getCapacity(),
+                    freed.getStart().toLocalDate(),
+                    freed.getEnd().toLocalDate()
+                );
+            }
+        }
+    }
+}
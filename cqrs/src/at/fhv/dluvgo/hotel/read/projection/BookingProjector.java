@@ -1,30 +1,55 @@
 package at.fhv.dluvgo.hotel.read.projection;
 
-import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.cqrs.query.QueryResultCache;
 import at.fhv.dluvgo.hotel.read.domain.Booking;
 import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
 import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
 import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
 import at.fhv.dluvgo.hotel.write.event.Event;
-import java.util.List;
+import java.time.LocalDateTime;
 
 public class BookingProjector implements Observer {
+    private static final Logger LOG = Logger.forRead(BookingProjector.class);
+
     private final ReadRepository readRepository;
+    private final QueryResultCache<?, ?> bookingsCache;
 
     public BookingProjector(ReadRepository readRepository) {
+        this(readRepository, new QueryResultCache<>(0));
+    }
+
+    public BookingProjector(ReadRepository readRepository, QueryResultCache<?, ?> bookingsCache) {
         this.readRepository = readRepository;
+        this.bookingsCache = bookingsCache;
     }
 
     @Override
     public void update(Event event) {
-        System.out.println("[READ] BookingProjector - called");
+        LOG.debug("called");
         if (event instanceof BookingCreatedEvent) {
-            this.apply((BookingCreatedEvent) event);
+            BookingCreatedEvent e = (BookingCreatedEvent) event;
+            this.apply(e);
+            this.invalidate(e.getStart(), e.getEnd());
         } else if (event instanceof BookingCancelledEvent) {
-            this.apply((BookingCancelledEvent) event);
+            Booking booking = this.readRepository.getBooking(
+                ((BookingCancelledEvent) event).getBookingId()
+            );
+            if (null == booking) {
+                // unknown or archived by a compaction of the event log, nothing changes
+                LOG.warn("Cancelled booking not found");
+                return;
+            }
+            this.cancel(booking);
+            this.invalidate(booking.getStart(), booking.getEnd());
         }
     }
 
+    private void invalidate(LocalDateTime start, LocalDateTime end) {
+        // bookings do not depend on the capacity of a room
+        this.bookingsCache.invalidate(Integer.MAX_VALUE, start.toLocalDate(), end.toLocalDate());
+    }
+
     private void apply(BookingCreatedEvent event) {
         this.readRepository.addBooking(new Booking(
             event.getBookingId(),
@@ -37,127 +62,9 @@ public class BookingProjector implements Observer {
         ));
     }
 
-    private void apply(BookingCancelledEvent event) {
-        Booking bookingToUpdate = this.readRepository.getBooking(event.getBookingId());
-        bookingToUpdate.setState(Booking.State.CANCELLED);
-
-        // same logic as in roomprojector
-        List<BookableRoom> bookableRooms = this.readRepository.getBookableRooms(
-            this.readRepository.getBooking(event.getBookingId()).getRoomNumber()
-        );
-
-        if (bookableRooms.isEmpty()) {
-            System.err.println(
-                "[READ] BookingProjector - Something bad happened.. let's pretend it never did (like Trump.. or Corona)"
-            );
-            return;
-        }
-
-        BookableRoom leftBookableRoom = null;
-        BookableRoom rightBookableRoom = null;
-        // CASE 1
-        for (BookableRoom br : bookableRooms) {
-            // case 1
-            if (br.getEnd().getDayOfMonth() == bookingToUpdate.getStart().getDayOfMonth()
-                && br.getEnd().isBefore(bookingToUpdate.getStart())
-            ) {
-                leftBookableRoom = br;
-            } else if (br.getStart().getDayOfMonth() == bookingToUpdate.getEnd().getDayOfMonth()
-                && br.getStart().isAfter(bookingToUpdate.getEnd())
-            ) {
-                rightBookableRoom = br;
-            }
-
-            if (leftBookableRoom != null && rightBookableRoom != null) {
-                this.uniteBookableRoom(leftBookableRoom, rightBookableRoom, bookingToUpdate);
-                this.readRepository.removeBooking(bookingToUpdate);
-                return;
-            }
-        }
-
-        // Case2
-        for (BookableRoom br : bookableRooms) {
-            if (br.getStart().getDayOfMonth() == bookingToUpdate.getEnd().getDayOfMonth()
-                && br.getStart().isAfter(bookingToUpdate.getEnd())) {
-                // Case 2
-                this.extendBookableRoomRight(br, bookingToUpdate);
-                this.readRepository.removeBooking(bookingToUpdate);
-                return;
-            }
-        }
-
-        // Case3
-        for (BookableRoom br : bookableRooms) {
-            if (br.getEnd().getDayOfMonth() == bookingToUpdate.getStart().getDayOfMonth()
-                && br.getEnd().isBefore(bookingToUpdate.getStart())) {
-                // Case
-
-                this.extendBookableRoomLeft(br, bookingToUpdate);
-                this.readRepository.removeBooking(bookingToUpdate);
-                return;
-            }
-        }
-    }
-
-    private void uniteBookableRoom(
-        BookableRoom leftBookableRoom,
-        BookableRoom rightBookableRoom,
-        Booking cancelledBooking
-    ) {
-        System.out.println("[READ] BookingProjector - uniting two separate BookableRooms");
-        this.readRepository.removeBookableRoom(leftBookableRoom);
-        this.readRepository.removeBookableRoom(rightBookableRoom);
-        this.readRepository.addBookableRoom(new BookableRoom(
-            cancelledBooking.getRoomNumber(),
-            leftBookableRoom.getStart()
-                .withHour(RoomProjector.CHECKIN_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            rightBookableRoom.getEnd()
-                .withHour(RoomProjector.CHECKOUT_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            leftBookableRoom.getCapacity()
-        ));
-    }
-
-    private void extendBookableRoomLeft(
-        BookableRoom currentBookableRoom,
-        Booking currentBooking
-    ) {
-        System.out.println("[READ] BookingProjector - extending BookableRoom to the left");
-        this.readRepository.removeBookableRoom(currentBookableRoom);
-        this.readRepository.addBookableRoom(new BookableRoom(
-            currentBooking.getRoomNumber(),
-            currentBookableRoom.getStart()
-                .withHour(RoomProjector.CHECKIN_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            currentBooking.getEnd()
-                .withHour(RoomProjector.CHECKOUT_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            currentBookableRoom.getCapacity()
-        ));
-    }
-
-    private void extendBookableRoomRight(
-        BookableRoom currentBookableRoom,
-        Booking currentBooking
-    ) {
-        System.out.println("[READ] BookingProjector - extending BookableRoom to the right");
-        this.readRepository.removeBookableRoom(currentBookableRoom);
-        this.readRepository.addBookableRoom(new BookableRoom(
-            currentBooking.getRoomNumber(),
-            currentBooking.getStart()
-                .withHour(RoomProjector.CHECKIN_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            currentBookableRoom.getEnd()
-                .withHour(RoomProjector.CHECKOUT_HOUR)
-                .withMinute(0)
-                .withSecond(0),
-            currentBookableRoom.getCapacity()
-        ));
+    private void cancel(Booking booking) {
+        // bookings are shared with running queries, so a cancelled one is dropped, not changed;
+        // the nights of the booking are given back to the free periods by the RoomProjector
+        this.readRepository.removeBooking(booking);
     }
 }
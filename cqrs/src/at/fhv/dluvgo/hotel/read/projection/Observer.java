@@ -1,7 +1,18 @@
 package at.fhv.dluvgo.hotel.read.projection;
 
 import at.fhv.dluvgo.hotel.write.event.Event;
+import java.util.List;
 
 public interface Observer {
     void update(Event event);
+
+    /**
+     * Handles several events at once, e.g. the events of a batch. Observers that can apply
+     * events more efficiently in bulk override this method.
+     */
+    default void update(List<Event> events) {
+        for (Event event : events) {
+            update(event);
+        }
+    }
 }
@@ -1,7 +1,10 @@
 package at.fhv.dluvgo.hotel.read.projection;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
 import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
 import at.fhv.dluvgo.hotel.write.event.Event;
 import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
 import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
@@ -9,43 +12,109 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Projects rooms and their bookings into free periods ({@link BookableRoom}s) of the
+ * {@link ReadRepository}. Rooms are bookable within a rolling {@link Horizon}: once the clock
+ * reaches a new day, free periods that lie in the past are archived and the last free period of
+ * every room is extended up to the new end of the horizon. Bookings ending beyond the horizon
+ * extend it right away. A cancellation gives the nights of the booking that still lie within the
+ * horizon back, merged with the free periods next to them.
+ */
 public class RoomProjector implements Observer {
     public static final int CHECKIN_HOUR = 14;
     public static final int CHECKOUT_HOUR = 11;
-    private static final LocalDateTime START_OF_YEAR = LocalDate
-        .of(2021, 1, 1)
-        .atTime(CHECKIN_HOUR, 0, 0);
-    private static final LocalDateTime END_OF_YEAR = LocalDate
-        .of(2021, 12, 31)
-        .atTime(CHECKOUT_HOUR, 0, 0);
+    private static final Logger LOG = Logger.forRead(RoomProjector.class);
     private final ReadRepository readRepository;
+    private final Horizon horizon;
+    private LocalDate horizonStart;
+    private LocalDate horizonEnd;
 
     public RoomProjector(ReadRepository readRepository) {
+        this(readRepository, new Horizon());
+    }
+
+    public RoomProjector(ReadRepository readRepository, Horizon horizon) {
+        this(readRepository, horizon, horizon.endOf(horizon.today()));
+    }
+
+    /**
+     * Creates a projector for a read model whose free periods already reach up to the given end
+     * of the horizon, e.g. a rebuilt one.
+     */
+    public RoomProjector(ReadRepository readRepository, Horizon horizon, LocalDate horizonEnd) {
         this.readRepository = readRepository;
+        this.horizon = horizon;
+        this.horizonStart = horizon.today();
+        this.horizonEnd = horizonEnd;
     }
 
     @Override
-    public void update(Event event) {
-        System.out.println("[READ] RoomProjector - called");
+    public synchronized void update(Event event) {
+        LOG.debug("called");
+        this.advanceHorizon();
         if (event instanceof RoomCreatedEvent) {
             this.apply((RoomCreatedEvent) event);
         } else if (event instanceof RoomBookedEvent) {
             this.apply((RoomBookedEvent) event);
+        } else if (event instanceof BookingCancelledEvent) {
+            this.apply((BookingCancelledEvent) event);
+        }
+    }
+
+    /**
+     * Rolls the horizon forward if the clock reached a new day.
+     */
+    public synchronized void advanceHorizon() {
+        LocalDate today = horizon.today();
+        if (!today.isAfter(horizonStart)) {
+            return;
+        }
+
+        int archived = this.readRepository.archiveBookableRooms(
+            today.atTime(CHECKOUT_HOUR, 0, 0)
+        );
+        LOG.info(
+            "Horizon advanced to %s, archived %d BookableRooms",
+            today,
+            archived
+        );
+        horizonStart = today;
+        this.extendHorizon(horizon.endOf(today));
+    }
+
+    /**
+     * Extends the free periods of all rooms up to the given end, if the horizon ends earlier.
+     */
+    public synchronized void extendHorizon(LocalDate newEnd) {
+        if (!newEnd.isAfter(horizonEnd)) {
+            return;
         }
+
+        LOG.info("extending the horizon to %s", newEnd);
+        this.readRepository.extendBookableRooms(
+            horizonEnd.atTime(CHECKOUT_HOUR, 0, 0),
+            horizonEnd.atTime(CHECKIN_HOUR, 0, 0),
+            newEnd.atTime(CHECKOUT_HOUR, 0, 0)
+        );
+        horizonEnd = newEnd;
+    }
+
+    public synchronized LocalDate getHorizonEnd() {
+        return horizonEnd;
     }
 
     private void apply(RoomCreatedEvent event) {
         this.readRepository.addBookableRoom(new BookableRoom(
             event.getRoomNumber(),
-            START_OF_YEAR,
-            END_OF_YEAR,
+            horizonStart.atTime(CHECKIN_HOUR, 0, 0),
+            horizonEnd.atTime(CHECKOUT_HOUR, 0, 0),
             event.getCapacity()
         ));
     }
 
     private void splitBookableRoom(BookableRoom room, RoomBookedEvent event) {
-        System.out.println("[READ] RoomProjector - splitting a BookableRoom");
-        if (room.getStart().getDayOfMonth() != event.getBookingStartTime().getDayOfMonth()) {
+        LOG.debug("splitting a BookableRoom");
+        if (!room.getStart().toLocalDate().isEqual(event.getBookingStartTime().toLocalDate())) {
             this.readRepository.addBookableRoom(new BookableRoom(
                 room.getRoomNumber(),
                 room.getStart()
@@ -86,7 +155,7 @@ public class RoomProjector implements Observer {
     }
 
     private void addBookableRoomAfter(BookableRoom room, RoomBookedEvent event) {
-        System.out.println("[READ] RoomProjector - adding a BookableRoom after");
+        LOG.debug("adding a BookableRoom after");
         if (event.getBookingEndTime().getHour() > CHECKOUT_HOUR) {
             this.readRepository.addBookableRoom(new BookableRoom(
                 room.getRoomNumber(),
@@ -118,7 +187,7 @@ public class RoomProjector implements Observer {
     }
 
     private void addBookableRoomBefore(BookableRoom room, RoomBookedEvent event) {
-        System.out.println("[READ] RoomProjector - adding a BookableRoom before");
+        LOG.debug("adding a BookableRoom before");
         if (event.getBookingStartTime().getHour() < CHECKIN_HOUR) {
             this.readRepository.addBookableRoom(new BookableRoom(
                 room.getRoomNumber(),
@@ -148,13 +217,35 @@ public class RoomProjector implements Observer {
     }
 
     private void apply(RoomBookedEvent event) {
+        LocalDateTime firstCheckIn = horizonStart.atTime(CHECKIN_HOUR, 0, 0);
+        if (!event.getBookingEndTime().isAfter(firstCheckIn)) {
+            // the free periods of the past have been archived already
+            return;
+        }
+        if (event.getBookingEndTime().toLocalDate().isAfter(horizonEnd)) {
+            this.extendHorizon(event.getBookingEndTime().toLocalDate().plusDays(1));
+        }
+        if (event.getBookingStartTime().isBefore(firstCheckIn)) {
+            // only the part of the stay within the horizon affects the free periods
+            event = new RoomBookedEvent(
+                event.getId(),
+                event.getCreated(),
+                event.getBookingId(),
+                event.getRoomNumber(),
+                firstCheckIn,
+                event.getBookingEndTime(),
+                event.getContactName(),
+                event.getNumberOfPeople()
+            );
+        }
+
         List<BookableRoom> bookableRooms = this.readRepository.getBookableRooms(
             event.getRoomNumber()
         );
 
         if (bookableRooms.isEmpty()) {
-            System.err.println(
-                "[READ] RoomProjector - Something bad happened.. let's pretend it never did (like" +
+            LOG.error(
+                "Something bad happened.. let's pretend it never did (like" +
                     " Trump.. or Corona)"
             );
             return;
@@ -182,9 +273,58 @@ public class RoomProjector implements Observer {
             }
         }
         if (null == currentBookableRoom) {
-            System.err.println(
-                "[READ] RoomProjector - Something bad happened while handling a [RoomBooked] event"
+            LOG.error(
+                "Something bad happened while handling a [RoomBooked] event"
             );
+            return;
+        }
+
+        LocalDate endNight = event.getBookingEndTime().getHour() > CHECKOUT_HOUR
+            ? event.getBookingEndTime().toLocalDate().plusDays(1)
+            : event.getBookingEndTime().toLocalDate();
+        this.readRepository.addBookedPeriod(event.getBookingId(), new BookableRoom(
+            event.getRoomNumber(),
+            event.getBookingStartTime().toLocalDate().atTime(CHECKIN_HOUR, 0, 0),
+            endNight.atTime(CHECKOUT_HOUR, 0, 0),
+            currentBookableRoom.getCapacity()
+        ));
+    }
+
+    private void apply(BookingCancelledEvent event) {
+        BookableRoom booked = this.readRepository.removeBookedPeriod(event.getBookingId());
+        if (null == booked) {
+            // unknown booking, or its nights lie in the past and have been archived
+            return;
         }
+
+        LocalDate firstNight = booked.getStart().toLocalDate().isBefore(horizonStart)
+            ? horizonStart
+            : booked.getStart().toLocalDate();
+        LocalDate endNight = booked.getEnd().toLocalDate();
+        if (!endNight.isAfter(firstNight)) {
+            return;
+        }
+
+        // free periods right before and after the stay are joined with its nights
+        for (BookableRoom br : this.readRepository.getBookableRooms(booked.getRoomNumber())) {
+            LocalDate start = br.getStart().toLocalDate();
+            LocalDate end = br.getEnd().toLocalDate();
+            if (start.isAfter(endNight) || end.isBefore(firstNight)) {
+                continue;
+            }
+            if (start.isBefore(firstNight)) {
+                firstNight = start;
+            }
+            if (end.isAfter(endNight)) {
+                endNight = end;
+            }
+            this.readRepository.removeBookableRoom(br);
+        }
+        this.readRepository.addBookableRoom(new BookableRoom(
+            booked.getRoomNumber(),
+            firstNight.atTime(CHECKIN_HOUR, 0, 0),
+            endNight.atTime(CHECKOUT_HOUR, 0, 0),
+            booked.getCapacity()
+        ));
     }
 }
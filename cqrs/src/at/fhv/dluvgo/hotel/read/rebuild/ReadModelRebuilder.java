@@ -0,0 +1,308 @@
+package at.fhv.dluvgo.hotel.read.rebuild;
+
+import at.fhv.dluvgo.hotel.read.projection.AnalyticsProjector;
+import at.fhv.dluvgo.hotel.read.projection.AvailabilityProjector;
+import at.fhv.dluvgo.hotel.read.projection.BookingProjector;
+import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
+import at.fhv.dluvgo.hotel.read.repository.AnalyticsRepository;
+import at.fhv.dluvgo.hotel.read.repository.AvailabilityRepository;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.EventSource;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Rebuilds the read models - the {@link ReadRepository}, the {@link AvailabilityRepository} and
+ * the {@link AnalyticsRepository} - from all events of an {@link EventSource}. As the bookings,
+ * free periods and occupancy bitmaps of a room only depend on the events of that room, the event
+ * log is partitioned by room number:
+ *
+ * <ol>
+ *     <li>chunks of the log are read and decoded in parallel,</li>
+ *     <li>every event is routed to the partition of its room, keeping the order of the log,</li>
+ *     <li>the partitions are replayed in parallel, each by its own {@link BookingProjector},
+ *     {@link RoomProjector} and {@link AvailabilityProjector} into its own read models,</li>
+ *     <li>the horizons of all partitions are extended to the same end and the partitions are
+ *     merged into fresh read models, again in parallel.</li>
+ * </ol>
+ *
+ * <p>The analytics figures depend on the order of all events, so they are replayed from the
+ * whole log by a single task, next to the partitions.
+ *
+ * <p>All events up to the head position at the start of the rebuild are kept in memory. The
+ * returned read models are not visible to anyone yet - see {@code RunRead#rebuild} for swapping
+ * them in.
+ */
+public class ReadModelRebuilder {
+    public static final String PARALLELISM_PROPERTY = "hotel.rebuild.parallelism";
+
+    private static final int PARTITIONS_PER_THREAD = 4;
+    private static final int READ_CHUNK_SIZE = 8 * 1024;
+
+    private final Horizon horizon;
+    private final int parallelism;
+
+    public ReadModelRebuilder(Horizon horizon) {
+        this(
+            horizon,
+            Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors())
+        );
+    }
+
+    public ReadModelRebuilder(Horizon horizon, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        this.horizon = horizon;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Replays all events stored so far into a fresh read model.
+     *
+     * @throws IllegalStateException If replaying a partition failed
+     */
+    public Result rebuild(EventSource source) throws InterruptedException {
+        long start = System.nanoTime();
+        long head = source.getHeadPosition();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Callable<List<RecordedEvent>>> reads = new ArrayList<>();
+            for (long position = 0; position < head; position += READ_CHUNK_SIZE) {
+                long from = position;
+                int count = (int) Math.min(READ_CHUNK_SIZE, head - position);
+                reads.add(() -> readChunk(source, from, count));
+            }
+            List<List<RecordedEvent>> chunks = invokeAll(pool, reads);
+            List<List<Event>> partitions = route(chunks);
+
+            Future<AnalyticsRepository> analytics = pool.submit(() -> replayAnalytics(chunks));
+            List<Callable<Partition>> replays = new ArrayList<>();
+            for (List<Event> events : partitions) {
+                replays.add(() -> replay(events));
+            }
+            List<Partition> replayed = invokeAll(pool, replays);
+
+            // a booking beyond the horizon only extended the horizon of its own partition
+            LocalDate horizonEnd = horizon.endOf(horizon.today());
+            for (Partition partition : replayed) {
+                if (partition.roomProjector.getHorizonEnd().isAfter(horizonEnd)) {
+                    horizonEnd = partition.roomProjector.getHorizonEnd();
+                }
+            }
+
+            ReadRepository readRepository = new ReadRepository();
+            AvailabilityRepository availabilityRepository = new AvailabilityRepository(horizon);
+            List<Callable<Void>> merges = new ArrayList<>();
+            for (Partition partition : replayed) {
+                LocalDate end = horizonEnd;
+                merges.add(() -> {
+                    partition.roomProjector.extendHorizon(end);
+                    readRepository.addAll(partition.readRepository);
+                    availabilityRepository.addAll(partition.availabilityRepository);
+                    return null;
+                });
+            }
+            invokeAll(pool, merges);
+
+            return new Result(
+                readRepository,
+                availabilityRepository,
+                get(analytics),
+                horizonEnd,
+                head,
+                System.nanoTime() - start
+            );
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Reads the events at the positions of a chunk. Positions of archived events are skipped by
+     * the event source, so it may return events of the next chunks as well.
+     */
+    private static List<RecordedEvent> readChunk(EventSource source, long from, int count) {
+        List<RecordedEvent> events = source.readFrom(from, count);
+        int end = events.size();
+        while (end > 0 && events.get(end - 1).getPosition() >= from + count) {
+            end--;
+        }
+        return events.subList(0, end);
+    }
+
+    private List<List<Event>> route(List<List<RecordedEvent>> chunks) {
+        int partitionCount = parallelism * PARTITIONS_PER_THREAD;
+        List<List<Event>> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        Map<UUID, UUID> roomsByBooking = new HashMap<>();
+        for (List<RecordedEvent> chunk : chunks) {
+            for (RecordedEvent recorded : chunk) {
+                Event event = recorded.getEvent();
+                UUID roomNumber;
+                if (event instanceof RoomCreatedEvent) {
+                    roomNumber = ((RoomCreatedEvent) event).getRoomNumber();
+                } else if (event instanceof RoomBookedEvent) {
+                    roomNumber = ((RoomBookedEvent) event).getRoomNumber();
+                } else if (event instanceof BookingCreatedEvent) {
+                    BookingCreatedEvent e = (BookingCreatedEvent) event;
+                    roomNumber = e.getRoomNumber();
+                    roomsByBooking.put(e.getBookingId(), roomNumber);
+                } else if (event instanceof BookingCancelledEvent) {
+                    roomNumber = roomsByBooking.getOrDefault(
+                        ((BookingCancelledEvent) event).getBookingId(),
+                        recorded.getStreamId()
+                    );
+                } else {
+                    continue;
+                }
+                partitions.get(Math.floorMod(roomNumber.hashCode(), partitionCount)).add(event);
+            }
+        }
+
+        return partitions;
+    }
+
+    private Partition replay(List<Event> events) {
+        ReadRepository readRepository = new ReadRepository();
+        AvailabilityRepository availabilityRepository = new AvailabilityRepository(horizon);
+        BookingProjector bookingProjector = new BookingProjector(readRepository);
+        RoomProjector roomProjector = new RoomProjector(readRepository, horizon);
+        AvailabilityProjector availabilityProjector =
+            new AvailabilityProjector(availabilityRepository);
+        for (Event event : events) {
+            bookingProjector.update(event);
+            roomProjector.update(event);
+            availabilityProjector.update(event);
+        }
+
+        return new Partition(readRepository, availabilityRepository, roomProjector);
+    }
+
+    private static AnalyticsRepository replayAnalytics(List<List<RecordedEvent>> chunks) {
+        AnalyticsRepository analyticsRepository = new AnalyticsRepository();
+        AnalyticsProjector analyticsProjector = new AnalyticsProjector(analyticsRepository);
+        for (List<RecordedEvent> chunk : chunks) {
+            for (RecordedEvent recorded : chunk) {
+                analyticsProjector.update(recorded.getEvent());
+            }
+        }
+
+        return analyticsRepository;
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks)
+        throws InterruptedException {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            results.add(get(future));
+        }
+        return results;
+    }
+
+    private static <T> T get(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rebuilding the read model failed", e.getCause());
+        }
+    }
+
+    private static class Partition {
+        private final ReadRepository readRepository;
+        private final AvailabilityRepository availabilityRepository;
+        private final RoomProjector roomProjector;
+
+        private Partition(
+            ReadRepository readRepository,
+            AvailabilityRepository availabilityRepository,
+            RoomProjector roomProjector
+        ) {
+            this.readRepository = readRepository;
+            this.availabilityRepository = availabilityRepository;
+            this.roomProjector = roomProjector;
+        }
+    }
+
+    public static class Result {
+        private final ReadRepository readRepository;
+        private final AvailabilityRepository availabilityRepository;
+        private final AnalyticsRepository analyticsRepository;
+        private final LocalDate horizonEnd;
+        private final long nextPosition;
+        private final long nanos;
+
+        private Result(
+            ReadRepository readRepository,
+            AvailabilityRepository availabilityRepository,
+            AnalyticsRepository analyticsRepository,
+            LocalDate horizonEnd,
+            long nextPosition,
+            long nanos
+        ) {
+            this.readRepository = readRepository;
+            this.availabilityRepository = availabilityRepository;
+            this.analyticsRepository = analyticsRepository;
+            this.horizonEnd = horizonEnd;
+            this.nextPosition = nextPosition;
+            this.nanos = nanos;
+        }
+
+        public ReadRepository getReadRepository() {
+            return readRepository;
+        }
+
+        public AvailabilityRepository getAvailabilityRepository() {
+            return availabilityRepository;
+        }
+
+        public AnalyticsRepository getAnalyticsRepository() {
+            return analyticsRepository;
+        }
+
+        /**
+         * @return The end of the horizon the free periods of the read model reach up to
+         */
+        public LocalDate getHorizonEnd() {
+            return horizonEnd;
+        }
+
+        /**
+         * @return The position of the first event that is not part of the read model
+         */
+        public long getNextPosition() {
+            return nextPosition;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getEventsPerSecond() {
+            return nextPosition / (nanos / 1e9);
+        }
+    }
+}
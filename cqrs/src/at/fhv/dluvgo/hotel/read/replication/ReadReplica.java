@@ -0,0 +1,171 @@
+package at.fhv.dluvgo.hotel.read.replication;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.replication.EventStreamPublisher;
+import at.fhv.dluvgo.hotel.write.replication.ReplicationProtocol;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the read model of a {@link RunRead} up to date with the event change stream of an
+ * {@link EventStreamPublisher}. The events are applied through the same projectors the read side
+ * uses within the write process.
+ *
+ * <p>The replica remembers the position of the next event it needs. After a lost connection it
+ * reconnects and resumes from there, events it already applied are skipped. Every applied frame
+ * is acknowledged, so the publisher knows the exact lag of the replica.
+ */
+public class ReadReplica implements Runnable, Closeable {
+    private static final Logger LOG = Logger.forRead(ReadReplica.class);
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final RunRead runRead;
+    private final ReplicationProtocol protocol = new ReplicationProtocol();
+    private volatile long nextPosition;
+    private volatile long headPosition;
+    private volatile long caughtUpAt;
+    private volatile boolean isActive;
+    private volatile Socket socket;
+
+    public ReadReplica(String host, int port, RunRead runRead) {
+        this.host = host;
+        this.port = port;
+        this.runRead = runRead;
+        this.caughtUpAt = System.currentTimeMillis();
+        this.isActive = true;
+    }
+
+    @Override
+    public void run() {
+        while (isActive) {
+            try (Socket socket = new Socket(host, port)) {
+                this.socket = socket;
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream())
+                );
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream())
+                );
+                protocol.writeHandshake(out, nextPosition);
+                LOG.info(
+                    "Connected to %s:%d, resuming from position %d",
+                    host,
+                    port,
+                    nextPosition
+                );
+
+                while (isActive) {
+                    ReplicationProtocol.Frame frame = protocol.readFrame(in);
+                    apply(frame);
+                    if (!frame.getEvents().isEmpty()) {
+                        protocol.writeAck(out, nextPosition);
+                    }
+                }
+            } catch (IOException e) {
+                if (!isActive) {
+                    return;
+                }
+                LOG.warn(
+                    "Connection to %s:%d lost: %s",
+                    host,
+                    port,
+                    e
+                );
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void apply(ReplicationProtocol.Frame frame) {
+        headPosition = Math.max(headPosition, frame.getHeadPosition());
+        List<Event> events = new ArrayList<>(frame.getEvents().size());
+        long position = nextPosition;
+        for (RecordedEvent recorded : frame.getEvents()) {
+            if (recorded.getPosition() < position) {
+                continue; // already applied before a reconnect
+            }
+            // positions of events archived by a compaction of the log are skipped
+            events.add(recorded.getEvent());
+            position = recorded.getPosition() + 1;
+        }
+
+        if (!events.isEmpty()) {
+            runRead.getBookingProjector().update(events);
+            runRead.getRoomProjector().update(events);
+            runRead.getAvailabilityProjector().update(events);
+        }
+        nextPosition = position;
+        if (position >= headPosition) {
+            caughtUpAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return The position of the next event to apply, i.e. the number of events applied
+     */
+    public long getAppliedPosition() {
+        return nextPosition;
+    }
+
+    /**
+     * @return The head position of the event store as last reported by the publisher
+     */
+    public long getHeadPosition() {
+        return headPosition;
+    }
+
+    /**
+     * @return The number of events the replica is behind the head last reported by the publisher.
+     * Events appended after the publisher sent the frame just applied are not counted, so this is
+     * a lower bound - the publisher measures the exact lag, see
+     * {@link EventStreamPublisher#getLagEvents()}.
+     */
+    public long getLagEvents() {
+        return Math.max(0, headPosition - nextPosition);
+    }
+
+    /**
+     * @return The time since the replica last applied everything the write side had stored, 0
+     * while it is caught up. Idle publishers send heartbeats every second, so without events the
+     * lag is known to be 0 within a second.
+     */
+    public long getLagMillis() {
+        if (0 == getLagEvents()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - caughtUpAt;
+    }
+
+    public boolean isConnected() {
+        Socket socket = this.socket;
+        return null != socket && !socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isActive = false;
+        Socket socket = this.socket;
+        if (null != socket) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package at.fhv.dluvgo.hotel.read.replication;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
+import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Answers queries against the read model of a replica over a line based TCP protocol. Dates are
+ * ISO date-times, e.g. {@code 2030-01-01T14:00}:
+ *
+ * <ul>
+ *     <li>{@code BOOKINGS <from> <to>} - one tab separated line per booking,</li>
+ *     <li>{@code FREE <from> <to> <capacity>} - one tab separated line per free room,</li>
+ *     <li>{@code STATUS} - the applied position, head position and replication lag.</li>
+ * </ul>
+ * Every answer ends with a line {@code END <lines>}, errors are answered with {@code ERROR}.
+ */
+public class ReplicaQueryServer implements Closeable {
+    private static final Logger LOG = Logger.forRead(ReplicaQueryServer.class);
+
+    private final RunRead runRead;
+    private final ReadReplica replica;
+    private final ServerSocket serverSocket;
+    private volatile boolean isActive;
+
+    /**
+     * @param port The port to listen on, 0 for any free port
+     */
+    public ReplicaQueryServer(RunRead runRead, ReadReplica replica, int port) throws IOException {
+        this.runRead = runRead;
+        this.replica = replica;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(port));
+    }
+
+    public void start() {
+        isActive = true;
+        Thread acceptor = new Thread(this::accept, "replica-query-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("Answering queries on port %s", getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isActive = false;
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (isActive) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serve(socket), "replica-query");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (isActive) {
+                    LOG.error("Accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (
+            socket;
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+            );
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)
+            ))
+        ) {
+            String line;
+            while (null != (line = in.readLine())) {
+                try {
+                    out.println("END " + answer(line.trim().split("\\s+"), out));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    out.println("ERROR " + e.getMessage());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOG.warn("Client disconnected: %s", e);
+        }
+    }
+
+    /**
+     * @return The number of lines written
+     */
+    private int answer(String[] command, PrintWriter out) {
+        switch (command[0].toUpperCase()) {
+            case "BOOKINGS": {
+                expectArguments(command, 2);
+                int lines = 0;
+                for (Booking booking : runRead.runQuery(new GetBookingsQuery(
+                    LocalDateTime.parse(command[1]),
+                    LocalDateTime.parse(command[2])
+                ))) {
+                    out.println(booking.getId() + "\t" + booking.getRoomNumber() + "\t"
+                        + booking.getStart() + "\t" + booking.getEnd() + "\t"
+                        + booking.getBookingMadeBy() + "\t" + booking.getNumberOfPeople());
+                    lines++;
+                }
+                return lines;
+            }
+            case "FREE": {
+                expectArguments(command, 3);
+                int lines = 0;
+                for (BookableRoom room : runRead.runQuery(new GetFreeRoomsQuery(
+                    LocalDateTime.parse(command[1]),
+                    LocalDateTime.parse(command[2]),
+                    Integer.parseInt(command[3])
+                ))) {
+                    out.println(room.getRoomNumber() + "\t" + room.getStart() + "\t"
+                        + room.getEnd() + "\t" + room.getCapacity());
+                    lines++;
+                }
+                return lines;
+            }
+            case "STATUS":
+                out.printf(
+                    "applied=%d head=%d lag=%d lagMillis=%d connected=%b%n",
+                    replica.getAppliedPosition(),
+                    replica.getHeadPosition(),
+                    replica.getLagEvents(),
+                    replica.getLagMillis(),
+                    replica.isConnected()
+                );
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unknown command " + command[0]);
+        }
+    }
+
+    private static void expectArguments(String[] command, int count) {
+        if (command.length != count + 1) {
+            throw new IllegalArgumentException(command[0] + " expects " + count + " arguments");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package at.fhv.dluvgo.hotel.read.replication;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.metrics.MetricsReporter;
+import at.fhv.dluvgo.hotel.read.RunRead;
+import java.io.IOException;
+
+/**
+ * Entry point of a read replica process. The replica connects to the event change stream of the
+ * write process ({@code -Dhotel.replica.master=host:port}, started there with
+ * {@code -Dhotel.replication.port=port}), answers queries on its own port
+ * ({@code -Dhotel.replica.queryPort}) and logs its replication lag periodically.
+ */
+public class RunReplica {
+    public static final String MASTER_PROPERTY = "hotel.replica.master";
+    public static final String QUERY_PORT_PROPERTY = "hotel.replica.queryPort";
+    private static final Logger LOG = Logger.forRead(RunReplica.class);
+    private static final String DEFAULT_MASTER = "localhost:7400";
+    private static final int DEFAULT_QUERY_PORT = 7401;
+    private static final long LAG_REPORT_INTERVAL_MILLIS = 10 * 1000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String master = System.getProperty(MASTER_PROPERTY, DEFAULT_MASTER);
+        int separator = master.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException(MASTER_PROPERTY + " must be host:port");
+        }
+
+        Metrics.registerMBean();
+        MetricsReporter.startIfConfigured();
+
+        RunRead runRead = new RunRead();
+        Thread readThread = new Thread(runRead, "read");
+        readThread.setDaemon(true);
+        readThread.start();
+
+        ReadReplica replica = new ReadReplica(
+            master.substring(0, separator),
+            Integer.parseInt(master.substring(separator + 1)),
+            runRead
+        );
+        new Thread(replica, "replica").start();
+
+        ReplicaQueryServer queryServer = new ReplicaQueryServer(
+            runRead,
+            replica,
+            Integer.getInteger(QUERY_PORT_PROPERTY, DEFAULT_QUERY_PORT)
+        );
+        queryServer.start();
+
+        while (true) {
+            Thread.sleep(LAG_REPORT_INTERVAL_MILLIS);
+            LOG.info(
+                "Applied %d of %d events, lag %d events / %d ms",
+                replica.getAppliedPosition(),
+                replica.getHeadPosition(),
+                replica.getLagEvents(),
+                replica.getLagMillis()
+            );
+        }
+    }
+}
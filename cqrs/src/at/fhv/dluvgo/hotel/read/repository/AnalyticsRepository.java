@@ -0,0 +1,249 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Pre-aggregated figures for management reports, kept apart from the operational read models.
+ * For every room capacity, and once more for all rooms, {@link DayCounter}s count the booked
+ * rooms and the guests per night and the arrivals and cancellations per day in primitive arrays
+ * indexed by epoch day. A booking or cancellation updates a handful of array entries, no matter
+ * how long the stay is; a report sums up ranges of the counters without looking at a single
+ * booking.
+ *
+ * <p>Nights are counted like in the {@link AvailabilityRepository}. Cancellations count on the
+ * day they were made. Bookings moved to the archive by the log compaction only count if they
+ * were projected before the compaction.
+ *
+ * <p>To take a booking back on cancellation, what it added is kept until its stay has ended.
+ * Of past stays only the room capacity is kept, so a late cancellation is still counted while
+ * its nights remain counted as occupied. The day is the one of the latest booking or
+ * cancellation, not the one of the clock, so replaying the events later yields the same figures.
+ *
+ * <p>Updates and reports are serialized - a report after an update recomputes the prefix sums of
+ * the counters it reads once, which takes one pass over their days.
+ */
+public class AnalyticsRepository {
+    private static final Logger LOG = Logger.forRead(AnalyticsRepository.class);
+
+    private final Map<UUID, Integer> capacityByRoom = new HashMap<>();
+    private final Map<UUID, Stay> stays = new HashMap<>();
+    private final Map<UUID, Integer> capacityByEndedStay = new HashMap<>();
+    private final NavigableMap<Integer, Figures> figuresByCapacity = new TreeMap<>();
+    private final Figures allRooms = new Figures();
+    // all days counted so far, so no counter is asked to span more than DayCounter.MAX_DAYS
+    private int firstDay = Integer.MAX_VALUE;
+    private int lastDay = Integer.MIN_VALUE;
+    // the day of the latest booking or cancellation, stays ending until then are dropped
+    private int today = Integer.MIN_VALUE;
+
+    /* ### Updates ### */
+
+    public synchronized void addRoom(UUID roomNumber, int capacity) {
+        if (null != this.capacityByRoom.putIfAbsent(roomNumber, capacity)) {
+            return;
+        }
+        this.figures(capacity).rooms++;
+        this.allRooms.rooms++;
+    }
+
+    public synchronized void book(
+        UUID bookingId,
+        UUID roomNumber,
+        LocalDateTime start,
+        LocalDateTime end,
+        int guests,
+        LocalDate bookedOn
+    ) {
+        this.advanceTo(bookedOn);
+        Integer capacity = this.capacityByRoom.get(roomNumber);
+        if (null == capacity) {
+            LOG.warn("Room of booking not found");
+            return;
+        }
+        if (this.stays.containsKey(bookingId) || this.capacityByEndedStay.containsKey(bookingId)) {
+            return;
+        }
+
+        Stay stay = new Stay(
+            capacity,
+            AvailabilityRepository.firstNight(start),
+            AvailabilityRepository.endNight(end),
+            guests
+        );
+        if (!this.cover(stay.firstNight, Math.max(stay.endNight, stay.firstNight + 1))) {
+            LOG.warn("Booking too far away from all others, not counted");
+            return;
+        }
+        this.apply(stay, 1);
+        if (stay.endNight > this.today) {
+            this.stays.put(bookingId, stay);
+        } else {
+            this.capacityByEndedStay.put(bookingId, stay.capacity);
+        }
+    }
+
+    public synchronized void cancel(UUID bookingId, LocalDate cancelledOn) {
+        this.advanceTo(cancelledOn);
+        int capacity;
+        Stay stay = this.stays.remove(bookingId);
+        if (null != stay) {
+            this.apply(stay, -1);
+            capacity = stay.capacity;
+        } else {
+            // the stay has ended, its nights remain occupied but the cancellation counts
+            Integer endedCapacity = this.capacityByEndedStay.remove(bookingId);
+            if (null == endedCapacity) {
+                LOG.warn("Cancelled booking not found");
+                return;
+            }
+            capacity = endedCapacity;
+        }
+
+        int day = (int) cancelledOn.toEpochDay();
+        if (!this.cover(day, day + 1)) {
+            LOG.warn("Cancellation too far away from all bookings, not counted");
+            return;
+        }
+        this.figures(capacity).cancellations.add(day, day + 1, 1);
+        this.allRooms.cancellations.add(day, day + 1, 1);
+    }
+
+    /* ### Reports ### */
+
+    /**
+     * @return The occupancy of all rooms followed by the one of each capacity in ascending
+     * order, for the nights from {@code firstNight} to {@code lastNight} (both inclusive)
+     */
+    public synchronized List<Occupancy> getOccupancy(LocalDate firstNight, LocalDate lastNight) {
+        int from = (int) firstNight.toEpochDay();
+        int to = (int) lastNight.toEpochDay() + 1;
+        List<Occupancy> result = new ArrayList<>(this.figuresByCapacity.size() + 1);
+        result.add(this.allRooms.occupancy(Occupancy.ALL_CAPACITIES, firstNight, from, to));
+        for (Map.Entry<Integer, Figures> entry : this.figuresByCapacity.entrySet()) {
+            result.add(entry.getValue().occupancy(entry.getKey(), firstNight, from, to));
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of cancellations made in each month from {@code from} to {@code to}
+     * (both inclusive)
+     */
+    public synchronized NavigableMap<YearMonth, Long> getCancellationsPerMonth(
+        YearMonth from,
+        YearMonth to
+    ) {
+        NavigableMap<YearMonth, Long> result = new TreeMap<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            result.put(month, this.allRooms.cancellations.sum(
+                (int) month.atDay(1).toEpochDay(),
+                (int) month.plusMonths(1).atDay(1).toEpochDay()
+            ));
+        }
+        return result;
+    }
+
+    /* ### Helper ### */
+
+    /**
+     * Drops the stays that have ended once the given day is later than all days seen so far,
+     * keeping only their capacity.
+     */
+    private void advanceTo(LocalDate day) {
+        int night = (int) day.toEpochDay();
+        if (night <= this.today) {
+            return;
+        }
+
+        this.today = night;
+        Iterator<Map.Entry<UUID, Stay>> it = this.stays.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Stay> entry = it.next();
+            if (entry.getValue().endNight <= night) {
+                this.capacityByEndedStay.put(entry.getKey(), entry.getValue().capacity);
+                it.remove();
+            }
+        }
+    }
+
+    private void apply(Stay stay, int sign) {
+        for (Figures figures : new Figures[] {this.figures(stay.capacity), this.allRooms}) {
+            figures.occupiedRooms.add(stay.firstNight, stay.endNight, sign);
+            figures.guests.add(stay.firstNight, stay.endNight, sign * stay.guests);
+            figures.arrivals.add(stay.firstNight, stay.firstNight + 1, sign);
+        }
+    }
+
+    /**
+     * Extends the days counted so far by the given ones (the end being the exclusive one) unless
+     * the counters would span more than {@link DayCounter#MAX_DAYS} then.
+     */
+    private boolean cover(int fromDay, int toDay) {
+        int first = Math.min(this.firstDay, fromDay);
+        int last = Math.max(this.lastDay, toDay);
+        if ((long) last - first + 1 > DayCounter.MAX_DAYS) {
+            return false;
+        }
+        this.firstDay = first;
+        this.lastDay = last;
+        return true;
+    }
+
+    private Figures figures(int capacity) {
+        return this.figuresByCapacity.computeIfAbsent(capacity, c -> new Figures());
+    }
+
+    /**
+     * Counters of the rooms of one capacity or of all rooms.
+     */
+    private static class Figures {
+        private final DayCounter occupiedRooms = new DayCounter();
+        private final DayCounter guests = new DayCounter();
+        private final DayCounter arrivals = new DayCounter();
+        private final DayCounter cancellations = new DayCounter();
+        private int rooms;
+
+        private Occupancy occupancy(int capacity, LocalDate firstNight, int from, int to) {
+            return new Occupancy(
+                capacity,
+                this.rooms,
+                firstNight,
+                this.occupiedRooms.values(from, to),
+                this.occupiedRooms.sum(from, to),
+                this.guests.sum(from, to),
+                this.arrivals.sum(from, to),
+                this.cancellations.sum(from, to)
+            );
+        }
+    }
+
+    /**
+     * What a booking added to the counters, so a cancellation can take it back until the stay
+     * has ended.
+     */
+    private static class Stay {
+        private final int capacity;
+        private final int firstNight;
+        private final int endNight;
+        private final int guests;
+
+        private Stay(int capacity, int firstNight, int endNight, int guests) {
+            this.capacity = capacity;
+            this.firstNight = firstNight;
+            this.endNight = endNight;
+            this.guests = guests;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Free-room read model based on one occupancy bitmap per room ({@link RoomAvailability}). The
+ * bitmap of a room has a fixed size, booking or cancelling touches one bit per night, and
+ * checking whether a room is free for a stay only looks at the 64-bit words covering the stay.
+ * Rooms are grouped by capacity, so too small rooms are never looked at.
+ *
+ * <p>Besides the bitmap, the first and end night of every booking that has not ended yet are
+ * kept, so a cancellation knows which bits to clear. Memory therefore grows with the bookings
+ * still to come, about 130 bytes each, and not with past ones - ended bookings are dropped
+ * when the window of nights moves forward.
+ *
+ * <p>A night starts at {@link RoomProjector#CHECKIN_HOUR} and ends at
+ * {@link RoomProjector#CHECKOUT_HOUR} the next day. Only nights within the rolling
+ * {@link Horizon} are bookable; the window of nights moves forward with the clock the next time
+ * the model is queried or updated.
+ */
+public class AvailabilityRepository {
+    private static final Logger LOG = Logger.forRead(AvailabilityRepository.class);
+
+    private final Horizon horizon;
+    private final int ringSize;
+    private final Map<UUID, RoomAvailability> rooms = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Map<UUID, RoomAvailability>> roomsByCapacity =
+        new ConcurrentSkipListMap<>();
+    private final Map<UUID, UUID> roomsByBooking = new ConcurrentHashMap<>();
+    private volatile int windowStart;
+    private volatile int windowEnd;
+
+    public AvailabilityRepository() {
+        this(new Horizon());
+    }
+
+    public AvailabilityRepository(Horizon horizon) {
+        this.horizon = horizon;
+        this.ringSize = (horizon.getMaxNights() + 63) & ~63;
+        LocalDate today = horizon.today();
+        this.windowStart = toNight(today);
+        this.windowEnd = toNight(horizon.endOf(today));
+    }
+
+    /* ### Updates (single thread) ### */
+
+    public synchronized void addRoom(UUID roomNumber, int capacity) {
+        if (rooms.containsKey(roomNumber)) {
+            LOG.warn("Room already exists");
+            return;
+        }
+
+        RoomAvailability room = new RoomAvailability(roomNumber, capacity, ringSize);
+        rooms.put(roomNumber, room);
+        roomsByCapacity
+            .computeIfAbsent(capacity, c -> new ConcurrentHashMap<>())
+            .put(roomNumber, room);
+    }
+
+    public synchronized void book(
+        UUID roomNumber,
+        UUID bookingId,
+        LocalDateTime start,
+        LocalDateTime end
+    ) {
+        RoomAvailability room = rooms.get(roomNumber);
+        if (null == room) {
+            LOG.warn("Room of booking not found");
+            return;
+        }
+
+        advanceIfDue();
+        if (room.book(bookingId, firstNight(start), endNight(end), windowStart, windowEnd)) {
+            roomsByBooking.put(bookingId, roomNumber);
+        }
+    }
+
+    /**
+     * @return The nights that are no longer booked, or {@code null} if the booking is unknown or
+     *     has ended already
+     */
+    public synchronized BookableRoom cancel(UUID bookingId) {
+        UUID roomNumber = roomsByBooking.remove(bookingId);
+        if (null == roomNumber) {
+            return null;
+        }
+
+        advanceIfDue();
+        RoomAvailability room = rooms.get(roomNumber);
+        int[] range = room.cancel(bookingId, windowStart, windowEnd);
+        if (null == range) {
+            return null;
+        }
+
+        return new BookableRoom(
+            roomNumber,
+            toCheckIn(range[0]),
+            toCheckOut(range[1]),
+            room.getCapacity()
+        );
+    }
+
+    /**
+     * Rolls the window of bookable nights forward if the clock reached a new day. Bookings that
+     * have ended are dropped, so the memory used stays flat over time.
+     */
+    public void advanceIfDue() {
+        if (toNight(horizon.today()) <= windowStart) {
+            return;
+        }
+
+        synchronized (this) {
+            LocalDate today = horizon.today();
+            int newWindowStart = toNight(today);
+            if (newWindowStart <= windowStart) {
+                return;
+            }
+
+            int newWindowEnd = toNight(horizon.endOf(today));
+            for (RoomAvailability room : rooms.values()) {
+                for (UUID bookingId : room.advance(windowEnd, newWindowStart, newWindowEnd)) {
+                    roomsByBooking.remove(bookingId);
+                }
+            }
+            windowEnd = newWindowEnd;
+            windowStart = newWindowStart;
+            LOG.info("Horizon advanced to %s", today);
+        }
+    }
+
+    /* ### Merging ### */
+
+    /**
+     * Adds all rooms and bookings of another availability model based on the same
+     * {@link Horizon}. Both models must cover different rooms - used to merge the partitions of
+     * a rebuild.
+     */
+    public synchronized void addAll(AvailabilityRepository other) {
+        // the bitmaps of both models only line up if their windows start at the same night
+        do {
+            advanceIfDue();
+            other.advanceIfDue();
+        } while (other.windowStart != windowStart);
+
+        rooms.putAll(other.rooms);
+        roomsByBooking.putAll(other.roomsByBooking);
+        for (Map.Entry<Integer, Map<UUID, RoomAvailability>> bucket
+            : other.roomsByCapacity.entrySet()
+        ) {
+            roomsByCapacity
+                .computeIfAbsent(bucket.getKey(), c -> new ConcurrentHashMap<>())
+                .putAll(bucket.getValue());
+        }
+    }
+
+    /* ### Queries ### */
+
+    /**
+     * Finds all rooms with at least the given capacity that are free between the given times.
+     *
+     * @return The free period of every matching room that contains the requested stay, limited
+     *     to the horizon
+     */
+    public List<BookableRoom> getFreeRooms(int capacity, LocalDateTime from, LocalDateTime to) {
+        advanceIfDue();
+        int start = windowStart;
+        int end = windowEnd;
+        int first = firstNight(from);
+        int last = endNight(to);
+        List<BookableRoom> result = new ArrayList<>();
+        if (first < start || last > end || first >= last) {
+            return result;
+        }
+
+        for (Map<UUID, RoomAvailability> bucket
+            : this.roomsByCapacity.tailMap(capacity, true).values()
+        ) {
+            for (RoomAvailability room : bucket.values()) {
+                if (room.isFree(first, last)) {
+                    result.add(new BookableRoom(
+                        room.getRoomNumber(),
+                        toCheckIn(room.freeFrom(first, start)),
+                        toCheckOut(room.freeUntil(last, end)),
+                        room.getCapacity()
+                    ));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public boolean isFree(UUID roomNumber, LocalDateTime from, LocalDateTime to) {
+        advanceIfDue();
+        RoomAvailability room = rooms.get(roomNumber);
+        int first = firstNight(from);
+        int last = endNight(to);
+
+        return null != room && first >= windowStart && last <= windowEnd
+            && room.isFree(first, last);
+    }
+
+    /**
+     * @return The capacity of the room or 0 if the room is unknown
+     */
+    public int getCapacity(UUID roomNumber) {
+        RoomAvailability room = rooms.get(roomNumber);
+        return null == room ? 0 : room.getCapacity();
+    }
+
+    /**
+     * @return The first bookable night, after rolling the window forward if due
+     */
+    public LocalDate getWindowStart() {
+        advanceIfDue();
+        return LocalDate.ofEpochDay(windowStart);
+    }
+
+    /**
+     * @return Number of bookings that have not ended yet
+     */
+    public int getActiveBookingCount() {
+        return roomsByBooking.size();
+    }
+
+    /* ### Nights ### */
+
+    /**
+     * @return The night a stay starting at the given time begins with - arriving before the
+     *     check-in hour means the room is needed the night before
+     */
+    static int firstNight(LocalDateTime start) {
+        LocalDate date = start.toLocalDate();
+        if (start.getHour() < RoomProjector.CHECKIN_HOUR) {
+            date = date.minusDays(1);
+        }
+        return toNight(date);
+    }
+
+    /**
+     * @return The night after the last night of a stay ending at the given time - leaving after
+     *     the check-out hour means the room is needed that night as well
+     */
+    static int endNight(LocalDateTime end) {
+        LocalDate date = end.toLocalDate();
+        if (end.getHour() > RoomProjector.CHECKOUT_HOUR) {
+            date = date.plusDays(1);
+        }
+        return toNight(date);
+    }
+
+    private static int toNight(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    private static LocalDateTime toCheckIn(int night) {
+        return LocalDate.ofEpochDay(night).atTime(RoomProjector.CHECKIN_HOUR, 0);
+    }
+
+    private static LocalDateTime toCheckOut(int endNight) {
+        return LocalDate.ofEpochDay(endNight).atTime(RoomProjector.CHECKOUT_HOUR, 0);
+    }
+}
@@ -0,0 +1,142 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+/**
+ * Counter per day over a growing range of epoch days, kept as a difference array: adding to a
+ * range of days only touches its first day and the day after its last one. The values per day
+ * and their prefix sums - which turn the sum over any range into a subtraction - are computed in
+ * one pass over all days the first time they are asked for after an update.
+ *
+ * <p>Days outside of the range counted so far have the value 0. Not thread-safe.
+ */
+class DayCounter {
+    /**
+     * Maximum number of days a counter spans, about a century.
+     */
+    static final int MAX_DAYS = 100 * 366;
+
+    private static final int INITIAL_DAYS = 512;
+
+    private int firstDay;
+    private int[] deltas = new int[0];
+    private boolean isPrepared;
+    private int[] values;
+    // sums[i] is the sum of the values of the first i days
+    private long[] sums;
+
+    /**
+     * Adds the given amount to every day from {@code fromDay} (inclusive) to {@code toDay}
+     * (exclusive).
+     *
+     * @throws IllegalArgumentException If the counter would span more than {@link #MAX_DAYS}
+     */
+    void add(int fromDay, int toDay, int delta) {
+        if (toDay <= fromDay) {
+            return;
+        }
+        this.cover(fromDay, toDay);
+        this.deltas[fromDay - this.firstDay] += delta;
+        this.deltas[toDay - this.firstDay] -= delta;
+        this.isPrepared = false;
+    }
+
+    int get(int day) {
+        this.prepare();
+        int index = day - this.firstDay;
+        return index < 0 || index >= this.values.length ? 0 : this.values[index];
+    }
+
+    /**
+     * @return The value of every day from {@code fromDay} (inclusive) to {@code toDay}
+     * (exclusive)
+     */
+    int[] values(int fromDay, int toDay) {
+        this.prepare();
+        int[] result = new int[Math.max(0, toDay - fromDay)];
+        int from = Math.max(fromDay, this.firstDay);
+        int to = Math.min(toDay, this.firstDay + this.values.length);
+        if (from < to) {
+            System.arraycopy(
+                this.values,
+                from - this.firstDay,
+                result,
+                from - fromDay,
+                to - from
+            );
+        }
+        return result;
+    }
+
+    /**
+     * @return The sum of the values of all days from {@code fromDay} (inclusive) to
+     * {@code toDay} (exclusive)
+     */
+    long sum(int fromDay, int toDay) {
+        this.prepare();
+        int from = Math.min(Math.max(fromDay - this.firstDay, 0), this.values.length);
+        int to = Math.min(Math.max(toDay - this.firstDay, 0), this.values.length);
+        return from < to ? this.sums[to] - this.sums[from] : 0;
+    }
+
+    /* ### Helper ### */
+
+    private void prepare() {
+        if (this.isPrepared) {
+            return;
+        }
+
+        int days = this.deltas.length;
+        if (null == this.values || this.values.length != days) {
+            this.values = new int[days];
+            this.sums = new long[days + 1];
+        }
+        int value = 0;
+        for (int i = 0; i < days; i++) {
+            value += this.deltas[i];
+            this.values[i] = value;
+            this.sums[i + 1] = this.sums[i] + value;
+        }
+        this.isPrepared = true;
+    }
+
+    /**
+     * Grows the counter to include both given days, leaving room for further days on the side
+     * it grew on.
+     */
+    private void cover(int fromDay, int toDay) {
+        int lastDay = this.firstDay + this.deltas.length - 1;
+        boolean isEmpty = this.deltas.length == 0;
+        if (!isEmpty && fromDay >= this.firstDay && toDay <= lastDay) {
+            return;
+        }
+
+        int newFirstDay = isEmpty ? fromDay : Math.min(this.firstDay, fromDay);
+        int newLastDay = isEmpty ? toDay : Math.max(lastDay, toDay);
+        long span = (long) newLastDay - newFirstDay + 1;
+        if (span > MAX_DAYS) {
+            throw new IllegalArgumentException(
+                "Counter would span " + span + " days, at most " + MAX_DAYS + " are supported"
+            );
+        }
+        int length = (int) Math.min(
+            MAX_DAYS,
+            Math.max(span, Math.max(INITIAL_DAYS, 2L * this.deltas.length))
+        );
+        if (!isEmpty && fromDay < this.firstDay) {
+            newFirstDay = newLastDay - length + 1;
+        }
+
+        int[] grown = new int[length];
+        if (!isEmpty) {
+            System.arraycopy(
+                this.deltas,
+                0,
+                grown,
+                this.firstDay - newFirstDay,
+                this.deltas.length
+            );
+        }
+        this.firstDay = newFirstDay;
+        this.deltas = grown;
+        this.isPrepared = false;
+    }
+}
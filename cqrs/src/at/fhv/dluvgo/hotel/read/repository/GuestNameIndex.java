@@ -0,0 +1,392 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import at.fhv.dluvgo.hotel.read.domain.Booking;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds bookings by the name of the guest who made them, without looking at every booking.
+ *
+ * <p>Names are normalized (lower case, without accents and punctuation) and every distinct name
+ * is indexed once, no matter how many bookings it has, by each of its words in a sorted map. A
+ * prefix search looks up the words starting with the longest word of the search - every word of
+ * the search has to be the start of a word of the name, so "jo sm" finds "John Smith".
+ *
+ * <p>Similarity searches tolerate typos. The distinct words - far fewer than names - are indexed
+ * by their trigrams (padded like in PostgreSQL's pg_trgm, so word starts weigh more). The words
+ * similar to each word of the search are looked up first, then only the names containing a word
+ * similar to the most selective word of the search are scored. A name matches if the words of
+ * the search are on average at least {@link #MIN_SIMILARITY} similar to its words.
+ *
+ * <p>Only active bookings are returned. Cancelled bookings leave the index once the read model
+ * removes them, until then - the projector cancels bookings in place - lookups skip them.
+ * Updates are serialized, lookups run concurrently with them.
+ */
+public class GuestNameIndex {
+    public static final double MIN_SIMILARITY = 0.3;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Comparator<Booking> BY_START = Comparator
+        .comparing(Booking::getStart)
+        .thenComparing(Booking::getId);
+    private static final Comparator<Name> BY_NAME = Comparator.comparing(name -> name.normalized);
+
+    private final Map<String, Name> names = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Set<Name>> namesByWord = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> wordsByTrigram = new ConcurrentHashMap<>();
+
+    public synchronized void add(Booking booking) {
+        String normalized = normalize(booking.getBookingMadeBy());
+        if (normalized.isEmpty() || booking.getState() != Booking.State.ACTIVE) {
+            return;
+        }
+
+        Name name = this.names.get(normalized);
+        if (null == name) {
+            name = new Name(normalized);
+            for (String word : name.words()) {
+                Set<Name> wordNames = this.namesByWord.get(word);
+                if (null == wordNames) {
+                    wordNames = ConcurrentHashMap.newKeySet();
+                    this.namesByWord.put(word, wordNames);
+                    for (String trigram : trigrams(word)) {
+                        this.wordsByTrigram
+                            .computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet())
+                            .add(word);
+                    }
+                }
+                wordNames.add(name);
+            }
+            this.names.put(normalized, name);
+        }
+        name.add(booking);
+    }
+
+    public synchronized void remove(Booking booking) {
+        String normalized = normalize(booking.getBookingMadeBy());
+        Name name = this.names.get(normalized);
+        if (null == name || !name.remove(booking) || name.size() > 0) {
+            return;
+        }
+
+        this.names.remove(normalized);
+        for (String word : name.words()) {
+            Set<Name> wordNames = this.namesByWord.get(word);
+            if (null == wordNames) {
+                continue;
+            }
+            wordNames.remove(name);
+            if (wordNames.isEmpty()) {
+                this.namesByWord.remove(word);
+                for (String trigram : trigrams(word)) {
+                    Set<String> words = this.wordsByTrigram.get(trigram);
+                    if (null != words) {
+                        words.remove(word);
+                        if (words.isEmpty()) {
+                            this.wordsByTrigram.remove(trigram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Up to {@code limit} active bookings of guests whose name has a word starting with
+     * each word of the search, ordered by the matching word, the name and the start
+     */
+    public List<Booking> findByPrefix(String search, int limit) {
+        String[] words = words(normalize(search));
+        if (words.length == 0) {
+            return new ArrayList<>();
+        }
+
+        // the longest word is the most selective one
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) {
+                longest = word;
+            }
+        }
+
+        Set<Name> matches = new LinkedHashSet<>();
+        int bookings = 0;
+        for (Set<Name> candidates
+            : this.namesByWord.subMap(longest, true, longest + Character.MAX_VALUE, false).values()
+        ) {
+            List<Name> sorted = new ArrayList<>(candidates);
+            sorted.sort(BY_NAME);
+            for (Name name : sorted) {
+                if (name.hasWordsStartingWith(words) && matches.add(name)) {
+                    bookings += name.size();
+                }
+            }
+            if (bookings >= limit) {
+                break;
+            }
+        }
+
+        return bookingsOf(matches, limit);
+    }
+
+    /**
+     * @return Up to {@code limit} active bookings of guests whose name is similar to the search,
+     * ordered by similarity, the name and the start. Searches shorter than three letters are
+     * answered by {@link #findByPrefix}.
+     */
+    public List<Booking> findSimilar(String search, int limit) {
+        String normalized = normalize(search);
+        if (normalized.replace(" ", "").length() < 3) {
+            return this.findByPrefix(normalized, limit);
+        }
+
+        String[] words = Arrays.stream(words(normalized)).distinct().toArray(String[]::new);
+        List<Map<String, Double>> similarWords = new ArrayList<>();
+        Map<String, Double> mostSelective = null;
+        long fewestNames = Long.MAX_VALUE;
+        for (String word : words) {
+            Map<String, Double> similar = this.similarWords(word);
+            similarWords.add(similar);
+            long candidates = 0;
+            for (String similarWord : similar.keySet()) {
+                Set<Name> wordNames = this.namesByWord.get(similarWord);
+                candidates += null == wordNames ? 0 : wordNames.size();
+            }
+            // a word without any similar ones only lowers the similarity of all names
+            if (candidates > 0 && candidates < fewestNames) {
+                fewestNames = candidates;
+                mostSelective = similar;
+            }
+        }
+
+        if (null == mostSelective) {
+            return new ArrayList<>();
+        }
+
+        Map<Name, Double> scores = new HashMap<>();
+        for (String similarWord : mostSelective.keySet()) {
+            Set<Name> wordNames = this.namesByWord.get(similarWord);
+            if (null == wordNames) {
+                continue;
+            }
+            for (Name name : wordNames) {
+                if (!scores.containsKey(name)) {
+                    double score = name.similarity(similarWords);
+                    if (score >= MIN_SIMILARITY) {
+                        scores.put(name, score);
+                    }
+                }
+            }
+        }
+
+        List<Name> matches = new ArrayList<>(scores.keySet());
+        matches.sort(Comparator
+            .comparing((Name name) -> -scores.get(name))
+            .thenComparing(BY_NAME));
+        return bookingsOf(matches, limit);
+    }
+
+    /**
+     * @return The number of distinct names indexed
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    /* ### Helper ### */
+
+    /**
+     * @return The indexed words similar to the given one, with their similarity - the trigrams
+     * both words share divided by all trigrams of the two words
+     */
+    private Map<String, Double> similarWords(String word) {
+        Set<String> trigrams = trigrams(word);
+        Map<String, int[]> shared = new HashMap<>();
+        for (String trigram : trigrams) {
+            Set<String> candidates = this.wordsByTrigram.get(trigram);
+            if (null != candidates) {
+                for (String candidate : candidates) {
+                    shared.computeIfAbsent(candidate, c -> new int[1])[0]++;
+                }
+            }
+        }
+
+        Map<String, Double> similar = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : shared.entrySet()) {
+            int common = entry.getValue()[0];
+            int all = trigrams.size() + trigrams(entry.getKey()).size() - common;
+            double similarity = common / (double) all;
+            if (similarity >= MIN_SIMILARITY) {
+                similar.put(entry.getKey(), similarity);
+            }
+        }
+        return similar;
+    }
+
+    private static List<Booking> bookingsOf(Iterable<Name> names, int limit) {
+        List<Booking> result = new ArrayList<>();
+        for (Name name : names) {
+            Booking[] bookings = name.bookings();
+            Arrays.sort(bookings, BY_START);
+            for (Booking booking : bookings) {
+                if (result.size() == limit) {
+                    return result;
+                }
+                if (booking.getState() == Booking.State.ACTIVE) {
+                    result.add(booking);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String name) {
+        if (null == name) {
+            return "";
+        }
+        String withoutAccents = ACCENTS
+            .matcher(Normalizer.normalize(name, Normalizer.Form.NFD))
+            .replaceAll("");
+        return SEPARATORS.matcher(withoutAccents.toLowerCase(Locale.ROOT))
+            .replaceAll(" ")
+            .trim();
+    }
+
+    private static String[] words(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static Set<String> trigrams(String word) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        String padded = "  " + word + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * A distinct normalized name with its bookings. The words are split off the name when needed
+     * instead of being kept for each of the - possibly millions of - names.
+     *
+     * <p>Most names have a few bookings, kept in an array that is copied on every change. Once a
+     * name has more than {@link #MAX_FEW_BOOKINGS} bookings (e.g. a company booking for its
+     * staff), they are moved to a set for good.
+     */
+    private static class Name {
+        private static final int MAX_FEW_BOOKINGS = 16;
+        private static final Booking[] NO_BOOKINGS = new Booking[0];
+
+        private final String normalized;
+        // replaced on every change, so lookups never see a half-updated array
+        private volatile Booking[] few = NO_BOOKINGS;
+        private volatile Set<Booking> many;
+
+        private Name(String normalized) {
+            this.normalized = normalized;
+        }
+
+        private String[] words() {
+            return GuestNameIndex.words(this.normalized);
+        }
+
+        private Booking[] bookings() {
+            // the set is filled before the array is cleared, so read in the opposite order
+            Booking[] few = this.few;
+            Set<Booking> many = this.many;
+            return null == many ? few.clone() : many.toArray(NO_BOOKINGS);
+        }
+
+        private int size() {
+            Booking[] few = this.few;
+            Set<Booking> many = this.many;
+            return null == many ? few.length : many.size();
+        }
+
+        private void add(Booking booking) {
+            if (null != this.many) {
+                this.many.add(booking);
+                return;
+            }
+            for (Booking b : this.few) {
+                if (b.equals(booking)) {
+                    return;
+                }
+            }
+            if (this.few.length == MAX_FEW_BOOKINGS) {
+                Set<Booking> many = ConcurrentHashMap.newKeySet();
+                many.addAll(Arrays.asList(this.few));
+                many.add(booking);
+                this.many = many;
+                this.few = NO_BOOKINGS;
+                return;
+            }
+            Booking[] added = Arrays.copyOf(this.few, this.few.length + 1);
+            added[added.length - 1] = booking;
+            this.few = added;
+        }
+
+        private boolean remove(Booking booking) {
+            if (null != this.many) {
+                return this.many.remove(booking);
+            }
+            Booking[] current = this.few;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(booking)) {
+                    Booking[] removed = Arrays.copyOf(current, current.length - 1);
+                    System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                    this.few = removed;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean hasWordsStartingWith(String[] prefixes) {
+            String[] words = this.words();
+            for (String prefix : prefixes) {
+                boolean isFound = false;
+                for (String word : words) {
+                    if (word.startsWith(prefix)) {
+                        isFound = true;
+                        break;
+                    }
+                }
+                if (!isFound) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The average similarity of the words of the search to their most similar word
+         * of this name, given the indexed words similar to each word of the search
+         */
+        private double similarity(List<Map<String, Double>> similarWords) {
+            String[] words = this.words();
+            double sum = 0;
+            for (Map<String, Double> similar : similarWords) {
+                double best = 0;
+                for (String word : words) {
+                    best = Math.max(best, similar.getOrDefault(word, 0.0));
+                }
+                sum += best;
+            }
+            return sum / similarWords.size();
+        }
+    }
+}
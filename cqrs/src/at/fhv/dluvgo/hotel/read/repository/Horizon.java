@@ -0,0 +1,55 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * The period rooms can be booked for: from today up to a configurable number of years ahead.
+ * As the clock advances, the horizon rolls forward with it - read models check
+ * {@link #today()} and extend themselves lazily.
+ */
+public class Horizon {
+    public static final String YEARS_PROPERTY = "hotel.horizon.years";
+    public static final int DEFAULT_YEARS = 3;
+
+    private final Clock clock;
+    private final int years;
+
+    public Horizon() {
+        this(Clock.systemDefaultZone(), Integer.getInteger(YEARS_PROPERTY, DEFAULT_YEARS));
+    }
+
+    public Horizon(Clock clock, int years) {
+        if (years < 1) {
+            throw new IllegalArgumentException("Horizon must span at least one year");
+        }
+
+        this.clock = clock;
+        this.years = years;
+    }
+
+    /**
+     * @return The first bookable night
+     */
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * @return The day after the last bookable night of a horizon starting at the given day
+     */
+    public LocalDate endOf(LocalDate start) {
+        return start.plusYears(years);
+    }
+
+    /**
+     * @return The largest number of nights a horizon can span
+     */
+    public int getMaxNights() {
+        return years * 366;
+    }
+
+    public int getYears() {
+        return years;
+    }
+}
@@ -1,55 +1,147 @@
 package at.fhv.dluvgo.hotel.read.repository;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
 import at.fhv.dluvgo.hotel.read.domain.Booking;
 import java.time.LocalDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Read model of the hotel. All indexes are concurrent data structures, so queries can run while
+ * the projectors update the model.
+ *
+ * <p>Bookings are indexed by id, by room, by their start and by the name of the guest (see
+ * {@link GuestNameIndex}). Bookable rooms (free periods of a room) are kept per room ordered by
+ * their start - as the free periods of a room never overlap, only the period starting last before
+ * a requested start can contain the requested range. Rooms are additionally grouped by capacity,
+ * so free-room lookups only look at rooms that are large enough. The nights a booking took out of
+ * the free periods are kept by booking id until they are archived, so a cancellation can give
+ * them back.
+ */
 public class ReadRepository {
-    private final List<Booking> bookings;
-    private final List<BookableRoom> bookableRooms;
+    private static final Logger LOG = Logger.forRead(ReadRepository.class);
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+    private static final Comparator<Booking> BY_START = Comparator
+        .comparing(Booking::getStart)
+        .thenComparing(Booking::getId);
+
+    private final Map<UUID, Booking> bookingsById;
+    private final NavigableSet<Booking> bookingsByStart;
+    private final GuestNameIndex bookingsByGuest;
+    private final Map<UUID, NavigableMap<LocalDateTime, BookableRoom>> bookableRoomsByRoom;
+    private final NavigableMap<Integer, Map<UUID, NavigableMap<LocalDateTime, BookableRoom>>>
+        bookableRoomsByCapacity;
+    private final Map<UUID, BookableRoom> bookedPeriodsByBooking;
 
     public ReadRepository() {
-        this.bookings = new LinkedList<>();
-        this.bookableRooms = new LinkedList<>();
+        this.bookingsById = new ConcurrentHashMap<>();
+        this.bookingsByStart = new ConcurrentSkipListSet<>(BY_START);
+        this.bookingsByGuest = new GuestNameIndex();
+        this.bookableRoomsByRoom = new ConcurrentHashMap<>();
+        this.bookableRoomsByCapacity = new ConcurrentSkipListMap<>();
+        this.bookedPeriodsByBooking = new ConcurrentHashMap<>();
     }
 
     /* ### Booking ### */
 
     public Booking getBooking(UUID bookingId) {
-        for (Booking b : this.bookings) {
-            if (b.getId().equals(bookingId)) {
-                return b;
-            }
+        Booking booking = this.bookingsById.get(bookingId);
+        if (null == booking) {
+            LOG.warn("Booking not found");
         }
-        System.err.println("[READ] ReadRepository - Booking not found");
-        return null;
+        return booking;
     }
 
     public List<Booking> getBookings(
         LocalDateTime from,
         LocalDateTime to
     ) {
-        List<Booking> result = new LinkedList<>();
-        for (Booking b : this.bookings) {
-            if ((b.getStart().isEqual(from) || b.getStart().isAfter(from))
-                && (b.getEnd().isEqual(to) || b.getEnd().isBefore(to))
-            ) {
-                result.add(b);
-            }
+        return this.streamBookings(from, to).collect(Collectors.toList());
+    }
+
+    /**
+     * Walks the bookings starting and ending within the given range lazily, ordered by their
+     * start and id. Nothing is copied - bookings added or removed while the stream is consumed
+     * may or may not be part of it.
+     */
+    public Stream<Booking> streamBookings(LocalDateTime from, LocalDateTime to) {
+        return this.streamBookings(to, from, MIN_ID, true);
+    }
+
+    /**
+     * Like {@link #streamBookings(LocalDateTime, LocalDateTime)}, but only returns the bookings
+     * ordered after the booking with the given start and id - used to continue where a previous
+     * page ended.
+     */
+    public Stream<Booking> streamBookingsAfter(
+        LocalDateTime from,
+        LocalDateTime to,
+        LocalDateTime afterStart,
+        UUID afterId
+    ) {
+        if (afterStart.isBefore(from)) {
+            return this.streamBookings(from, to);
         }
+        return this.streamBookings(to, afterStart, afterId, false);
+    }
 
-        return result;
+    private Stream<Booking> streamBookings(
+        LocalDateTime to,
+        LocalDateTime afterStart,
+        UUID afterId,
+        boolean inclusive
+    ) {
+        if (to.isBefore(afterStart)) {
+            return Stream.empty();
+        }
+        NavigableSet<Booking> candidates = this.bookingsByStart.subSet(
+            probe(afterStart, afterId),
+            inclusive,
+            probe(to, MAX_ID),
+            true
+        );
+
+        return candidates.stream()
+            .filter(b -> b.getEnd().isEqual(to) || b.getEnd().isBefore(to));
+    }
+
+    /**
+     * @return Up to {@code limit} active bookings of guests with a name starting like the given
+     * one, word by word (see {@link GuestNameIndex#findByPrefix})
+     */
+    public List<Booking> findBookingsByGuest(String name, int limit) {
+        return this.bookingsByGuest.findByPrefix(name, limit);
+    }
+
+    /**
+     * @return Up to {@code limit} active bookings of guests with a name similar to the given one
+     * (see {@link GuestNameIndex#findSimilar})
+     */
+    public List<Booking> findBookingsBySimilarGuest(String name, int limit) {
+        return this.bookingsByGuest.findSimilar(name, limit);
     }
 
     public void addBooking(Booking booking) {
-        if (this.bookings.contains(booking)) {
+        if (this.bookingsById.containsKey(booking.getId())) {
             this.updateBooking(booking);
+            return;
         }
-        this.bookings.add(booking);
-        System.out.println("[READ] ReadRepository - Added booking");
+        this.index(booking);
+        LOG.debug("Added booking");
     }
 
     public void addBookings(Booking... bookings) {
@@ -59,19 +151,12 @@ public class ReadRepository {
     }
 
     public void updateBooking(Booking booking) {
-        Booking bookingToUpdate = null;
-
-        for (Booking b : this.bookings) {
-            if (b.getId().equals(booking.getId())) {
-                bookingToUpdate = b;
-                break;
-            }
-        }
+        Booking bookingToUpdate = this.bookingsById.get(booking.getId());
 
         if (null == bookingToUpdate) {
             // something went utterly wrong - AND THUS.. we simply add it
-            System.err.println(
-                "[READ] ReadRepository - Booking to update not found. Fixing: adding a new booking"
+            LOG.warn(
+                "Booking to update not found. Fixing: adding a new booking"
             );
             this.addBooking(booking);
             return;
@@ -79,27 +164,64 @@ public class ReadRepository {
 
         Booking newBooking = new Booking(bookingToUpdate, booking.getState());
 
-        this.bookings.remove(bookingToUpdate);
-        this.bookings.add(newBooking);
-        System.out.println("[READ] ReadRepository - Updated booking");
+        this.unindex(bookingToUpdate);
+        this.index(newBooking);
+        LOG.debug("Updated booking");
     }
 
     public void removeBooking(Booking booking) {
-        this.bookings.remove(booking);
-        System.out.println("[READ] ReadRepository - Removed booking");
+        this.unindex(booking);
+        LOG.debug("Removed booking");
+    }
+
+    private void index(Booking booking) {
+        this.bookingsById.put(booking.getId(), booking);
+        this.bookingsByStart.add(booking);
+        this.bookingsByGuest.add(booking);
+    }
+
+    private void unindex(Booking booking) {
+        this.bookingsById.remove(booking.getId(), booking);
+        this.bookingsByStart.remove(booking);
+        this.bookingsByGuest.remove(booking);
+    }
+
+    private static Booking probe(LocalDateTime start, UUID id) {
+        return new Booking(id, null, start, start, null, null, 0);
+    }
+
+    /* ### Merging ### */
+
+    /**
+     * Adds all bookings and free periods of another read model. Both models must cover
+     * different rooms - used to merge the partitions of a rebuild, possibly from several
+     * threads at once.
+     */
+    public void addAll(ReadRepository other) {
+        for (Booking booking : other.bookingsById.values()) {
+            this.index(booking);
+        }
+        this.bookableRoomsByRoom.putAll(other.bookableRoomsByRoom);
+        this.bookedPeriodsByBooking.putAll(other.bookedPeriodsByBooking);
+        for (Map.Entry<Integer, Map<UUID, NavigableMap<LocalDateTime, BookableRoom>>> bucket
+            : other.bookableRoomsByCapacity.entrySet()
+        ) {
+            this.bookableRoomsByCapacity
+                .computeIfAbsent(bucket.getKey(), c -> new ConcurrentHashMap<>())
+                .putAll(bucket.getValue());
+        }
     }
 
     /* ### BookableRoom ### */
 
     public List<BookableRoom> getBookableRooms(UUID roomNumber) {
-        List<BookableRoom> result = new LinkedList<>();
-        for (BookableRoom br : this.bookableRooms) {
-            if (br.getRoomNumber().equals(roomNumber)) {
-                result.add(br);
-            }
+        NavigableMap<LocalDateTime, BookableRoom> roomPeriods =
+            this.bookableRoomsByRoom.get(roomNumber);
+        if (null == roomPeriods) {
+            return Collections.emptyList();
         }
 
-        return result;
+        return new ArrayList<>(roomPeriods.values());
     }
 
     public List<BookableRoom> getBookableRooms(
@@ -107,13 +229,18 @@ public class ReadRepository {
         LocalDateTime from,
         LocalDateTime to
     ) {
-        List<BookableRoom> result = new LinkedList<>();
-        for (BookableRoom br : this.bookableRooms) {
-            if (br.getCapacity() >= capacity
-                && (br.getStart().isEqual(from) || br.getStart().isBefore(from))
-                && (br.getEnd().isEqual(to) || br.getEnd().isAfter(to))
-            ) {
-                result.add(br);
+        List<BookableRoom> result = new ArrayList<>();
+        for (Map<UUID, NavigableMap<LocalDateTime, BookableRoom>> rooms
+            : this.bookableRoomsByCapacity.tailMap(capacity, true).values()
+        ) {
+            for (NavigableMap<LocalDateTime, BookableRoom> roomPeriods : rooms.values()) {
+                Map.Entry<LocalDateTime, BookableRoom> candidate = roomPeriods.floorEntry(from);
+                if (null != candidate) {
+                    BookableRoom br = candidate.getValue();
+                    if (br.getEnd().isEqual(to) || br.getEnd().isAfter(to)) {
+                        result.add(br);
+                    }
+                }
             }
         }
 
@@ -121,14 +248,19 @@ public class ReadRepository {
     }
 
     public void addBookableRoom(BookableRoom bookableRoom) {
-        if (this.bookableRooms.contains(bookableRoom)) {
-            System.err
-                .println("[READ] ReadRepository - Bookable room already saved in ReadRepository.");
+        NavigableMap<LocalDateTime, BookableRoom> roomPeriods = this.bookableRoomsByRoom
+            .computeIfAbsent(bookableRoom.getRoomNumber(), id -> new ConcurrentSkipListMap<>());
+        if (roomPeriods.get(bookableRoom.getStart()) == bookableRoom) {
+            LOG.warn("Bookable room already saved in ReadRepository");
             return;
         }
 
-        this.bookableRooms.add(bookableRoom);
-        System.out.println("[READ] ReadRepository - Added bookable room");
+        // a period starting at the same time replaces the one that is currently being split up
+        roomPeriods.put(bookableRoom.getStart(), bookableRoom);
+        this.bookableRoomsByCapacity
+            .computeIfAbsent(bookableRoom.getCapacity(), c -> new ConcurrentHashMap<>())
+            .putIfAbsent(bookableRoom.getRoomNumber(), roomPeriods);
+        LOG.debug("Added bookable room");
     }
 
     public void addBookableRooms(BookableRoom... bookableRooms) {
@@ -137,8 +269,93 @@ public class ReadRepository {
         }
     }
 
+    /**
+     * Removes all free periods ending at or before the given time from the read model - they can
+     * no longer be booked. Booked periods ending until then are dropped as well, cancelling them
+     * frees nothing.
+     *
+     * @return The number of archived free periods
+     */
+    public int archiveBookableRooms(LocalDateTime endingUntil) {
+        this.bookedPeriodsByBooking.values().removeIf(
+            period -> !period.getEnd().isAfter(endingUntil)
+        );
+
+        int archived = 0;
+        for (NavigableMap<LocalDateTime, BookableRoom> roomPeriods
+            : this.bookableRoomsByRoom.values()
+        ) {
+            Iterator<BookableRoom> it = roomPeriods
+                .headMap(endingUntil, false)
+                .values()
+                .iterator();
+            while (it.hasNext()) {
+                if (!it.next().getEnd().isAfter(endingUntil)) {
+                    it.remove();
+                    archived++;
+                }
+            }
+        }
+
+        return archived;
+    }
+
+    /**
+     * Extends the free periods of all rooms up to a new end of the horizon. A period ending at
+     * the old end is prolonged, rooms that are occupied at the old end get a new period.
+     */
+    public void extendBookableRooms(
+        LocalDateTime oldEnd,
+        LocalDateTime newPeriodStart,
+        LocalDateTime newEnd
+    ) {
+        for (Map.Entry<Integer, Map<UUID, NavigableMap<LocalDateTime, BookableRoom>>> bucket
+            : this.bookableRoomsByCapacity.entrySet()
+        ) {
+            for (Map.Entry<UUID, NavigableMap<LocalDateTime, BookableRoom>> room
+                : bucket.getValue().entrySet()
+            ) {
+                Map.Entry<LocalDateTime, BookableRoom> last = room.getValue().lastEntry();
+                if (null != last && last.getValue().getEnd().isEqual(oldEnd)) {
+                    room.getValue().put(last.getKey(), new BookableRoom(
+                        room.getKey(),
+                        last.getKey(),
+                        newEnd,
+                        bucket.getKey()
+                    ));
+                } else {
+                    room.getValue().put(newPeriodStart, new BookableRoom(
+                        room.getKey(),
+                        newPeriodStart,
+                        newEnd,
+                        bucket.getKey()
+                    ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remembers the nights a booking took out of the free periods of its room.
+     */
+    public void addBookedPeriod(UUID bookingId, BookableRoom bookedPeriod) {
+        this.bookedPeriodsByBooking.put(bookingId, bookedPeriod);
+    }
+
+    /**
+     * @return The nights the booking took out of the free periods of its room, or {@code null}
+     * if the booking is unknown or they have been archived already
+     */
+    public BookableRoom removeBookedPeriod(UUID bookingId) {
+        return this.bookedPeriodsByBooking.remove(bookingId);
+    }
+
     public void removeBookableRoom(BookableRoom bookableRoom) {
-        this.bookableRooms.remove(bookableRoom);
-        System.out.println("[READ] ReadRepository - Removed bookable room");
+        NavigableMap<LocalDateTime, BookableRoom> roomPeriods =
+            this.bookableRoomsByRoom.get(bookableRoom.getRoomNumber());
+        if (null != roomPeriods) {
+            roomPeriods.remove(bookableRoom.getStart(), bookableRoom);
+        }
+        LOG.debug("Removed bookable room");
     }
 }
@@ -0,0 +1,182 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy of a single room as a ring of bits, one per night - a set bit means the room is
+ * occupied that night. Nights are given as epoch days and the bit of a night is found at its
+ * epoch day modulo the size of the ring, so the window of nights covered by the ring can roll
+ * forward without moving any bits. Ranges are half-open, all nights passed in have to lie within
+ * the current window {@code [windowStart, windowEnd)} of the {@link AvailabilityRepository}.
+ *
+ * <p>The nights of all bookings that have not ended yet are kept as well, so bookings beyond
+ * the window can be marked once the window reaches them. Only a single thread may update a room,
+ * but queries can run concurrently.
+ */
+class RoomAvailability {
+    private final UUID roomNumber;
+    private final int capacity;
+    private final int ringSize;
+    private final AtomicLongArray occupied;
+    private final Map<UUID, int[]> bookings = new HashMap<>();
+
+    /**
+     * @param ringSize Number of nights of the ring, a multiple of 64
+     */
+    RoomAvailability(UUID roomNumber, int capacity, int ringSize) {
+        this.roomNumber = roomNumber;
+        this.capacity = capacity;
+        this.ringSize = ringSize;
+        this.occupied = new AtomicLongArray(ringSize >>> 6);
+    }
+
+    /**
+     * @return Whether the booking has been recorded, i.e. it does not lie in the past
+     */
+    boolean book(UUID bookingId, int first, int end, int windowStart, int windowEnd) {
+        if (end <= windowStart || first >= end) {
+            return false;
+        }
+
+        bookings.put(bookingId, new int[]{first, end});
+        update(Math.max(first, windowStart), Math.min(end, windowEnd), true);
+        return true;
+    }
+
+    /**
+     * @return The first and end night of the cancelled booking or {@code null} if it is unknown
+     */
+    int[] cancel(UUID bookingId, int windowStart, int windowEnd) {
+        int[] range = bookings.remove(bookingId);
+        if (null == range) {
+            return null;
+        }
+
+        update(Math.max(range[0], windowStart), Math.min(range[1], windowEnd), false);
+        // bookings with unusual check-in/out hours may share a night with the cancelled one
+        for (int[] other : bookings.values()) {
+            if (other[0] < range[1] && range[0] < other[1]) {
+                update(
+                    Math.max(other[0], windowStart),
+                    Math.min(other[1], windowEnd),
+                    true
+                );
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Moves the window forward: the bits of the nights entering the window are reset to the
+     * bookings known for them, bookings that have ended are forgotten.
+     *
+     * @return Ids of the forgotten bookings
+     */
+    List<UUID> advance(int oldWindowEnd, int newWindowStart, int newWindowEnd) {
+        int from = Math.max(oldWindowEnd, newWindowEnd - ringSize);
+        update(from, newWindowEnd, false);
+        for (int[] range : bookings.values()) {
+            update(Math.max(range[0], from), Math.min(range[1], newWindowEnd), true);
+        }
+
+        List<UUID> archived = new ArrayList<>();
+        for (Iterator<Map.Entry<UUID, int[]>> it = bookings.entrySet().iterator();
+            it.hasNext(); ) {
+            Map.Entry<UUID, int[]> booking = it.next();
+            if (booking.getValue()[1] <= newWindowStart) {
+                archived.add(booking.getKey());
+                it.remove();
+            }
+        }
+
+        return archived;
+    }
+
+    boolean isFree(int first, int end) {
+        return first < end && nextOccupied(first, end) == end;
+    }
+
+    /**
+     * @return The first night of the free period containing the given (free) night
+     */
+    int freeFrom(int night, int windowStart) {
+        return previousOccupied(windowStart, night) + 1;
+    }
+
+    /**
+     * @return The night after the free period continuing at the given night (exclusive end)
+     */
+    int freeUntil(int night, int windowEnd) {
+        return nextOccupied(night, windowEnd);
+    }
+
+    UUID getRoomNumber() {
+        return roomNumber;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getBookingCount() {
+        return bookings.size();
+    }
+
+    /* ### Bits ### */
+
+    /**
+     * @return The first occupied night within {@code [from, to)} or {@code to} if there is none
+     */
+    private int nextOccupied(int from, int to) {
+        int night = from;
+        while (night < to) {
+            int index = Math.floorMod(night, ringSize);
+            int bit = index & 63;
+            long bits = occupied.get(index >>> 6) & (-1L << bit);
+            if (bits != 0) {
+                return Math.min(to, night + Long.numberOfTrailingZeros(bits) - bit);
+            }
+            night += 64 - bit;
+        }
+        return to;
+    }
+
+    /**
+     * @return The last occupied night within {@code [from, to)} or {@code from - 1} if there is
+     *     none
+     */
+    private int previousOccupied(int from, int to) {
+        int night = to - 1;
+        while (night >= from) {
+            int index = Math.floorMod(night, ringSize);
+            int bit = index & 63;
+            long bits = occupied.get(index >>> 6) & (-1L >>> (63 - bit));
+            if (bits != 0) {
+                return Math.max(from - 1, night - bit + 63 - Long.numberOfLeadingZeros(bits));
+            }
+            night -= bit + 1;
+        }
+        return from - 1;
+    }
+
+    private void update(int from, int to, boolean isOccupied) {
+        int night = from;
+        while (night < to) {
+            int index = Math.floorMod(night, ringSize);
+            int bit = index & 63;
+            int count = Math.min(64 - bit, to - night);
+            long mask = (count == 64 ? -1L : (1L << count) - 1) << bit;
+
+            int word = index >>> 6;
+            long bits = occupied.get(word);
+            occupied.set(word, isOccupied ? bits | mask : bits & ~mask);
+            night += count;
+        }
+    }
+}
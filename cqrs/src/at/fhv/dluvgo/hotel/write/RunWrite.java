@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetBookingsQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.GetFreeRoomsQuery;
 import at.fhv.dluvgo.hotel.read.cqrs.query.QueryHandler;
@@ -10,53 +11,110 @@ import at.fhv.dluvgo.hotel.read.projection.RoomProjector;
 import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
 import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
 import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.Event;
 import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.compaction.LogCompactor;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class RunWrite implements Runnable {
+    public static final String COMPACTION_INTERVAL_PROPERTY = "hotel.compaction.intervalHours";
+    public static final int DEFAULT_COMPACTION_INTERVAL_HOURS = 24;
+    private static final Logger LOG = Logger.forWrite(RunWrite.class);
+
     private final EventStore eventStore;
-    private boolean isActive;
+    private final CommandBus commandBus;
+    private final LogCompactor logCompactor;
+    private final CountDownLatch shutdown;
 
     BookingAggregate bookingAggregate;
     RoomAggregate roomAggregate;
 
     public RunWrite() {
-        this.isActive = true;
+        this.shutdown = new CountDownLatch(1);
         eventStore = new EventStore();
         bookingAggregate = new BookingAggregate(eventStore);
         roomAggregate = new RoomAggregate(eventStore);
+        commandBus = new CommandBus(eventStore, bookingAggregate, roomAggregate);
+        logCompactor = new LogCompactor(eventStore);
     }
 
     public EventStore getEventStore() {
         return eventStore;
     }
 
+    public CommandBus getCommandBus() {
+        return commandBus;
+    }
+
+    /**
+     * Compacts the event log periodically until the write side is shut down.
+     */
     @Override
     public void run() {
-        while (isActive) {
+        long interval = TimeUnit.HOURS.toMillis(Integer.getInteger(
+            COMPACTION_INTERVAL_PROPERTY,
+            DEFAULT_COMPACTION_INTERVAL_HOURS
+        ));
+        try {
+            if (interval <= 0) {
+                shutdown.await();
+                return;
+            }
+            while (!shutdown.await(interval, TimeUnit.MILLISECONDS)) {
+                compact();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            commandBus.close();
         }
     }
 
-    public void runCommand(BookRoomCommand cmd) {
-        try {
-            this.bookingAggregate.handleBookRoomCommand(cmd);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public void shutdown() {
+        shutdown.countDown();
     }
 
-    public void runCommand(CancelBookingCommand cmd) {
+    public LogCompactor.Result compact() {
         try {
-            this.bookingAggregate.handleCancelBookingCommand(cmd);
-        } catch (Exception e) {
-            e.printStackTrace();
+            return logCompactor.compact();
+        } catch (RuntimeException e) {
+            LOG.error("Compacting the event log failed", e);
+            return null;
         }
     }
 
-    public void runCommand(CreateRoomCommand cmd) {
-        this.roomAggregate.handleCreateRoomCommand(cmd);
+    public CompletableFuture<List<Event>> runCommand(BookRoomCommand cmd) {
+        return logFailure(this.commandBus.dispatch(cmd));
+    }
+
+    public CompletableFuture<List<Event>> runCommand(CancelBookingCommand cmd) {
+        return logFailure(this.commandBus.dispatch(cmd));
+    }
+
+    public CompletableFuture<List<Event>> runCommand(CreateRoomCommand cmd) {
+        return logFailure(this.commandBus.dispatch(cmd));
+    }
+
+    public CompletableFuture<List<Event>> runCommand(BatchCommand cmd) {
+        return logFailure(this.commandBus.dispatch(cmd));
+    }
+
+    private static CompletableFuture<List<Event>> logFailure(
+        CompletableFuture<List<Event>> result
+    ) {
+        result.whenComplete((events, e) -> {
+            if (null != e) {
+                LOG.error("Command failed", e);
+            }
+        });
+        return result;
     }
 }
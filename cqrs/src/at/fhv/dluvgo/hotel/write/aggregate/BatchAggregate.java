@@ -0,0 +1,135 @@
+package at.fhv.dluvgo.hotel.write.aggregate;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.domain.Booking;
+import at.fhv.dluvgo.hotel.write.domain.PersonalDetails;
+import at.fhv.dluvgo.hotel.write.domain.Room;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.AppendBatch;
+import at.fhv.dluvgo.hotel.write.repository.ConcurrencyException;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.utils.RoomUtility;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class BatchAggregate {
+    private static final Logger LOG = Logger.forWrite(BatchAggregate.class);
+
+    private final EventStore eventStore;
+
+    public BatchAggregate(EventStore eventStore) {
+        this.eventStore = eventStore;
+    }
+
+    /**
+     * Validates all commands of the batch against the current state (and against each other)
+     * and appends all resulting events in a single atomic write.
+     */
+    public List<Event> handleBatchCommand(BatchCommand command) throws Exception {
+        LOG.debug(
+            "BatchCommand with %d commands called",
+            command.size()
+        );
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.tryBatch(command);
+            } catch (ConcurrencyException e) {
+                if (attempt == BookingAggregate.MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOG.debug("rooms changed concurrently, retrying");
+            }
+        }
+    }
+
+    private List<Event> tryBatch(BatchCommand command) throws Exception {
+        AppendBatch batch = new AppendBatch();
+        Map<UUID, Room> rooms = new HashMap<>();
+
+        for (CreateRoomCommand cmd : command.getCreateRoomCommands()) {
+            if (rooms.containsKey(cmd.getRoomNumber())
+                || eventStore.getVersion(cmd.getRoomNumber()) != EventStore.NO_STREAM
+            ) {
+                throw new Exception(
+                    "[WRITE] BatchAggregate - Room " + cmd.getRoomNumber() + " already exists"
+                );
+            }
+
+            batch.add(
+                cmd.getRoomNumber(),
+                EventStore.NO_STREAM,
+                new RoomCreatedEvent(cmd.getRoomNumber(), cmd.getMaxPeople())
+            );
+            rooms.put(cmd.getRoomNumber(), new Room(cmd.getRoomNumber(), cmd.getMaxPeople()));
+        }
+
+        for (BookRoomCommand cmd : command.getBookRoomCommands()) {
+            Room room = rooms.get(cmd.getRoomNumber());
+            if (null == room) {
+                // not handed back to the cache, as the bookings of the batch are added to it
+                room = RoomUtility.recreateRoomState(eventStore, cmd.getRoomNumber());
+                if (null == room) {
+                    throw new Exception(
+                        "[WRITE] BatchAggregate - Room " + cmd.getRoomNumber() + " does not exist"
+                    );
+                }
+                rooms.put(cmd.getRoomNumber(), room);
+            }
+
+            BookingCreatedEvent bookingCreatedEvent = new BookingCreatedEvent(
+                room.getRoomNumber(),
+                cmd.getBookingStartTime(),
+                cmd.getBookingEndTime(),
+                cmd.getContactName(),
+                cmd.getNumberOfPeople()
+            );
+            RoomBookedEvent roomBookedEvent = new RoomBookedEvent(
+                bookingCreatedEvent.getBookingId(),
+                cmd.getRoomNumber(),
+                cmd.getBookingStartTime(),
+                cmd.getBookingEndTime(),
+                cmd.getContactName(),
+                cmd.getNumberOfPeople()
+            );
+
+            if (!room.isFree(cmd.getBookingStartTime(), cmd.getBookingEndTime(),
+                bookingCreatedEvent.getBookingId())) {
+                throw new Exception(
+                    "[WRITE] BatchAggregate - Room " + cmd.getRoomNumber() + " is not free"
+                );
+            }
+
+            // later bookings of the same batch must not overlap this one either
+            room.addBooking(Booking.create(
+                bookingCreatedEvent.getBookingId(),
+                room,
+                cmd.getBookingStartTime(),
+                cmd.getBookingEndTime(),
+                PersonalDetails.create(cmd.getContactName(), cmd.getNumberOfPeople())
+            ));
+
+            batch.add(room.getRoomNumber(), room.getVersion(), roomBookedEvent);
+            batch.add(
+                bookingCreatedEvent.getBookingId(),
+                EventStore.NO_STREAM,
+                bookingCreatedEvent
+            );
+        }
+
+        if (batch.isEmpty()) {
+            return new ArrayList<>();
+        }
+        eventStore.append(batch);
+
+        return new ArrayList<>(batch.getEvents());
+    }
+}
@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write.aggregate;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
 import at.fhv.dluvgo.hotel.write.domain.Booking;
@@ -8,6 +9,8 @@ import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
 import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
 import at.fhv.dluvgo.hotel.write.event.Event;
 import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.repository.AppendBatch;
+import at.fhv.dluvgo.hotel.write.repository.ConcurrencyException;
 import at.fhv.dluvgo.hotel.write.repository.EventStore;
 import at.fhv.dluvgo.hotel.write.utils.BookingUtility;
 import at.fhv.dluvgo.hotel.write.utils.RoomUtility;
@@ -15,6 +18,14 @@ import java.util.Arrays;
 import java.util.List;
 
 public class BookingAggregate {
+    /**
+     * How often a command is retried if another command appended to the same room in the
+     * meantime.
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
+    private static final Logger LOG = Logger.forWrite(BookingAggregate.class);
+
     private final EventStore eventStore;
 
     public BookingAggregate(EventStore eventStore) {
@@ -22,9 +33,29 @@ public class BookingAggregate {
     }
 
     public List<Event> handleBookRoomCommand(BookRoomCommand command) throws Exception {
-        System.out.println("[WRITE] BookingAggregate - BookRoomCommand called");
+        LOG.debug("BookRoomCommand called");
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.tryBookRoom(command);
+            } catch (ConcurrencyException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOG.debug("room changed concurrently, retrying");
+            }
+        }
+    }
+
+    private List<Event> tryBookRoom(BookRoomCommand command) throws Exception {
         Room room = RoomUtility.recreateRoomState(eventStore, command.getRoomNumber());
+        try {
+            return this.bookRoom(room, command);
+        } finally {
+            RoomUtility.release(eventStore, room);
+        }
+    }
 
+    private List<Event> bookRoom(Room room, BookRoomCommand command) throws Exception {
         BookingCreatedEvent bookingCreatedEvent = new BookingCreatedEvent(
             room.getRoomNumber(),
             command.getBookingStartTime(),
@@ -47,17 +78,52 @@ public class BookingAggregate {
             throw new Exception("[WRITE] BookingAggregate - Room is not free");
         }
 
-        eventStore.addEvent(bookingCreatedEvent.getBookingId(), bookingCreatedEvent);
-        eventStore.addEvent(bookingCreatedEvent.getRoomNumber(), roomBookedEvent);
+        // the room stream decides whether the booking succeeds, the booking stream is new - both
+        // are written at once, so there is never a booking without its room or the other way round
+        eventStore.append(new AppendBatch()
+            .add(room.getRoomNumber(), room.getVersion(), roomBookedEvent)
+            .add(bookingCreatedEvent.getBookingId(), EventStore.NO_STREAM, bookingCreatedEvent)
+        );
 
         return Arrays.asList(bookingCreatedEvent, roomBookedEvent);
     }
 
     public List<Event> handleCancelBookingCommand(CancelBookingCommand command) throws Exception {
-        System.out.println("[WRITE] BookingAggregate - CancelBookingCommand called");
+        LOG.debug("CancelBookingCommand called");
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return this.tryCancelBooking(command);
+            } catch (ConcurrencyException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                LOG.debug("room changed concurrently, retrying");
+            }
+        }
+    }
+
+    private List<Event> tryCancelBooking(CancelBookingCommand command) throws Exception {
         Booking booking = BookingUtility.recreateBookingState(eventStore, command.getBookingId());
+        if (null == booking) {
+            // unknown or archived by a compaction of the event log
+            throw new Exception("[WRITE] BookingAggregate - Booking does not exist");
+        }
+        try {
+            return this.cancelBooking(booking, command);
+        } finally {
+            RoomUtility.release(eventStore, booking.getRoom());
+        }
+    }
 
-        if (booking.getState().equals(Booking.State.CANCELLED)) {
+    private List<Event> cancelBooking(Booking booking, CancelBookingCommand command)
+        throws Exception {
+        // cancellations are stored in the room's stream, so the room knows the actual state -
+        // a room recreated from a snapshot does not know bookings cancelled before at all
+        Booking roomBooking = booking.getRoom().getBooking(booking.getId());
+        if (booking.getState().equals(Booking.State.CANCELLED)
+            || null == roomBooking
+            || roomBooking.getState().equals(Booking.State.CANCELLED)
+        ) {
             throw new Exception("[WRITE] BookingAggregate - Booking is already cancelled");
         }
 
@@ -65,7 +131,11 @@ public class BookingAggregate {
             command.getBookingId()
         );
 
-        eventStore.addEvent(booking.getRoom().getRoomNumber(), bookingCancelledEvent);
+        eventStore.append(
+            booking.getRoom().getRoomNumber(),
+            booking.getRoom().getVersion(),
+            bookingCancelledEvent
+        );
 
         return Arrays.asList(bookingCancelledEvent);
     }
@@ -3,6 +3,7 @@ package at.fhv.dluvgo.hotel.write.aggregate;
 import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
 import at.fhv.dluvgo.hotel.write.event.Event;
 import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.ConcurrencyException;
 import at.fhv.dluvgo.hotel.write.repository.EventStore;
 import java.util.Arrays;
 import java.util.List;
@@ -14,13 +15,15 @@ public class RoomAggregate {
         this.eventStore = eventStore;
     }
 
-    public List<Event> handleCreateRoomCommand(CreateRoomCommand command) {
+    public List<Event> handleCreateRoomCommand(CreateRoomCommand command)
+        throws ConcurrencyException {
         RoomCreatedEvent event = new RoomCreatedEvent(
             command.getRoomNumber(),
             command.getMaxPeople()
         );
 
-        eventStore.addEvent(command.getRoomNumber(), event);
+        // a room can only be created once
+        eventStore.append(command.getRoomNumber(), EventStore.NO_STREAM, event);
 
         return Arrays.asList(event);
     }
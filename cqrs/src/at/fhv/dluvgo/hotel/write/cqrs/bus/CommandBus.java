@@ -0,0 +1,168 @@
+package at.fhv.dluvgo.hotel.write.cqrs.bus;
+
+import at.fhv.dluvgo.hotel.write.aggregate.BatchAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CancelBookingCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.commit.Durability;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes commands asynchronously. Commands are sharded by the room they affect onto a fixed
+ * number of single-threaded {@link CommandShard}s: commands for different rooms run in parallel,
+ * commands for the same room run one after another, so they do not have to compete for the
+ * room's stream version.
+ */
+public class CommandBus implements Closeable {
+    public static final String SHARDS_PROPERTY = "hotel.commandbus.shards";
+
+    private final EventStore eventStore;
+    private final BookingAggregate bookingAggregate;
+    private final RoomAggregate roomAggregate;
+    private final BatchAggregate batchAggregate;
+    private final CommandShard[] shards;
+
+    public CommandBus(
+        EventStore eventStore,
+        BookingAggregate bookingAggregate,
+        RoomAggregate roomAggregate
+    ) {
+        this(
+            eventStore,
+            bookingAggregate,
+            roomAggregate,
+            Integer.getInteger(SHARDS_PROPERTY, Runtime.getRuntime().availableProcessors())
+        );
+    }
+
+    public CommandBus(
+        EventStore eventStore,
+        BookingAggregate bookingAggregate,
+        RoomAggregate roomAggregate,
+        int shardCount
+    ) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+
+        this.eventStore = eventStore;
+        this.bookingAggregate = bookingAggregate;
+        this.roomAggregate = roomAggregate;
+        this.batchAggregate = new BatchAggregate(eventStore);
+        this.shards = new CommandShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new CommandShard(i);
+        }
+    }
+
+    public CompletableFuture<List<Event>> dispatch(CreateRoomCommand cmd) {
+        return whenDurable(
+            shardFor(cmd.getRoomNumber()).submit(() -> roomAggregate.handleCreateRoomCommand(cmd))
+        );
+    }
+
+    public CompletableFuture<List<Event>> dispatch(BookRoomCommand cmd) {
+        return whenDurable(
+            shardFor(cmd.getRoomNumber()).submit(() -> bookingAggregate.handleBookRoomCommand(cmd))
+        );
+    }
+
+    public CompletableFuture<List<Event>> dispatch(CancelBookingCommand cmd) {
+        // a cancellation changes the room of the booking, so it has to run on the room's shard
+        UUID roomNumber = findRoomNumber(cmd.getBookingId());
+        return whenDurable(
+            shardFor(null != roomNumber ? roomNumber : cmd.getBookingId())
+                .submit(() -> bookingAggregate.handleCancelBookingCommand(cmd))
+        );
+    }
+
+    /**
+     * A batch usually affects rooms of several shards. It runs on the shard of its first room and
+     * relies on the stream versions to detect commands of other shards it raced with.
+     */
+    public CompletableFuture<List<Event>> dispatch(BatchCommand cmd) {
+        UUID roomNumber = null;
+        if (!cmd.getCreateRoomCommands().isEmpty()) {
+            roomNumber = cmd.getCreateRoomCommands().get(0).getRoomNumber();
+        } else if (!cmd.getBookRoomCommands().isEmpty()) {
+            roomNumber = cmd.getBookRoomCommands().get(0).getRoomNumber();
+        }
+
+        return whenDurable(
+            shards[null == roomNumber ? 0 : shardIndex(roomNumber)]
+                .submit(() -> batchAggregate.handleBatchCommand(cmd))
+        );
+    }
+
+    /* ### Metrics ### */
+
+    public List<CommandShard> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    public int getTotalQueueDepth() {
+        int depth = 0;
+        for (CommandShard shard : shards) {
+            depth += shard.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops accepting commands and waits for the queued commands to finish.
+     */
+    @Override
+    public void close() {
+        try {
+            for (CommandShard shard : shards) {
+                shard.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ### Helper ### */
+
+    /**
+     * With group commit, the shard moves on to the next command right away, while the result of
+     * this one is only handed out once its events are durable.
+     */
+    private CompletableFuture<List<Event>> whenDurable(CompletableFuture<List<Event>> result) {
+        if (!Durability.GROUP.equals(eventStore.getDurability())) {
+            return result;
+        }
+        // runs once the command is done, so the commit covers its events
+        return result.thenCompose(events -> eventStore.whenDurable().thenApply(v -> events));
+    }
+
+    private CommandShard shardFor(UUID aggregateId) {
+        return shards[shardIndex(aggregateId)];
+    }
+
+    private int shardIndex(UUID aggregateId) {
+        return Math.floorMod(aggregateId.hashCode(), shards.length);
+    }
+
+    private UUID findRoomNumber(UUID bookingId) {
+        List<Event> events = eventStore.getEvents(bookingId);
+        if (null == events || events.isEmpty()
+            || !(events.get(0) instanceof BookingCreatedEvent)
+        ) {
+            return null;
+        }
+
+        return ((BookingCreatedEvent) events.get(0)).getRoomNumber();
+    }
+}
@@ -0,0 +1,90 @@
+package at.fhv.dluvgo.hotel.write.cqrs.bus;
+
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A single-threaded executor of the {@link CommandBus}. All commands of the aggregates mapped to
+ * this shard run one after another on the same thread.
+ */
+public class CommandShard {
+    private static final LatencyHistogram COMMAND_LATENCY = Metrics.histogram("command.latency");
+    private static final LongAdder COMMANDS_FAILED = Metrics.counter("command.failed");
+
+    private final int index;
+    private final ThreadPoolExecutor executor;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    CommandShard(int index) {
+        this.index = index;
+        this.executor = new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "command-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    CompletableFuture<List<Event>> submit(Callable<List<Event>> command) {
+        CompletableFuture<List<Event>> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(command.call());
+                } catch (Exception e) {
+                    COMMANDS_FAILED.increment();
+                    result.completeExceptionally(e);
+                } finally {
+                    long nanos = System.nanoTime() - submitted;
+                    latency.record(nanos);
+                    COMMAND_LATENCY.record(nanos);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /* ### Metrics ### */
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Number of commands waiting to be executed
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Time from submitting a command until its result is available (including queueing)
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
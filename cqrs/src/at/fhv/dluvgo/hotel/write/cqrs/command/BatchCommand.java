@@ -0,0 +1,36 @@
+package at.fhv.dluvgo.hotel.write.cqrs.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates several rooms and/or books several rooms at once. Either all of the contained commands
+ * succeed or none of them.
+ */
+public class BatchCommand {
+    private final List<CreateRoomCommand> createRoomCommands;
+    private final List<BookRoomCommand> bookRoomCommands;
+
+    public BatchCommand(
+        List<CreateRoomCommand> createRoomCommands,
+        List<BookRoomCommand> bookRoomCommands
+    ) {
+        this.createRoomCommands = Collections.unmodifiableList(
+            new ArrayList<>(createRoomCommands)
+        );
+        this.bookRoomCommands = Collections.unmodifiableList(new ArrayList<>(bookRoomCommands));
+    }
+
+    public List<CreateRoomCommand> getCreateRoomCommands() {
+        return createRoomCommands;
+    }
+
+    public List<BookRoomCommand> getBookRoomCommands() {
+        return bookRoomCommands;
+    }
+
+    public int size() {
+        return createRoomCommands.size() + bookRoomCommands.size();
+    }
+}
@@ -52,7 +52,10 @@ public class Booking {
     /* ### Business logic ### */
 
     public void cancel() {
-        state = State.CANCELLED;
+        if (state.equals(State.ACTIVE)) {
+            state = State.CANCELLED;
+            room.bookingCancelled(this);
+        }
     }
 
     /* ### Getter ### */
@@ -1,16 +1,34 @@
 package at.fhv.dluvgo.hotel.write.domain;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class Room {
     private final UUID roomNumber;
     private final int maxPeople;
-    private final List<Booking> bookings = new LinkedList<>();
+    private final List<Booking> bookings = new ArrayList<>();
+    private final Map<UUID, Booking> bookingsById = new HashMap<>();
+
+    /**
+     * Active bookings ordered by their start. Active bookings of a room never overlap (see
+     * {@link #isFree(LocalDateTime, LocalDateTime, UUID)}), which means that their ends are
+     * ordered as well.
+     */
+    private final NavigableMap<LocalDateTime, Booking> activeBookings = new TreeMap<>();
+
+    /**
+     * Number of events of the room's stream this state has been recreated from.
+     */
+    private int version;
 
     public Room(UUID roomNumber) {
         this(roomNumber, new Random().nextInt(4));
@@ -23,14 +41,19 @@ public class Room {
 
     /* ### Business logic ### */
 
+    /**
+     * Checks whether the room is free between start and end (both inclusive), ignoring the
+     * booking with the given id. Only the active booking starting last before the given end can
+     * overlap, as it also ends last - so this is a single O(log n) lookup.
+     */
     public boolean isFree(LocalDateTime start, LocalDateTime end, UUID bookingId) {
-        for (Booking booking : bookings) {
-            if (!booking.getId().equals(bookingId)
-                && booking.getState().equals(Booking.State.ACTIVE) &&
-                !booking.getStart().isAfter(end) && !start.isAfter(booking.getEnd())
-            ) {
-                return false;
+        Map.Entry<LocalDateTime, Booking> candidate = activeBookings.floorEntry(end);
+        while (null != candidate) {
+            Booking booking = candidate.getValue();
+            if (!booking.getId().equals(bookingId)) {
+                return start.isAfter(booking.getEnd());
             }
+            candidate = activeBookings.lowerEntry(candidate.getKey());
         }
 
         return true;
@@ -42,6 +65,14 @@ public class Room {
         }
 
         bookings.add(booking);
+        bookingsById.put(booking.getId(), booking);
+        if (booking.getState().equals(Booking.State.ACTIVE)) {
+            activeBookings.put(booking.getStart(), booking);
+        }
+    }
+
+    void bookingCancelled(Booking booking) {
+        activeBookings.remove(booking.getStart(), booking);
     }
 
     /* ### Getter ### */
@@ -57,4 +88,30 @@ public class Room {
     public List<Booking> getBookings() {
         return Collections.unmodifiableList(bookings);
     }
+
+    /**
+     * @return The active bookings of the room, ordered by their start
+     */
+    public Collection<Booking> getActiveBookings() {
+        return Collections.unmodifiableCollection(activeBookings.values());
+    }
+
+    /**
+     * @return The booking with the given id or {@code null} if it does not belong to this room.
+     * Snapshots only contain active bookings, so bookings cancelled before the snapshot the room
+     * was recreated from are missing as well.
+     */
+    public Booking getBooking(UUID bookingId) {
+        return bookingsById.get(bookingId);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /* ### Setter ### */
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
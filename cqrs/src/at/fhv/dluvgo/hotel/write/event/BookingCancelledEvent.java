@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write.event;
 
+import java.util.Date;
 import java.util.UUID;
 
 public class BookingCancelledEvent extends Event {
@@ -9,6 +10,11 @@ public class BookingCancelledEvent extends Event {
         this.bookingId = bookingId;
     }
 
+    public BookingCancelledEvent(UUID id, Date created, UUID bookingId) {
+        super(id, created);
+        this.bookingId = bookingId;
+    }
+
     public UUID getBookingId() {
         return bookingId;
     }
@@ -1,6 +1,7 @@
 package at.fhv.dluvgo.hotel.write.event;
 
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.UUID;
 
 public class BookingCreatedEvent extends Event {
@@ -26,6 +27,25 @@ public class BookingCreatedEvent extends Event {
         this.numberOfPeople = numberOfPeople;
     }
 
+    public BookingCreatedEvent(
+        UUID id,
+        Date created,
+        UUID bookingId,
+        UUID roomNumber,
+        LocalDateTime start,
+        LocalDateTime end,
+        String contactName,
+        int numberOfPeople
+    ) {
+        super(id, created);
+        this.bookingId = bookingId;
+        this.roomNumber = roomNumber;
+        this.start = start;
+        this.end = end;
+        this.contactName = contactName;
+        this.numberOfPeople = numberOfPeople;
+    }
+
     public UUID getBookingId() {
         return bookingId;
     }
@@ -4,8 +4,23 @@ import java.util.Date;
 import java.util.UUID;
 
 public abstract class Event {
-    private final UUID id = UUID.randomUUID();
-    private final Date created = new Date();
+    private final UUID id;
+    private final Date created;
+
+    protected Event() {
+        this(UUID.randomUUID(), new Date());
+    }
+
+    /**
+     * Restores an already existing event, e.g. when reading it back from the event log.
+     *
+     * @param id      The id the event was originally created with
+     * @param created The original creation time of the event
+     */
+    protected Event(UUID id, Date created) {
+        this.id = id;
+        this.created = created;
+    }
 
     public UUID getId() {
         return id;
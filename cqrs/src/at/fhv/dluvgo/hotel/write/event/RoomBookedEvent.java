@@ -1,6 +1,7 @@
 package at.fhv.dluvgo.hotel.write.event;
 
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.UUID;
 
 public class RoomBookedEvent extends Event {
@@ -27,6 +28,25 @@ public class RoomBookedEvent extends Event {
         this.numberOfPeople = numberOfPeople;
     }
 
+    public RoomBookedEvent(
+        UUID id,
+        Date created,
+        UUID bookingId,
+        UUID roomNumber,
+        LocalDateTime bookingStartTime,
+        LocalDateTime bookingEndTime,
+        String contactName,
+        int numberOfPeople
+    ) {
+        super(id, created);
+        this.bookingId = bookingId;
+        this.roomNumber = roomNumber;
+        this.bookingStartTime = bookingStartTime;
+        this.bookingEndTime = bookingEndTime;
+        this.contactName = contactName;
+        this.numberOfPeople = numberOfPeople;
+    }
+
     public UUID getBookingId() {
         return bookingId;
     }
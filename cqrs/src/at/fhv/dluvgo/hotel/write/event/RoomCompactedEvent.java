@@ -0,0 +1,46 @@
+package at.fhv.dluvgo.hotel.write.event;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Takes the place of the {@link RoomCreatedEvent} of a room once the log has been compacted:
+ * the historical bookings of the room (and their cancellations) have been moved to the archive and
+ * are only summarized by their number. Everyone replaying the room stream treats this event like
+ * the creation of the room.
+ */
+public class RoomCompactedEvent extends RoomCreatedEvent {
+    private final int archivedBookings;
+
+    /**
+     * Restores the creation of a room from the event it replaces, keeping its id and creation
+     * time.
+     */
+    public RoomCompactedEvent(RoomCreatedEvent created, int archivedBookings) {
+        this(
+            created.getId(),
+            created.getCreated(),
+            created.getRoomNumber(),
+            created.getCapacity(),
+            archivedBookings
+        );
+    }
+
+    public RoomCompactedEvent(
+        UUID id,
+        Date created,
+        UUID roomNumber,
+        int capacity,
+        int archivedBookings
+    ) {
+        super(id, created, roomNumber, capacity);
+        this.archivedBookings = archivedBookings;
+    }
+
+    /**
+     * @return The number of bookings of the room moved to the archive so far
+     */
+    public int getArchivedBookings() {
+        return archivedBookings;
+    }
+}
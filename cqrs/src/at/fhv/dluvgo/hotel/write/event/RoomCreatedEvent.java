@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write.event;
 
+import java.util.Date;
 import java.util.UUID;
 
 public class RoomCreatedEvent extends Event {
@@ -11,6 +12,12 @@ public class RoomCreatedEvent extends Event {
         this.capacity = capacity;
     }
 
+    public RoomCreatedEvent(UUID id, Date created, UUID roomNumber, int capacity) {
+        super(id, created);
+        this.roomNumber = roomNumber;
+        this.capacity = capacity;
+    }
+
     public UUID getRoomNumber() {
         return roomNumber;
     }
@@ -0,0 +1,113 @@
+package at.fhv.dluvgo.hotel.write.event.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Compact encoding of single fields, as used by the {@link EventCodec} and for snapshots of
+ * aggregates: UUIDs as two fixed longs, ints as varints, longs as zig-zag varints,
+ * {@link LocalDateTime}s as epoch seconds plus nanos and strings as varint length plus UTF-8.
+ */
+public final class BinaryFields {
+    /**
+     * Maximum number of bytes of a varint.
+     */
+    public static final int MAX_VAR_INT_SIZE = 5;
+
+    /**
+     * Maximum number of bytes of an encoded {@link LocalDateTime}.
+     */
+    public static final int MAX_DATE_TIME_SIZE = 10 + MAX_VAR_INT_SIZE;
+
+    private BinaryFields() {
+    }
+
+    /**
+     * @return The maximum number of bytes of the given string written by
+     * {@link #writeString(String, ByteBuffer)}
+     */
+    public static int maxStringSize(String value) {
+        // a char takes at most three bytes, a surrogate pair four
+        return MAX_VAR_INT_SIZE + 3 * value.length();
+    }
+
+    public static void writeUuid(UUID uuid, ByteBuffer out) {
+        out.putLong(uuid.getMostSignificantBits());
+        out.putLong(uuid.getLeastSignificantBits());
+    }
+
+    public static UUID readUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    public static void writeDateTime(LocalDateTime dateTime, ByteBuffer out) {
+        writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC), out);
+        writeVarInt(dateTime.getNano(), out);
+    }
+
+    public static LocalDateTime readDateTime(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(readVarLong(in), readVarInt(in), ZoneOffset.UTC);
+    }
+
+    public static void writeString(String value, ByteBuffer out) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length, out);
+        out.put(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint: 7 bits per byte, the high bit marks a following byte.
+     */
+    public static void writeVarInt(int value, ByteBuffer out) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Writes a signed long as zig-zag encoded varint, so values close to zero stay short.
+     */
+    public static void writeVarLong(long value, ByteBuffer out) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.put((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.put((byte) zigZag);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long zigZag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+}
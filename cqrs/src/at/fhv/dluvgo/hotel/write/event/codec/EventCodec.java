@@ -0,0 +1,257 @@
+package at.fhv.dluvgo.hotel.write.event.codec;
+
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCompactedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the hotel {@link Event}s. Every encoded event starts with the schema version
+ * and a type tag, followed by the fields of the concrete event type. No reflection is involved,
+ * every event type is written and read by hand.
+ *
+ * <p>Schema version 2 (written since) encodes
+ * <ul>
+ *     <li>UUIDs as two fixed longs,</li>
+ *     <li>timestamps as zig-zag varints: {@link LocalDateTime}s as epoch seconds plus nanos,
+ *     the creation {@link Date} as epoch millis,</li>
+ *     <li>ints as varints and</li>
+ *     <li>strings as a varint reference into the {@link StringDictionary}, where {@code 0}
+ *     is followed by an inline varint length and the UTF-8 bytes.</li>
+ * </ul>
+ * The fields are written by {@link BinaryFields}. Events of schema version 1 (fixed-size
+ * numbers, inline strings) can still be decoded.
+ */
+public class EventCodec {
+    public static final byte SCHEMA_VERSION = 2;
+
+    private static final byte SCHEMA_VERSION_1 = 1;
+    private static final byte TYPE_ROOM_CREATED = 1;
+    private static final byte TYPE_ROOM_BOOKED = 2;
+    private static final byte TYPE_BOOKING_CREATED = 3;
+    private static final byte TYPE_BOOKING_CANCELLED = 4;
+    private static final byte TYPE_ROOM_COMPACTED = 5;
+    private static final int INLINE_STRING = 0;
+
+    private final StringDictionary dictionary;
+
+    /**
+     * Creates a codec writing all strings inline.
+     */
+    public EventCodec() {
+        this(null);
+    }
+
+    /**
+     * @param dictionary Dictionary for strings shared between events or {@code null} to write
+     *                   all strings inline
+     */
+    public EventCodec(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Encodes an event into the given buffer. Must not be called concurrently if the codec uses a
+     * dictionary, decoding is thread-safe.
+     *
+     * @throws BufferOverflowException If the buffer is too small, the caller may retry with a
+     *                                 larger one
+     */
+    public void encode(Event event, ByteBuffer out) {
+        out.put(SCHEMA_VERSION);
+        if (event instanceof RoomCompactedEvent) {
+            RoomCompactedEvent e = (RoomCompactedEvent) event;
+            out.put(TYPE_ROOM_COMPACTED);
+            writeHeader(event, out);
+            BinaryFields.writeUuid(e.getRoomNumber(), out);
+            BinaryFields.writeVarInt(e.getCapacity(), out);
+            BinaryFields.writeVarInt(e.getArchivedBookings(), out);
+        } else if (event instanceof RoomCreatedEvent) {
+            RoomCreatedEvent e = (RoomCreatedEvent) event;
+            out.put(TYPE_ROOM_CREATED);
+            writeHeader(event, out);
+            BinaryFields.writeUuid(e.getRoomNumber(), out);
+            BinaryFields.writeVarInt(e.getCapacity(), out);
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            out.put(TYPE_ROOM_BOOKED);
+            writeHeader(event, out);
+            BinaryFields.writeUuid(e.getBookingId(), out);
+            BinaryFields.writeUuid(e.getRoomNumber(), out);
+            BinaryFields.writeDateTime(e.getBookingStartTime(), out);
+            BinaryFields.writeDateTime(e.getBookingEndTime(), out);
+            writeString(e.getContactName(), out);
+            BinaryFields.writeVarInt(e.getNumberOfPeople(), out);
+        } else if (event instanceof BookingCreatedEvent) {
+            BookingCreatedEvent e = (BookingCreatedEvent) event;
+            out.put(TYPE_BOOKING_CREATED);
+            writeHeader(event, out);
+            BinaryFields.writeUuid(e.getBookingId(), out);
+            BinaryFields.writeUuid(e.getRoomNumber(), out);
+            BinaryFields.writeDateTime(e.getStart(), out);
+            BinaryFields.writeDateTime(e.getEnd(), out);
+            writeString(e.getContactName(), out);
+            BinaryFields.writeVarInt(e.getNumberOfPeople(), out);
+        } else if (event instanceof BookingCancelledEvent) {
+            BookingCancelledEvent e = (BookingCancelledEvent) event;
+            out.put(TYPE_BOOKING_CANCELLED);
+            writeHeader(event, out);
+            BinaryFields.writeUuid(e.getBookingId(), out);
+        } else {
+            throw new IllegalArgumentException(
+                "Unknown event type " + event.getClass().getSimpleName()
+            );
+        }
+    }
+
+    public Event decode(ByteBuffer in) {
+        byte version = in.get();
+        if (version == SCHEMA_VERSION_1) {
+            return decodeVersion1(in);
+        }
+        if (version != SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported event schema version " + version);
+        }
+
+        byte type = in.get();
+        UUID id = BinaryFields.readUuid(in);
+        Date created = new Date(BinaryFields.readVarLong(in));
+        switch (type) {
+            case TYPE_ROOM_CREATED:
+                return new RoomCreatedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readVarInt(in)
+                );
+            case TYPE_ROOM_BOOKED:
+                return new RoomBookedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readDateTime(in),
+                    BinaryFields.readDateTime(in),
+                    readString(in),
+                    BinaryFields.readVarInt(in)
+                );
+            case TYPE_BOOKING_CREATED:
+                return new BookingCreatedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readDateTime(in),
+                    BinaryFields.readDateTime(in),
+                    readString(in),
+                    BinaryFields.readVarInt(in)
+                );
+            case TYPE_BOOKING_CANCELLED:
+                return new BookingCancelledEvent(id, created, BinaryFields.readUuid(in));
+            case TYPE_ROOM_COMPACTED:
+                return new RoomCompactedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readVarInt(in),
+                    BinaryFields.readVarInt(in)
+                );
+            default:
+                throw new IllegalArgumentException("Unknown event type tag " + type);
+        }
+    }
+
+    /* ### Field encoding ### */
+
+    private static void writeHeader(Event event, ByteBuffer out) {
+        BinaryFields.writeUuid(event.getId(), out);
+        BinaryFields.writeVarLong(event.getCreated().getTime(), out);
+    }
+
+    private void writeString(String value, ByteBuffer out) {
+        int id = INLINE_STRING;
+        if (null != dictionary) {
+            try {
+                id = dictionary.idOf(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not extend string dictionary", e);
+            }
+        }
+
+        BinaryFields.writeVarInt(id, out);
+        if (id == INLINE_STRING) {
+            BinaryFields.writeString(value, out);
+        }
+    }
+
+    private String readString(ByteBuffer in) {
+        int id = BinaryFields.readVarInt(in);
+        if (id != INLINE_STRING) {
+            if (null == dictionary) {
+                throw new IllegalArgumentException("Event refers to a string dictionary");
+            }
+            return dictionary.get(id);
+        }
+
+        return BinaryFields.readString(in);
+    }
+
+    /* ### Schema version 1 ### */
+
+    private static Event decodeVersion1(ByteBuffer in) {
+        byte type = in.get();
+        UUID id = BinaryFields.readUuid(in);
+        Date created = new Date(in.getLong());
+        switch (type) {
+            case TYPE_ROOM_CREATED:
+                return new RoomCreatedEvent(id, created, BinaryFields.readUuid(in), in.getInt());
+            case TYPE_ROOM_BOOKED:
+                return new RoomBookedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readUuid(in),
+                    readDateTimeVersion1(in),
+                    readDateTimeVersion1(in),
+                    readStringVersion1(in),
+                    in.getInt()
+                );
+            case TYPE_BOOKING_CREATED:
+                return new BookingCreatedEvent(
+                    id,
+                    created,
+                    BinaryFields.readUuid(in),
+                    BinaryFields.readUuid(in),
+                    readDateTimeVersion1(in),
+                    readDateTimeVersion1(in),
+                    readStringVersion1(in),
+                    in.getInt()
+                );
+            case TYPE_BOOKING_CANCELLED:
+                return new BookingCancelledEvent(id, created, BinaryFields.readUuid(in));
+            default:
+                throw new IllegalArgumentException("Unknown event type tag " + type);
+        }
+    }
+
+    private static LocalDateTime readDateTimeVersion1(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static String readStringVersion1(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
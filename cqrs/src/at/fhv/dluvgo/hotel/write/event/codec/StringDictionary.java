@@ -0,0 +1,150 @@
+package at.fhv.dluvgo.hotel.write.event.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Strings shared by all events of an event log, e.g. the names of returning guests or tour
+ * operators. Encoded events refer to a dictionary entry by its id instead of repeating the
+ * string, and decoding hands out the same {@link String} instance for every reference.
+ *
+ * <p>The dictionary is persisted in its own append-only file of {@code [int length][utf-8]}
+ * entries - an entry is always written before the first event referring to it. Once the
+ * dictionary is full, strings are no longer added and have to be written inline.
+ */
+public class StringDictionary implements Closeable {
+    public static final String MAX_SIZE_PROPERTY = "hotel.codec.dictionarySize";
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    /**
+     * Strings longer than this are always written inline.
+     */
+    static final int MAX_ENTRY_LENGTH = 256;
+
+    private final FileChannel channel;
+    private final int maxSize;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] strings = new String[64];
+    private int size;
+
+    private StringDictionary(FileChannel channel, int maxSize) {
+        this.channel = channel;
+        this.maxSize = maxSize;
+    }
+
+    public static StringDictionary open(Path file, int maxSize) throws IOException {
+        FileChannel channel = FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        StringDictionary dictionary = new StringDictionary(channel, maxSize);
+        dictionary.load();
+
+        return dictionary;
+    }
+
+    /**
+     * Looks up the id of the given string and adds it to the dictionary if it is not part of it
+     * yet. Must not be called concurrently.
+     *
+     * @return The id of the string (starting at {@code 1}) or {@code 0} if the string has to be
+     *     written inline
+     */
+    int idOf(String value) throws IOException {
+        Integer id = ids.get(value);
+        if (null != id) {
+            return id;
+        }
+        if (size >= maxSize || value.length() > MAX_ENTRY_LENGTH) {
+            return 0;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+        entry.putInt(bytes.length).put(bytes).flip();
+        while (entry.hasRemaining()) {
+            channel.write(entry);
+        }
+
+        return add(value);
+    }
+
+    /**
+     * @throws IllegalArgumentException If there is no entry with the given id
+     */
+    String get(int id) {
+        String[] current = strings;
+        if (id < 1 || id > current.length || null == current[id - 1]) {
+            throw new IllegalArgumentException("Unknown dictionary entry " + id);
+        }
+        return current[id - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int add(String value) {
+        String[] current = strings;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, 2 * current.length);
+        }
+        current[size++] = value;
+        strings = current;
+        ids.put(value, size);
+
+        return size;
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        long position = 0;
+        while (position + 4 <= fileSize) {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            if (length < 0 || position + 4 + length > fileSize) {
+                break;
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            readFully(bytes, position + 4);
+            add(new String(bytes.array(), StandardCharsets.UTF_8));
+            position += 4 + length;
+        }
+
+        // drop a partially written entry at the end of the file
+        channel.truncate(position);
+        channel.position(position);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of string dictionary");
+            }
+            position += read;
+        }
+    }
+}
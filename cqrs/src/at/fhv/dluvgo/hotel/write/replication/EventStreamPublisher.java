@@ -0,0 +1,211 @@
+package at.fhv.dluvgo.hotel.write.replication;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams the events of the {@link EventStore} to read replicas over TCP (see
+ * {@link ReplicationProtocol}). Every replica gets its own thread that reads the event log from
+ * the position the replica asked for, so a replica that connects late or reconnects catches up
+ * from the log and a slow replica never holds back the event store or other replicas.
+ *
+ * <p>The publisher subscribes itself to the event store only to be woken up once new events are
+ * appended.
+ *
+ * <p>Replicas acknowledge the events they applied, so the lag is measured here, from the head of
+ * the event store to the position a replica has applied. The head a replica learns from the
+ * frames is already outdated by the events still in flight to it.
+ */
+public class EventStreamPublisher implements Observer, Closeable {
+    public static final String PORT_PROPERTY = "hotel.replication.port";
+    private static final Logger LOG = Logger.forWrite(EventStreamPublisher.class);
+    private static final int BATCH_SIZE = 1024;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 1000;
+
+    private final EventStore eventStore;
+    private final ServerSocket serverSocket;
+    private final Map<Socket, Replica> replicas = new ConcurrentHashMap<>();
+    private volatile boolean isActive;
+
+    /**
+     * @param port The port to listen on, 0 for any free port
+     */
+    public EventStreamPublisher(EventStore eventStore, int port) throws IOException {
+        this.eventStore = eventStore;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(port));
+    }
+
+    public void start() {
+        isActive = true;
+        eventStore.subscribe(this);
+        Thread acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("Listening for replicas on port %d", getPort());
+    }
+
+    @Override
+    public synchronized void update(Event event) {
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void update(List<Event> events) {
+        notifyAll();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * @return The number of events the connected replica furthest behind has not applied yet, 0
+     * without replicas
+     */
+    public long getLagEvents() {
+        long head = eventStore.getHeadPosition();
+        long lag = 0;
+        for (Replica replica : replicas.values()) {
+            lag = Math.max(lag, head - replica.appliedPosition);
+        }
+        return lag;
+    }
+
+    @Override
+    public void close() throws IOException {
+        isActive = false;
+        eventStore.unsubscribe(this);
+        serverSocket.close();
+        for (Socket replica : replicas.keySet()) {
+            replica.close();
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void accept() {
+        while (isActive) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(
+                    () -> serve(socket),
+                    "replication-" + socket.getRemoteSocketAddress()
+                );
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (isActive) {
+                    LOG.error("Accept failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        ReplicationProtocol protocol = new ReplicationProtocol();
+        try (
+            socket;
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream())
+            );
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream())
+            )
+        ) {
+            long position = protocol.readHandshake(in);
+            Replica replica = new Replica(position);
+            replicas.put(socket, replica);
+            Thread acknowledgements = new Thread(
+                () -> readAcks(protocol, in, replica),
+                "replication-acks-" + socket.getRemoteSocketAddress()
+            );
+            acknowledgements.setDaemon(true);
+            acknowledgements.start();
+            LOG.info(
+                "Replica %s connected, streaming from position %d",
+                socket.getRemoteSocketAddress(),
+                position
+            );
+
+            while (isActive) {
+                long head = eventStore.getHeadPosition();
+                if (position < head) {
+                    List<RecordedEvent> events = eventStore.readFrom(position, BATCH_SIZE);
+                    protocol.writeEvents(out, head, events);
+                    // positions of archived events are skipped
+                    position = events.isEmpty()
+                        ? head
+                        : events.get(events.size() - 1).getPosition() + 1;
+                    if (position >= head) {
+                        out.flush();
+                    }
+                    continue;
+                }
+
+                synchronized (this) {
+                    if (isActive && eventStore.getHeadPosition() <= position) {
+                        wait(HEARTBEAT_INTERVAL_MILLIS);
+                    }
+                }
+                if (eventStore.getHeadPosition() <= position) {
+                    protocol.writeHeartbeat(out, position);
+                }
+            }
+        } catch (IOException e) {
+            if (isActive) {
+                LOG.info(
+                    "Replica %s disconnected: %s",
+                    socket.getRemoteSocketAddress(),
+                    e
+                );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.remove(socket);
+        }
+    }
+
+    /**
+     * Keeps track of the position the replica has applied until the connection is closed.
+     */
+    private void readAcks(ReplicationProtocol protocol, DataInputStream in, Replica replica) {
+        try {
+            while (true) {
+                replica.appliedPosition = protocol.readAck(in);
+            }
+        } catch (IOException e) {
+            // the connection is closed, serve() takes care of it
+        }
+    }
+
+    private static class Replica {
+        private volatile long appliedPosition;
+
+        private Replica(long appliedPosition) {
+            this.appliedPosition = appliedPosition;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package at.fhv.dluvgo.hotel.write.replication;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.codec.EventCodec;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wire format of the event change stream between the {@link EventStreamPublisher} and read
+ * replicas. After connecting, the replica sends a handshake with the position of the first event
+ * it needs. From then on the publisher only sends frames:
+ *
+ * <ul>
+ *     <li>events: {@code [byte 1][long head][int count]} followed by
+ *     {@code [long position][UUID streamId][int length][payload]} per event, the payload being
+ *     encoded by an {@link EventCodec} without dictionary,</li>
+ *     <li>heartbeats while there are no new events: {@code [byte 2][long head]}.</li>
+ * </ul>
+ * The head is the position the next event appended to the event store will get. In turn, the
+ * replica acknowledges every frame of events it applied with {@code [long position]}, the
+ * position of the next event it needs, so the publisher can tell how far the replica is behind.
+ */
+public final class ReplicationProtocol {
+    private static final int MAGIC = 0x48524550;
+    private static final byte FRAME_EVENTS = 1;
+    private static final byte FRAME_HEARTBEAT = 2;
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_EVENT_SIZE = 64 * 1024 * 1024;
+
+    private final EventCodec codec = new EventCodec();
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    public void writeHandshake(DataOutputStream out, long fromPosition) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(fromPosition);
+        out.flush();
+    }
+
+    /**
+     * @return The position of the first event the replica needs
+     */
+    public long readHandshake(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Peer does not speak the replication protocol");
+        }
+        return in.readLong();
+    }
+
+    public void writeEvents(DataOutputStream out, long head, List<RecordedEvent> events)
+        throws IOException {
+        out.writeByte(FRAME_EVENTS);
+        out.writeLong(head);
+        out.writeInt(events.size());
+        for (RecordedEvent event : events) {
+            ByteBuffer payload = encode(event.getEvent());
+            out.writeLong(event.getPosition());
+            out.writeLong(event.getStreamId().getMostSignificantBits());
+            out.writeLong(event.getStreamId().getLeastSignificantBits());
+            out.writeInt(payload.remaining());
+            out.write(payload.array(), 0, payload.remaining());
+        }
+    }
+
+    public void writeHeartbeat(DataOutputStream out, long head) throws IOException {
+        out.writeByte(FRAME_HEARTBEAT);
+        out.writeLong(head);
+        out.flush();
+    }
+
+    public void writeAck(DataOutputStream out, long appliedPosition) throws IOException {
+        out.writeLong(appliedPosition);
+        out.flush();
+    }
+
+    /**
+     * @return The position of the next event the replica needs, blocking until the
+     * acknowledgement arrives
+     */
+    public long readAck(DataInputStream in) throws IOException {
+        return in.readLong();
+    }
+
+    /**
+     * Reads the next frame, blocking until it arrives.
+     */
+    public Frame readFrame(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long head = in.readLong();
+        if (FRAME_HEARTBEAT == type) {
+            return new Frame(head, Collections.emptyList());
+        }
+        if (FRAME_EVENTS != type) {
+            throw new IOException("Unknown frame type " + type);
+        }
+
+        int count = in.readInt();
+        List<RecordedEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long position = in.readLong();
+            UUID streamId = new UUID(in.readLong(), in.readLong());
+            int length = in.readInt();
+            if (length < 0 || length > MAX_EVENT_SIZE) {
+                throw new IOException("Invalid event length " + length);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            Event event = codec.decode(ByteBuffer.wrap(payload));
+            events.add(new RecordedEvent(position, streamId, event));
+        }
+
+        return new Frame(head, events);
+    }
+
+    private ByteBuffer encode(Event event) {
+        while (true) {
+            buffer.clear();
+            try {
+                codec.encode(event, buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= MAX_EVENT_SIZE) {
+                    throw new IllegalArgumentException("Event exceeds the maximum size", e);
+                }
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    public static class Frame {
+        private final long headPosition;
+        private final List<RecordedEvent> events;
+
+        private Frame(long headPosition, List<RecordedEvent> events) {
+            this.headPosition = headPosition;
+            this.events = events;
+        }
+
+        public long getHeadPosition() {
+            return headPosition;
+        }
+
+        /**
+         * @return The events of the frame, empty for a heartbeat
+         */
+        public List<RecordedEvent> getEvents() {
+            return events;
+        }
+    }
+}
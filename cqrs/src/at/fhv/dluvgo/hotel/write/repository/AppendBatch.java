@@ -0,0 +1,59 @@
+package at.fhv.dluvgo.hotel.write.repository;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Events of several streams that are appended to the {@link EventStore} in a single atomic write,
+ * see {@link EventStore#append(AppendBatch)}.
+ */
+public class AppendBatch {
+    private final Map<UUID, Integer> expectedVersions = new LinkedHashMap<>();
+    private final List<UUID> streamIds = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * Adds events to the batch. The expected version of a stream is taken from the first call
+     * for that stream, later events of the same stream simply follow the earlier ones.
+     *
+     * @param expectedVersion The number of events the caller has seen in the stream,
+     *                        {@link EventStore#NO_STREAM} for a new stream or
+     *                        {@link EventStore#ANY_VERSION} to skip the check
+     */
+    public AppendBatch add(UUID streamId, int expectedVersion, Event... events) {
+        this.expectedVersions.putIfAbsent(streamId, expectedVersion);
+        for (Event event : events) {
+            this.streamIds.add(streamId);
+            this.events.add(event);
+        }
+
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    /* ### Getter ### */
+
+    Map<UUID, Integer> getExpectedVersions() {
+        return Collections.unmodifiableMap(expectedVersions);
+    }
+
+    List<UUID> getStreamIds() {
+        return Collections.unmodifiableList(streamIds);
+    }
+
+    public List<Event> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+}
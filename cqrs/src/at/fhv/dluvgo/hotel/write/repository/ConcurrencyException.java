@@ -0,0 +1,39 @@
+package at.fhv.dluvgo.hotel.write.repository;
+
+import java.util.UUID;
+
+/**
+ * Thrown when events are appended to a stream whose version does not match the version the
+ * caller expected, i.e. someone else appended to the stream in the meantime.
+ */
+public class ConcurrencyException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final UUID streamId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    public ConcurrencyException(UUID streamId, int expectedVersion, int actualVersion) {
+        super(String.format(
+            "Stream %s is at version %d, expected version %d",
+            streamId,
+            actualVersion,
+            expectedVersion
+        ));
+        this.streamId = streamId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public UUID getStreamId() {
+        return streamId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
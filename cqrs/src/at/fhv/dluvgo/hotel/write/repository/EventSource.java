@@ -0,0 +1,19 @@
+package at.fhv.dluvgo.hotel.write.repository;
+
+import java.util.List;
+
+/**
+ * Read access to all events in the order of their global position.
+ */
+public interface EventSource {
+    /**
+     * Reads up to {@code maxEvents} events, starting at the given global position. Positions of
+     * events removed by a compaction are skipped, fewer events are only returned at the head.
+     */
+    List<RecordedEvent> readFrom(long position, int maxEvents);
+
+    /**
+     * @return The position the next appended event will get
+     */
+    long getHeadPosition();
+}
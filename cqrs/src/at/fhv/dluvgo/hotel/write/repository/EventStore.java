@@ -1,58 +1,381 @@
 package at.fhv.dluvgo.hotel.write.repository;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
 import at.fhv.dluvgo.hotel.read.projection.Observer;
 import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.cache.AggregateCache;
+import at.fhv.dluvgo.hotel.write.repository.commit.Durability;
+import at.fhv.dluvgo.hotel.write.repository.commit.GroupCommitter;
+import at.fhv.dluvgo.hotel.write.repository.dispatch.EventDispatcher;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import at.fhv.dluvgo.hotel.write.repository.snapshot.SnapshotStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
 
-public class EventStore implements Observable {
-    private final List<Observer> observerList = new LinkedList<>();
-    private final Map<UUID, List<Event>> store = new HashMap<>();
+public class EventStore implements Observable, EventSource, Closeable {
+    public static final String DIRECTORY_PROPERTY = "hotel.eventstore.dir";
+    public static final String DEFAULT_DIRECTORY = "eventstore";
+    public static final String DURABILITY_PROPERTY = "hotel.eventstore.durability";
+    public static final int ANY_VERSION = -1;
+    public static final int NO_STREAM = 0;
 
-    public void addEvent(UUID id, Event event) {
-        System.out.printf(
-            "[WRITE] EventStore - Adding event %s to EventStore, key: %s%n",
-            event.getClass().getSimpleName(),
-            id
+    // snapshots.dat of earlier versions lacks the event ids of the snapshots and is not read
+    private static final String SNAPSHOT_FILE = "snapshots-2.dat";
+    private static final Logger LOG = Logger.forWrite(EventStore.class);
+    private static final LatencyHistogram APPEND_LATENCY = Metrics.histogram("eventstore.append");
+    private static final LongAdder APPENDED_EVENTS = Metrics.counter("eventstore.events");
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    private final Object appendLock = new Object();
+    private final Path directory;
+    private final EventDispatcher dispatcher;
+    private final SegmentedEventLog log;
+    private final SnapshotStore snapshotStore;
+    private final AggregateCache aggregateCache = new AggregateCache();
+    private final Durability durability;
+    private final GroupCommitter committer;
+
+    public EventStore() {
+        this(Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)));
+    }
+
+    public EventStore(Path directory) {
+        this(directory, SegmentedEventLog.DEFAULT_SEGMENT_SIZE);
+    }
+
+    public EventStore(Path directory, int segmentSize) {
+        this(
+            directory,
+            segmentSize,
+            Integer.getInteger(SnapshotStore.INTERVAL_PROPERTY, SnapshotStore.DEFAULT_INTERVAL)
+        );
+    }
+
+    public EventStore(Path directory, int segmentSize, int snapshotInterval) {
+        this(directory, segmentSize, snapshotInterval, new EventDispatcher());
+    }
+
+    public EventStore(
+        Path directory,
+        int segmentSize,
+        int snapshotInterval,
+        EventDispatcher dispatcher
+    ) {
+        this(
+            directory,
+            segmentSize,
+            snapshotInterval,
+            dispatcher,
+            Durability.valueOf(System.getProperty(DURABILITY_PROPERTY, Durability.NONE.name()))
         );
-        List<Event> events = store.get(id);
-        if (events == null) {
-            events = new ArrayList<>();
-            events.add(event);
-            store.put(id, events);
-        } else {
-            events.add(event);
-        }
-
-        Runnable runnable = () -> {
-            for (Observer observer : observerList) {
-                observer.update(event);
+    }
+
+    public EventStore(
+        Path directory,
+        int segmentSize,
+        int snapshotInterval,
+        EventDispatcher dispatcher,
+        Durability durability
+    ) {
+        this.directory = directory;
+        this.dispatcher = dispatcher;
+        try {
+            this.log = SegmentedEventLog.open(directory, segmentSize);
+            this.snapshotStore = SnapshotStore.open(
+                directory.resolve(SNAPSHOT_FILE),
+                snapshotInterval
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open event log in " + directory, e);
+        }
+        this.durability = durability;
+        this.committer = Durability.GROUP.equals(durability) ? new GroupCommitter(log) : null;
+    }
+
+    /**
+     * Appends an event to the stream with the given id, regardless of the version of the stream.
+     *
+     * @return The global position of the appended event
+     */
+    public long addEvent(UUID id, Event event) {
+        try {
+            return append(id, ANY_VERSION, event);
+        } catch (ConcurrencyException e) {
+            throw new IllegalStateException("Unconditional append failed", e);
+        }
+    }
+
+    /**
+     * Appends events to the stream with the given id, but only if the stream is still at the
+     * expected version. Checking the version and appending happens atomically, and several
+     * events are written as one batch - either all of them are stored or none.
+     *
+     * @param expectedVersion The number of events the caller has seen in the stream,
+     *                        {@link #NO_STREAM} for a new stream or {@link #ANY_VERSION} to skip
+     *                        the check
+     *
+     * @return The global position of the last appended event
+     *
+     * @throws ConcurrencyException If the stream is not at the expected version
+     */
+    public long append(UUID id, int expectedVersion, Event... events)
+        throws ConcurrencyException {
+        if (events.length == 0) {
+            throw new IllegalArgumentException("At least one event has to be appended");
+        }
+
+        long start = System.nanoTime();
+        // events have to be handed to the dispatcher in the same order they were appended
+        synchronized (appendLock) {
+            int actualVersion = log.version(id);
+            if (expectedVersion != ANY_VERSION && expectedVersion != actualVersion) {
+                throw new ConcurrencyException(id, expectedVersion, actualVersion);
             }
-        };
-        System.out.println("[WRITE] EventStore - notifying observers in separate Thread");
-        Thread t = new Thread(runnable);
-        t.start();
 
+            dispatcher.ensureCapacity(events.length);
+            long position;
+            if (1 == events.length) {
+                LOG.debug(
+                    "Adding event %s to EventStore, key: %s",
+                    events[0].getClass().getSimpleName(),
+                    id
+                );
+                try {
+                    position = log.append(id, events[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not append event to event log", e);
+                }
+                if (Durability.SYNC.equals(durability)) {
+                    log.force();
+                }
+                dispatcher.publish(new RecordedEvent(position, id, events[0], System.nanoTime()));
+            } else {
+                // several events of a stream are written as one batch, so either all or none
+                LOG.debug("Adding %d events to EventStore, key: %s", events.length, id);
+                List<Event> batch = Arrays.asList(events);
+                try {
+                    position = log.appendBatch(Collections.nCopies(events.length, id), batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not append events to event log", e);
+                }
+                if (Durability.SYNC.equals(durability)) {
+                    log.force();
+                }
+
+                long appended = System.nanoTime();
+                List<RecordedEvent> recorded = new ArrayList<>(events.length);
+                for (int i = 0; i < events.length; i++) {
+                    recorded.add(new RecordedEvent(position + i, id, events[i], appended));
+                }
+                dispatcher.publish(recorded);
+                position += events.length - 1;
+            }
+
+            APPENDED_EVENTS.add(events.length);
+            APPEND_LATENCY.record(System.nanoTime() - start);
+            return position;
+        }
+    }
+
+    /**
+     * Appends the events of a batch in a single atomic write - either all of them are stored or
+     * none. Observers are handed the whole batch at once.
+     *
+     * @return The global position of the last appended event
+     *
+     * @throws ConcurrencyException If one of the streams is not at its expected version
+     */
+    public long append(AppendBatch batch) throws ConcurrencyException {
+        if (batch.isEmpty()) {
+            throw new IllegalArgumentException("At least one event has to be appended");
+        }
+
+        long start = System.nanoTime();
+        synchronized (appendLock) {
+            for (Map.Entry<UUID, Integer> expected : batch.getExpectedVersions().entrySet()) {
+                int actualVersion = log.version(expected.getKey());
+                if (expected.getValue() != ANY_VERSION && expected.getValue() != actualVersion) {
+                    throw new ConcurrencyException(
+                        expected.getKey(),
+                        expected.getValue(),
+                        actualVersion
+                    );
+                }
+            }
+
+            dispatcher.ensureCapacity(batch.size());
+            LOG.debug("Adding batch of %d events to EventStore", batch.size());
+            long position;
+            try {
+                position = log.appendBatch(batch.getStreamIds(), batch.getEvents());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append batch to event log", e);
+            }
+            if (Durability.SYNC.equals(durability)) {
+                log.force();
+            }
+
+            long appended = System.nanoTime();
+            List<RecordedEvent> recorded = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                recorded.add(new RecordedEvent(
+                    position + i,
+                    batch.getStreamIds().get(i),
+                    batch.getEvents().get(i),
+                    appended
+                ));
+            }
+            dispatcher.publish(recorded);
+
+            APPENDED_EVENTS.add(batch.size());
+            APPEND_LATENCY.record(System.nanoTime() - start);
+            return position + batch.size() - 1;
+        }
+    }
+
+    /**
+     * Returns a future that completes once all events appended so far - in particular the ones
+     * the calling thread appended - are durable. With {@link Durability#GROUP}, the events are
+     * forced together with those of other callers, otherwise the future is completed already.
+     */
+    public CompletableFuture<Void> whenDurable() {
+        if (null == committer) {
+            return DURABLE;
+        }
+        return committer.commit(log.getHeadPosition());
     }
 
     public List<Event> getEvents(UUID id) {
-        return store.get(id);
+        return log.read(id, 0);
+    }
+
+    /**
+     * Returns the events of a stream, skipping the first {@code fromVersion} events. Used to
+     * replay only the tail of a stream on top of a snapshot.
+     */
+    public List<Event> getEvents(UUID id, int fromVersion) {
+        return log.read(id, fromVersion);
+    }
+
+    /**
+     * Like {@link #getEvents(UUID, int)}, but also returns the version of the stream the events
+     * were read at. Aggregates recreated from the events use it as their expected version.
+     */
+    public StreamEvents getStream(UUID id, int fromVersion) {
+        return log.readStream(id, fromVersion);
+    }
+
+    @Override
+    public List<RecordedEvent> readFrom(long position, int maxEvents) {
+        return log.readFrom(position, maxEvents);
+    }
+
+    @Override
+    public long getHeadPosition() {
+        return log.getHeadPosition();
+    }
+
+    public int getVersion(UUID id) {
+        return log.version(id);
+    }
+
+    /* ### Compaction ### */
+
+    /**
+     * @return The position up to which events lie in sealed parts of the log, only those can be
+     * compacted
+     */
+    public long getSealedPosition() {
+        return log.getSealedPosition();
+    }
+
+    /**
+     * Removes events before the given sealed position from the log and replaces others, keeping
+     * the positions and stream versions of all remaining events (see
+     * {@link SegmentedEventLog#compact}). Appends continue while the log is compacted. Observers
+     * are not notified - the compacted log only differs for those replaying it later on.
+     *
+     * @return The number of bytes freed on disk
+     */
+    public long compact(
+        long sealedPosition,
+        LongPredicate isRemoved,
+        Map<Long, Event> replacements
+    ) {
+        try {
+            return log.compact(sealedPosition, isRemoved, replacements);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact event log", e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    public AggregateCache getAggregateCache() {
+        return aggregateCache;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return The group committer, {@code null} unless the durability is {@link Durability#GROUP}
+     */
+    public GroupCommitter getCommitter() {
+        return committer;
+    }
+
+    public EventDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     @Override
     public void subscribe(Observer observer) {
-        System.out.println("[WRITE] EventStore - new subscriber");
-        if (!observerList.contains(observer)) {
-            observerList.add(observer);
+        LOG.info("new subscriber");
+        synchronized (appendLock) {
+            dispatcher.subscribe(observer, log.getHeadPosition());
         }
     }
 
+    @Override
+    public void subscribeFrom(long position, Observer observer) {
+        LOG.info("new subscriber from position %d", position);
+        dispatcher.subscribeFrom(position, observer, this);
+    }
+
     @Override
     public void unsubscribe(Observer observer) {
-        observerList.remove(observer);
+        dispatcher.unsubscribe(observer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != committer) {
+            committer.close();
+        }
+        dispatcher.close();
+        snapshotStore.close();
+        log.close();
     }
 }
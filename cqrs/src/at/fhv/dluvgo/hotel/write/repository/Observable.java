@@ -5,5 +5,11 @@ import at.fhv.dluvgo.hotel.read.projection.Observer;
 public interface Observable {
     void subscribe(Observer observer);
 
+    /**
+     * Subscribes the observer to all events starting at the given global position. Historical
+     * events are delivered first, afterwards the observer receives live events.
+     */
+    void subscribeFrom(long position, Observer observer);
+
     void unsubscribe(Observer observer);
 }
@@ -0,0 +1,52 @@
+package at.fhv.dluvgo.hotel.write.repository;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import java.util.UUID;
+
+/**
+ * An event together with its global position in the event store and the stream it was appended
+ * to.
+ */
+public class RecordedEvent {
+    private final long position;
+    private final UUID streamId;
+    private final Event event;
+    private final long appendedNanos;
+
+    public RecordedEvent(long position, UUID streamId, Event event) {
+        this(position, streamId, event, 0);
+    }
+
+    /**
+     * @param appendedNanos {@link System#nanoTime()} when the event was appended, {@code 0} for
+     *                      events read back from the log
+     */
+    public RecordedEvent(long position, UUID streamId, Event event, long appendedNanos) {
+        this.position = position;
+        this.streamId = streamId;
+        this.event = event;
+        this.appendedNanos = appendedNanos;
+    }
+
+    /* ### Getter ### */
+
+    public long getPosition() {
+        return position;
+    }
+
+    public UUID getStreamId() {
+        return streamId;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the event was appended by this process or {@code 0}
+     * if unknown
+     */
+    public long getAppendedNanos() {
+        return appendedNanos;
+    }
+}
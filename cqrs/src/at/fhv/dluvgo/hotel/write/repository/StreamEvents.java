@@ -0,0 +1,29 @@
+package at.fhv.dluvgo.hotel.write.repository;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import java.util.List;
+
+/**
+ * Events read from a single stream together with the version of the stream at the time they were
+ * read. Since a compaction of the log leaves gaps in the versions of a stream, the version can not
+ * be derived from the number of events.
+ */
+public class StreamEvents {
+    private final List<Event> events;
+    private final int version;
+
+    public StreamEvents(List<Event> events, int version) {
+        this.events = events;
+        this.version = version;
+    }
+
+    /* ### Getter ### */
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
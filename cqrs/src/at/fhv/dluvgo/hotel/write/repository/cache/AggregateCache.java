@@ -0,0 +1,155 @@
+package at.fhv.dluvgo.hotel.write.repository.cache;
+
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of hydrated aggregates, keyed by the id of their stream and evicting the least
+ * recently used aggregate once it is full.
+ *
+ * <p>Aggregates are mutable, so the cache works like a pool: {@link #take} removes an aggregate
+ * and hands it to the caller exclusively, who brings it up to date by applying the events
+ * appended after its version and hands it back with {@link #release} once done. A command on the
+ * same aggregate running concurrently (e.g. a batch spanning several shards) misses the cache and
+ * replays the stream instead. Callers that change an aggregate in any other way than applying its
+ * events must not hand it back.
+ *
+ * <p>All methods are thread-safe. A maximum size of 0 disables the cache.
+ */
+public class AggregateCache {
+    public static final String SIZE_PROPERTY = "hotel.aggregatecache.size";
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final int maxSize;
+    private final LinkedHashMap<UUID, CachedAggregate> entries;
+
+    /* ### Metrics ### */
+    private final LongAdder hits = Metrics.counter("aggregatecache.hits");
+    private final LongAdder misses = Metrics.counter("aggregatecache.misses");
+    private final LongAdder evictions = Metrics.counter("aggregatecache.evictions");
+    private final LongAdder invalidations = Metrics.counter("aggregatecache.invalidations");
+
+    public AggregateCache() {
+        this(Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE));
+    }
+
+    public AggregateCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, CachedAggregate> eldest) {
+                if (size() > AggregateCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Removes the aggregate of the given stream from the cache.
+     *
+     * @return The cached aggregate or {@code null} if there is none of the given type
+     */
+    public <T> T take(UUID streamId, Class<T> type) {
+        CachedAggregate entry;
+        synchronized (this) {
+            entry = entries.remove(streamId);
+        }
+
+        if (null == entry || !type.isInstance(entry.aggregate)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return type.cast(entry.aggregate);
+    }
+
+    /**
+     * Hands an aggregate back, unless a more recent one of the same stream has been handed back
+     * in the meantime.
+     *
+     * @param version Version of the stream the aggregate has been recreated up to
+     */
+    public synchronized void release(UUID streamId, Object aggregate, int version) {
+        if (0 == maxSize) {
+            return;
+        }
+
+        CachedAggregate cached = entries.get(streamId);
+        if (null == cached || cached.version < version) {
+            entries.put(streamId, new CachedAggregate(aggregate, version));
+        }
+    }
+
+    /**
+     * Drops the aggregate of a stream, e.g. once older events of the stream have been compacted.
+     */
+    public synchronized void invalidate(UUID streamId) {
+        if (null != entries.remove(streamId)) {
+            invalidations.increment();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /* ### Metrics ### */
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "size=%d/%d hits=%d misses=%d evictions=%d invalidations=%d",
+            getSize(),
+            maxSize,
+            getHits(),
+            getMisses(),
+            getEvictions(),
+            getInvalidations()
+        );
+    }
+
+    private static class CachedAggregate {
+        private final Object aggregate;
+        private final int version;
+
+        private CachedAggregate(Object aggregate, int version) {
+            this.aggregate = aggregate;
+            this.version = version;
+        }
+    }
+}
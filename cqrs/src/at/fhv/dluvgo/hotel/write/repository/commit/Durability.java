@@ -0,0 +1,21 @@
+package at.fhv.dluvgo.hotel.write.repository.commit;
+
+/**
+ * Decides when appended events are forced to disk, i.e. survive a crash of the machine and not
+ * only one of the process.
+ */
+public enum Durability {
+    /**
+     * Events are left to the page cache, the operating system writes them back eventually.
+     */
+    NONE,
+    /**
+     * Every append forces the log before it returns.
+     */
+    SYNC,
+    /**
+     * Appends return right away, a {@link GroupCommitter} forces the events of many appends at
+     * once and completes the futures of their callers afterwards.
+     */
+    GROUP
+}
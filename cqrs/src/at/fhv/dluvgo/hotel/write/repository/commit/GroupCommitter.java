@@ -0,0 +1,242 @@
+package at.fhv.dluvgo.hotel.write.repository.commit;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes appended events durable in groups. Callers append to the log as usual and then ask for a
+ * commit of everything they have appended; a single writer thread collects the requests and
+ * forces the log once for all of them, completing their futures only afterwards.
+ *
+ * <p>The writer takes the first waiting request, then waits up to the linger time for more, but
+ * stops once the maximum batch size is reached. Without linger time, a group is made of the
+ * requests that arrived while the previous force was running. A force covers every event appended
+ * before it started, so requests that are covered already complete without waiting.
+ */
+public class GroupCommitter implements Closeable {
+    public static final String MAX_BATCH_PROPERTY = "hotel.groupcommit.maxBatch";
+    public static final String LINGER_PROPERTY = "hotel.groupcommit.lingerMicros";
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final int DEFAULT_LINGER_MICROS = 0;
+
+    private static final Logger LOG = Logger.forWrite(GroupCommitter.class);
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+    private static final Commit CLOSE = new Commit(Long.MIN_VALUE);
+
+    private final SegmentedEventLog log;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BlockingQueue<Commit> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    // all events before this position are durable
+    private volatile long durablePosition;
+    private boolean isClosed;
+
+    /* ### Metrics ### */
+    private final LongAdder forces = Metrics.counter("groupcommit.forces");
+    private final LongAdder commits = Metrics.counter("groupcommit.commits");
+    private final LatencyHistogram forceLatency = Metrics.histogram("groupcommit.force");
+    private final LatencyHistogram commitLatency = Metrics.histogram("groupcommit.wait");
+
+    public GroupCommitter(SegmentedEventLog log) {
+        this(
+            log,
+            Integer.getInteger(MAX_BATCH_PROPERTY, DEFAULT_MAX_BATCH),
+            Integer.getInteger(LINGER_PROPERTY, DEFAULT_LINGER_MICROS)
+        );
+    }
+
+    public GroupCommitter(SegmentedEventLog log, int maxBatch, long lingerMicros) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least 1");
+        }
+        if (lingerMicros < 0) {
+            throw new IllegalArgumentException("Linger time must not be negative");
+        }
+
+        this.log = log;
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.durablePosition = log.getHeadPosition();
+        this.writer = new Thread(this::write, "group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Requests all events before the given position to be made durable.
+     *
+     * @return A future completed once the events are durable, or completed exceptionally if
+     * forcing the log failed
+     */
+    public CompletableFuture<Void> commit(long position) {
+        if (position <= durablePosition) {
+            return DURABLE;
+        }
+
+        Commit commit = new Commit(position);
+        synchronized (this) {
+            if (isClosed) {
+                throw new IllegalStateException("Group committer is closed");
+            }
+            queue.add(commit);
+        }
+        return commit.future;
+    }
+
+    /**
+     * Commits the requests still waiting and stops the writer.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            queue.add(CLOSE);
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ### Writer ### */
+
+    private void write() {
+        List<Commit> batch = new ArrayList<>(maxBatch);
+        boolean isClosing = false;
+        while (!isClosing) {
+            try {
+                isClosing = collect(batch);
+            } catch (InterruptedException e) {
+                // only close() stops the writer, requests must not be left waiting
+                continue;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return Whether the committer has been closed
+     */
+    private boolean collect(List<Commit> batch) throws InterruptedException {
+        Commit commit = queue.take();
+        long deadline = System.nanoTime() + lingerNanos;
+        while (commit != CLOSE) {
+            batch.add(commit);
+            if (batch.size() >= maxBatch) {
+                return false;
+            }
+
+            commit = queue.poll();
+            if (null == commit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                commit = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (null == commit) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void flush(List<Commit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long requested = Long.MIN_VALUE;
+        for (Commit commit : batch) {
+            requested = Math.max(requested, commit.position);
+        }
+
+        RuntimeException failure = null;
+        if (requested > durablePosition) {
+            long start = System.nanoTime();
+            try {
+                durablePosition = log.forceHead();
+                forces.increment();
+                forceLatency.record(System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                LOG.error("Could not force event log", e);
+                failure = e;
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Commit commit : batch) {
+            commitLatency.record(now - commit.requestedAt);
+            if (null == failure) {
+                commit.future.complete(null);
+            } else {
+                commit.future.completeExceptionally(failure);
+            }
+        }
+        commits.add(batch.size());
+    }
+
+    /* ### Metrics ### */
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public long getLingerMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lingerNanos);
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getForces() {
+        return forces.sum();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "maxBatch=%d linger=%dus forces=%d commits=%d",
+            maxBatch,
+            getLingerMicros(),
+            getForces(),
+            getCommits()
+        );
+    }
+
+    private static class Commit {
+        private final long position;
+        private final long requestedAt = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Commit(long position) {
+            this.position = position;
+        }
+    }
+}
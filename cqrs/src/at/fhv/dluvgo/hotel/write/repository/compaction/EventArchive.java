@@ -0,0 +1,181 @@
+package at.fhv.dluvgo.hotel.write.repository.compaction;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.codec.EventCodec;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for the events a {@link LogCompactor} removes from the event log. Every compaction
+ * writes a single GZIP compressed file of records
+ * <pre>
+ * long position       (global position the event had within the log)
+ * long streamId msb
+ * long streamId lsb
+ * int  length
+ * ...  payload        (encoded without string dictionary)
+ * </pre>
+ * so archive files can be read without the event log they came from.
+ */
+public class EventArchive {
+    public static final String DIRECTORY = "archive";
+
+    private static final int MAGIC = 0x48415243; // "HARC"
+    private static final String SUFFIX = ".arc";
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_EVENT_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+
+    public EventArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a new archive file. The events written to it are durable once the writer has been
+     * closed.
+     */
+    public Writer newWriter() throws IOException {
+        Files.createDirectories(directory);
+        long timestamp = System.currentTimeMillis();
+        Path file;
+        while (Files.exists(file = directory.resolve("compaction-" + timestamp + SUFFIX))) {
+            timestamp++;
+        }
+
+        return new Writer(file);
+    }
+
+    /**
+     * @return All archive files, oldest first
+     */
+    public List<Path> getFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                stream.forEach(files::add);
+            }
+        }
+        files.sort(null);
+
+        return files;
+    }
+
+    /**
+     * Reads all events of an archive file. A partially written record at the end of the file,
+     * e.g. of a compaction that crashed before it removed anything from the log, is ignored.
+     */
+    public static List<RecordedEvent> read(Path file) throws IOException {
+        EventCodec codec = new EventCodec();
+        List<RecordedEvent> events = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file))
+        ))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not an event archive");
+            }
+            while (true) {
+                long position = in.readLong();
+                UUID streamId = new UUID(in.readLong(), in.readLong());
+                int length = in.readInt();
+                if (length < 0 || length > MAX_EVENT_SIZE) {
+                    throw new IOException("Invalid event length " + length + " in " + file);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                events.add(new RecordedEvent(
+                    position,
+                    streamId,
+                    codec.decode(ByteBuffer.wrap(payload))
+                ));
+            }
+        } catch (EOFException e) {
+            // end of the archive
+        }
+
+        return events;
+    }
+
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final FileOutputStream fileOut;
+        private final GZIPOutputStream gzipOut;
+        private final DataOutputStream out;
+        private final EventCodec codec = new EventCodec();
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private int count;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.fileOut = new FileOutputStream(file.toFile());
+            this.gzipOut = new GZIPOutputStream(fileOut);
+            this.out = new DataOutputStream(new BufferedOutputStream(gzipOut));
+            this.out.writeInt(MAGIC);
+        }
+
+        public void append(RecordedEvent event) throws IOException {
+            ByteBuffer payload = encode(event.getEvent());
+            out.writeLong(event.getPosition());
+            out.writeLong(event.getStreamId().getMostSignificantBits());
+            out.writeLong(event.getStreamId().getLeastSignificantBits());
+            out.writeInt(payload.remaining());
+            out.write(payload.array(), 0, payload.remaining());
+            count++;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Completes the archive file and forces it to disk.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.flush();
+                gzipOut.finish();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+        }
+
+        private ByteBuffer encode(Event event) {
+            while (true) {
+                buffer.clear();
+                try {
+                    codec.encode(event, buffer);
+                    buffer.flip();
+                    return buffer;
+                } catch (BufferOverflowException e) {
+                    if (buffer.capacity() >= MAX_EVENT_SIZE) {
+                        throw new IllegalArgumentException("Event exceeds the maximum size", e);
+                    }
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                }
+            }
+        }
+    }
+}
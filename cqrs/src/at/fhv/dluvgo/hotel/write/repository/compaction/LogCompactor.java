@@ -0,0 +1,330 @@
+package at.fhv.dluvgo.hotel.write.repository.compaction;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCompactedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves historical bookings out of the event log: bookings that ended or were cancelled before
+ * the retention window ({@code -Dhotel.compaction.retentionDays}, default 30). Their
+ * {@link RoomBookedEvent}, {@link BookingCreatedEvent} and {@link BookingCancelledEvent} are
+ * written to the {@link EventArchive} and removed from the log, and the
+ * {@link RoomCreatedEvent} of every affected room is replaced by a {@link RoomCompactedEvent}
+ * counting its archived bookings. Recreating a room then only replays its current bookings.
+ *
+ * <p>Only sealed segments of the log are compacted, commands keep appending to the active one
+ * meanwhile. A booking is only archived if all of its events lie in sealed segments. Events keep
+ * their positions and stream versions, so concurrent commands never see a version conflict
+ * caused by a compaction. Snapshots of compacted rooms are dropped, as they still contain the
+ * archived bookings.
+ *
+ * <p>Observers do not take notice of a compaction. An observer that is behind by more than the
+ * retention window might miss the cancellation of an archived booking and should rebuild its read
+ * model instead of catching up.
+ */
+public class LogCompactor {
+    public static final String RETENTION_PROPERTY = "hotel.compaction.retentionDays";
+    public static final int DEFAULT_RETENTION_DAYS = 30;
+    private static final Logger LOG = Logger.forWrite(LogCompactor.class);
+    private static final int READ_CHUNK_SIZE = 8 * 1024;
+
+    private final EventStore eventStore;
+    private final EventArchive archive;
+    private final int retentionDays;
+    private final Clock clock;
+
+    public LogCompactor(EventStore eventStore) {
+        this(
+            eventStore,
+            new EventArchive(eventStore.getDirectory().resolve(EventArchive.DIRECTORY)),
+            Integer.getInteger(RETENTION_PROPERTY, DEFAULT_RETENTION_DAYS),
+            Clock.systemDefaultZone()
+        );
+    }
+
+    public LogCompactor(
+        EventStore eventStore,
+        EventArchive archive,
+        int retentionDays,
+        Clock clock
+    ) {
+        if (retentionDays < 0) {
+            throw new IllegalArgumentException("Retention must not be negative");
+        }
+
+        this.eventStore = eventStore;
+        this.archive = archive;
+        this.retentionDays = retentionDays;
+        this.clock = clock;
+    }
+
+    /**
+     * Archives all historical bookings found in the sealed segments of the log.
+     */
+    public synchronized Result compact() {
+        long start = System.nanoTime();
+        long sealedPosition = eventStore.getSealedPosition();
+        LocalDateTime cutoff = LocalDate.now(clock).minusDays(retentionDays).atStartOfDay();
+        Date cutoffDate = Date.from(cutoff.atZone(clock.getZone()).toInstant());
+
+        // the whole log is scanned, so bookings cancelled in the active segment are kept
+        Map<UUID, RoomHistory> rooms = new HashMap<>();
+        Map<UUID, BookingHistory> bookings = new HashMap<>();
+        long head = eventStore.getHeadPosition();
+        for (long position = 0; position < head; ) {
+            List<RecordedEvent> chunk = eventStore.readFrom(position, READ_CHUNK_SIZE);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            for (RecordedEvent recorded : chunk) {
+                collect(recorded, rooms, bookings);
+            }
+            position = chunk.get(chunk.size() - 1).getPosition() + 1;
+        }
+
+        BitSet archived = new BitSet();
+        int archivedBookings = 0;
+        for (BookingHistory booking : bookings.values()) {
+            RoomHistory room = rooms.get(booking.roomNumber);
+            if (null == room
+                || !booking.isSealed(sealedPosition)
+                || !booking.isHistorical(cutoff, cutoffDate)
+            ) {
+                continue;
+            }
+            archived.set((int) booking.roomBookedPosition);
+            archived.set((int) booking.createdPosition);
+            if (booking.cancelledPosition >= 0) {
+                archived.set((int) booking.cancelledPosition);
+            }
+            room.archivedBookings++;
+            archivedBookings++;
+        }
+        if (archived.isEmpty()) {
+            return new Result(0, 0, 0, 0, null, System.nanoTime() - start);
+        }
+
+        Map<Long, Event> summaries = new HashMap<>();
+        for (RoomHistory room : rooms.values()) {
+            if (room.isCompacted()) {
+                summaries.put(
+                    room.position,
+                    new RoomCompactedEvent(room.created, room.archivedBookings)
+                );
+            }
+        }
+
+        try {
+            // the archive has to be durable before anything is removed from the log
+            Path archiveFile = writeArchive(archived, sealedPosition);
+            long freedBytes = eventStore.compact(
+                sealedPosition,
+                position -> position < Integer.MAX_VALUE && archived.get((int) position),
+                summaries
+            );
+            for (RoomHistory room : rooms.values()) {
+                if (room.isCompacted()) {
+                    eventStore.getSnapshotStore().invalidate(room.created.getRoomNumber());
+                    eventStore.getAggregateCache().invalidate(room.created.getRoomNumber());
+                }
+            }
+
+            Result result = new Result(
+                archived.cardinality(),
+                archivedBookings,
+                summaries.size(),
+                freedBytes,
+                archiveFile,
+                System.nanoTime() - start
+            );
+            LOG.info(
+                "Archived %d events of %d bookings in %d rooms to %s, "
+                    + "freed %d bytes in %.0f ms",
+                result.getArchivedEvents(),
+                result.getArchivedBookings(),
+                result.getCompactedRooms(),
+                archiveFile,
+                freedBytes,
+                result.getNanos() / 1e6
+            );
+
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact event log", e);
+        }
+    }
+
+    private static void collect(
+        RecordedEvent recorded,
+        Map<UUID, RoomHistory> rooms,
+        Map<UUID, BookingHistory> bookings
+    ) {
+        Event event = recorded.getEvent();
+        if (event instanceof RoomCreatedEvent) {
+            rooms.put(
+                recorded.getStreamId(),
+                new RoomHistory(recorded.getPosition(), (RoomCreatedEvent) event)
+            );
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            BookingHistory booking = bookings.computeIfAbsent(
+                e.getBookingId(),
+                id -> new BookingHistory()
+            );
+            booking.roomNumber = e.getRoomNumber();
+            booking.end = e.getBookingEndTime();
+            booking.roomBookedPosition = recorded.getPosition();
+        } else if (event instanceof BookingCreatedEvent) {
+            BookingCreatedEvent e = (BookingCreatedEvent) event;
+            BookingHistory booking = bookings.computeIfAbsent(
+                e.getBookingId(),
+                id -> new BookingHistory()
+            );
+            booking.roomNumber = e.getRoomNumber();
+            booking.end = e.getEnd();
+            booking.createdPosition = recorded.getPosition();
+        } else if (event instanceof BookingCancelledEvent) {
+            BookingHistory booking = bookings.computeIfAbsent(
+                ((BookingCancelledEvent) event).getBookingId(),
+                id -> new BookingHistory()
+            );
+            booking.cancelledPosition = recorded.getPosition();
+            booking.cancelled = event.getCreated();
+        }
+    }
+
+    private Path writeArchive(BitSet archived, long sealedPosition) throws IOException {
+        try (EventArchive.Writer writer = archive.newWriter()) {
+            for (long position = archived.nextSetBit(0); position >= 0; ) {
+                List<RecordedEvent> chunk = eventStore.readFrom(position, READ_CHUNK_SIZE);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                for (RecordedEvent recorded : chunk) {
+                    if (recorded.getPosition() < sealedPosition
+                        && archived.get((int) recorded.getPosition())
+                    ) {
+                        writer.append(recorded);
+                    }
+                }
+                long next = chunk.get(chunk.size() - 1).getPosition() + 1;
+                position = next < sealedPosition ? archived.nextSetBit((int) next) : -1;
+            }
+
+            return writer.getFile();
+        }
+    }
+
+    private static class RoomHistory {
+        private final long position;
+        private final RoomCreatedEvent created;
+        private final int previouslyArchived;
+        private int archivedBookings;
+
+        private RoomHistory(long position, RoomCreatedEvent created) {
+            this.position = position;
+            this.created = created;
+            this.previouslyArchived = created instanceof RoomCompactedEvent
+                ? ((RoomCompactedEvent) created).getArchivedBookings()
+                : 0;
+            this.archivedBookings = previouslyArchived;
+        }
+
+        private boolean isCompacted() {
+            return archivedBookings > previouslyArchived;
+        }
+    }
+
+    private static class BookingHistory {
+        private UUID roomNumber;
+        private LocalDateTime end;
+        private Date cancelled;
+        private long roomBookedPosition = -1;
+        private long createdPosition = -1;
+        private long cancelledPosition = -1;
+
+        /**
+         * @return Whether all events of the booking lie before the given sealed position
+         */
+        private boolean isSealed(long sealedPosition) {
+            long limit = Math.min(sealedPosition, Integer.MAX_VALUE);
+            return roomBookedPosition >= 0 && roomBookedPosition < limit
+                && createdPosition >= 0 && createdPosition < limit
+                && cancelledPosition < limit;
+        }
+
+        private boolean isHistorical(LocalDateTime cutoff, Date cutoffDate) {
+            return end.isBefore(cutoff) || (null != cancelled && cancelled.before(cutoffDate));
+        }
+    }
+
+    public static class Result {
+        private final int archivedEvents;
+        private final int archivedBookings;
+        private final int compactedRooms;
+        private final long freedBytes;
+        private final Path archiveFile;
+        private final long nanos;
+
+        private Result(
+            int archivedEvents,
+            int archivedBookings,
+            int compactedRooms,
+            long freedBytes,
+            Path archiveFile,
+            long nanos
+        ) {
+            this.archivedEvents = archivedEvents;
+            this.archivedBookings = archivedBookings;
+            this.compactedRooms = compactedRooms;
+            this.freedBytes = freedBytes;
+            this.archiveFile = archiveFile;
+            this.nanos = nanos;
+        }
+
+        public int getArchivedEvents() {
+            return archivedEvents;
+        }
+
+        public int getArchivedBookings() {
+            return archivedBookings;
+        }
+
+        public int getCompactedRooms() {
+            return compactedRooms;
+        }
+
+        public long getFreedBytes() {
+            return freedBytes;
+        }
+
+        /**
+         * @return The archive file written or {@code null} if nothing was archived
+         */
+        public Path getArchiveFile() {
+            return archiveFile;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package at.fhv.dluvgo.hotel.write.repository.dispatch;
+
+/**
+ * Decides what happens when an event is published while the queue of an observer is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * The publishing thread waits until the observer has caught up.
+     */
+    BLOCK,
+    /**
+     * The event is not delivered to the observer whose queue is full.
+     */
+    DROP,
+    /**
+     * The event is rejected before it is appended to the event store.
+     */
+    FAIL
+}
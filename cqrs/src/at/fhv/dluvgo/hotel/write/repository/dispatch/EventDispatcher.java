@@ -0,0 +1,270 @@
+package at.fhv.dluvgo.hotel.write.repository.dispatch;
+
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.repository.EventSource;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers published events to observers. Every observer gets its own bounded queue (see
+ * {@link Subscription}), drained by a fixed number of threads shared by all observers, so the
+ * number of threads does not grow with the subscriptions. A slow observer holds one of those
+ * threads but neither delays observers with events pending on the others nor reorders its own
+ * events. What happens once a queue is full is decided by the {@link BackpressurePolicy}.
+ *
+ * <p>Events have to be published in the order they were appended to the event store, i.e. the
+ * caller is responsible for serializing calls to {@link #publish(RecordedEvent)}.
+ *
+ * <p>The live subscriptions are kept in a copy-on-write array. Publishing iterates the current
+ * array without touching the registry lock, so (un)subscribing never waits for a publisher that
+ * is blocked by a full queue, and publishing does not allocate. Changes to the registry copy the
+ * array, which is cheap compared to the catch-up of a subscription.
+ */
+public class EventDispatcher implements Closeable {
+    public static final String POLICY_PROPERTY = "hotel.dispatch.policy";
+    public static final String QUEUE_CAPACITY_PROPERTY = "hotel.dispatch.queueCapacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final String THREADS_PROPERTY = "hotel.dispatch.threads";
+    // a subscription catching up waits at most that long for publishing to pause
+    private static final long GO_LIVE_WAIT_MILLIS = 10;
+
+    private final BackpressurePolicy policy;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final Map<Observer, Subscription> subscriptions = new HashMap<>();
+    private volatile Subscription[] liveSubscriptions = new Subscription[0];
+    // taken by publishers and by subscriptions going live, never by the registry
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    public EventDispatcher() {
+        this(
+            BackpressurePolicy.valueOf(
+                System.getProperty(POLICY_PROPERTY, BackpressurePolicy.BLOCK.name())
+            ),
+            Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY),
+            Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())
+        );
+    }
+
+    public EventDispatcher(BackpressurePolicy policy, int queueCapacity, int threads) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one dispatcher thread is needed");
+        }
+
+        this.policy = policy;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger threadCount = new AtomicInteger();
+        // at most one task per subscription is queued at a time
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "event-dispatcher-" + threadCount.getAndIncrement()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    /**
+     * Subscribes the observer to all events published from now on.
+     */
+    public synchronized void subscribe(Observer observer, long headPosition) {
+        if (subscriptions.containsKey(observer)) {
+            return;
+        }
+
+        Subscription subscription =
+            new Subscription(observer, queueCapacity, headPosition, executor);
+        subscriptions.put(observer, subscription);
+        addLive(subscription);
+        subscription.start(null);
+    }
+
+    /**
+     * Subscribes the observer to all events starting at the given position. Historical events are
+     * read from the source before the subscription switches to live events.
+     */
+    public synchronized void subscribeFrom(long position, Observer observer, EventSource source) {
+        if (subscriptions.containsKey(observer)) {
+            return;
+        }
+
+        Subscription subscription =
+            new Subscription(observer, queueCapacity, position, executor);
+        subscriptions.put(observer, subscription);
+        subscription.start(new Subscription.CatchUp() {
+            @Override
+            public EventSource getSource() {
+                return source;
+            }
+
+            @Override
+            public boolean goLiveIfCaughtUp(long nextPosition) {
+                // a publisher blocked by a full queue needs a dispatcher thread to go on, so the
+                // thread of this subscription must not wait for it for long
+                try {
+                    if (!publishLock.tryLock(GO_LIVE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                // no event can be published in between checking the head and going live
+                try {
+                    synchronized (EventDispatcher.this) {
+                        if (subscriptions.get(observer) != subscription
+                            || source.getHeadPosition() != nextPosition
+                        ) {
+                            return false;
+                        }
+                        addLive(subscription);
+                        return true;
+                    }
+                } finally {
+                    publishLock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops delivering events to the observer. Events still queued for it are discarded, a
+     * notification that is already running completes.
+     */
+    public synchronized void unsubscribe(Observer observer) {
+        Subscription subscription = subscriptions.remove(observer);
+        if (null != subscription) {
+            removeLive(subscription);
+            subscription.stop();
+        }
+    }
+
+    /**
+     * Checks whether the given number of events could be published right now. Only relevant for
+     * {@link BackpressurePolicy#FAIL}, where events must be rejected before they are stored.
+     *
+     * @throws IllegalStateException If the queue of at least one observer is too full
+     */
+    public void ensureCapacity(int eventCount) {
+        if (!policy.equals(BackpressurePolicy.FAIL)) {
+            return;
+        }
+
+        Subscription[] live = liveSubscriptions;
+        for (int i = 0; i < live.length; i++) {
+            Subscription subscription = live[i];
+            if (!subscription.hasRemainingCapacity(eventCount)) {
+                throw new IllegalStateException(
+                    "Event queue of " + subscription.getObserver().getClass().getSimpleName()
+                        + " is full"
+                );
+            }
+        }
+    }
+
+    public void publish(RecordedEvent event) {
+        publishLock.lock();
+        try {
+            Subscription[] live = liveSubscriptions;
+            for (int i = 0; i < live.length; i++) {
+                live[i].offer(event, policy);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Publishes events that were appended together. Every observer is handed all of them at once.
+     */
+    public void publish(List<RecordedEvent> events) {
+        publishLock.lock();
+        try {
+            Subscription[] live = liveSubscriptions;
+            for (int i = 0; i < live.length; i++) {
+                live[i].offer(events, policy);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /* ### Metrics ### */
+
+    public synchronized List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(new ArrayList<>(subscriptions.values()));
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public synchronized int getTotalQueueDepth() {
+        int depth = 0;
+        for (Subscription subscription : subscriptions.values()) {
+            depth += subscription.getQueueDepth();
+        }
+        return depth;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.stop();
+        }
+        subscriptions.clear();
+        liveSubscriptions = new Subscription[0];
+        executor.shutdown();
+    }
+
+    /* ### Copy-on-write registry, guarded by the monitor of the dispatcher ### */
+
+    private void addLive(Subscription subscription) {
+        Subscription[] live = Arrays.copyOf(liveSubscriptions, liveSubscriptions.length + 1);
+        live[live.length - 1] = subscription;
+        liveSubscriptions = live;
+    }
+
+    private void removeLive(Subscription subscription) {
+        Subscription[] live = liveSubscriptions;
+        for (int i = 0; i < live.length; i++) {
+            if (live[i] == subscription) {
+                Subscription[] copy = new Subscription[live.length - 1];
+                System.arraycopy(live, 0, copy, 0, i);
+                System.arraycopy(live, i + 1, copy, i, live.length - i - 1);
+                liveSubscriptions = copy;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package at.fhv.dluvgo.hotel.write.repository.dispatch;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.metrics.LatencyHistogram;
+import at.fhv.dluvgo.hotel.metrics.Metrics;
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventSource;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of events for a single {@link Observer}, drained by the threads the
+ * {@link EventDispatcher} shares between all subscriptions. A subscription is scheduled on that
+ * executor whenever events arrive and hands one batch to its observer per run. It is never
+ * scheduled twice at a time, so the observer receives the events one notification after
+ * another, in the order they were published.
+ *
+ * <p>A subscription can start at an arbitrary position of the event store. It then first reads
+ * the historical events in batches straight from the {@link EventSource}, one batch per run, and
+ * only switches over to live delivery once it has caught up with the head of the store.
+ *
+ * <p>An observer that blocks in {@code update} holds one of the shared threads meanwhile; once
+ * all of them are held, no other observer gets any events until one returns.
+ */
+public class Subscription {
+    public static final int CATCH_UP_BATCH_SIZE = 512;
+    private static final long STOPPED_CHECK_MILLIS = 100;
+    private static final Logger LOG = Logger.forWrite(Subscription.class);
+
+    private final Observer observer;
+    private final BlockingQueue<RecordedEvent> queue;
+    private final Executor executor;
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private CatchUp catchUp;
+    private final List<RecordedEvent> batch = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram lag;
+    private volatile long nextPosition;
+    private volatile boolean isActive = true;
+    private volatile boolean isLive;
+
+    Subscription(Observer observer, int queueCapacity, long startPosition, Executor executor) {
+        this.observer = observer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = executor;
+        this.nextPosition = startPosition;
+        String observerName = observer.getClass().getSimpleName();
+        if (observerName.isEmpty()) {
+            observerName = observer.getClass().getName();
+        }
+        this.lag = Metrics.histogram("projection.lag." + observerName);
+    }
+
+    void start(CatchUp catchUp) {
+        if (null == catchUp) {
+            isLive = true;
+        } else {
+            this.catchUp = catchUp;
+            schedule();
+        }
+    }
+
+    void stop() {
+        isActive = false;
+        // releases a publisher waiting for space
+        queue.clear();
+    }
+
+    boolean hasRemainingCapacity(int eventCount) {
+        return queue.remainingCapacity() >= eventCount;
+    }
+
+    void offer(RecordedEvent event, BackpressurePolicy policy) throws InterruptedException {
+        if (policy.equals(BackpressurePolicy.BLOCK)) {
+            if (!put(event)) {
+                return;
+            }
+        } else if (!queue.offer(event)) {
+            dropped.increment();
+            return;
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        schedule();
+    }
+
+    /**
+     * Enqueues events that were appended together. With {@link BackpressurePolicy#DROP} the
+     * events are only dropped together as well.
+     */
+    void offer(List<RecordedEvent> events, BackpressurePolicy policy) throws InterruptedException {
+        if (policy.equals(BackpressurePolicy.BLOCK)) {
+            for (int i = 0; i < events.size(); i++) {
+                if (!put(events.get(i))) {
+                    return;
+                }
+            }
+        } else if (queue.remainingCapacity() < events.size()) {
+            dropped.add(events.size());
+            return;
+        } else {
+            queue.addAll(events);
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        schedule();
+    }
+
+    /**
+     * Waits for space in the queue, unless the subscription is stopped meanwhile. The publisher
+     * may still hand events to a subscription that has just been unsubscribed.
+     *
+     * @return Whether the event has been enqueued
+     */
+    private boolean put(RecordedEvent event) throws InterruptedException {
+        while (!queue.offer(event, STOPPED_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!isActive) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* ### Delivery on the shared executor ### */
+
+    private void schedule() {
+        if (!isActive || !isScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            // the dispatcher has been closed
+            isScheduled.set(false);
+        }
+    }
+
+    /**
+     * Delivers a single batch, so subscriptions with many pending events take turns with the
+     * others, and schedules the subscription again if there is more to do.
+     */
+    private void run() {
+        try {
+            if (!isActive) {
+                return;
+            }
+            if (isLive) {
+                batch.clear();
+                queue.drainTo(batch, CATCH_UP_BATCH_SIZE);
+                deliver(batch);
+            } else {
+                catchUp();
+            }
+        } catch (RuntimeException e) {
+            // as reading would fail again, the subscription stays where it is
+            LOG.error("Could not read events for " + observer.getClass().getSimpleName(), e);
+            isActive = false;
+        } finally {
+            isScheduled.set(false);
+        }
+        if (!isLive || !queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Reads the next batch of historical events and delivers it, until the {@link CatchUp}
+     * reports that the subscription went live. Live events are then delivered from the queue.
+     */
+    private void catchUp() {
+        long position = nextPosition;
+        List<RecordedEvent> historical = catchUp.getSource().readFrom(
+            position,
+            CATCH_UP_BATCH_SIZE
+        );
+        deliver(historical);
+        if (!historical.isEmpty()) {
+            // positions of archived events are skipped
+            position = historical.get(historical.size() - 1).getPosition() + 1;
+            nextPosition = Math.max(nextPosition, position);
+        }
+
+        if (historical.size() < CATCH_UP_BATCH_SIZE && catchUp.goLiveIfCaughtUp(position)) {
+            isLive = true;
+        }
+    }
+
+    /**
+     * Hands the batch to the observer in one go, so events appended as a batch (or events that
+     * piled up while the observer was busy) result in a single notification.
+     */
+    private void deliver(List<RecordedEvent> batch) {
+        events.clear();
+        long firstPosition = nextPosition;
+        long lastPosition = firstPosition - 1;
+        for (RecordedEvent event : batch) {
+            // an event read while catching up may be published live again
+            if (event.getPosition() > lastPosition) {
+                events.add(event.getEvent());
+                lastPosition = event.getPosition();
+            }
+        }
+        if (events.isEmpty() || !isActive) {
+            return;
+        }
+
+        try {
+            if (events.size() == 1) {
+                observer.update(events.get(0));
+            } else {
+                observer.update(Collections.unmodifiableList(events));
+            }
+        } catch (RuntimeException e) {
+            LOG.error("observer failed to handle " + events, e);
+        }
+        nextPosition = lastPosition + 1;
+        delivered.add(events.size());
+        recordLag(batch, firstPosition);
+    }
+
+    /**
+     * Records the time from appending until the observer was done with the events, for live
+     * events only.
+     */
+    private void recordLag(List<RecordedEvent> batch, long firstPosition) {
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            RecordedEvent event = batch.get(i);
+            if (event.getPosition() >= firstPosition && event.getAppendedNanos() != 0) {
+                lag.record(now - event.getAppendedNanos());
+            }
+        }
+    }
+
+    /* ### Getter ### */
+
+    public Observer getObserver() {
+        return observer;
+    }
+
+    /**
+     * @return The position of the next event this subscription will deliver
+     */
+    public long getNextPosition() {
+        return nextPosition;
+    }
+
+    public boolean isLive() {
+        return isLive;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Time from appending an event until this observer handled it, shared by all
+     * observers of the same class
+     */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    /**
+     * Hand-over from catching up to live delivery, provided by the {@link EventDispatcher}.
+     */
+    interface CatchUp {
+        EventSource getSource();
+
+        /**
+         * Registers the subscription for live events if no event has been appended at or after
+         * the given position yet.
+         *
+         * @return Whether the subscription is live now
+         */
+        boolean goLiveIfCaughtUp(long position);
+    }
+}
@@ -0,0 +1,350 @@
+package at.fhv.dluvgo.hotel.write.repository.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A single fixed-size, memory-mapped file of the {@link SegmentedEventLog}.
+ *
+ * <p>Layout of a segment: an 8 byte header ({@link #MAGIC}, {@link #FORMAT_VERSION}) followed by
+ * records. Every record consists of
+ * <pre>
+ * int  length         (number of bytes following this field)
+ * int  crc32          (checksum of all bytes following this field)
+ * long position       (global position of the event within the log)
+ * long streamId msb
+ * long streamId lsb
+ * int  streamVersion  (1-based sequence number of the event within its stream)
+ * ...  payload        (encoded event)
+ * </pre>
+ * A length of {@code 0} marks the end of the written part of the segment. The length is written
+ * last, so a record only becomes visible once it has been written completely. Records appended as
+ * a batch only become visible together: the length of the first record of a batch is written
+ * after all other records of the batch.
+ *
+ * <p>Segments rewritten by a compaction are smaller than the configured segment size and are never
+ * appended to again.
+ */
+class LogSegment implements Closeable {
+    static final int MAGIC = 0x48534547; // "HSEG"
+    static final int FORMAT_VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 36;
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int CRC_SIZE = 4;
+
+    private final int index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private LogSegment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writePosition = SEGMENT_HEADER_SIZE;
+    }
+
+    static LogSegment create(Path path, int index, int size) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+
+        return new LogSegment(index, path, channel, buffer);
+    }
+
+    static LogSegment open(Path path, int index, int size) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        // compacted segments only take up the space of their remaining records
+        long actualSize = channel.size();
+        if (actualSize > size || actualSize < SEGMENT_HEADER_SIZE + LENGTH_SIZE) {
+            channel.close();
+            throw new IOException(
+                "Segment " + path + " has size " + actualSize + ", expected up to " + size
+            );
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, actualSize);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            channel.close();
+            throw new IOException("Segment " + path + " is not a valid event log segment");
+        }
+
+        return new LogSegment(index, path, channel, buffer);
+    }
+
+    /**
+     * Walks over all records of this segment without decoding their payloads and reports them to
+     * the given visitor. Afterwards the write position of this segment points behind the last
+     * valid record. A torn record at the end of the segment is wiped.
+     *
+     * @param verifyChecksums Whether to verify the checksum of every record
+     * @param visitor         Visitor receiving the header of every record
+     */
+    void recover(boolean verifyChecksums, RecordVisitor visitor) {
+        int position = SEGMENT_HEADER_SIZE;
+        while (position + LENGTH_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                if (isTorn(position)) {
+                    // a record or batch whose length had not been written yet
+                    wipe(position);
+                }
+                break;
+            }
+
+            if (length < RECORD_HEADER_SIZE - LENGTH_SIZE
+                || position + LENGTH_SIZE + length > buffer.capacity()
+                || (verifyChecksums && !hasValidChecksum(position, length))
+            ) {
+                wipe(position);
+                break;
+            }
+
+            visitor.visit(
+                offset(index, position),
+                buffer.getLong(position + 8),
+                new UUID(buffer.getLong(position + 16), buffer.getLong(position + 24)),
+                buffer.getInt(position + 32)
+            );
+            position += LENGTH_SIZE + length;
+        }
+        writePosition = position;
+    }
+
+    /**
+     * Reports the headers of all records written so far to the given visitor, without modifying
+     * the segment.
+     */
+    void forEachRecord(RecordVisitor visitor) {
+        int position = SEGMENT_HEADER_SIZE;
+        while (position < writePosition) {
+            visitor.visit(
+                offset(index, position),
+                buffer.getLong(position + 8),
+                new UUID(buffer.getLong(position + 16), buffer.getLong(position + 24)),
+                buffer.getInt(position + 32)
+            );
+            position += LENGTH_SIZE + buffer.getInt(position);
+        }
+    }
+
+    /**
+     * @return The number of bytes a segment holding records with the given total payload size
+     * needs
+     */
+    static int sizeFor(int recordCount, long payloadBytes) {
+        long size = SEGMENT_HEADER_SIZE + (long) recordCount * RECORD_HEADER_SIZE
+            + payloadBytes + LENGTH_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment of " + size + " bytes is too large");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Appends a record to this segment.
+     *
+     * @param position      Global position of the event
+     * @param streamId      Id of the stream the event belongs to
+     * @param streamVersion Sequence number of the event within its stream
+     * @param payload       Encoded event, read from its position up to its limit
+     *
+     * @return Offset of the record or {@code -1} if the record does not fit into this segment
+     */
+    long append(long position, UUID streamId, int streamVersion, ByteBuffer payload) {
+        int recordSize = RECORD_HEADER_SIZE + payload.remaining();
+        if (writePosition + recordSize + LENGTH_SIZE > buffer.capacity()) {
+            return -1;
+        }
+
+        int start = writePosition;
+        buffer.putLong(start + 8, position);
+        buffer.putLong(start + 16, streamId.getMostSignificantBits());
+        buffer.putLong(start + 24, streamId.getLeastSignificantBits());
+        buffer.putInt(start + 32, streamVersion);
+        ByteBuffer target = buffer.duplicate();
+        target.position(start + RECORD_HEADER_SIZE);
+        target.put(payload);
+
+        int length = recordSize - LENGTH_SIZE;
+        buffer.putInt(start + LENGTH_SIZE, checksum(start, length));
+        buffer.putInt(start, length);
+        writePosition += recordSize;
+
+        return offset(index, start);
+    }
+
+    /**
+     * Appends several records at once, either all of them or none.
+     *
+     * @param position       Global position of the first event
+     * @param streamIds      Id of the stream of every event
+     * @param streamVersions Sequence number of every event within its stream
+     * @param payloads       Encoded events, back to back from position {@code 0} of the buffer
+     * @param payloadEnds    End of every encoded event within {@code payloads}
+     *
+     * @return Offsets of the records or {@code null} if the batch does not fit into this segment
+     */
+    long[] appendBatch(
+        long position,
+        UUID[] streamIds,
+        int[] streamVersions,
+        ByteBuffer payloads,
+        int[] payloadEnds
+    ) {
+        int count = streamIds.length;
+        int batchSize = count * RECORD_HEADER_SIZE + payloadEnds[count - 1];
+        if (writePosition + batchSize + LENGTH_SIZE > buffer.capacity()) {
+            return null;
+        }
+
+        long[] offsets = new long[count];
+        int start = writePosition;
+        int firstLength = 0;
+        for (int i = 0; i < count; i++) {
+            int payloadStart = i == 0 ? 0 : payloadEnds[i - 1];
+            ByteBuffer payload = payloads.duplicate();
+            payload.limit(payloadEnds[i]);
+            payload.position(payloadStart);
+
+            buffer.putLong(start + 8, position + i);
+            buffer.putLong(start + 16, streamIds[i].getMostSignificantBits());
+            buffer.putLong(start + 24, streamIds[i].getLeastSignificantBits());
+            buffer.putInt(start + 32, streamVersions[i]);
+            ByteBuffer target = buffer.duplicate();
+            target.position(start + RECORD_HEADER_SIZE);
+            target.put(payload);
+
+            int length = RECORD_HEADER_SIZE + payloadEnds[i] - payloadStart - LENGTH_SIZE;
+            buffer.putInt(start + LENGTH_SIZE, checksum(start, length));
+            if (i == 0) {
+                firstLength = length;
+            } else {
+                buffer.putInt(start, length);
+            }
+            offsets[i] = offset(index, start);
+            start += LENGTH_SIZE + length;
+        }
+
+        // publishes the whole batch
+        buffer.putInt(writePosition, firstLength);
+        writePosition = start;
+
+        return offsets;
+    }
+
+    /**
+     * Returns a read-only view of the payload of the record at the given position.
+     */
+    ByteBuffer payload(int position) {
+        int length = buffer.getInt(position);
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.limit(position + LENGTH_SIZE + length);
+        view.position(position + RECORD_HEADER_SIZE);
+
+        return view.slice();
+    }
+
+    /**
+     * @return The global position of the first record or {@code -1} if the segment is empty
+     */
+    long firstPosition() {
+        return writePosition > SEGMENT_HEADER_SIZE ? buffer.getLong(SEGMENT_HEADER_SIZE + 8) : -1;
+    }
+
+    UUID streamId(int position) {
+        return new UUID(buffer.getLong(position + 16), buffer.getLong(position + 24));
+    }
+
+    int streamVersion(int position) {
+        return buffer.getInt(position + 32);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* ### Offsets ### */
+
+    static long offset(int segmentIndex, int position) {
+        return ((long) segmentIndex << 32) | position;
+    }
+
+    static int segmentIndex(long offset) {
+        return (int) (offset >>> 32);
+    }
+
+    static int position(long offset) {
+        return (int) offset;
+    }
+
+    /* ### Helper ### */
+
+    private boolean hasValidChecksum(int position, int length) {
+        return buffer.getInt(position + LENGTH_SIZE) == checksum(position, length);
+    }
+
+    private int checksum(int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + LENGTH_SIZE + length);
+        view.position(position + LENGTH_SIZE + CRC_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+
+        return (int) crc.getValue();
+    }
+
+    private boolean isTorn(int position) {
+        int end = Math.min(position + RECORD_HEADER_SIZE, buffer.capacity());
+        for (int i = position + LENGTH_SIZE; i < end; i++) {
+            if (buffer.get(i) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void wipe(int from) {
+        for (int i = from; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(long offset, long position, UUID streamId, int streamVersion);
+    }
+}
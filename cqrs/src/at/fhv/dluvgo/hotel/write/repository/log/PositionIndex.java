@@ -0,0 +1,56 @@
+package at.fhv.dluvgo.hotel.write.repository.log;
+
+import java.util.Arrays;
+
+/**
+ * Maps the global position of every event to the offset of its record, or to {@link #ARCHIVED}
+ * if the event has been moved to the archive. Next to the offset, the position of the previous
+ * event of the same stream is kept, which chains the events of a stream from its last one (see
+ * {@link StreamTable}). Both are kept in fixed-size chunks, so growing the index never copies
+ * existing entries.
+ */
+class PositionIndex {
+    static final long ARCHIVED = -1;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private long[][] chunks = new long[16][];
+    private long[][] previousChunks = new long[16][];
+    private long size;
+
+    /**
+     * @param previous Position of the previous event of the same stream or
+     *                 {@link StreamTable#NONE}
+     */
+    void add(long offset, long previous) {
+        int chunk = (int) (size >>> CHUNK_SHIFT);
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            previousChunks = Arrays.copyOf(previousChunks, previousChunks.length * 2);
+        }
+        if (null == chunks[chunk]) {
+            chunks[chunk] = new long[CHUNK_SIZE];
+            previousChunks[chunk] = new long[CHUNK_SIZE];
+        }
+        chunks[chunk][(int) (size & CHUNK_MASK)] = offset;
+        previousChunks[chunk][(int) (size & CHUNK_MASK)] = previous;
+        size++;
+    }
+
+    long get(long position) {
+        return chunks[(int) (position >>> CHUNK_SHIFT)][(int) (position & CHUNK_MASK)];
+    }
+
+    /**
+     * @return The position of the previous event of the same stream or {@link StreamTable#NONE}
+     */
+    long previous(long position) {
+        return previousChunks[(int) (position >>> CHUNK_SHIFT)][(int) (position & CHUNK_MASK)];
+    }
+
+    long size() {
+        return size;
+    }
+}
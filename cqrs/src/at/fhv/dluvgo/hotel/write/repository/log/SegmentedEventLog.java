@@ -0,0 +1,579 @@
+package at.fhv.dluvgo.hotel.write.repository.log;
+
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.codec.EventCodec;
+import at.fhv.dluvgo.hotel.write.event.codec.StringDictionary;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import at.fhv.dluvgo.hotel.write.repository.StreamEvents;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongPredicate;
+
+/**
+ * Append-only event log made up of fixed-size, memory-mapped {@link LogSegment}s. Once the active
+ * segment is full, a new one is rolled.
+ *
+ * <p>The first and last record of every stream are kept off the heap in a {@link StreamTable}, the
+ * records in between are chained by the {@link PositionIndex}. Both are rebuilt on startup by
+ * walking the record headers of all segments - payloads are only decoded when the events of a
+ * stream are read.
+ * Strings shared between events are kept in a {@link StringDictionary} next to the segments.
+ *
+ * <p>Sealed segments can be compacted (see {@link #compact}), which leaves gaps in the global
+ * positions and stream versions of the log.
+ */
+public class SegmentedEventLog implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String DICTIONARY_FILE = "strings.dict";
+    private static final int INITIAL_WRITE_BUFFER_SIZE = 4 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+    private final StreamTable streams = new StreamTable();
+    private PositionIndex positions = new PositionIndex();
+    private final StringDictionary dictionary;
+    private final EventCodec codec;
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_WRITE_BUFFER_SIZE);
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(INITIAL_WRITE_BUFFER_SIZE);
+    private long nextPosition;
+
+    private SegmentedEventLog(Path directory, int segmentSize, StringDictionary dictionary) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.dictionary = dictionary;
+        this.codec = new EventCodec(dictionary);
+    }
+
+    public static SegmentedEventLog open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= LogSegment.SEGMENT_HEADER_SIZE + LogSegment.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+
+        Files.createDirectories(directory);
+        StringDictionary dictionary = StringDictionary.open(
+            directory.resolve(DICTIONARY_FILE),
+            Integer.getInteger(
+                StringDictionary.MAX_SIZE_PROPERTY,
+                StringDictionary.DEFAULT_MAX_SIZE
+            )
+        );
+        SegmentedEventLog log = new SegmentedEventLog(directory, segmentSize, dictionary);
+        log.recover();
+
+        return log;
+    }
+
+    /**
+     * Appends an event to the given stream.
+     *
+     * @param streamId Id of the stream (aggregate) the event belongs to
+     * @param event    The event to append
+     *
+     * @return The global position of the appended event
+     *
+     * @throws IOException If a new segment could not be created
+     */
+    public synchronized long append(UUID streamId, Event event) throws IOException {
+        ByteBuffer payload = encode(event);
+        int version = streams.version(streamId) + 1;
+
+        LogSegment segment = activeSegment();
+        long offset = segment.append(nextPosition, streamId, version, payload);
+        if (offset < 0) {
+            payload.rewind();
+            segment = rollSegment();
+            offset = segment.append(nextPosition, streamId, version, payload);
+            if (offset < 0) {
+                throw new IllegalArgumentException(
+                    "Event of " + payload.remaining() + " bytes exceeds the segment size"
+                );
+            }
+        }
+
+        positions.add(offset, streams.append(streamId, nextPosition, version));
+
+        return nextPosition++;
+    }
+
+    /**
+     * Appends several events of possibly different streams atomically: after a crash either all
+     * or none of them are part of the log. A batch never spans two segments.
+     *
+     * @param streamIds Id of the stream of every event
+     * @param events    The events to append, in order
+     *
+     * @return The global position of the first appended event
+     *
+     * @throws IOException If a new segment could not be created
+     */
+    public synchronized long appendBatch(List<UUID> streamIds, List<Event> events)
+        throws IOException {
+        int count = events.size();
+        if (count == 0) {
+            throw new IllegalArgumentException("At least one event has to be appended");
+        }
+        if (count != streamIds.size()) {
+            throw new IllegalArgumentException("Every event needs a stream id");
+        }
+
+        int[] payloadEnds = new int[count];
+        ByteBuffer payloads = batchBuffer;
+        payloads.clear();
+        for (int i = 0; i < count; i++) {
+            ByteBuffer payload = encode(events.get(i));
+            while (payloads.remaining() < payload.remaining()) {
+                payloads = grow(payloads);
+            }
+            payloads.put(payload);
+            payloadEnds[i] = payloads.position();
+        }
+        batchBuffer = payloads;
+
+        UUID[] ids = streamIds.toArray(new UUID[0]);
+        int[] versions = new int[count];
+        Map<UUID, Integer> batchVersions = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int version = batchVersions.getOrDefault(ids[i], -1);
+            if (version < 0) {
+                version = streams.version(ids[i]);
+            }
+            versions[i] = version + 1;
+            batchVersions.put(ids[i], version + 1);
+        }
+
+        long[] offsets = activeSegment()
+            .appendBatch(nextPosition, ids, versions, payloads, payloadEnds);
+        if (null == offsets) {
+            offsets = rollSegment().appendBatch(nextPosition, ids, versions, payloads, payloadEnds);
+            if (null == offsets) {
+                throw new IllegalArgumentException(
+                    "Batch of " + payloads.position() + " bytes exceeds the segment size"
+                );
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            positions.add(offsets[i], streams.append(ids[i], nextPosition + i, versions[i]));
+        }
+        long firstPosition = nextPosition;
+        nextPosition += count;
+
+        return firstPosition;
+    }
+
+    /**
+     * Reads the events of the given stream with a version greater than {@code fromVersion}, i.e.
+     * skipping the first {@code fromVersion} events.
+     *
+     * @return The events in the order they were appended or {@code null} if the stream is unknown
+     */
+    public List<Event> read(UUID streamId, int fromVersion) {
+        StreamEvents stream = readStream(streamId, fromVersion);
+        return null == stream ? null : stream.getEvents();
+    }
+
+    /**
+     * Like {@link #read(UUID, int)}, but also returns the version of the stream the events were
+     * read at.
+     *
+     * @return The events of the stream or {@code null} if the stream is unknown
+     */
+    public StreamEvents readStream(UUID streamId, int fromVersion) {
+        long[] offsets;
+        LogSegment[] owners;
+        int first;
+        int version;
+        synchronized (this) {
+            long position = streams.tail(streamId);
+            if (position == StreamTable.NONE) {
+                return null;
+            }
+            version = streams.version(streamId);
+
+            // versions only grow along the chain, archived events leave gaps
+            offsets = new long[Math.max(0, version - fromVersion)];
+            // a compaction may swap segments once the lock is released
+            owners = new LogSegment[offsets.length];
+            first = offsets.length;
+            while (position != StreamTable.NONE) {
+                long offset = positions.get(position);
+                LogSegment segment = segments.get(LogSegment.segmentIndex(offset));
+                if (segment.streamVersion(LogSegment.position(offset)) <= fromVersion) {
+                    break;
+                }
+                first--;
+                offsets[first] = offset;
+                owners[first] = segment;
+                position = positions.previous(position);
+            }
+        }
+
+        List<Event> events = new ArrayList<>(offsets.length - first);
+        for (int i = first; i < offsets.length; i++) {
+            events.add(decode(owners[i], offsets[i]));
+        }
+
+        return new StreamEvents(events, version);
+    }
+
+    /**
+     * Reads up to {@code maxEvents} events of all streams, starting at the given global position.
+     * Positions of archived events are skipped, so the positions of the returned events may have
+     * gaps. Fewer than {@code maxEvents} events are only returned at the head of the log.
+     */
+    public List<RecordedEvent> readFrom(long position, int maxEvents) {
+        long[] positionsRead = new long[Math.max(0, maxEvents)];
+        long[] offsets = new long[positionsRead.length];
+        LogSegment[] owners = new LogSegment[positionsRead.length];
+        int count = 0;
+        synchronized (this) {
+            for (long p = Math.max(0, position); p < nextPosition && count < maxEvents; p++) {
+                long offset = positions.get(p);
+                if (offset != PositionIndex.ARCHIVED) {
+                    positionsRead[count] = p;
+                    offsets[count] = offset;
+                    owners[count] = segments.get(LogSegment.segmentIndex(offset));
+                    count++;
+                }
+            }
+        }
+
+        List<RecordedEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new RecordedEvent(
+                positionsRead[i],
+                owners[i].streamId(LogSegment.position(offsets[i])),
+                decode(owners[i], offsets[i])
+            ));
+        }
+
+        return events;
+    }
+
+    /**
+     * @return The position the next appended event will get
+     */
+    public synchronized long getHeadPosition() {
+        return nextPosition;
+    }
+
+    public synchronized int version(UUID streamId) {
+        return streams.version(streamId);
+    }
+
+    public synchronized void force() {
+        // dictionary entries have to be durable before the events referring to them
+        try {
+            dictionary.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not force string dictionary", e);
+        }
+        activeSegment().force();
+    }
+
+    /**
+     * Like {@link #force()}, but the log is only held while looking up the active segment, so
+     * appends continue while the disk is busy.
+     *
+     * @return The head position when the force started - all events before it are durable
+     */
+    public long forceHead() {
+        long head;
+        LogSegment segment;
+        synchronized (this) {
+            head = nextPosition;
+            segment = activeSegment();
+        }
+
+        // segments are forced when rolled, so all events before the head are in this one or durable
+        try {
+            dictionary.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not force string dictionary", e);
+        }
+        segment.force();
+        return head;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments) {
+            segment.force();
+            segment.close();
+        }
+        segments.clear();
+        dictionary.close();
+    }
+
+    /* ### Compaction ### */
+
+    /**
+     * @return The position of the first event of the active segment. All events before it lie in
+     * sealed segments, which are never appended to again.
+     */
+    public synchronized long getSealedPosition() {
+        long first = activeSegment().firstPosition();
+        return first < 0 ? nextPosition : first;
+    }
+
+    /**
+     * Removes events from the sealed segments and replaces others by new events with the same
+     * position, stream and version. Every affected segment is rewritten into a new, smaller file
+     * holding only its remaining records, which then atomically replaces the segment.
+     *
+     * <p>Appends and reads continue meanwhile: only swapping the segments and rebuilding the
+     * in-memory indexes holds the lock of the log. Readers that resolved a replaced segment before
+     * keep reading from its still mapped file. Positions and stream versions of the remaining
+     * events do not change, the positions of removed events are skipped by
+     * {@link #readFrom(long, int)}.
+     *
+     * @param sealedPosition Only segments whose events all lie before this position are compacted
+     * @param isRemoved      Whether the event at a position is to be removed
+     * @param replacements   Events replacing the events at their position
+     *
+     * @return The number of bytes freed on disk
+     */
+    public long compact(
+        long sealedPosition,
+        LongPredicate isRemoved,
+        Map<Long, Event> replacements
+    ) throws IOException {
+        List<LogSegment> sealed;
+        synchronized (this) {
+            sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        }
+
+        Map<Integer, Path> rewritten = new LinkedHashMap<>();
+        long freedBytes = 0;
+        for (LogSegment segment : sealed) {
+            Path file = rewrite(segment, sealedPosition, isRemoved, replacements);
+            if (null != file) {
+                freedBytes += Files.size(segment.getPath()) - Files.size(file);
+                rewritten.put(segment.getIndex(), file);
+            }
+        }
+        if (rewritten.isEmpty()) {
+            return 0;
+        }
+
+        synchronized (this) {
+            for (Map.Entry<Integer, Path> entry : rewritten.entrySet()) {
+                int index = entry.getKey();
+                Files.move(
+                    entry.getValue(),
+                    segmentPath(index),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+                );
+                LogSegment replaced = segments.get(index);
+                segments.set(index, LogSegment.open(segmentPath(index), index, segmentSize));
+                replaced.close();
+            }
+
+            long head = nextPosition;
+            streams.clear();
+            positions = new PositionIndex();
+            for (LogSegment segment : segments) {
+                segment.recover(false, this::index);
+            }
+            nextPosition = head;
+        }
+
+        return freedBytes;
+    }
+
+    /**
+     * Writes the remaining records of a sealed segment into a new file next to it.
+     *
+     * @return The new file or {@code null} if nothing changes
+     */
+    private Path rewrite(
+        LogSegment segment,
+        long sealedPosition,
+        LongPredicate isRemoved,
+        Map<Long, Event> replacements
+    ) throws IOException {
+        List<Record> remaining = new ArrayList<>();
+        boolean[] isChanged = {false};
+        boolean[] isSealed = {true};
+        segment.forEachRecord((offset, position, streamId, streamVersion) -> {
+            if (position >= sealedPosition) {
+                isSealed[0] = false;
+            } else if (isRemoved.test(position)) {
+                isChanged[0] = true;
+            } else {
+                Event replacement = replacements.get(position);
+                ByteBuffer payload;
+                if (null == replacement) {
+                    payload = segment.payload(LogSegment.position(offset));
+                } else {
+                    isChanged[0] = true;
+                    payload = encodeCopy(replacement);
+                }
+                remaining.add(new Record(position, streamId, streamVersion, payload));
+            }
+        });
+        if (!isSealed[0] || !isChanged[0]) {
+            return null;
+        }
+
+        long payloadBytes = 0;
+        for (Record record : remaining) {
+            payloadBytes += record.payload.remaining();
+        }
+        Path file = segment.getPath().resolveSibling(
+            segment.getPath().getFileName() + COMPACTING_SUFFIX
+        );
+        Files.deleteIfExists(file);
+        try (LogSegment target = LogSegment.create(
+            file,
+            segment.getIndex(),
+            LogSegment.sizeFor(remaining.size(), payloadBytes)
+        )) {
+            for (Record record : remaining) {
+                long offset = target.append(
+                    record.position,
+                    record.streamId,
+                    record.version,
+                    record.payload
+                );
+                if (offset < 0) {
+                    throw new IllegalStateException("Compacted segment " + file + " is too small");
+                }
+            }
+            target.force();
+        }
+
+        return file;
+    }
+
+    private synchronized ByteBuffer encodeCopy(Event event) {
+        ByteBuffer encoded = encode(event);
+        ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+        copy.put(encoded);
+        copy.flip();
+
+        return copy;
+    }
+
+    private static class Record {
+        private final long position;
+        private final UUID streamId;
+        private final int version;
+        private final ByteBuffer payload;
+
+        private Record(long position, UUID streamId, int version, ByteBuffer payload) {
+            this.position = position;
+            this.streamId = streamId;
+            this.version = version;
+            this.payload = payload;
+        }
+    }
+
+    /* ### Segments ### */
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+            directory,
+            "*" + SEGMENT_SUFFIX
+        )) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            if (!file.equals(segmentPath(i))) {
+                throw new IOException("Event log segment " + segmentPath(i) + " is missing");
+            }
+
+            LogSegment segment = LogSegment.open(file, i, segmentSize);
+            segment.recover(i == files.size() - 1, this::index);
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty()) {
+            rollSegment();
+        }
+    }
+
+    private void index(long offset, long position, UUID streamId, int streamVersion) {
+        while (positions.size() < position) {
+            positions.add(PositionIndex.ARCHIVED, StreamTable.NONE);
+        }
+        positions.add(offset, streams.append(streamId, position, streamVersion));
+        nextPosition = position + 1;
+    }
+
+    private LogSegment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private LogSegment rollSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            activeSegment().force();
+        }
+
+        int index = segments.size();
+        LogSegment segment = LogSegment.create(segmentPath(index), index, segmentSize);
+        segments.add(segment);
+
+        return segment;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+    }
+
+    /* ### Encoding ### */
+
+    private Event decode(LogSegment segment, long offset) {
+        return codec.decode(segment.payload(LogSegment.position(offset)));
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer) {
+        if (buffer.capacity() >= segmentSize) {
+            throw new IllegalArgumentException("Batch exceeds the segment size");
+        }
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        grown.put(buffer);
+
+        return grown;
+    }
+
+    private ByteBuffer encode(Event event) {
+        while (true) {
+            writeBuffer.clear();
+            try {
+                codec.encode(event, writeBuffer);
+                writeBuffer.flip();
+                return writeBuffer;
+            } catch (BufferOverflowException e) {
+                if (writeBuffer.capacity() >= segmentSize) {
+                    throw new IllegalArgumentException("Event exceeds the segment size", e);
+                }
+                writeBuffer = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package at.fhv.dluvgo.hotel.write.repository.log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+/**
+ * Hash table from the id of a stream to the global position of its last record and its
+ * version. The earlier records of a stream are chained from the last one by the
+ * {@link PositionIndex}.
+ *
+ * <p>Entries are kept off the heap in direct buffers and keyed by the two longs of the id, so
+ * the table holds no object per stream and the garbage collector never has to walk it.
+ * Collisions are resolved by linear probing, the table doubles once it is three quarters full.
+ * Layout of an entry:
+ * <pre>
+ * long streamId msb
+ * long streamId lsb
+ * long tail           (global position of the last record)
+ * int  version        (version of the stream, 0 marks an empty slot)
+ * int  padding
+ * </pre>
+ * Slots are spread over fixed-size chunks, so the table is not limited by the maximum size of a
+ * single buffer. Not thread-safe, the log only accesses it holding its lock.
+ */
+class StreamTable {
+    static final long NONE = -1;
+
+    private static final int ENTRY_SIZE = 32;
+    private static final int MSB = 0;
+    private static final int LSB = 8;
+    private static final int TAIL = 16;
+    private static final int VERSION = 24;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private ByteBuffer[] chunks;
+    private int capacity;
+    private int size;
+
+    StreamTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return The version of the stream or {@code 0} if the stream is unknown
+     */
+    int version(UUID streamId) {
+        int slot = find(streamId.getMostSignificantBits(), streamId.getLeastSignificantBits());
+        return slot < 0 ? 0 : chunk(slot).getInt(offset(slot) + VERSION);
+    }
+
+    /**
+     * @return The position of the last record of the stream or {@link #NONE}
+     */
+    long tail(UUID streamId) {
+        int slot = find(streamId.getMostSignificantBits(), streamId.getLeastSignificantBits());
+        return slot < 0 ? NONE : chunk(slot).getLong(offset(slot) + TAIL);
+    }
+
+    /**
+     * Makes the record at the given position the last one of its stream, adding the stream if it
+     * is unknown.
+     *
+     * @return The position of the previous last record of the stream or {@link #NONE}
+     */
+    long append(UUID streamId, long position, int version) {
+        long msb = streamId.getMostSignificantBits();
+        long lsb = streamId.getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        if (slot >= 0) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            long previous = chunk.getLong(offset + TAIL);
+            chunk.putLong(offset + TAIL, position);
+            chunk.putInt(offset + VERSION, version);
+            return previous;
+        }
+
+        if (size + 1 > capacity - (capacity >>> 2)) {
+            grow();
+            slot = find(msb, lsb);
+        }
+        put(-slot - 1, msb, lsb, position, version);
+        size++;
+        return NONE;
+    }
+
+    void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            chunk(slot).putInt(offset(slot) + VERSION, 0);
+        }
+        size = 0;
+    }
+
+    /* ### Helper ### */
+
+    /**
+     * @return The slot of the stream or, if the stream is unknown, {@code -slot - 1} of the empty
+     * slot it would be put into
+     */
+    private int find(long msb, long lsb) {
+        int mask = capacity - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + VERSION) == 0) {
+                return -slot - 1;
+            }
+            if (chunk.getLong(offset + MSB) == msb && chunk.getLong(offset + LSB) == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void put(int slot, long msb, long lsb, long tail, int version) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putLong(offset + MSB, msb);
+        chunk.putLong(offset + LSB, lsb);
+        chunk.putLong(offset + TAIL, tail);
+        chunk.putInt(offset + VERSION, version);
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Stream table is full: " + size + " streams");
+        }
+
+        ByteBuffer[] oldChunks = chunks;
+        int oldCapacity = capacity;
+        allocate(capacity * 2);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer chunk = oldChunks[slot >>> CHUNK_SHIFT];
+            int offset = (slot & CHUNK_MASK) * ENTRY_SIZE;
+            int version = chunk.getInt(offset + VERSION);
+            if (version != 0) {
+                long msb = chunk.getLong(offset + MSB);
+                long lsb = chunk.getLong(offset + LSB);
+                put(
+                    -find(msb, lsb) - 1,
+                    msb,
+                    lsb,
+                    chunk.getLong(offset + TAIL),
+                    version
+                );
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        int slotsPerChunk = Math.min(newCapacity, CHUNK_SLOTS);
+        chunks = new ByteBuffer[newCapacity / slotsPerChunk];
+        for (int i = 0; i < chunks.length; i++) {
+            // direct buffers are zeroed, i.e. all slots are empty
+            chunks[i] = ByteBuffer.allocateDirect(slotsPerChunk * ENTRY_SIZE)
+                .order(ByteOrder.nativeOrder());
+        }
+        capacity = newCapacity;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int slot) {
+        return (slot & CHUNK_MASK) * ENTRY_SIZE;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // ids that are not random (e.g. name-based ones) still have to be spread over the table
+        long hash = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
@@ -0,0 +1,43 @@
+package at.fhv.dluvgo.hotel.write.repository.snapshot;
+
+import java.util.UUID;
+
+/**
+ * Serialized state of an aggregate after applying the first {@link #getVersion()} events of its
+ * stream. The id of the last of these events tells whether the snapshot still matches the log:
+ * unless appends are forced to disk, a crash may lose events the snapshot already contains.
+ */
+public class Snapshot {
+    private final UUID streamId;
+    private final int version;
+    private final UUID eventId;
+    private final byte[] state;
+
+    public Snapshot(UUID streamId, int version, UUID eventId, byte[] state) {
+        this.streamId = streamId;
+        this.version = version;
+        this.eventId = eventId;
+        this.state = state;
+    }
+
+    /* ### Getter ### */
+
+    public UUID getStreamId() {
+        return streamId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The id of the event at the version of the snapshot
+     */
+    public UUID getEventId() {
+        return eventId;
+    }
+
+    public byte[] getState() {
+        return state;
+    }
+}
@@ -0,0 +1,195 @@
+package at.fhv.dluvgo.hotel.write.repository.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the latest {@link Snapshot} of every aggregate. Snapshots are appended to a single file,
+ * which is read (and rewritten, if it mostly contains outdated snapshots) on startup.
+ *
+ * <p>A new snapshot is due whenever at least {@link #getInterval()} events have been appended to a
+ * stream since its latest snapshot. The store also keeps track of how many events had to be
+ * replayed when rehydrating aggregates.
+ */
+public class SnapshotStore implements Closeable {
+    public static final String INTERVAL_PROPERTY = "hotel.snapshot.interval";
+    public static final int DEFAULT_INTERVAL = 100;
+
+    private static final int RECORD_HEADER_SIZE = 40;
+    private static final UUID NO_EVENT = new UUID(0, 0);
+
+    private final Path file;
+    private final int interval;
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final LongAdder rehydrations = new LongAdder();
+    private final LongAdder replayedEvents = new LongAdder();
+    private DataOutputStream out;
+
+    private SnapshotStore(Path file, int interval) {
+        this.file = file;
+        this.interval = interval;
+    }
+
+    public static SnapshotStore open(Path file, int interval) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1");
+        }
+
+        SnapshotStore store = new SnapshotStore(file, interval);
+        store.load();
+
+        return store;
+    }
+
+    /**
+     * @return The latest snapshot of the given stream or {@code null} if there is none
+     */
+    public Snapshot getLatest(UUID streamId) {
+        return snapshots.get(streamId);
+    }
+
+    public boolean isSnapshotDue(UUID streamId, int version) {
+        Snapshot latest = snapshots.get(streamId);
+        int snapshotVersion = null == latest ? 0 : latest.getVersion();
+
+        return version - snapshotVersion >= interval;
+    }
+
+    public synchronized void save(Snapshot snapshot) throws IOException {
+        Snapshot latest = snapshots.get(snapshot.getStreamId());
+        if (null != latest && latest.getVersion() >= snapshot.getVersion()) {
+            return;
+        }
+
+        write(out, snapshot);
+        out.flush();
+        snapshots.put(snapshot.getStreamId(), snapshot);
+    }
+
+    /**
+     * Drops the latest snapshot of a stream, e.g. once older events of the stream have been
+     * compacted. A snapshot of version {@code 0} marks the removal in the file.
+     */
+    public synchronized void invalidate(UUID streamId) throws IOException {
+        if (null == snapshots.remove(streamId)) {
+            return;
+        }
+
+        write(out, new Snapshot(streamId, 0, NO_EVENT, new byte[0]));
+        out.flush();
+    }
+
+    /* ### Metrics ### */
+
+    public void recordReplay(int eventCount) {
+        rehydrations.increment();
+        replayedEvents.add(eventCount);
+    }
+
+    public long getRehydrations() {
+        return rehydrations.sum();
+    }
+
+    public double getAverageEventsReplayed() {
+        long count = rehydrations.sum();
+        return count == 0 ? 0 : (double) replayedEvents.sum() / count;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /* ### Persistence ### */
+
+    private void load() throws IOException {
+        int records = 0;
+        long validBytes = 0;
+        long fileSize = 0;
+        if (Files.exists(file)) {
+            fileSize = Files.size(file);
+            try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file))
+            )) {
+                Snapshot snapshot;
+                while (null != (snapshot = read(in))) {
+                    if (0 == snapshot.getVersion()) {
+                        snapshots.remove(snapshot.getStreamId());
+                    } else {
+                        snapshots.put(snapshot.getStreamId(), snapshot);
+                    }
+                    validBytes += RECORD_HEADER_SIZE + snapshot.getState().length;
+                    records++;
+                }
+            }
+        }
+
+        // drop outdated snapshots as well as a partially written one at the end of the file
+        if (records > 2 * snapshots.size() || validBytes != fileSize) {
+            rewrite();
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND
+        )));
+    }
+
+    private void rewrite() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream tmpOut = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(tmp))
+        )) {
+            for (Snapshot snapshot : snapshots.values()) {
+                write(tmpOut, snapshot);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(DataOutputStream out, Snapshot snapshot) throws IOException {
+        out.writeLong(snapshot.getStreamId().getMostSignificantBits());
+        out.writeLong(snapshot.getStreamId().getLeastSignificantBits());
+        out.writeInt(snapshot.getVersion());
+        out.writeLong(snapshot.getEventId().getMostSignificantBits());
+        out.writeLong(snapshot.getEventId().getLeastSignificantBits());
+        out.writeInt(snapshot.getState().length);
+        out.write(snapshot.getState());
+    }
+
+    private static Snapshot read(DataInputStream in) throws IOException {
+        try {
+            UUID streamId = new UUID(in.readLong(), in.readLong());
+            int version = in.readInt();
+            UUID eventId = new UUID(in.readLong(), in.readLong());
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] state = new byte[length];
+            in.readFully(state);
+
+            return new Snapshot(streamId, version, eventId, state);
+        } catch (EOFException e) {
+            // end of file or a snapshot that has only been written partially
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write.utils;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.write.domain.Booking;
 import at.fhv.dluvgo.hotel.write.domain.PersonalDetails;
 import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
@@ -10,13 +11,14 @@ import java.util.List;
 import java.util.UUID;
 
 public class BookingUtility {
+    private static final Logger LOG = Logger.forWrite(BookingUtility.class);
 
     public static Booking recreateBookingState(EventStore store, UUID bookingId) {
         Booking booking = null;
         List<Event> events = store.getEvents(bookingId);
 
         if (events == null) {
-            System.err.println("[WRITE] BookingUtility - did not find any events");
+            LOG.warn("did not find any events");
             return null;
         }
         for (Event event : events) {
@@ -33,14 +35,9 @@ public class BookingUtility {
                         )
                 );
             } else if (event instanceof BookingCancelledEvent) {
+                // the room is left as recreated from its own stream, as it may be cached
                 if (null != booking) {
-                    UUID bId = booking.getId();
                     booking.cancel();
-                    booking.getRoom().getBookings().forEach(b -> {
-                        if (b.getId().equals(bId)) {
-                            b.cancel();
-                        }
-                    });
                 }
             }
         }
@@ -1,5 +1,6 @@
 package at.fhv.dluvgo.hotel.write.utils;
 
+import at.fhv.dluvgo.hotel.logging.Logger;
 import at.fhv.dluvgo.hotel.write.domain.Booking;
 import at.fhv.dluvgo.hotel.write.domain.PersonalDetails;
 import at.fhv.dluvgo.hotel.write.domain.Room;
@@ -7,45 +8,186 @@ import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
 import at.fhv.dluvgo.hotel.write.event.Event;
 import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
 import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.codec.BinaryFields;
 import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.StreamEvents;
+import at.fhv.dluvgo.hotel.write.repository.cache.AggregateCache;
+import at.fhv.dluvgo.hotel.write.repository.snapshot.Snapshot;
+import at.fhv.dluvgo.hotel.write.repository.snapshot.SnapshotStore;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public class RoomUtility {
+    private static final Logger LOG = Logger.forWrite(RoomUtility.class);
 
+    /**
+     * Recreates the state of a room. Takes the room from the {@link AggregateCache} of the store
+     * if it is cached, otherwise starts from the latest snapshot of the room (if there is one), and
+     * only replays the events appended afterwards. Takes a new snapshot once the configured
+     * snapshot interval has been reached.
+     *
+     * <p>The returned room belongs to the caller alone. It should be handed back with
+     * {@link #release(EventStore, Room)} once the command is done, unless the caller changed it.
+     */
     public static Room recreateRoomState(EventStore store, UUID roomId) {
-        Room room = null;
+        SnapshotStore snapshots = store.getSnapshotStore();
+        Room room = store.getAggregateCache().take(roomId, Room.class);
+        int version = null == room ? 0 : room.getVersion();
+        List<Event> events = null;
 
-        List<Event> events = store.getEvents(roomId);
+        Snapshot snapshot = snapshots.getLatest(roomId);
+        if (null == room && null != snapshot) {
+            // the stream is read from the last event of the snapshot on, which has to be in the log
+            StreamEvents stream = store.getStream(roomId, snapshot.getVersion() - 1);
+            if (null != stream && isContinuedBy(snapshot, stream.getEvents())) {
+                room = fromSnapshot(snapshot.getState());
+                version = stream.getVersion();
+                events = stream.getEvents().subList(1, stream.getEvents().size());
+            } else {
+                LOG.warn("snapshot does not match the event log, replaying all events");
+                try {
+                    snapshots.invalidate(roomId);
+                } catch (IOException e) {
+                    LOG.error("could not invalidate snapshot", e);
+                }
+            }
+        }
+
+        if (null == events) {
+            StreamEvents stream = store.getStream(roomId, version);
+            if (null == stream) {
+                LOG.warn("did not find any events");
+                return null;
+            }
+            events = stream.getEvents();
+            // versions of archived bookings are missing, so the events can not simply be counted
+            version = stream.getVersion();
+        }
         for (Event event : events) {
-            if (event instanceof RoomCreatedEvent) {
-                RoomCreatedEvent e = (RoomCreatedEvent) event;
-                room = new Room(e.getRoomNumber(), e.getCapacity());
-            } else if (event instanceof RoomBookedEvent) {
-                RoomBookedEvent e = (RoomBookedEvent) event;
-                if (null != room) {
-                    room.addBooking(
-                        Booking.create(
-                            e.getBookingId(),
-                            room,
-                            e.getBookingStartTime(),
-                            e.getBookingEndTime(),
-                            PersonalDetails.create(
-                                e.getContactName(),
-                                e.getNumberOfPeople()
-                            )
+            room = apply(room, event);
+        }
+        snapshots.recordReplay(events.size());
+        if (null != room) {
+            room.setVersion(version);
+        }
+
+        // the id of the last event is only known if events were replayed
+        if (null != room && !events.isEmpty() && snapshots.isSnapshotDue(roomId, version)) {
+            try {
+                snapshots.save(new Snapshot(
+                    roomId,
+                    version,
+                    events.get(events.size() - 1).getId(),
+                    toSnapshot(room)
+                ));
+            } catch (IOException e) {
+                LOG.error("could not save snapshot", e);
+            }
+        }
+
+        return room;
+    }
+
+    /**
+     * Hands a room recreated by {@link #recreateRoomState(EventStore, UUID)} back to the cache,
+     * so the next command on it only has to apply the events appended in the meantime. Rooms
+     * changed in any other way than by their own events (e.g. bookings added tentatively) must
+     * not be handed back.
+     */
+    public static void release(EventStore store, Room room) {
+        if (null != room) {
+            store.getAggregateCache().release(room.getRoomNumber(), room, room.getVersion());
+        }
+    }
+
+    private static Room apply(Room room, Event event) {
+        if (event instanceof RoomCreatedEvent) {
+            RoomCreatedEvent e = (RoomCreatedEvent) event;
+            room = new Room(e.getRoomNumber(), e.getCapacity());
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            if (null != room) {
+                room.addBooking(
+                    Booking.create(
+                        e.getBookingId(),
+                        room,
+                        e.getBookingStartTime(),
+                        e.getBookingEndTime(),
+                        PersonalDetails.create(
+                            e.getContactName(),
+                            e.getNumberOfPeople()
                         )
-                    );
-                }
-            } else if (event instanceof BookingCancelledEvent) {
-                BookingCancelledEvent e = (BookingCancelledEvent) event;
-                room.getBookings().stream().filter(x -> x.getId().equals(e.getBookingId())).forEach(b -> {
-                    System.out.println("[WRITE] RoomUtility - cancelling booking (reconstructing)");
-                    b.cancel();
-                });
+                    )
+                );
+            }
+        } else if (event instanceof BookingCancelledEvent) {
+            BookingCancelledEvent e = (BookingCancelledEvent) event;
+            Booking booking = room.getBooking(e.getBookingId());
+            if (null != booking) {
+                LOG.debug("cancelling booking (reconstructing)");
+                booking.cancel();
             }
         }
 
         return room;
     }
+
+    /* ### Snapshots ### */
+
+    /**
+     * @return Whether the given events of the stream start with the last event of the snapshot.
+     * A crash may lose events that were not forced to disk yet, but not the snapshot taken of
+     * them - once the stream has grown again, only the id of the event tells them apart.
+     */
+    private static boolean isContinuedBy(Snapshot snapshot, List<Event> events) {
+        return !events.isEmpty() && events.get(0).getId().equals(snapshot.getEventId());
+    }
+
+    /**
+     * Encodes the active bookings of a room with {@link BinaryFields}. Cancelled bookings are
+     * left out, cancelling them again is rejected by the aggregate as they are missing.
+     */
+    private static byte[] toSnapshot(Room room) {
+        Collection<Booking> bookings = room.getActiveBookings();
+        int maxSize = 16 + 2 * BinaryFields.MAX_VAR_INT_SIZE;
+        for (Booking booking : bookings) {
+            maxSize += 16 + 2 * BinaryFields.MAX_DATE_TIME_SIZE + BinaryFields.MAX_VAR_INT_SIZE
+                + BinaryFields.maxStringSize(booking.getPersonalDetails().getBookingMadeBy());
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(maxSize);
+        BinaryFields.writeUuid(room.getRoomNumber(), out);
+        BinaryFields.writeVarInt(room.getMaxPeople(), out);
+        BinaryFields.writeVarInt(bookings.size(), out);
+        for (Booking booking : bookings) {
+            BinaryFields.writeUuid(booking.getId(), out);
+            BinaryFields.writeDateTime(booking.getStart(), out);
+            BinaryFields.writeDateTime(booking.getEnd(), out);
+            BinaryFields.writeString(booking.getPersonalDetails().getBookingMadeBy(), out);
+            BinaryFields.writeVarInt(booking.getPersonalDetails().getNumberOfPeople(), out);
+        }
+
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static Room fromSnapshot(byte[] state) {
+        ByteBuffer in = ByteBuffer.wrap(state);
+        Room room = new Room(BinaryFields.readUuid(in), BinaryFields.readVarInt(in));
+        int bookings = BinaryFields.readVarInt(in);
+        for (int i = 0; i < bookings; i++) {
+            room.addBooking(Booking.create(
+                BinaryFields.readUuid(in),
+                room,
+                BinaryFields.readDateTime(in),
+                BinaryFields.readDateTime(in),
+                PersonalDetails.create(BinaryFields.readString(in), BinaryFields.readVarInt(in))
+            ));
+        }
+
+        return room;
+    }
 }
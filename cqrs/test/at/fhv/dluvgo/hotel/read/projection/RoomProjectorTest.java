@@ -0,0 +1,159 @@
+package at.fhv.dluvgo.hotel.read.projection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import at.fhv.dluvgo.hotel.read.domain.BookableRoom;
+import at.fhv.dluvgo.hotel.read.repository.Horizon;
+import at.fhv.dluvgo.hotel.read.repository.ReadRepository;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Free periods of a room after bookings and cancellations, on a fixed day.
+ */
+class RoomProjectorTest {
+    private static final LocalDate TODAY = LocalDate.of(2030, 1, 1);
+    private static final UUID ROOM = UUID.randomUUID();
+
+    private ReadRepository readRepository;
+    private RoomProjector projector;
+    private LocalDate horizonEnd;
+
+    @BeforeEach
+    void createRoom() {
+        Horizon horizon = new Horizon(
+            Clock.fixed(Instant.parse("2030-01-01T08:00:00Z"), ZoneOffset.UTC),
+            1
+        );
+        readRepository = new ReadRepository();
+        projector = new RoomProjector(readRepository, horizon);
+        horizonEnd = projector.getHorizonEnd();
+        projector.update(new RoomCreatedEvent(ROOM, 2));
+    }
+
+    @Test
+    void bookingSplitsTheFreePeriod() {
+        book(10, 13);
+
+        assertEquals(List.of(free(0, 10), free(13, horizonEnd)), freePeriods());
+    }
+
+    @Test
+    void cancellationRestoresTheFreePeriod() {
+        RoomBookedEvent booking = book(10, 13);
+        cancel(booking);
+
+        assertEquals(List.of(free(0, horizonEnd)), freePeriods());
+    }
+
+    @Test
+    void cancellationJoinsOnlyTheAdjacentFreePeriods() {
+        book(5, 8);
+        RoomBookedEvent middle = book(8, 12);
+        book(12, 14);
+        book(20, 22);
+        cancel(middle);
+
+        assertEquals(
+            List.of(free(0, 5), free(8, 12), free(14, 20), free(22, horizonEnd)),
+            freePeriods()
+        );
+    }
+
+    @Test
+    void cancelledNightsCanBeBookedAgain() {
+        RoomBookedEvent first = book(10, 13);
+        cancel(first);
+        RoomBookedEvent second = book(11, 12);
+
+        assertEquals(List.of(free(0, 11), free(12, horizonEnd)), freePeriods());
+        cancel(second);
+        assertEquals(List.of(free(0, horizonEnd)), freePeriods());
+    }
+
+    @Test
+    void cancellingTwiceOrUnknownBookingsChangesNothing() {
+        RoomBookedEvent booking = book(10, 13);
+        cancel(booking);
+        cancel(booking);
+        projector.update(new BookingCancelledEvent(UUID.randomUUID()));
+
+        assertEquals(List.of(free(0, horizonEnd)), freePeriods());
+    }
+
+    @Test
+    void bookingProjectorLeavesTheFreePeriodsAlone() {
+        BookingProjector bookingProjector = new BookingProjector(readRepository);
+        for (boolean isBookingProjectorFirst : new boolean[] {true, false}) {
+            RoomBookedEvent booking = book(10, 13);
+            bookingProjector.update(new BookingCreatedEvent(
+                UUID.randomUUID(),
+                new Date(),
+                booking.getBookingId(),
+                ROOM,
+                booking.getBookingStartTime(),
+                booking.getBookingEndTime(),
+                booking.getContactName(),
+                booking.getNumberOfPeople()
+            ));
+            BookingCancelledEvent cancelled = new BookingCancelledEvent(booking.getBookingId());
+            if (isBookingProjectorFirst) {
+                bookingProjector.update(cancelled);
+                projector.update(cancelled);
+            } else {
+                projector.update(cancelled);
+                bookingProjector.update(cancelled);
+            }
+
+            assertEquals(List.of(free(0, horizonEnd)), freePeriods());
+            assertNull(readRepository.getBooking(booking.getBookingId()));
+        }
+    }
+
+    private RoomBookedEvent book(int firstNight, int endNight) {
+        RoomBookedEvent event = new RoomBookedEvent(
+            UUID.randomUUID(),
+            ROOM,
+            TODAY.plusDays(firstNight).atTime(RoomProjector.CHECKIN_HOUR, 0),
+            TODAY.plusDays(endNight).atTime(RoomProjector.CHECKOUT_HOUR, 0),
+            "Guest",
+            2
+        );
+        projector.update(event);
+        return event;
+    }
+
+    private void cancel(RoomBookedEvent booking) {
+        projector.update(new BookingCancelledEvent(booking.getBookingId()));
+    }
+
+    private List<String> freePeriods() {
+        List<String> periods = new ArrayList<>();
+        for (BookableRoom room : readRepository.getBookableRooms(ROOM)) {
+            periods.add(room.getStart() + " - " + room.getEnd());
+        }
+        return periods;
+    }
+
+    private static String free(int firstNight, int endNight) {
+        return free(firstNight, TODAY.plusDays(endNight));
+    }
+
+    private static String free(int firstNight, LocalDate endNight) {
+        return TODAY.plusDays(firstNight).atTime(RoomProjector.CHECKIN_HOUR, 0) + " - "
+            + endNight.atTime(RoomProjector.CHECKOUT_HOUR, 0);
+    }
+}
@@ -0,0 +1,95 @@
+package at.fhv.dluvgo.hotel.read.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import at.fhv.dluvgo.hotel.read.domain.Occupancy;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Figures after bookings and cancellations made before and after the stays ended.
+ */
+class AnalyticsRepositoryTest {
+    private static final LocalDate BOOKED_ON = LocalDate.of(2030, 1, 1);
+    private static final LocalDate FIRST_NIGHT = LocalDate.of(2030, 1, 10);
+    private static final UUID ROOM = UUID.randomUUID();
+
+    private AnalyticsRepository repository;
+
+    @BeforeEach
+    void createRoom() {
+        repository = new AnalyticsRepository();
+        repository.addRoom(ROOM, 2);
+    }
+
+    @Test
+    void countsTheNightsOfABooking() {
+        book(UUID.randomUUID(), FIRST_NIGHT, 3, BOOKED_ON);
+
+        Occupancy occupancy = januaryOccupancy();
+        assertEquals(3, occupancy.getRoomNights());
+        assertEquals(6, occupancy.getGuestNights());
+        assertEquals(1, occupancy.getArrivals());
+    }
+
+    @Test
+    void cancellationBeforeTheStayEndsTakesItBack() {
+        UUID bookingId = UUID.randomUUID();
+        book(bookingId, FIRST_NIGHT, 3, BOOKED_ON);
+        repository.cancel(bookingId, FIRST_NIGHT.plusDays(1));
+
+        Occupancy occupancy = januaryOccupancy();
+        assertEquals(0, occupancy.getRoomNights());
+        assertEquals(0, occupancy.getArrivals());
+        assertEquals(1, occupancy.getCancellations());
+    }
+
+    @Test
+    void cancellationAfterTheStayEndedOnlyCountsTheCancellation() {
+        UUID bookingId = UUID.randomUUID();
+        book(bookingId, FIRST_NIGHT, 3, BOOKED_ON);
+        // a booking made after the first stay ended drops that stay
+        LocalDate later = FIRST_NIGHT.plusDays(3);
+        book(UUID.randomUUID(), later, 1, later);
+        repository.cancel(bookingId, later.plusDays(1));
+
+        Occupancy occupancy = januaryOccupancy();
+        assertEquals(4, occupancy.getRoomNights());
+        assertEquals(2, occupancy.getArrivals());
+        assertEquals(1, occupancy.getCancellations());
+        assertEquals(
+            1L,
+            repository.getCancellationsPerMonth(YearMonth.of(2030, 1), YearMonth.of(2030, 1))
+                .get(YearMonth.of(2030, 1))
+        );
+    }
+
+    @Test
+    void stayThatEndedBeforeItWasProjectedIsNotKept() {
+        UUID bookingId = UUID.randomUUID();
+        book(bookingId, FIRST_NIGHT, 3, FIRST_NIGHT.plusDays(5));
+        repository.cancel(bookingId, FIRST_NIGHT.plusDays(5));
+
+        Occupancy occupancy = januaryOccupancy();
+        assertEquals(3, occupancy.getRoomNights());
+        assertEquals(1, occupancy.getCancellations());
+    }
+
+    private void book(UUID bookingId, LocalDate firstNight, int nights, LocalDate bookedOn) {
+        repository.book(
+            bookingId,
+            ROOM,
+            firstNight.atTime(14, 0),
+            firstNight.plusDays(nights).atTime(11, 0),
+            2,
+            bookedOn
+        );
+    }
+
+    private Occupancy januaryOccupancy() {
+        return repository.getOccupancy(LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 31)).get(0);
+    }
+}
@@ -0,0 +1,166 @@
+package at.fhv.dluvgo.hotel.write.event.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.BookingCreatedEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.event.RoomBookedEvent;
+import at.fhv.dluvgo.hotel.write.event.RoomCreatedEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Every event type has to come out of the {@link EventCodec} field by field as it went in, with
+ * and without string dictionary.
+ */
+class EventCodecTest {
+    private static final int EVENTS = 20_000;
+    private static final int GUESTS = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsInline() {
+        assertRoundTrips(new EventCodec(), createEvents());
+    }
+
+    @Test
+    void roundTripsWithDictionary() throws IOException {
+        List<Event> events = createEvents();
+        Path file = directory.resolve("strings.dict");
+        try (StringDictionary dictionary = StringDictionary.open(file, 1 << 20)) {
+            assertRoundTrips(new EventCodec(dictionary), events);
+        }
+
+        // the strings are taken from the dictionary file once it is opened again
+        List<byte[]> encoded = new ArrayList<>();
+        try (StringDictionary dictionary = StringDictionary.open(file, 1 << 20)) {
+            EventCodec codec = new EventCodec(dictionary);
+            for (Event event : events) {
+                encoded.add(encode(codec, event));
+            }
+        }
+        try (StringDictionary dictionary = StringDictionary.open(file, 1 << 20)) {
+            EventCodec codec = new EventCodec(dictionary);
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(
+                    describe(events.get(i)),
+                    describe(codec.decode(ByteBuffer.wrap(encoded.get(i))))
+                );
+            }
+        }
+    }
+
+    @Test
+    void roundTripsNonAsciiNames() {
+        LocalDateTime start = LocalDateTime.of(2021, 3, 1, 14, 0);
+        Event event = new BookingCreatedEvent(
+            UUID.randomUUID(),
+            start,
+            start.plusDays(2).withHour(11),
+            "G\u00e4st \u00d6sterreich \uD83C\uDFE8",
+            2
+        );
+
+        assertRoundTrips(new EventCodec(), List.of(event));
+    }
+
+    private static void assertRoundTrips(EventCodec codec, List<Event> events) {
+        for (Event event : events) {
+            Event decoded = codec.decode(ByteBuffer.wrap(encode(codec, event)));
+            assertEquals(describe(event), describe(decoded));
+        }
+    }
+
+    private static byte[] encode(EventCodec codec, Event event) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 1024);
+        codec.encode(event, buffer);
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * All fields of an event, as events do not implement {@code equals}.
+     */
+    private static List<Object> describe(Event event) {
+        List<Object> fields = new ArrayList<>();
+        fields.add(event.getClass());
+        fields.add(event.getId());
+        fields.add(event.getCreated());
+        if (event instanceof RoomCreatedEvent) {
+            RoomCreatedEvent e = (RoomCreatedEvent) event;
+            fields.add(e.getRoomNumber());
+            fields.add(e.getCapacity());
+        } else if (event instanceof RoomBookedEvent) {
+            RoomBookedEvent e = (RoomBookedEvent) event;
+            fields.add(e.getBookingId());
+            fields.add(e.getRoomNumber());
+            fields.add(e.getBookingStartTime());
+            fields.add(e.getBookingEndTime());
+            fields.add(e.getContactName());
+            fields.add(e.getNumberOfPeople());
+        } else if (event instanceof BookingCreatedEvent) {
+            BookingCreatedEvent e = (BookingCreatedEvent) event;
+            fields.add(e.getBookingId());
+            fields.add(e.getRoomNumber());
+            fields.add(e.getStart());
+            fields.add(e.getEnd());
+            fields.add(e.getContactName());
+            fields.add(e.getNumberOfPeople());
+        } else if (event instanceof BookingCancelledEvent) {
+            fields.add(((BookingCancelledEvent) event).getBookingId());
+        }
+        fields.replaceAll(field -> Objects.toString(field));
+
+        return fields;
+    }
+
+    private static List<Event> createEvents() {
+        Random random = new Random(42);
+        List<UUID> rooms = new ArrayList<>();
+        List<Event> events = new ArrayList<>(EVENTS);
+        LocalDateTime firstNight = LocalDateTime.of(2021, 1, 1, 14, 0);
+        while (events.size() < EVENTS) {
+            if (rooms.size() < 100) {
+                UUID room = UUID.randomUUID();
+                rooms.add(room);
+                events.add(new RoomCreatedEvent(room, 1 + random.nextInt(5)));
+                continue;
+            }
+
+            UUID room = rooms.get(random.nextInt(rooms.size()));
+            LocalDateTime start = firstNight.plusDays(random.nextInt(365));
+            LocalDateTime end = start.plusDays(1 + random.nextInt(7)).withHour(11);
+            String guest = "Guest " + random.nextInt(GUESTS);
+            int people = 1 + random.nextInt(4);
+            BookingCreatedEvent created = new BookingCreatedEvent(room, start, end, guest, people);
+            events.add(created);
+            events.add(new RoomBookedEvent(
+                created.getBookingId(),
+                room,
+                start,
+                end,
+                guest,
+                people
+            ));
+            if (random.nextInt(10) == 0) {
+                events.add(new BookingCancelledEvent(created.getBookingId()));
+            }
+        }
+
+        return events;
+    }
+}
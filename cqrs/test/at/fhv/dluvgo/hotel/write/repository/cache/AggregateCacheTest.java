@@ -0,0 +1,155 @@
+package at.fhv.dluvgo.hotel.write.repository.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.fhv.dluvgo.hotel.benchmark.LoadGenerator;
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.write.aggregate.BookingAggregate;
+import at.fhv.dluvgo.hotel.write.aggregate.RoomAggregate;
+import at.fhv.dluvgo.hotel.write.cqrs.bus.CommandBus;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BatchCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.BookRoomCommand;
+import at.fhv.dluvgo.hotel.write.cqrs.command.CreateRoomCommand;
+import at.fhv.dluvgo.hotel.write.domain.Booking;
+import at.fhv.dluvgo.hotel.write.domain.Room;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.log.SegmentedEventLog;
+import at.fhv.dluvgo.hotel.write.utils.RoomUtility;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Random bookings, cancellations and batches run through a {@link CommandBus} with a cache
+ * smaller than the number of rooms, so rooms are evicted, handed back concurrently and skipped by
+ * batches. After every round the state of every room is recreated twice - once taken from the
+ * cache and caught up, once replayed from the log (without snapshots) - and both have to be
+ * identical.
+ */
+class AggregateCacheTest {
+    private static final int ROOMS = 256;
+    private static final int CACHE_SIZE = 192;
+    private static final int ROUNDS = 10;
+    private static final int COMMANDS_PER_ROUND = 1_000;
+    private static final int BATCHES_PER_ROUND = 50;
+    private static final int IN_FLIGHT = 64;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void clearCacheSize() {
+        System.clearProperty(AggregateCache.SIZE_PROPERTY);
+    }
+
+    @Test
+    void cachedRoomsMatchReplayedOnes() throws Exception {
+        Logger.setLevel(Logger.Level.WARN);
+        System.setProperty(AggregateCache.SIZE_PROPERTY, String.valueOf(CACHE_SIZE));
+        // replaying without snapshots, which are taken from cached rooms as well
+        try (EventStore eventStore = new EventStore(
+            directory,
+            SegmentedEventLog.DEFAULT_SEGMENT_SIZE,
+            Integer.MAX_VALUE
+        )) {
+            CommandBus commandBus = new CommandBus(
+                eventStore,
+                new BookingAggregate(eventStore),
+                new RoomAggregate(eventStore)
+            );
+            LoadGenerator generator = new LoadGenerator(commandBus, 42);
+            List<CreateRoomCommand> rooms = generator.createRooms(ROOMS);
+            AggregateCache cache = eventStore.getAggregateCache();
+            Random random = new Random(7);
+
+            long comparedCached = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                List<CompletableFuture<List<Event>>> batches = new ArrayList<>();
+                for (int i = 0; i < BATCHES_PER_ROUND; i++) {
+                    List<BookRoomCommand> bookings = new ArrayList<>();
+                    for (int b = 1 + random.nextInt(4); b > 0; b--) {
+                        bookings.add(generator.nextBooking());
+                    }
+                    batches.add(
+                        commandBus.dispatch(new BatchCommand(Collections.emptyList(), bookings))
+                    );
+                }
+                generator.replay(COMMANDS_PER_ROUND, IN_FLIGHT);
+                for (CompletableFuture<List<Event>> batch : batches) {
+                    batch.handle((events, e) -> null).join();
+                }
+
+                for (CreateRoomCommand roomCommand : rooms) {
+                    long hits = cache.getHits();
+                    Room cached = RoomUtility.recreateRoomState(
+                        eventStore,
+                        roomCommand.getRoomNumber()
+                    );
+                    if (cache.getHits() > hits) {
+                        comparedCached++;
+                    }
+                    // the cached room has been taken out, so this one is replayed
+                    Room replayed = RoomUtility.recreateRoomState(
+                        eventStore,
+                        roomCommand.getRoomNumber()
+                    );
+                    assertSameState(replayed, cached, random);
+                    RoomUtility.release(eventStore, cached);
+                }
+            }
+            commandBus.close();
+
+            assertTrue(comparedCached > 0, "No room was taken from the cache");
+            assertTrue(generator.getCancellations() > 0, "No booking was cancelled");
+        }
+    }
+
+    private static void assertSameState(Room expected, Room actual, Random random) {
+        String room = "room " + expected.getRoomNumber() + ": ";
+        assertEquals(expected.getRoomNumber(), actual.getRoomNumber(), room + "room number");
+        assertEquals(expected.getMaxPeople(), actual.getMaxPeople(), room + "capacity");
+        assertEquals(expected.getVersion(), actual.getVersion(), room + "version");
+        assertEquals(expected.getBookings().size(), actual.getBookings().size(), room + "bookings");
+        for (int i = 0; i < expected.getBookings().size(); i++) {
+            Booking expectedBooking = expected.getBookings().get(i);
+            Booking actualBooking = actual.getBookings().get(i);
+            String booking = room + "booking " + expectedBooking.getId() + ": ";
+            assertEquals(expectedBooking.getId(), actualBooking.getId(), booking + "id");
+            assertEquals(expectedBooking.getStart(), actualBooking.getStart(), booking + "start");
+            assertEquals(expectedBooking.getEnd(), actualBooking.getEnd(), booking + "end");
+            assertEquals(expectedBooking.getState(), actualBooking.getState(), booking + "state");
+            assertEquals(
+                expectedBooking.getPersonalDetails().getNumberOfPeople(),
+                actualBooking.getPersonalDetails().getNumberOfPeople(),
+                booking + "number of people"
+            );
+            assertEquals(
+                expectedBooking.getPersonalDetails().getBookingMadeBy(),
+                actualBooking.getPersonalDetails().getBookingMadeBy(),
+                booking + "guest"
+            );
+        }
+
+        // the index of active bookings is internal, so it is probed
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime start = today.plusDays(random.nextInt(400)).atTime(14, 0);
+            LocalDateTime end = start.plusDays(1 + random.nextInt(7)).withHour(11);
+            assertEquals(
+                expected.isFree(start, end, null),
+                actual.isFree(start, end, null),
+                room + "availability " + start + " - " + end
+            );
+        }
+    }
+}
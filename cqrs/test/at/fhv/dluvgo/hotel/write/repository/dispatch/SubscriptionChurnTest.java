@@ -0,0 +1,178 @@
+package at.fhv.dluvgo.hotel.write.repository.dispatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.fhv.dluvgo.hotel.logging.Logger;
+import at.fhv.dluvgo.hotel.read.projection.Observer;
+import at.fhv.dluvgo.hotel.write.event.BookingCancelledEvent;
+import at.fhv.dluvgo.hotel.write.event.Event;
+import at.fhv.dluvgo.hotel.write.repository.EventStore;
+import at.fhv.dluvgo.hotel.write.repository.RecordedEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Observers that stay subscribed to the event store, live or from a past position, have to
+ * receive every event exactly once and in the order of the log while other threads keep
+ * subscribing and unsubscribing observers.
+ */
+class SubscriptionChurnTest {
+    private static final int EVENTS = 5_000;
+    private static final int CHURN_THREADS = 2;
+    private static final int CHURN_SUBSCRIBERS = 32;
+    private static final int VERIFIERS = 4;
+    private static final int STREAMS = 64;
+    private static final long TIMEOUT_MILLIS = 60 * 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void deliversEveryEventOnceInOrderWhileObserversComeAndGo() throws Exception {
+        Logger.setLevel(Logger.Level.WARN);
+        try (EventStore eventStore = new EventStore(directory)) {
+            append(eventStore, EVENTS / 4);
+
+            // verifiers start at different positions of the log and stay subscribed throughout
+            Random random = new Random(42);
+            List<VerifyingObserver> verifiers = new ArrayList<>();
+            for (int i = 0; i < VERIFIERS; i++) {
+                long from = i % 2 == 0
+                    ? random.nextInt((int) eventStore.getHeadPosition())
+                    : eventStore.getHeadPosition();
+                VerifyingObserver verifier = new VerifyingObserver(from);
+                verifiers.add(verifier);
+                if (i % 2 == 0) {
+                    eventStore.subscribeFrom(from, verifier);
+                } else {
+                    eventStore.subscribe(verifier);
+                }
+            }
+
+            AtomicBoolean isAppending = new AtomicBoolean(true);
+            List<Thread> churn = new ArrayList<>();
+            for (int t = 0; t < CHURN_THREADS; t++) {
+                Random churnRandom = new Random(t);
+                Thread thread = new Thread(() -> churn(eventStore, churnRandom, isAppending));
+                churn.add(thread);
+                thread.start();
+            }
+            append(eventStore, EVENTS);
+            isAppending.set(false);
+            for (Thread thread : churn) {
+                thread.join(TIMEOUT_MILLIS);
+                assertFalse(thread.isAlive(), "Churn thread did not finish");
+            }
+
+            long head = eventStore.getHeadPosition();
+            awaitDelivery(eventStore, verifiers, head);
+            for (VerifyingObserver verifier : verifiers) {
+                assertEquals(
+                    expectedIds(eventStore, verifier.from, head),
+                    verifier.getReceived(),
+                    "Events received by the observer from position " + verifier.from
+                );
+            }
+            assertEquals(VERIFIERS, eventStore.getDispatcher().getSubscriberCount());
+        }
+    }
+
+    private static void append(EventStore eventStore, int count) {
+        UUID[] streams = new UUID[STREAMS];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = UUID.randomUUID();
+        }
+        for (int i = 0; i < count; i++) {
+            eventStore.addEvent(
+                streams[i % streams.length],
+                new BookingCancelledEvent(UUID.randomUUID())
+            );
+        }
+    }
+
+    /**
+     * Keeps about {@value #CHURN_SUBSCRIBERS} observers subscribed, replacing a random one at a
+     * time.
+     */
+    private static void churn(EventStore eventStore, Random random, AtomicBoolean isAppending) {
+        List<Observer> observers = new ArrayList<>();
+        while (isAppending.get()) {
+            if (observers.size() < CHURN_SUBSCRIBERS) {
+                Observer observer = event -> { };
+                if (random.nextBoolean()) {
+                    eventStore.subscribe(observer);
+                } else {
+                    long from = Math.max(0, eventStore.getHeadPosition() - random.nextInt(1000));
+                    eventStore.subscribeFrom(from, observer);
+                }
+                observers.add(observer);
+            } else {
+                eventStore.unsubscribe(observers.remove(random.nextInt(observers.size())));
+            }
+        }
+        for (Observer observer : observers) {
+            eventStore.unsubscribe(observer);
+        }
+    }
+
+    private static void awaitDelivery(
+        EventStore eventStore,
+        List<VerifyingObserver> verifiers,
+        long head
+    ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (Subscription subscription : eventStore.getDispatcher().getSubscriptions()) {
+            if (!verifiers.contains(subscription.getObserver())) {
+                continue;
+            }
+            while (subscription.getNextPosition() < head) {
+                assertTrue(
+                    System.currentTimeMillis() < deadline,
+                    "Observer stuck at position " + subscription.getNextPosition()
+                );
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static List<UUID> expectedIds(EventStore eventStore, long from, long head) {
+        List<UUID> ids = new ArrayList<>();
+        for (long position = from; position < head; ) {
+            List<RecordedEvent> chunk = eventStore.readFrom(position, 8 * 1024);
+            for (RecordedEvent recorded : chunk) {
+                ids.add(recorded.getEvent().getId());
+            }
+            position = chunk.get(chunk.size() - 1).getPosition() + 1;
+        }
+        return ids;
+    }
+
+    /**
+     * Remembers the ids of all events it receives, to compare them with the log afterwards.
+     */
+    private static class VerifyingObserver implements Observer {
+        private final long from;
+        private final List<UUID> received = new ArrayList<>();
+
+        private VerifyingObserver(long from) {
+            this.from = from;
+        }
+
+        @Override
+        public synchronized void update(Event event) {
+            received.add(event.getId());
+        }
+
+        private synchronized List<UUID> getReceived() {
+            return new ArrayList<>(received);
+        }
+    }
+}